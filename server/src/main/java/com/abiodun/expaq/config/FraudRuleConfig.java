@@ -0,0 +1,37 @@
+package com.abiodun.expaq.config;
+
+import com.abiodun.expaq.service.fraud.FraudCheck;
+import com.abiodun.expaq.service.fraud.VelocityRule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Velocity limits on payment attempts. Each bean is one sliding-window rule picked up by the
+ * fraud rule engine; set a limit here to tune it per deployment.
+ */
+@Configuration
+public class FraudRuleConfig {
+
+    @Bean
+    public VelocityRule userPerMinuteVelocityRule(@Value("${fraud.velocity.user-per-minute:5}") int limit) {
+        return new VelocityRule("user-per-minute", FraudCheck::getUserId, Duration.ofMinutes(1), limit);
+    }
+
+    @Bean
+    public VelocityRule userPerHourVelocityRule(@Value("${fraud.velocity.user-per-hour:20}") int limit) {
+        return new VelocityRule("user-per-hour", FraudCheck::getUserId, Duration.ofHours(1), limit);
+    }
+
+    @Bean
+    public VelocityRule ipPerMinuteVelocityRule(@Value("${fraud.velocity.ip-per-minute:10}") int limit) {
+        return new VelocityRule("ip-per-minute", FraudCheck::getIpAddress, Duration.ofMinutes(1), limit);
+    }
+
+    @Bean
+    public VelocityRule ipPerHourVelocityRule(@Value("${fraud.velocity.ip-per-hour:60}") int limit) {
+        return new VelocityRule("ip-per-hour", FraudCheck::getIpAddress, Duration.ofHours(1), limit);
+    }
+}
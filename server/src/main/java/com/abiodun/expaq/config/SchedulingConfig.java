@@ -1,22 +1,106 @@
 package com.abiodun.expaq.config;
 
+import com.abiodun.expaq.repository.ActivityRepository;
 import com.abiodun.expaq.repository.TokenBlacklistRepository;
+import com.abiodun.expaq.security.TokenRevocationIndex;
+import com.abiodun.expaq.service.CurrencyExchangeService;
+import com.abiodun.expaq.service.billing.SubscriptionBillingEngine;
+import com.abiodun.expaq.service.geo.ActivityClusterIndex;
+import com.abiodun.expaq.service.geo.NearbyActivityIndex;
+import com.abiodun.expaq.service.impl.CapacityReservationService;
+import com.abiodun.expaq.service.impl.EntitlementCache;
+import com.abiodun.expaq.service.impl.PaymentRollupService;
+import com.abiodun.expaq.service.impl.SubscriptionReferenceIndex;
+import com.abiodun.expaq.service.marketing.CampaignDispatcher;
+import com.abiodun.expaq.service.marketing.TrackingEventIngestor;
+import com.abiodun.expaq.service.payment.PaymentRefundOutbox;
+import com.abiodun.expaq.service.payment.PaymentWebhookInbox;
+import com.abiodun.expaq.service.recommendation.ActivityPopularityTracker;
+import com.abiodun.expaq.service.recommendation.RecommendationEngine;
+import com.abiodun.expaq.service.search.ActivitySearchIndex;
+import com.abiodun.expaq.service.search.SuggestionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Date;
 
 @Configuration
 @EnableScheduling
 public class SchedulingConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(SchedulingConfig.class);
+
     private final TokenBlacklistRepository tokenBlacklistRepository;
+    private final TokenRevocationIndex tokenRevocationIndex;
+    private final ActivityRepository activityRepository;
+    private final CapacityReservationService capacityReservationService;
+    private final RecommendationEngine recommendationEngine;
+    private final ActivityPopularityTracker popularityTracker;
+    private final PaymentRollupService paymentRollupService;
+    private final CurrencyExchangeService currencyExchangeService;
+    private final SuggestionService suggestionService;
+    private final ActivitySearchIndex activitySearchIndex;
+    private final NearbyActivityIndex nearbyActivityIndex;
+    private final ActivityClusterIndex activityClusterIndex;
+    private final TrackingEventIngestor trackingEventIngestor;
+    private final CampaignDispatcher campaignDispatcher;
+    private final PaymentWebhookInbox paymentWebhookInbox;
+    private final PaymentRefundOutbox paymentRefundOutbox;
+    private final EntitlementCache entitlementCache;
+    private final SubscriptionBillingEngine subscriptionBillingEngine;
+    private final SubscriptionReferenceIndex subscriptionReferenceIndex;
+
+    @Value("${payments.webhooks.retention-days:30}")
+    private int webhookRetentionDays;
 
     @Autowired
-    public SchedulingConfig(TokenBlacklistRepository tokenBlacklistRepository) {
+    public SchedulingConfig(TokenBlacklistRepository tokenBlacklistRepository,
+                            TokenRevocationIndex tokenRevocationIndex,
+                            ActivityRepository activityRepository,
+                            CapacityReservationService capacityReservationService,
+                            RecommendationEngine recommendationEngine,
+                            ActivityPopularityTracker popularityTracker,
+                            PaymentRollupService paymentRollupService,
+                            CurrencyExchangeService currencyExchangeService,
+                            SuggestionService suggestionService,
+                            ActivitySearchIndex activitySearchIndex,
+                            NearbyActivityIndex nearbyActivityIndex,
+                            ActivityClusterIndex activityClusterIndex,
+                            TrackingEventIngestor trackingEventIngestor,
+                            CampaignDispatcher campaignDispatcher,
+                            PaymentWebhookInbox paymentWebhookInbox,
+                            PaymentRefundOutbox paymentRefundOutbox,
+                            EntitlementCache entitlementCache,
+                            SubscriptionBillingEngine subscriptionBillingEngine,
+                            SubscriptionReferenceIndex subscriptionReferenceIndex) {
         this.tokenBlacklistRepository = tokenBlacklistRepository;
+        this.tokenRevocationIndex = tokenRevocationIndex;
+        this.activityRepository = activityRepository;
+        this.capacityReservationService = capacityReservationService;
+        this.recommendationEngine = recommendationEngine;
+        this.popularityTracker = popularityTracker;
+        this.paymentRollupService = paymentRollupService;
+        this.currencyExchangeService = currencyExchangeService;
+        this.suggestionService = suggestionService;
+        this.activitySearchIndex = activitySearchIndex;
+        this.nearbyActivityIndex = nearbyActivityIndex;
+        this.activityClusterIndex = activityClusterIndex;
+        this.trackingEventIngestor = trackingEventIngestor;
+        this.campaignDispatcher = campaignDispatcher;
+        this.paymentWebhookInbox = paymentWebhookInbox;
+        this.paymentRefundOutbox = paymentRefundOutbox;
+        this.entitlementCache = entitlementCache;
+        this.subscriptionBillingEngine = subscriptionBillingEngine;
+        this.subscriptionReferenceIndex = subscriptionReferenceIndex;
     }
 //0 0 * * * * - Every hour
 //0 0 0 * * * - Every day at midnight
@@ -25,5 +109,216 @@ public class SchedulingConfig {
     @Scheduled(cron = "0 0 * * * *") // Run every hour
     public void cleanupExpiredTokens() {
         tokenBlacklistRepository.deleteByExpirationDateBefore(new Date());
+        // Bloom filters cannot forget, so purged revocations are dropped by rebuilding
+        tokenRevocationIndex.rebuild();
+    }
+
+    // Builds the revocation index at startup, then picks up tokens revoked on any instance
+    @Scheduled(fixedDelayString = "${security.revocation.poll-interval-ms:10000}")
+    public void refreshTokenRevocationIndex() {
+        try {
+            tokenRevocationIndex.refresh();
+        } catch (Exception e) {
+            logger.error("Token revocation index refresh failed", e);
+        }
+    }
+
+    // Shortly after startup (backfills new columns), then every 6 hours
+    @Scheduled(initialDelay = 60_000, fixedDelay = 6 * 60 * 60 * 1000)
+    public void reconcileActivityRatings() {
+        int repaired = activityRepository.reconcileRatingAggregates();
+        if (repaired > 0) {
+            logger.warn("Repaired rating aggregates on {} activities", repaired);
+        }
+    }
+
+    // Seat counts predating compare-and-increment reservations, or drifted since, are rebuilt in row-locked batches
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileBookedCapacity() {
+        try {
+            int repaired = capacityReservationService.reconcileBookedCapacity();
+            if (repaired > 0) {
+                logger.warn("Repaired booked capacity on {} activities", repaired);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Booked capacity reconcile failed", e);
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000) // Every minute
+    public void releaseExpiredBookingHolds() {
+        capacityReservationService.releaseExpiredHolds();
+    }
+
+    // Shortly after startup, then every 15 minutes by default
+    @Scheduled(initialDelay = 30_000, fixedDelayString = "${recommendations.rebuild-interval-ms:900000}")
+    public void rebuildRecommendationIndex() {
+        try {
+            recommendationEngine.rebuild();
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot
+            logger.error("Recommendation index rebuild failed", e);
+        }
+    }
+
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${popularity.flush-interval-ms:30000}")
+    public void flushPopularityCounters() {
+        try {
+            popularityTracker.flush();
+        } catch (RuntimeException e) {
+            logger.error("Popularity counter flush failed", e);
+        }
+    }
+
+    // Backfills the payment rollup once after startup; later runs return immediately
+    @Scheduled(initialDelay = 20_000, fixedDelay = 60 * 60 * 1000)
+    public void backfillPaymentRollup() {
+        paymentRollupService.backfillIfNeeded();
+    }
+
+    @Scheduled(cron = "0 30 2 * * *") // Every day at 02:30
+    public void reconcilePaymentRollup() {
+        LocalDate today = LocalDate.now();
+        paymentRollupService.rebuild(today.minusDays(2), today.plusDays(1));
+    }
+
+    // Keeps conversions off the network; lookups only refresh themselves if this falls behind
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${exchange.rates.refresh-interval-ms:1800000}")
+    public void refreshExchangeRates() {
+        try {
+            currencyExchangeService.refresh();
+        } catch (Exception e) {
+            logger.error("Exchange rate refresh failed", e);
+        }
+    }
+
+    // Sets up the full-text column and index after startup; later runs return immediately once they are in place
+    @Scheduled(initialDelay = 5_000, fixedDelay = 10 * 60 * 1000)
+    public void ensureActivitySearchIndex() {
+        try {
+            activitySearchIndex.ensureSchema();
+        } catch (RuntimeException e) {
+            logger.error("Could not prepare the activity search index; searches scan the table until it is ready", e);
+        }
+    }
+
+    // Activity edits show up immediately through the overlay; this refreshes rankings and place names
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${search.suggest.rebuild-interval-ms:600000}")
+    public void rebuildSuggestionIndex() {
+        try {
+            suggestionService.rebuild();
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot
+            logger.error("Suggestion index rebuild failed", e);
+        }
+    }
+
+    // Nearby queries use PostGIS until the first build; later edits go through the index's overlay
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${geo.nearby.rebuild-interval-ms:300000}")
+    public void rebuildNearbyActivityIndex() {
+        try {
+            nearbyActivityIndex.rebuild();
+        } catch (RuntimeException e) {
+            logger.error("Nearby activity index rebuild failed", e);
+        }
+    }
+
+    // Builds the cluster grid after startup (maps show no pins until then); later it only corrects drift
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${geo.clusters.rebuild-interval-ms:1800000}")
+    public void rebuildActivityClusters() {
+        try {
+            activityClusterIndex.rebuild();
+        } catch (RuntimeException e) {
+            logger.error("Activity cluster rebuild failed", e);
+        }
+    }
+
+    // Also replays events left in the local log by a previous process on its first run
+    @Scheduled(initialDelay = 5_000, fixedDelayString = "${marketing.tracking.flush-interval-ms:1000}")
+    public void flushTrackingEvents() {
+        try {
+            trackingEventIngestor.flush();
+        } catch (RuntimeException e) {
+            // Kept for the next run
+            logger.error("Tracking event flush failed", e);
+        }
+    }
+
+    // Each run is capped by marketing.dispatch.max-run-ms, so a large backlog drains over several short
+    // runs; runs that find another run still sending on this instance return immediately
+    @Scheduled(initialDelay = 30_000, fixedDelayString = "${marketing.dispatch.interval-ms:5000}")
+    public void dispatchDueMarketingExecutions() {
+        try {
+            campaignDispatcher.dispatchDue();
+        } catch (RuntimeException e) {
+            logger.error("Marketing dispatch failed", e);
+        }
+    }
+
+    @Scheduled(initialDelay = 10_000, fixedDelayString = "${payments.webhooks.poll-interval-ms:500}")
+    public void drainPaymentWebhooks() {
+        try {
+            paymentWebhookInbox.drain();
+        } catch (RuntimeException e) {
+            logger.error("Payment webhook drain failed", e);
+        }
+    }
+
+    // Retries refunds owed for lost bookings until the provider accepts them
+    @Scheduled(initialDelay = 20_000, fixedDelayString = "${payments.refunds.retry-interval-ms:30000}")
+    public void retryPendingRefunds() {
+        try {
+            int refunded = paymentRefundOutbox.drain();
+            if (refunded > 0) {
+                logger.info("Refunded {} payments from the refund outbox", refunded);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Refund outbox drain failed", e);
+        }
+    }
+
+    // Processed webhooks are only kept long enough to recognise provider redeliveries
+    @Scheduled(cron = "0 15 3 * * *") // Every day at 03:15
+    public void purgeProcessedPaymentWebhooks() {
+        int purged = paymentWebhookInbox.purgeProcessed(Duration.ofDays(webhookRetentionDays));
+        if (purged > 0) {
+            logger.info("Purged {} processed payment webhooks", purged);
+        }
+    }
+
+    // Warms entitlements for active hosts after startup, then picks up new hosts
+    @Scheduled(initialDelay = 15_000, fixedDelayString = "${subscriptions.entitlements.preload-interval-ms:600000}")
+    public void preloadHostEntitlements() {
+        try {
+            entitlementCache.preloadActiveHosts();
+        } catch (RuntimeException e) {
+            logger.error("Entitlement preload failed", e);
+        }
+    }
+
+    // Builds the provider reference indexes after startup; retried until both exist, then returns immediately
+    @Scheduled(initialDelay = 5_000, fixedDelay = 10 * 60 * 1000)
+    public void ensureSubscriptionReferenceIndex() {
+        try {
+            subscriptionReferenceIndex.ensureSchema();
+        } catch (RuntimeException e) {
+            logger.error("Could not index subscription references; provider lookups scan the table until it exists", e);
+        }
+    }
+
+    // Each run is capped by subscriptions.billing.max-run-ms and hands its checkpoint to the next run, so
+    // a month-end backlog bills over many short runs across instances without anyone having to restart it
+    @Scheduled(initialDelay = 60_000, fixedDelayString = "${subscriptions.billing.interval-ms:10000}")
+    public void billDueSubscriptions() {
+        try {
+            // Returns immediately once the single running run index exists
+            subscriptionBillingEngine.ensureSchema();
+            subscriptionBillingEngine.runDueBilling();
+        } catch (IllegalStateException e) {
+            // Another instance holds the run's lease, or an admin-triggered call is billing here
+            logger.debug("Skipping subscription billing: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Subscription billing failed", e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -54,6 +54,7 @@ public class SecurityConfig {
             "/api/auth/users-by-role/**",
             "/api/activities/search",
             "/api/activities/search/**",
+            "/api/search/suggest",
             "/api/activities/featured",
             "/api/activities/featured/**",
             "/api/activities/recommended",
@@ -1,6 +1,8 @@
 package com.abiodun.expaq.controller;
 
 import com.abiodun.expaq.dto.ActivityDTO;
+import com.abiodun.expaq.dto.ActivityScrollResponse;
+import com.abiodun.expaq.dto.ActivitySearchFacets;
 import com.abiodun.expaq.dto.CreateActivityRequest;
 import com.abiodun.expaq.dto.LocationStatsDTO;
 import com.abiodun.expaq.dto.UpdateActivityRequest;
@@ -9,6 +11,7 @@ import com.abiodun.expaq.model.Activity; // Import Activity for Specification
 import com.abiodun.expaq.model.ActivityType;
 import com.abiodun.expaq.model.ExpaqUserDetails;
 import com.abiodun.expaq.service.IActivityService;
+import com.abiodun.expaq.service.search.PriceBand;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -59,12 +62,43 @@ public class ActivityController {
             @RequestParam(required = false) String activityType,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Double minRating,
             @RequestParam(required = false) String sortBy,
             @RequestParam(required = false) String querySearch,
             @RequestParam(required = false) String when,
             @RequestParam(required = false) String numOfPeople,
+            @RequestParam(defaultValue = "EXACT") IActivityService.CountMode count,
             @PageableDefault(size = 24) Pageable pageable
             ) {
+        Specification<Activity> spec = buildActivitySpecification(city, country, activityType, minPrice, maxPrice,
+                minRating, querySearch, when, numOfPeople);
+        Page<ActivityDTO> activities = activityService.getAllActivities(spec, sortBy, pageable, count);
+        return ResponseEntity.ok(activities);
+    }
+
+    // GET /activities/scroll - Keyset pagination for deep listings; pass nextCursor back as cursor
+    @GetMapping("/scroll")
+    public ResponseEntity<ActivityScrollResponse> scrollActivities(
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) String activityType,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Double minRating,
+            @RequestParam(required = false) String sortBy,
+            @RequestParam(required = false) String querySearch,
+            @RequestParam(required = false) String when,
+            @RequestParam(required = false) String numOfPeople,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "24") int size) {
+        Specification<Activity> spec = buildActivitySpecification(city, country, activityType, minPrice, maxPrice,
+                minRating, querySearch, when, numOfPeople);
+        return ResponseEntity.ok(activityService.scrollActivities(spec, sortBy, cursor, size));
+    }
+
+    private Specification<Activity> buildActivitySpecification(String city, String country, String activityType,
+                                                               Double minPrice, Double maxPrice, Double minRating,
+                                                               String querySearch, String when, String numOfPeople) {
         Specification<Activity> spec = Specification.where(null);
 
         if (city != null) {
@@ -91,6 +125,11 @@ public class ActivityController {
                     criteriaBuilder.lessThanOrEqualTo(root.get("price"), maxPrice));
         }
 
+        if (minRating != null) {
+            spec = spec.and((root, query, criteriaBuilder) ->
+                    criteriaBuilder.greaterThanOrEqualTo(root.get("averageRating"), minRating));
+        }
+
         if (when != null) {
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
 
@@ -129,9 +168,10 @@ public class ActivityController {
             );
         }
 
-
-        Page<ActivityDTO> activities = activityService.getAllActivities(spec, sortBy, pageable);
-        return ResponseEntity.ok(activities);
+        // No filter at all lets the service use the catalog's row estimate for totals
+        boolean unfiltered = city == null && country == null && activityType == null && minPrice == null
+                && maxPrice == null && minRating == null && when == null && numOfPeople == null && querySearch == null;
+        return unfiltered ? null : spec;
     }
 
 
@@ -215,8 +255,17 @@ public class ActivityController {
     @GetMapping("/search")
     public ResponseEntity<Page<ActivityDTO>> searchActivities(
             @RequestParam String query,
+            @RequestParam(required = false) UUID activityTypeId,
+            @RequestParam(required = false) UUID cityId,
+            @RequestParam(required = false) PriceBand priceBand,
             @PageableDefault(size = 24) Pageable pageable) {
-        return ResponseEntity.ok(activityService.searchActivities(query, pageable));
+        return ResponseEntity.ok(activityService.searchActivities(query, activityTypeId, cityId, priceBand, pageable));
+    }
+
+    // GET /activities/search/facets - Type, city and price band counts for a search query
+    @GetMapping("/search/facets")
+    public ResponseEntity<ActivitySearchFacets> getSearchFacets(@RequestParam String query) {
+        return ResponseEntity.ok(activityService.getSearchFacets(query));
     }
 
     @GetMapping("/nearby")
@@ -226,6 +275,40 @@ public class ActivityController {
             @RequestParam double distance) {
         return ResponseEntity.ok(activityService.findNearbyActivities(latitude, longitude, distance));
     }
+
+    // GET /activities/clusters?bbox=minLng,minLat,maxLng,maxLat&zoom= - Map pins aggregated per geohash cell
+    @GetMapping("/clusters")
+    public ResponseEntity<?> getActivityClusters(
+            @RequestParam String bbox,
+            @RequestParam int zoom) {
+        String[] parts = bbox.split(",");
+        double[] box = new double[4];
+        try {
+            if (parts.length != 4) {
+                throw new NumberFormatException();
+            }
+            for (int i = 0; i < 4; i++) {
+                box[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().body("bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        if (box[1] > box[3] || Math.abs(box[0]) > 180 || Math.abs(box[2]) > 180 || Math.abs(box[1]) > 90 || Math.abs(box[3]) > 90) {
+            return ResponseEntity.badRequest().body("bbox is out of range");
+        }
+        return ResponseEntity.ok(activityService.getActivityClusters(box[1], box[0], box[3], box[2], zoom));
+    }
+
+    // GET /activities/near - Nearest first, paged; radiusKm limits the distance, without it this is k-nearest
+    @GetMapping("/near")
+    public ResponseEntity<Page<ActivityDTO>> findNearestActivities(
+            @RequestParam double latitude,
+            @RequestParam double longitude,
+            @RequestParam(required = false) Double radiusKm,
+            @RequestParam(required = false) UUID activityTypeId,
+            @PageableDefault(size = 24) Pageable pageable) {
+        return ResponseEntity.ok(activityService.findNearestActivities(latitude, longitude, radiusKm, activityTypeId, pageable));
+    }
     @GetMapping("/sorted")
     public ResponseEntity<Page<ActivityDTO>> getSortedActivities(
             @RequestParam(required = false) String sortBy,
@@ -57,7 +57,7 @@ public class AuthController {
     @PostMapping("/become-host")
     public ResponseEntity<?> becomeHost( @AuthenticationPrincipal ExpaqUserDetails currentUser) {
         try {
-            UserDTO response = authService.becomeHost(currentUser.getId());
+            AuthResponse response = authService.becomeHost(currentUser.getId());
             return ResponseEntity.ok(response);
         } catch (BadCredentialsException e) {
             return ResponseEntity
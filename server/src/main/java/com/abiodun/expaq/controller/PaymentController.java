@@ -3,12 +3,15 @@ package com.abiodun.expaq.controller;
 import com.abiodun.expaq.dto.PaymentDTO;
 import com.abiodun.expaq.dto.PaymentResponseDTO;
 import com.abiodun.expaq.dto.PaymentInitializeRequest;
+import com.abiodun.expaq.exception.PaymentBlockedException;
 import com.abiodun.expaq.exception.UnauthorizedException;
+import com.abiodun.expaq.exception.PaymentProviderUnavailableException;
 import com.abiodun.expaq.model.Payment;
 import com.abiodun.expaq.model.Payment.PaymentStatus;
 import com.abiodun.expaq.model.ExpaqUserDetails;
 import com.abiodun.expaq.repository.PaymentRepository;
 import com.abiodun.expaq.service.IPaymentService;
+import com.abiodun.expaq.service.payment.PaymentWebhookInbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -38,6 +41,7 @@ public class PaymentController {
 
     private final IPaymentService paymentService;
     private final PaymentRepository paymentRepository;
+    private final PaymentWebhookInbox webhookInbox;
 
     @PostMapping("/initialize")
     @PreAuthorize("isAuthenticated()")
@@ -53,6 +57,9 @@ public class PaymentController {
                     .authorizationUrl(payment.getAuthorizationUrl())
                     .accessCode(payment.getAccess_code())
                     .build());
+        } catch (PaymentProviderUnavailableException | PaymentBlockedException e) {
+            // Mapped to 503 and 429 by GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("Error initializing payment", e);
             return ResponseEntity.badRequest()
@@ -148,11 +155,9 @@ public class PaymentController {
             @RequestParam("trxref") String transactionReference,
             jakarta.servlet.http.HttpServletRequest request) {
         try {
-            PaymentDTO payment = paymentService.updatePaymentStatus(
-                UUID.fromString(reference),
-                PaymentStatus.COMPLETED,
-                transactionReference
-            );
+            Payment payment = paymentRepository.findById(UUID.fromString(reference))
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown payment reference"));
+            queueCompletion(payment, transactionReference);
             return ResponseEntity.ok("Payment processed successfully");
         } catch (Exception e) {
             log.error("Error processing Paystack callback", e);
@@ -170,12 +175,13 @@ public class PaymentController {
             jakarta.servlet.http.HttpServletRequest request) {
         try {
             log.info("Verifying payment with reference: {}, trxref: {}", reference, trxref);
-            PaymentDTO payment = paymentService.updatePaymentStatus(
-                    fromPaymentProviderReference(reference),
-                PaymentStatus.COMPLETED,
-                trxref
-            );
-            return ResponseEntity.ok(payment);
+            Payment payment = paymentRepository.findById(fromPaymentProviderReference(reference))
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown payment reference"));
+            PaymentDTO current = queueCompletion(payment, trxref);
+            // Still PENDING until the inbox has confirmed it with the provider; the client polls GET /{paymentId}
+            return PaymentStatus.COMPLETED.name().equals(current.getStatus())
+                    ? ResponseEntity.ok(current)
+                    : ResponseEntity.accepted().body(current);
         } catch (Exception e) {
             log.error("Error verifying payment with reference: {}, trxref: {}", reference, trxref, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -184,6 +190,18 @@ public class PaymentController {
         }
     }
 
+    /**
+     * Hands a redirect's completion to the webhook inbox, so it is applied in order with the provider's
+     * webhooks for the same payment, deduplicated per transaction, and confirmed with the provider off
+     * the request thread.
+     */
+    private PaymentDTO queueCompletion(Payment payment, String transactionReference) {
+        // Callback and verify redirects for one transaction share an event id
+        webhookInbox.accept("PAYSTACK", "redirect:" + transactionReference, "redirect.completed",
+                payment.getId(), PaymentStatus.COMPLETED, transactionReference);
+        return PaymentDTO.fromPayment(payment);
+    }
+
     private UUID getCurrentUserId() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication != null && authentication.getPrincipal() instanceof ExpaqUserDetails) {
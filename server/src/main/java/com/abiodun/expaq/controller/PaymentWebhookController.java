@@ -1,7 +1,7 @@
 package com.abiodun.expaq.controller;
 
 import com.abiodun.expaq.model.Payment.PaymentStatus;
-import com.abiodun.expaq.service.IPaymentService;
+import com.abiodun.expaq.service.payment.PaymentWebhookInbox;
 import com.stripe.Stripe;
 import com.stripe.model.Event;
 import com.stripe.model.EventDataObjectDeserializer;
@@ -16,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.UUID;
 
 @Slf4j
 @RestController
@@ -23,7 +24,8 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaymentWebhookController {
 
-    private final IPaymentService paymentService;
+    // Webhooks are only verified and stored here; the inbox applies them in the background
+    private final PaymentWebhookInbox webhookInbox;
 
     @Value("${stripe.webhook.secret}")
     private String stripeWebhookSecret;
@@ -44,25 +46,16 @@ public class PaymentWebhookController {
                 stripeObject = dataObjectDeserializer.getObject().get();
             }
 
-            switch (event.getType()) {
-                case "payment_intent.succeeded" -> {
-                    PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                    String paymentId = paymentIntent.getMetadata().get("paymentId");
-                    paymentService.updatePaymentStatus(
-                            java.util.UUID.fromString(paymentId),
-                            PaymentStatus.COMPLETED,
-                            paymentIntent.getId()
-                    );
-                }
-                case "payment_intent.payment_failed" -> {
-                    PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
-                    String paymentId = paymentIntent.getMetadata().get("paymentId");
-                    paymentService.updatePaymentStatus(
-                            java.util.UUID.fromString(paymentId),
-                            PaymentStatus.FAILED,
-                            paymentIntent.getId()
-                    );
-                }
+            PaymentStatus status = switch (event.getType()) {
+                case "payment_intent.succeeded" -> PaymentStatus.COMPLETED;
+                case "payment_intent.payment_failed" -> PaymentStatus.FAILED;
+                default -> null;
+            };
+            if (status != null) {
+                PaymentIntent paymentIntent = (PaymentIntent) stripeObject;
+                String paymentId = paymentIntent.getMetadata().get("paymentId");
+                webhookInbox.accept("STRIPE", event.getId(), event.getType(), UUID.fromString(paymentId),
+                        status, paymentIntent.getId());
             }
 
             return ResponseEntity.ok().build();
@@ -85,25 +78,17 @@ public class PaymentWebhookController {
             String event = (String) payload.get("event");
             Map<String, Object> data = (Map<String, Object>) payload.get("data");
 
-            switch (event) {
-                case "charge.success" -> {
-                    String reference = (String) data.get("reference");
-                    String paymentId = (String) ((Map<String, Object>) data.get("metadata")).get("paymentId");
-                    paymentService.updatePaymentStatus(
-                            java.util.UUID.fromString(paymentId),
-                            PaymentStatus.COMPLETED,
-                            reference
-                    );
-                }
-                case "charge.failed" -> {
-                    String reference = (String) data.get("reference");
-                    String paymentId = (String) ((Map<String, Object>) data.get("metadata")).get("paymentId");
-                    paymentService.updatePaymentStatus(
-                            java.util.UUID.fromString(paymentId),
-                            PaymentStatus.FAILED,
-                            reference
-                    );
-                }
+            PaymentStatus status = switch (event) {
+                case "charge.success" -> PaymentStatus.COMPLETED;
+                case "charge.failed" -> PaymentStatus.FAILED;
+                default -> null;
+            };
+            if (status != null) {
+                String reference = (String) data.get("reference");
+                String paymentId = (String) ((Map<String, Object>) data.get("metadata")).get("paymentId");
+                // Paystack sends no event id; a transaction reaches each state once
+                String eventId = event + ":" + (data.get("id") != null ? data.get("id") : reference);
+                webhookInbox.accept("PAYSTACK", eventId, event, UUID.fromString(paymentId), status, reference);
             }
 
             return ResponseEntity.ok().build();
@@ -3,10 +3,10 @@ package com.abiodun.expaq.controller;
 import com.abiodun.expaq.dto.ActivityDTO;
 import com.abiodun.expaq.model.Activity;
 import com.abiodun.expaq.model.ActivityType;
-import com.abiodun.expaq.model.Booking;
 import com.abiodun.expaq.model.ExpaqUserDetails;
 import com.abiodun.expaq.repository.ActivityRepository;
-import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.service.recommendation.ActivityPopularityTracker;
+import com.abiodun.expaq.service.recommendation.RecommendationEngine;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -18,6 +18,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RestController
@@ -28,7 +29,8 @@ import java.util.stream.Collectors;
 public class RecommendationController {
 
     private final ActivityRepository activityRepository;
-    private final BookingRepository bookingRepository;
+    private final RecommendationEngine recommendationEngine;
+    private final ActivityPopularityTracker popularityTracker;
 
     @GetMapping("/user")
     @Operation(summary = "Get personalized activity recommendations for authenticated user")
@@ -41,7 +43,10 @@ public class RecommendationController {
             
             log.info("Getting recommendations for user: {}", userId);
             
-            List<Activity> recommendations = generatePersonalizedRecommendations(userId, limit);
+            if (!recommendationEngine.isReady()) {
+                return ResponseEntity.ok(getFallbackRecommendations(limit));
+            }
+            List<Activity> recommendations = loadInOrder(recommendationEngine.recommendForUser(userId, limit));
             List<ActivityDTO> recommendationDTOs = recommendations.stream()
                     .map(ActivityDTO::fromActivity)
                     .toList();
@@ -60,9 +65,12 @@ public class RecommendationController {
             @RequestParam(defaultValue = "10") int limit) {
         
         try {
-            Pageable pageable = PageRequest.of(0, limit);
-            List<Activity> popularActivities = activityRepository.findMostPopularActivities(pageable);
-            
+            if (!popularityTracker.isReady()) {
+                return ResponseEntity.ok(getFallbackRecommendations(limit));
+            }
+            List<Activity> popularActivities = loadInOrder(popularityTracker.topPopular(limit));
+
+
             List<ActivityDTO> activityDTOs = popularActivities.stream()
                     .map(ActivityDTO::fromActivity)
                     .toList();
@@ -88,7 +96,16 @@ public class RecommendationController {
             }
             
             Activity activity = activityOpt.get();
-            List<Activity> similarActivities = findSimilarActivities(activity, limit);
+            // Co-booked activities first; content-based matches cover activities with few bookings
+            List<Activity> similarActivities = new ArrayList<>(
+                    loadInOrder(recommendationEngine.similarTo(activityId, limit)));
+            if (similarActivities.size() < limit) {
+                Set<UUID> seen = similarActivities.stream().map(Activity::getId).collect(Collectors.toSet());
+                findSimilarActivities(activity, limit).stream()
+                        .filter(candidate -> seen.add(candidate.getId()))
+                        .limit(limit - similarActivities.size())
+                        .forEach(similarActivities::add);
+            }
             
             List<ActivityDTO> activityDTOs = similarActivities.stream()
                     .map(ActivityDTO::fromActivity)
@@ -108,9 +125,11 @@ public class RecommendationController {
             @RequestParam(defaultValue = "10") int limit) {
         
         try {
-            // Get activities with recent bookings (trending)
-            Pageable pageable = PageRequest.of(0, limit);
-            List<Activity> trendingActivities = activityRepository.findTrendingActivities(pageable);
+            // Ranked by time-decayed booking counts
+            if (!popularityTracker.isReady()) {
+                return ResponseEntity.ok(getFallbackRecommendations(limit));
+            }
+            List<Activity> trendingActivities = loadInOrder(popularityTracker.topTrending(limit));
             
             List<ActivityDTO> activityDTOs = trendingActivities.stream()
                     .map(ActivityDTO::fromActivity)
@@ -133,13 +152,9 @@ public class RecommendationController {
         
         try {
             String location = country != null ? city + ", " + country : city;
-            List<Activity> locationActivities = activityRepository.findByLocationContainingIgnoreCase(location);
-            
-            // Sort by rating and limit results
-            List<Activity> topActivities = locationActivities.stream()
-                    .sorted((a1, a2) -> Double.compare(a2.getAverageRating(), a1.getAverageRating()))
-                    .limit(limit)
-                    .toList();
+            // Sorted by the stored average rating and limited in the query
+            List<Activity> topActivities = activityRepository
+                    .findByLocationContainingIgnoreCaseOrderByAverageRatingDesc(location, PageRequest.of(0, limit));
 
             List<ActivityDTO> activityDTOs = topActivities.stream()
                     .map(ActivityDTO::fromActivity)
@@ -153,91 +168,19 @@ public class RecommendationController {
         }
     }
 
-    private List<Activity> generatePersonalizedRecommendations(UUID userId, int limit) {
-        try {
-            // Get user's booking history to understand preferences
-            List<Activity> userBookedActivities = getUserBookedActivities(userId);
-            
-            if (userBookedActivities.isEmpty()) {
-                // New user - return popular activities
-                return activityRepository.findMostPopularActivities(PageRequest.of(0, limit));
-            }
-            
-            // Analyze user preferences
-            Map<ActivityType, Integer> typePreferences = analyzeUserActivityTypePreferences(userBookedActivities);
-
-            // Get activities from preferred types and locations
-            List<Activity> recommendations = new ArrayList<>();
-            
-            // Add activities from preferred types
-            for (Map.Entry<ActivityType, Integer> entry : typePreferences.entrySet()) {
-                ActivityType type = entry.getKey();
-                List<Activity> typeActivities = activityRepository.findByActivityTypeAndIsActiveTrue(type);
-
-                // Filter out already booked activities
-                List<Activity> newActivities = typeActivities.stream()
-                        .filter(activity -> !userBookedActivities.contains(activity))
-                        .limit(limit / typePreferences.size() + 1)
-                        .toList();
-
-                recommendations.addAll(newActivities);
-            }
-            
-            // Remove duplicates and limit
-            List<Activity> finalRecommendations = new ArrayList<>(
-                recommendations.stream()
-                    .distinct()
-                    .limit(limit)
-                    .toList()
-            );
-
-            // If not enough recommendations, fill with popular activities
-            if (finalRecommendations.size() < limit) {
-                List<Activity> popularActivities = activityRepository.findMostPopularActivities(
-                    PageRequest.of(0, limit - finalRecommendations.size())
-                );
-                
-                List<Activity> additionalActivities = popularActivities.stream()
-                    .filter(activity -> !finalRecommendations.contains(activity))
-                    .toList();
-                finalRecommendations.addAll(additionalActivities);
-            }
-            
-            return finalRecommendations.stream().limit(limit).toList();
-
-        } catch (Exception e) {
-            log.error("Error in personalized recommendations: {}", e.getMessage());
-            return activityRepository.findMostPopularActivities(PageRequest.of(0, limit));
+    // One query for the recommended ids, returned in recommendation order, skipping deactivated activities
+    private List<Activity> loadInOrder(List<UUID> activityIds) {
+        if (activityIds.isEmpty()) {
+            return List.of();
         }
-    }
-
-    private List<Activity> getUserBookedActivities(UUID userId) {
-        return bookingRepository.findByUserId(userId).stream()
-                .map(Booking::getActivity)
-                .distinct()
+        Map<UUID, Activity> byId = activityRepository.findAllById(activityIds).stream()
+                .collect(Collectors.toMap(Activity::getId, Function.identity()));
+        return activityIds.stream()
+                .map(byId::get)
+                .filter(activity -> activity != null && activity.isActive())
                 .toList();
     }
 
-    private Map<ActivityType, Integer> analyzeUserActivityTypePreferences(List<Activity> userActivities) {
-        Map<ActivityType, Integer> typeCount = new HashMap<>();
-
-        for (Activity activity : userActivities) {
-            ActivityType type = activity.getActivityType();
-            if (type != null) {
-                typeCount.put(type, typeCount.getOrDefault(type, 0) + 1);
-            }
-        }
-        
-        return typeCount.entrySet().stream()
-                .sorted(Map.Entry.<ActivityType, Integer>comparingByValue().reversed())
-                .collect(Collectors.toMap(
-                    Map.Entry::getKey,
-                    Map.Entry::getValue,
-                    (e1, e2) -> e1,
-                    LinkedHashMap::new
-                ));
-    }
-
     private List<Activity> findSimilarActivities(Activity referenceActivity, int limit) {
         // Find activities with same activity type
         ActivityType activityType = referenceActivity.getActivityType();
@@ -13,6 +13,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RestController
@@ -20,6 +22,8 @@ import java.util.UUID;
 //@RequiredArgsConstructor
 public class ReviewController {
 
+    private static final int MAX_STATISTICS_BATCH = 100;
+
     private final IReviewService reviewService;
 
     public ReviewController(IReviewService reviewService) {
@@ -102,6 +106,16 @@ public class ReviewController {
         return ResponseEntity.ok(statistics);
     }
 
+    // Statistics for a page of activities in one call, keyed by activity ID
+    @GetMapping("/statistics")
+    public ResponseEntity<?> getReviewStatistics(@RequestParam List<UUID> activityIds) {
+        if (activityIds.size() > MAX_STATISTICS_BATCH) {
+            return ResponseEntity.badRequest().body("At most " + MAX_STATISTICS_BATCH + " activity IDs are allowed");
+        }
+        Map<UUID, ReviewStatistics> statistics = reviewService.getReviewStatistics(activityIds);
+        return ResponseEntity.ok(statistics);
+    }
+
     @GetMapping("/host/{hostId}/statistics")
     public ResponseEntity<ReviewStatistics> getHostReviewStatistics(@PathVariable UUID hostId) {
         ReviewStatistics statistics = reviewService.getHostReviewStatistics(hostId);
@@ -0,0 +1,34 @@
+package com.abiodun.expaq.controller;
+
+import com.abiodun.expaq.dto.SuggestionDTO;
+import com.abiodun.expaq.service.search.SuggestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Tag(name = "Search", description = "Search box typeahead")
+public class SearchController {
+
+    private final SuggestionService suggestionService;
+
+    @GetMapping("/suggest")
+    @Operation(summary = "Complete a partial query to activities, activity types, cities and countries")
+    public ResponseEntity<List<SuggestionDTO>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        List<SuggestionDTO> suggestions = suggestionService.suggest(q, Math.min(limit, SuggestionService.MAX_SUGGESTIONS)).stream()
+                .map(SuggestionDTO::fromSuggestion)
+                .toList();
+        return ResponseEntity.ok(suggestions);
+    }
+}
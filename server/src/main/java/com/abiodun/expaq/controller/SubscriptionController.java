@@ -352,7 +352,7 @@ public class SubscriptionController {
     }
     
     @PostMapping("/admin/process-billing")
-    @Operation(summary = "Process all pending billing (admin only)")
+    @Operation(summary = "Bill pending subscriptions now for one time-boxed run; returns the run id and progress (admin only)")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Map<String, Object>> processAllBilling() {
         try {
@@ -0,0 +1,24 @@
+package com.abiodun.expaq.dto;
+
+import com.abiodun.expaq.service.geo.Cluster;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityClusterDTO {
+    private String geohash;
+    private int count;
+    private double latitude;
+    private double longitude;
+    private BigDecimal minPrice;
+
+    public static ActivityClusterDTO fromCluster(Cluster cluster) {
+        return new ActivityClusterDTO(cluster.getGeohash(), cluster.getCount(),
+                cluster.getLatitude(), cluster.getLongitude(), cluster.getMinPrice());
+    }
+}
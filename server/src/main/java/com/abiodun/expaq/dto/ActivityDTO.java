@@ -46,6 +46,9 @@ public class ActivityDTO {
     private LocalDateTime startDate;
     private LocalDateTime endDate;
     private List<ReviewDTO> reviews;
+    // Only set on nearby results: great-circle distance from the search point
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double distanceKm;
 
     public static ActivityDTO fromActivity(Activity activity) {
         if (activity == null) {
@@ -102,14 +105,9 @@ public class ActivityDTO {
         dto.setIsVerified(activity.isVerified());
         dto.setIsFeatured(activity.getIsFeatured() != null ? activity.getIsFeatured() : false);
         
-        // Handle reviews
-        if (activity.getReviews() != null) {
-            dto.setTotalReviews(activity.getReviews().size());
-            dto.setAverageRating(activity.getAverageRating());
-        } else {
-            dto.setTotalReviews(0);
-            dto.setAverageRating(0.0);
-        }
+        // Rating aggregates are kept on the activity row
+        dto.setTotalReviews(activity.getRatingCount());
+        dto.setAverageRating(activity.getAverageRating());
         
         dto.setCreatedAt(activity.getCreatedAt());
         dto.setUpdatedAt(activity.getUpdatedAt());
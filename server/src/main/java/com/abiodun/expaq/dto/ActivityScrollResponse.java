@@ -0,0 +1,21 @@
+package com.abiodun.expaq.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One window of a keyset ("seek") scroll over activities. Pass {@code nextCursor}
+ * back as {@code cursor} to fetch the following window; it is null on the last one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityScrollResponse {
+    private List<ActivityDTO> activities;
+    private String nextCursor;
+    private boolean hasNext;
+    private int size;
+}
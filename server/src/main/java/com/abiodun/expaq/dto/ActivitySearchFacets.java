@@ -0,0 +1,31 @@
+package com.abiodun.expaq.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Match counts for a search query broken down by activity type, city and price band, largest first.
+ * Counts cover every match of the query text, independent of any facet filter being applied.
+ */
+@Data
+@NoArgsConstructor
+public class ActivitySearchFacets {
+    private long totalMatches;
+    private List<FacetCount> activityTypes = new ArrayList<>();
+    private List<FacetCount> cities = new ArrayList<>();
+    private List<FacetCount> priceBands = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetCount {
+        // Activity type id, city id or PriceBand name; pass it back as the matching search filter
+        private String key;
+        private String label;
+        private long count;
+    }
+}
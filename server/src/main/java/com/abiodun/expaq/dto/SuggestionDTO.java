@@ -0,0 +1,21 @@
+package com.abiodun.expaq.dto;
+
+import com.abiodun.expaq.service.search.Suggestion;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private Suggestion.Type type;
+    private UUID id;
+    private String text;
+
+    public static SuggestionDTO fromSuggestion(Suggestion suggestion) {
+        return new SuggestionDTO(suggestion.getType(), suggestion.getId(), suggestion.getText());
+    }
+}
@@ -0,0 +1,58 @@
+package com.abiodun.expaq.event;
+
+import com.abiodun.expaq.model.Activity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * Published by the activity service after an activity is saved or deleted. It carries the fields
+ * in-memory indexes need, so listeners can update themselves without reloading the activity.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ActivityChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED
+    }
+
+    private final Type type;
+    private final UUID activityId;
+    private final String title;
+    private final boolean active;
+    // Null when the activity has no location
+    private final Double latitude;
+    private final Double longitude;
+    private final BigDecimal price;
+    private final UUID activityTypeId;
+
+    public static ActivityChangedEvent saved(Activity activity) {
+        return of(Type.SAVED, activity);
+    }
+
+    public static ActivityChangedEvent deleted(Activity activity) {
+        return of(Type.DELETED, activity);
+    }
+
+    /**
+     * True when the activity should be findable: saved and active.
+     */
+    public boolean isListed() {
+        return type == Type.SAVED && active;
+    }
+
+    private static ActivityChangedEvent of(Type type, Activity activity) {
+        boolean located = activity.getLocationPoint() != null;
+        return new ActivityChangedEvent(type, activity.getId(), activity.getTitle(), activity.isActive(),
+                located ? activity.getLocationPoint().getY() : null,
+                located ? activity.getLocationPoint().getX() : null,
+                activity.getPrice(),
+                activity.getActivityType() != null ? activity.getActivityType().getId() : null);
+    }
+}
@@ -0,0 +1,42 @@
+package com.abiodun.expaq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published by the booking service when a booking is created or cancelled. Listeners use
+ * {@code @TransactionalEventListener} so they only see bookings that were actually committed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class BookingEvent {
+
+    public enum Type {
+        CREATED,
+        CANCELLED
+    }
+
+    private final Type type;
+    private final UUID bookingId;
+    private final UUID userId;
+    private final UUID activityId;
+    private final int guests;
+    // When the booking was made; lets listeners undo time-weighted contributions on cancellation
+    private final LocalDateTime bookedAt;
+    private final LocalDateTime occurredAt;
+
+    public static BookingEvent created(UUID bookingId, UUID userId, UUID activityId, int guests) {
+        LocalDateTime now = LocalDateTime.now();
+        return new BookingEvent(Type.CREATED, bookingId, userId, activityId, guests, now, now);
+    }
+
+    public static BookingEvent cancelled(UUID bookingId, UUID userId, UUID activityId, int guests,
+                                         LocalDateTime bookedAt) {
+        return new BookingEvent(Type.CANCELLED, bookingId, userId, activityId, guests, bookedAt, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,35 @@
+package com.abiodun.expaq.event;
+
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Published by the payment service when a payment is created ({@code previousStatus} is null)
+ * or changes status. Listeners use {@code @TransactionalEventListener} to act only on committed changes.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class PaymentEvent {
+
+    private final UUID paymentId;
+    private final UUID userId;
+    private final PaymentStatus previousStatus;
+    private final PaymentStatus status;
+    private final LocalDateTime occurredAt;
+
+    public static PaymentEvent of(Payment payment, PaymentStatus previousStatus) {
+        return new PaymentEvent(payment.getId(), payment.getUser().getId(), previousStatus, payment.getStatus(),
+                LocalDateTime.now());
+    }
+
+    public boolean isCreation() {
+        return previousStatus == null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.abiodun.expaq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Published when a review is created, deleted, or changes in a way that affects its
+ * activity's review statistics (rating, verification or edit state).
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ReviewChangedEvent {
+
+    private final UUID activityId;
+}
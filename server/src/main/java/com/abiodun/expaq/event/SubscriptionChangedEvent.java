@@ -0,0 +1,19 @@
+package com.abiodun.expaq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Published when a user's subscription is created, changes plan or status, is cancelled or expires,
+ * i.e. whenever what the user is entitled to may have changed.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SubscriptionChangedEvent {
+
+    private final UUID userId;
+}
@@ -0,0 +1,19 @@
+package com.abiodun.expaq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Published when something that authentication depends on changes for a user: roles, active
+ * status, email or password. Cached authentication state for the user must be discarded.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserAccessChangedEvent {
+
+    private final UUID userId;
+}
@@ -0,0 +1,20 @@
+package com.abiodun.expaq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * Published when a user's profile changes without affecting authentication, e.g. name, bio or
+ * picture. Cached copies of the user must be refreshed, but issued tokens stay valid; changes to
+ * roles, status, email or password publish {@link UserAccessChangedEvent} instead.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class UserProfileChangedEvent {
+
+    private final UUID userId;
+}
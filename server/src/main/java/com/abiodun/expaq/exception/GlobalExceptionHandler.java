@@ -51,6 +51,16 @@ public class GlobalExceptionHandler {
         return buildErrorResponse(HttpStatus.BAD_REQUEST, ex.getMessage(), request); // 400 Bad Request is suitable
     }
 
+    @ExceptionHandler(PaymentBlockedException.class)
+    public ResponseEntity<Object> handlePaymentBlockedException(PaymentBlockedException ex, WebRequest request) {
+        return buildErrorResponse(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage(), request);
+    }
+
+    @ExceptionHandler(PaymentProviderUnavailableException.class)
+    public ResponseEntity<Object> handlePaymentProviderUnavailableException(PaymentProviderUnavailableException ex, WebRequest request) {
+        return buildErrorResponse(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), request);
+    }
+
     @ExceptionHandler(InternalServerException.class)
     public ResponseEntity<Object> handleInternalServerException(InternalServerException ex, WebRequest request) {
         // Log the original exception cause for debugging
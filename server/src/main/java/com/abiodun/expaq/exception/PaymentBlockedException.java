@@ -0,0 +1,7 @@
+package com.abiodun.expaq.exception;
+
+public class PaymentBlockedException extends RuntimeException {
+    public PaymentBlockedException(String message) {
+        super(message);
+    }
+}
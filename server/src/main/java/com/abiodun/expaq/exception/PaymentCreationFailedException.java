@@ -0,0 +1,11 @@
+package com.abiodun.expaq.exception;
+
+/**
+ * The provider refused to create a payment. The FAILED payment is still committed, so this does not
+ * roll back the transaction that recorded it.
+ */
+public class PaymentCreationFailedException extends RuntimeException {
+    public PaymentCreationFailedException(String message) {
+        super(message);
+    }
+}
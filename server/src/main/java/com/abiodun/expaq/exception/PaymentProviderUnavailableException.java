@@ -0,0 +1,11 @@
+package com.abiodun.expaq.exception;
+
+/**
+ * A payment provider call was refused locally because the provider's circuit is open or its
+ * concurrency limit is reached. Nothing was sent to the provider.
+ */
+public class PaymentProviderUnavailableException extends RuntimeException {
+    public PaymentProviderUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.locationtech.jts.geom.Point;
 
@@ -14,11 +16,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
+// Dynamic updates keep entity saves from overwriting the counters maintained by bulk UPDATEs
 @Entity
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "activities")
+@Table(name = "activities", indexes = {
+        @Index(name = "idx_activities_active_rating", columnList = "is_active, average_rating")
+})
 public class Activity {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -111,10 +117,24 @@ public class Activity {
     @JoinColumn(name = "activity_type_id")
     private ActivityType activityType;
 
+    // Rating aggregates maintained by ReviewServiceImpl; never derived from the reviews collection
+    @ColumnDefault("0")
+    @Column(name = "rating_count", nullable = false)
+    private int ratingCount;
 
-    // Methods for booking management
+    @ColumnDefault("0")
+    @Column(name = "rating_sum", nullable = false)
+    private long ratingSum;
+
+    @ColumnDefault("0")
+    @Column(name = "average_rating", nullable = false)
+    private double averageRating;
+
+
+    // Methods for booking management; seats are reserved atomically by CapacityReservationService,
+    // this is only an advisory pre-check
     public boolean canAccommodateBooking(int numberOfGuests) {
-        return (maxParticipants - bookings.size()) >= numberOfGuests;
+        return (maxParticipants - bookedCapacity) >= numberOfGuests;
     }
 
     public void addBooking(Booking booking) {
@@ -132,20 +152,4 @@ public class Activity {
         }
     }
 
-    // Method to calculate average rating
-    public double getAverageRating() {
-        if (reviews.isEmpty()) {
-            return 0.0;
-        }
-        return reviews.stream()
-                .mapToDouble(Review::getRating)
-                .average()
-                .orElse(0.0);
-    }
-
-    public void updateAverageRating() {
-        // This method will be implemented by the repository
-        // The actual calculation will be done in the database
-        this.updatedAt = LocalDateTime.now();
-    }
 }
\ No newline at end of file
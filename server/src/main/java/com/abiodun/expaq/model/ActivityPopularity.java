@@ -0,0 +1,31 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Booking counters per activity, maintained incrementally from in-memory deltas.
+ * {@code trendingScore} is a time-decayed booking count valued at {@code updatedAt}.
+ */
+@Entity
+@Table(name = "activity_popularity")
+@Data
+@NoArgsConstructor
+public class ActivityPopularity {
+    @Id
+    @Column(name = "activity_id")
+    private UUID activityId;
+
+    @Column(nullable = false)
+    private long bookingCount;
+
+    @Column(nullable = false)
+    private double trendingScore;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -100,6 +100,10 @@ public class Booking {
     @Column(nullable = false)
     private String guestEmail;
 
+    // Seats are held until this time while the booking is pending; cleared once paid or confirmed
+    @Column
+    private LocalDateTime holdExpiresAt;
+
     // Method to calculate total price
     public void calculateTotalPrice() {
         if (activity != null) {
@@ -117,6 +121,7 @@ public class Booking {
     // Method to confirm booking
     public void confirm() {
         this.status = BookingStatus.CONFIRMED;
+        this.holdExpiresAt = null;
         this.updatedAt = LocalDateTime.now();
     }
 
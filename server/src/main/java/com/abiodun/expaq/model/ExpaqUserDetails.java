@@ -5,18 +5,40 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public class ExpaqUserDetails implements UserDetails {
     private final User user;
+    // Only set for principals built from token claims
+    private final List<GrantedAuthority> authorities;
 
     public ExpaqUserDetails(User user) {
+        this(user, null);
+    }
+
+    private ExpaqUserDetails(User user, List<GrantedAuthority> authorities) {
         this.user = user;
+        this.authorities = authorities;
+    }
+
+    /**
+     * Principal for a verified token, built without a user lookup. {@link #getUser()} then returns
+     * a stub carrying only the ID and email; load the user when more is needed.
+     */
+    public static ExpaqUserDetails fromToken(UUID id, String email, List<GrantedAuthority> authorities) {
+        User stub = new User();
+        stub.setId(id);
+        stub.setEmail(email);
+        return new ExpaqUserDetails(stub, List.copyOf(authorities));
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
+        if (authorities != null) {
+            return authorities;
+        }
         return user.getRoles().stream()
             .map(role -> {
                 String roleName = role.getName();
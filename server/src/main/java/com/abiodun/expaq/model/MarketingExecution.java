@@ -10,7 +10,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "marketing_executions")
+@Table(name = "marketing_executions", indexes = {
+        @Index(name = "idx_marketing_executions_tracking_code", columnList = "tracking_code"),
+        @Index(name = "idx_marketing_executions_status_scheduled", columnList = "status, scheduled_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
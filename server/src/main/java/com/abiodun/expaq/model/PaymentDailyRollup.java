@@ -0,0 +1,54 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Payment totals per creation day, currency, method and current status. Rows are adjusted in the
+ * same transaction as every payment status change and rebuilt from {@code payments} by the backfill job.
+ */
+@Entity
+@Table(name = "payment_daily_rollup")
+@Data
+@NoArgsConstructor
+public class PaymentDailyRollup {
+
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private long paymentCount;
+
+    @Column(nullable = false)
+    private BigDecimal amountSum = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private BigDecimal refundSum = BigDecimal.ZERO;
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        @Column(name = "rollup_date", nullable = false)
+        private LocalDate rollupDate;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private Payment.Currency currency;
+
+        // Method name, or UNKNOWN for payments without one; not an enum so that bucket can be stored
+        @Column(nullable = false)
+        private String paymentMethod;
+
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private Payment.PaymentStatus status;
+    }
+}
@@ -0,0 +1,30 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the one-off {@code payment_daily_rollup} backfill. A single row, advanced in the same
+ * transaction as each rebuilt chunk, so a backfill cut short resumes where it stopped. Written by
+ * {@code PaymentRollupService}.
+ */
+@Entity
+@Table(name = "payment_rollup_backfill")
+@Data
+@NoArgsConstructor
+public class PaymentRollupBackfill {
+
+    @Id
+    private int id;
+
+    // Days before this one have been rebuilt
+    @Column(name = "rebuilt_until")
+    private LocalDate rebuiltUntil;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,77 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A payment provider webhook, stored before it is acknowledged and processed later by
+ * {@code PaymentWebhookInbox}. The unique provider event id makes redelivered webhooks no-ops.
+ */
+@Entity
+@Table(name = "payment_webhook_inbox",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payment_webhook_inbox_event",
+                columnNames = {"provider", "provider_event_id"}),
+        indexes = {
+                @Index(name = "idx_payment_webhook_inbox_due", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_payment_webhook_inbox_payment", columnList = "payment_id, received_at")
+        })
+@Data
+@NoArgsConstructor
+public class PaymentWebhookEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(nullable = false, length = 20)
+    private String provider;
+
+    @Column(name = "provider_event_id", nullable = false)
+    private String providerEventId;
+
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+
+    @Column(name = "payment_id", nullable = false)
+    private UUID paymentId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_status", nullable = false)
+    private Payment.PaymentStatus targetStatus;
+
+    @Column(name = "transaction_id")
+    private String transactionId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    public enum Status {
+        PENDING,
+        PROCESSING,
+        DONE,
+        FAILED
+    }
+}
@@ -0,0 +1,51 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A refund owed to a customer, written in the same transaction that discovers it is owed and removed
+ * once the provider has accepted it. Drained by {@code PaymentRefundOutbox}.
+ */
+@Entity
+@Table(name = "payment_refund_outbox",
+        indexes = @Index(name = "idx_payment_refund_outbox_due", columnList = "status, next_attempt_at"))
+@Data
+@NoArgsConstructor
+public class PendingRefund {
+
+    @Id
+    @Column(name = "payment_id")
+    private UUID paymentId;
+
+    @Column(nullable = false)
+    private String reason;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private Status status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error")
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    public enum Status {
+        PENDING,
+        PROCESSING
+    }
+}
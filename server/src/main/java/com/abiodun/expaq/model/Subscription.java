@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "subscriptions")
+// The unique provider reference indexes are owned by SubscriptionReferenceIndex, which cleans the data first
+@Table(name = "subscriptions", indexes = {
+        @Index(name = "idx_subscriptions_billing_due", columnList = "status, next_billing_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
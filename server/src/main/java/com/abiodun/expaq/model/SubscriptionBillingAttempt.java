@@ -0,0 +1,61 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One charge per subscription and billing cycle. The idempotency key is the subscription id and the
+ * billing date being paid for; it is claimed before the charge and handed to the provider, so a resumed
+ * or repeated billing run never charges the same cycle twice. While the charge is PENDING the key belongs
+ * to {@code claimedBy} until {@code claimedUntil}; after that another caller may take it over.
+ */
+@Entity
+@Table(name = "subscription_billing_attempts",
+        indexes = @Index(name = "idx_subscription_billing_attempts_subscription", columnList = "subscription_id"))
+@Data
+@NoArgsConstructor
+public class SubscriptionBillingAttempt {
+
+    @Id
+    @Column(name = "idempotency_key", length = 80)
+    private String idempotencyKey;
+
+    @Column(name = "subscription_id", nullable = false)
+    private UUID subscriptionId;
+
+    @Column(name = "run_id")
+    private UUID runId;
+
+    @Column(length = 20)
+    private String provider;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Outcome outcome;
+
+    @Column(name = "claimed_by")
+    private UUID claimedBy;
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum Outcome {
+        PENDING,
+        SUCCEEDED,
+        FAILED,
+        SKIPPED
+    }
+}
@@ -0,0 +1,72 @@
+package com.abiodun.expaq.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Checkpoint of a subscription billing run. The run bills subscriptions due by {@code cutoff} in
+ * {@code (next_billing_date, id)} order, and the cursor is the last key of the last finished chunk, so a
+ * run that dies is resumed from there by {@code SubscriptionBillingEngine}. The lease keeps a second
+ * instance from picking up a run that is still alive, and {@code leaseOwner} tells the old holder that
+ * its run was taken over.
+ */
+@Entity
+@Table(name = "subscription_billing_runs",
+        indexes = @Index(name = "idx_subscription_billing_runs_status", columnList = "status"))
+@Data
+@NoArgsConstructor
+public class SubscriptionBillingRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status;
+
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    @Column(name = "cursor_billing_date")
+    private LocalDateTime cursorBillingDate;
+
+    @Column(name = "cursor_subscription_id")
+    private UUID cursorSubscriptionId;
+
+    @Column(nullable = false)
+    private long processed;
+
+    @Column(nullable = false)
+    private long succeeded;
+
+    @Column(nullable = false)
+    private long failed;
+
+    @Column(nullable = false)
+    private long skipped;
+
+    @Column(name = "lease_owner")
+    private UUID leaseOwner;
+
+    @Column(name = "lease_expires_at", nullable = false)
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        RUNNING,
+        COMPLETED
+    }
+}
@@ -20,6 +20,10 @@ public class TokenBlacklist {
     @Column(unique = true)
     private String token;
 
+    // Token ID (jti); null for tokens issued before IDs were added
+    @Column(unique = true)
+    private String jti;
+
     private UUID userId;
 
     private LocalDateTime blacklistedAt;
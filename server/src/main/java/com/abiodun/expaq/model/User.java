@@ -5,6 +5,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.security.core.GrantedAuthority;
@@ -86,6 +87,11 @@ public class User implements UserDetails {
     
     @Column
     private LocalDateTime lastActive;
+
+    // Bumped to revoke every token issued before; only changed through UserRepository.incrementTokenVersion
+    @ColumnDefault("0")
+    @Column(name = "token_version", nullable = false, updatable = false)
+    private int tokenVersion;
     
     @Enumerated(EnumType.STRING)
     @Column
@@ -0,0 +1,39 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.model.ActivityPopularity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ActivityPopularityRepository extends JpaRepository<ActivityPopularity, UUID> {
+
+    // Adds a delta to an activity's counters, decaying the stored score to :now first
+    @Modifying
+    @Query(value = "INSERT INTO activity_popularity (activity_id, booking_count, trending_score, updated_at) " +
+                   "VALUES (:activityId, GREATEST(:countDelta, 0), GREATEST(:scoreDelta, 0), :now) " +
+                   "ON CONFLICT (activity_id) DO UPDATE SET " +
+                   "booking_count = GREATEST(activity_popularity.booking_count + :countDelta, 0), " +
+                   "trending_score = GREATEST(activity_popularity.trending_score * POWER(0.5, " +
+                   "EXTRACT(EPOCH FROM (:now - activity_popularity.updated_at)) / :halfLifeSeconds) + :scoreDelta, 0), " +
+                   "updated_at = :now",
+           nativeQuery = true)
+    int applyDelta(@Param("activityId") UUID activityId, @Param("countDelta") long countDelta,
+                   @Param("scoreDelta") double scoreDelta, @Param("now") LocalDateTime now,
+                   @Param("halfLifeSeconds") double halfLifeSeconds);
+
+    // Seeds counters for activities that have none yet from the bookings made up to :now
+    @Modifying
+    @Query(value = "INSERT INTO activity_popularity (activity_id, booking_count, trending_score, updated_at) " +
+                   "SELECT b.activity_id, COUNT(*), " +
+                   "SUM(POWER(0.5, EXTRACT(EPOCH FROM (:now - b.created_at)) / :halfLifeSeconds)), :now " +
+                   "FROM bookings b WHERE b.status <> 'CANCELLED' AND b.created_at <= :now GROUP BY b.activity_id " +
+                   "ON CONFLICT (activity_id) DO NOTHING",
+           nativeQuery = true)
+    int backfillFromBookings(@Param("now") LocalDateTime now, @Param("halfLifeSeconds") double halfLifeSeconds);
+}
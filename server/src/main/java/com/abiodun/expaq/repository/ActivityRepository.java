@@ -7,9 +7,11 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -17,20 +19,47 @@ import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface ActivityRepository extends JpaRepository<Activity, UUID>, JpaSpecificationExecutor<Activity> {
+public interface ActivityRepository extends JpaRepository<Activity, UUID>, JpaSpecificationExecutor<Activity>,
+        ActivitySearchRepository {
 
-    // Search and filter methods
-    @Query("SELECT a FROM Activity a WHERE " +
-           "LOWER(a.title) LIKE LOWER(CONCAT('%', :query, '%')) OR " +
-           "LOWER(a.description) LIKE LOWER(CONCAT('%', :query, '%'))")
-    Page<Activity> searchActivities(@Param("query") String query, Pageable pageable);
-    
     // Location-based queries
     @Query(value = "SELECT a FROM Activity a WHERE " +
            "function('ST_DWithin', a.locationPoint, :point, :distance) = true AND " +
            "a.isActive = true")
     List<Activity> findNearbyActivities(@Param("point") Point point, @Param("distance") double distance);
 
+    // Map index source, one row per active located activity: [id, locationPoint, activityTypeId, price]
+    @Query("SELECT a.id, a.locationPoint, t.id, a.price FROM Activity a LEFT JOIN a.activityType t " +
+           "WHERE a.isActive = true AND a.locationPoint IS NOT NULL")
+    List<Object[]> findActiveLocations();
+
+    // Hosts with at least one active listing, for warming their entitlements
+    @Query("SELECT DISTINCT a.host.id FROM Activity a WHERE a.isActive = true")
+    List<UUID> findActiveHostIds();
+
+    // PostGIS fallback for the nearby index, nearest first; a negative radius means unbounded. The type id
+    // is passed as text so a null binds as a typed parameter
+    @Query(value = "SELECT a.* FROM activities a WHERE a.is_active = true AND a.location_point IS NOT NULL " +
+           "AND (:activityTypeId IS NULL OR a.activity_type_id = CAST(:activityTypeId AS uuid)) " +
+           "AND (:radiusMeters < 0 OR ST_DWithin(CAST(a.location_point AS geography), " +
+           "CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography), :radiusMeters)) " +
+           "ORDER BY a.location_point <-> ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326), a.id",
+           countQuery = "SELECT COUNT(*) FROM activities a WHERE a.is_active = true AND a.location_point IS NOT NULL " +
+           "AND (:activityTypeId IS NULL OR a.activity_type_id = CAST(:activityTypeId AS uuid)) " +
+           "AND (:radiusMeters < 0 OR ST_DWithin(CAST(a.location_point AS geography), " +
+           "CAST(ST_SetSRID(ST_MakePoint(:longitude, :latitude), 4326) AS geography), :radiusMeters))",
+           nativeQuery = true)
+    Page<Activity> findNearestActivities(@Param("latitude") double latitude,
+                                         @Param("longitude") double longitude,
+                                         @Param("radiusMeters") double radiusMeters,
+                                         @Param("activityTypeId") String activityTypeId,
+                                         Pageable pageable);
+
+    // Planner row estimate for the activities table; avoids a full count on unfiltered listings
+    @Query(value = "SELECT CAST(GREATEST(c.reltuples, 0) AS BIGINT) FROM pg_class c WHERE c.relname = 'activities'",
+           nativeQuery = true)
+    Long estimateActivityCount();
+
     // Featured activities
     Page<Activity> findByIsFeaturedTrueAndIsActiveTrue(Pageable pageable);
     
@@ -38,18 +67,16 @@ public interface ActivityRepository extends JpaRepository<Activity, UUID>, JpaSp
     List<Activity> findByHostIdAndIsActiveTrue(UUID hostId);
     
     // Methods for recommendation system
-    @Query("SELECT a FROM Activity a WHERE a.isActive = true ORDER BY (SELECT COUNT(b) FROM a.bookings b) DESC")
-    List<Activity> findMostPopularActivities(Pageable pageable);
-    
-    @Query("SELECT a FROM Activity a WHERE a.isActive = true ORDER BY " +
-           "(SELECT COUNT(b) FROM a.bookings b WHERE b.createdAt >= :since) DESC")
-    List<Activity> findTrendingActivities(@Param("since") LocalDateTime since, Pageable pageable);
-    
-    // Overload for current trending (last 30 days)
-    default List<Activity> findTrendingActivities(Pageable pageable) {
-        return findTrendingActivities(LocalDateTime.now().minusDays(30), pageable);
-    }
-    
+    @Query("SELECT a.id FROM Activity a WHERE a.isActive = true ORDER BY a.createdAt")
+    List<UUID> findActiveActivityIds();
+
+    // Suggestion index source, one row per active activity: [id, title, cityId, countryId, typeId, ratingCount, bookingCount]
+    @Query("SELECT a.id, a.title, c.id, co.id, t.id, a.ratingCount, COALESCE(p.bookingCount, 0) FROM Activity a " +
+           "LEFT JOIN a.city c LEFT JOIN a.country co LEFT JOIN a.activityType t " +
+           "LEFT JOIN ActivityPopularity p ON p.activityId = a.id " +
+           "WHERE a.isActive = true")
+    List<Object[]> findActiveSuggestionRows();
+
     // Basic activity queries
     List<Activity> findByActivityTypeAndIsActiveTrue(ActivityType activityType);
     List<Activity> findByLocationContainingIgnoreCase(String location);
@@ -76,18 +103,13 @@ public interface ActivityRepository extends JpaRepository<Activity, UUID>, JpaSp
     
     // Additional search methods for new services
     @Query("SELECT a FROM Activity a WHERE " +
-           "function('ST_DWithin', a.locationPoint, function('ST_MakePoint', :longitude, :latitude), :distance) = true")
+           "function('ST_DWithin', a.locationPoint, " +
+           "function('ST_SetSRID', function('ST_MakePoint', :longitude, :latitude), 4326), :distance) = true")
     Page<Activity> findByLocationWithinDistance(@Param("latitude") Double latitude, 
                                                 @Param("longitude") Double longitude,
                                                 @Param("distance") Double distance,
                                                 Pageable pageable);
     
-    @Query("SELECT a FROM Activity a WHERE a.activityType = :activityType AND " +
-           "function('ST_DWithin', a.locationPoint, :point, :distance) = true AND a.isActive = true")
-    List<Activity> findNearbyActivitiesByActivityType(@Param("activityType") String activityType,
-                                                      @Param("point") Point point,
-                                                      @Param("distance") double distance);
-    
     @Query("SELECT a FROM Activity a WHERE a.startDate >= :fromDate AND a.isActive = true")
     Page<Activity> findUpcomingActivities(@Param("fromDate") LocalDateTime fromDate, Pageable pageable);
     
@@ -100,4 +122,61 @@ public interface ActivityRepository extends JpaRepository<Activity, UUID>, JpaSp
     Page<Activity> findByPriceRange(@Param("minPrice") BigDecimal minPrice,
                                     @Param("maxPrice") BigDecimal maxPrice,
                                     Pageable pageable);
+
+    // Rating queries backed by the denormalized rating columns (idx_activities_active_rating)
+    Page<Activity> findByIsActiveTrueAndAverageRatingGreaterThanEqual(double minRating, Pageable pageable);
+
+    List<Activity> findByLocationContainingIgnoreCaseOrderByAverageRatingDesc(String location, Pageable pageable);
+
+    // Compare-and-increment on booked seats; returns 0 when the activity cannot take the guests
+    @Modifying
+    @Query("UPDATE Activity a SET a.bookedCapacity = a.bookedCapacity + :guests " +
+           "WHERE a.id = :activityId AND a.bookedCapacity + :guests <= a.maxParticipants")
+    int tryReserveCapacity(@Param("activityId") UUID activityId, @Param("guests") int guests);
+
+    @Modifying
+    @Query("UPDATE Activity a SET a.bookedCapacity = a.bookedCapacity - :guests " +
+           "WHERE a.id = :activityId AND a.bookedCapacity >= :guests")
+    int releaseCapacity(@Param("activityId") UUID activityId, @Param("guests") int guests);
+
+    // Row-locks the next batch of activities in id order. Reservations and releases on them wait until the
+    // caller's transaction ends; every other activity stays writable
+    @Query(value = "SELECT id FROM activities WHERE id > :after ORDER BY id LIMIT :limit FOR UPDATE", nativeQuery = true)
+    List<UUID> lockCapacityBatch(@Param("after") UUID after, @Param("limit") int limit);
+
+    // Recomputes booked seats of the given activities from the bookings still holding them, touching only rows
+    // that have drifted. Completed bookings are never released, so they count like confirmed ones.
+    // Run after lockCapacityBatch, in a later statement, so the recount sees what waiting reservations committed
+    @Modifying
+    @Query(value = "UPDATE activities a SET booked_capacity = s.seats " +
+           "FROM (SELECT act.id, COALESCE(SUM(b.number_of_guests) " +
+           "      FILTER (WHERE b.status IN ('PENDING', 'PAID', 'CONFIRMED', 'COMPLETED')), 0) AS seats " +
+           "      FROM activities act LEFT JOIN bookings b ON b.activity_id = act.id " +
+           "      WHERE act.id IN (:activityIds) GROUP BY act.id) s " +
+           "WHERE a.id = s.id AND a.booked_capacity <> s.seats",
+           nativeQuery = true)
+    int reconcileBookedCapacity(@Param("activityIds") List<UUID> activityIds);
+
+    // Applies a review delta to the rating aggregates in one statement so concurrent reviews don't lose updates
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Activity a SET a.ratingCount = a.ratingCount + :countDelta, " +
+           "a.ratingSum = a.ratingSum + :sumDelta, " +
+           "a.averageRating = CASE WHEN a.ratingCount + :countDelta > 0 " +
+           "THEN CAST(a.ratingSum + :sumDelta AS double) / (a.ratingCount + :countDelta) ELSE 0.0 END " +
+           "WHERE a.id = :activityId")
+    int applyRatingDelta(@Param("activityId") UUID activityId,
+                         @Param("countDelta") int countDelta,
+                         @Param("sumDelta") long sumDelta);
+
+    // Recomputes the rating aggregates from reviews, touching only rows that have drifted
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE activities a SET rating_count = s.review_count, rating_sum = s.rating_total, " +
+           "average_rating = CASE WHEN s.review_count > 0 " +
+           "THEN CAST(s.rating_total AS DOUBLE PRECISION) / s.review_count ELSE 0 END " +
+           "FROM (SELECT act.id, COUNT(r.id) AS review_count, COALESCE(SUM(r.rating), 0) AS rating_total " +
+           "      FROM activities act LEFT JOIN reviews r ON r.activity_id = act.id GROUP BY act.id) s " +
+           "WHERE a.id = s.id AND (a.rating_count <> s.review_count OR a.rating_sum <> s.rating_total)",
+           nativeQuery = true)
+    int reconcileRatingAggregates();
 }
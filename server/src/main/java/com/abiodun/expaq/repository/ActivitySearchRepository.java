@@ -0,0 +1,29 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.service.search.PriceBand;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-text queries over {@code activities.search_vector}. {@code tsQuery} must come from
+ * {@link com.abiodun.expaq.service.search.ActivitySearchIndex#toTsQuery(String)}; the optional
+ * filters are ignored when null. Only active activities match. With {@code indexed} false each row's
+ * vector is computed on the fly, which scans the table but works before the column has been filled in.
+ */
+public interface ActivitySearchRepository {
+
+    /**
+     * One page of matches, best ranked first: {@code [UUID id, Long totalMatches]}.
+     */
+    List<Object[]> searchRanked(String tsQuery, boolean indexed, UUID activityTypeId, UUID cityId,
+                                PriceBand priceBand, long offset, int limit);
+
+    long countMatches(String tsQuery, boolean indexed, UUID activityTypeId, UUID cityId, PriceBand priceBand);
+
+    /**
+     * Facet counts for every match, computed in one pass with grouping sets. Each row is
+     * {@code [String facet, String key, String label, Long count]} where facet is "type", "city" or "price".
+     */
+    List<Object[]> countFacets(String tsQuery, boolean indexed);
+}
@@ -0,0 +1,99 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.service.search.ActivitySearchIndex;
+import com.abiodun.expaq.service.search.PriceBand;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+
+import java.util.List;
+import java.util.UUID;
+
+class ActivitySearchRepositoryImpl implements ActivitySearchRepository {
+
+    private static final String INDEXED_VECTOR = "a.search_vector";
+    // Same vector the trigger stores, computed per row: a scan, but right before the column is filled in
+    private static final String COMPUTED_VECTOR = "(" + ActivitySearchIndex.searchVector("a.") + ")";
+    private static final String PRICE_BUCKET = "width_bucket(a.price, " + PriceBand.UPPER_BOUNDS + ")";
+
+    private static final String FACETS_SELECT =
+            "SELECT CASE WHEN GROUPING(t.id) = 0 THEN 'type' WHEN GROUPING(c.id) = 0 THEN 'city' ELSE 'price' END, " +
+            "COALESCE(CAST(t.id AS VARCHAR), CAST(c.id AS VARCHAR), CAST(" + PRICE_BUCKET + " AS VARCHAR)), " +
+            "COALESCE(t.name, c.name), COUNT(*) " +
+            "FROM activities a " +
+            "LEFT JOIN activity_type t ON t.id = a.activity_type_id " +
+            "LEFT JOIN city c ON c.id = a.city_id " +
+            "WHERE a.is_active = true AND ";
+    private static final String FACETS_GROUPING = " @@ to_tsquery('simple', :query) " +
+            "GROUP BY GROUPING SETS ((t.id, t.name), (c.id, c.name), (" + PRICE_BUCKET + ")) " +
+            "ORDER BY COUNT(*) DESC";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> searchRanked(String tsQuery, boolean indexed, UUID activityTypeId, UUID cityId,
+                                       PriceBand priceBand, long offset, int limit) {
+        // The window count rides along with the page, so paging needs no separate COUNT query
+        String sql = "SELECT a.id, COUNT(*) OVER ()" + match(indexed) + filters(activityTypeId, cityId, priceBand) +
+                " ORDER BY ts_rank_cd(" + vector(indexed) + ", to_tsquery('simple', :query)) DESC, a.id" +
+                " LIMIT :limit OFFSET :offset";
+        Query query = bind(entityManager.createNativeQuery(sql), tsQuery, activityTypeId, cityId, priceBand);
+        return query.setParameter("limit", limit)
+                .setParameter("offset", offset)
+                .getResultList();
+    }
+
+    @Override
+    public long countMatches(String tsQuery, boolean indexed, UUID activityTypeId, UUID cityId, PriceBand priceBand) {
+        String sql = "SELECT COUNT(*)" + match(indexed) + filters(activityTypeId, cityId, priceBand);
+        Query query = bind(entityManager.createNativeQuery(sql), tsQuery, activityTypeId, cityId, priceBand);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> countFacets(String tsQuery, boolean indexed) {
+        return entityManager.createNativeQuery(FACETS_SELECT + vector(indexed) + FACETS_GROUPING)
+                .setParameter("query", tsQuery)
+                .getResultList();
+    }
+
+    private static String vector(boolean indexed) {
+        return indexed ? INDEXED_VECTOR : COMPUTED_VECTOR;
+    }
+
+    private static String match(boolean indexed) {
+        return " FROM activities a WHERE a.is_active = true AND " + vector(indexed) + " @@ to_tsquery('simple', :query)";
+    }
+
+    // Only filters that are set become predicates, so no untyped null parameters reach Postgres
+    private static String filters(UUID activityTypeId, UUID cityId, PriceBand priceBand) {
+        StringBuilder sql = new StringBuilder();
+        if (activityTypeId != null) {
+            sql.append(" AND a.activity_type_id = :activityTypeId");
+        }
+        if (cityId != null) {
+            sql.append(" AND a.city_id = :cityId");
+        }
+        if (priceBand != null) {
+            sql.append(" AND ").append(PRICE_BUCKET).append(" = :priceBucket");
+        }
+        return sql.toString();
+    }
+
+    private static Query bind(Query query, String tsQuery, UUID activityTypeId, UUID cityId, PriceBand priceBand) {
+        query.setParameter("query", tsQuery);
+        if (activityTypeId != null) {
+            query.setParameter("activityTypeId", activityTypeId);
+        }
+        if (cityId != null) {
+            query.setParameter("cityId", cityId);
+        }
+        if (priceBand != null) {
+            query.setParameter("priceBucket", priceBand.ordinal());
+        }
+        return query;
+    }
+}
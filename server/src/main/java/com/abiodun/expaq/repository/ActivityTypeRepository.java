@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ActivityTypeRepository extends JpaRepository<ActivityType, UUID> {
@@ -22,4 +23,10 @@ public interface ActivityTypeRepository extends JpaRepository<ActivityType, UUID
            "WHERE at.id = :id " +
            "GROUP BY at")
     List<Object[]> findByIdWithActivityCount(@Param("id") UUID id);
+
+    // Suggestion index source: [id, name]
+    @Query("SELECT t.id, t.name FROM ActivityType t")
+    List<Object[]> findAllIdAndName();
+
+    Optional<ActivityType> findFirstByNameIgnoreCase(String name);
 }
@@ -3,10 +3,14 @@ package com.abiodun.expaq.repository;
 import com.abiodun.expaq.model.Activity;
 import com.abiodun.expaq.model.Booking;
 import com.abiodun.expaq.model.Booking.BookingStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -14,6 +18,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, UUID> {
@@ -101,6 +106,75 @@ public interface BookingRepository extends JpaRepository<Booking, UUID> {
 
     long countByHostIdAndStatus(UUID hostId, BookingStatus attr0);
 
+    // Capacity holds: pending bookings keep their seats until holdExpiresAt
+    @Query("SELECT b.id, b.activity.id, b.numberOfGuests, b.user.id, b.createdAt FROM Booking b " +
+           "WHERE b.status = :status AND b.holdExpiresAt < :now ORDER BY b.holdExpiresAt")
+    List<Object[]> findExpiredHolds(@Param("status") BookingStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    default List<Object[]> findExpiredHolds(LocalDateTime now, Pageable pageable) {
+        return findExpiredHolds(BookingStatus.PENDING, now, pageable);
+    }
+
+    String HOLD_EXPIRED_REASON = "Reservation hold expired";
+
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :cancelled, b.cancellationReason = '" + HOLD_EXPIRED_REASON + "', " +
+           "b.cancelledAt = :now, b.updatedAt = :now, b.holdExpiresAt = NULL " +
+           "WHERE b.id = :bookingId AND b.status = :pending AND b.holdExpiresAt < :now")
+    int expireHold(@Param("bookingId") UUID bookingId, @Param("pending") BookingStatus pending,
+                   @Param("cancelled") BookingStatus cancelled, @Param("now") LocalDateTime now);
+
+    default int expireHold(UUID bookingId, LocalDateTime now) {
+        return expireHold(bookingId, BookingStatus.PENDING, BookingStatus.CANCELLED, now);
+    }
+
+    // Moves a booking forward only while it still holds its seats, so an expired hold cannot be paid back to life
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :target, b.updatedAt = :now, b.holdExpiresAt = NULL " +
+           "WHERE b.id = :bookingId AND b.status IN :holding")
+    int advanceIfHolding(@Param("bookingId") UUID bookingId, @Param("holding") List<BookingStatus> holding,
+                         @Param("target") BookingStatus target, @Param("now") LocalDateTime now);
+
+    // Brings back a booking whose hold expired, once its seats have been reserved again
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :target, b.cancellationReason = NULL, b.cancelledAt = NULL, " +
+           "b.updatedAt = :now, b.holdExpiresAt = NULL " +
+           "WHERE b.id = :bookingId AND b.status = :cancelled AND b.cancellationReason = :reason")
+    int reviveExpiredHold(@Param("bookingId") UUID bookingId, @Param("cancelled") BookingStatus cancelled,
+                          @Param("reason") String reason, @Param("target") BookingStatus target,
+                          @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE Booking b SET b.paymentId = :paymentId, b.paymentStatus = :paymentStatus, " +
+           "b.paymentDate = :now, b.updatedAt = :now WHERE b.id = :bookingId")
+    int recordPayment(@Param("bookingId") UUID bookingId, @Param("paymentId") String paymentId,
+                      @Param("paymentStatus") String paymentStatus, @Param("now") LocalDateTime now);
+
+    // Cancels only from a seat-holding status so the seats are released exactly once
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :cancelled, b.cancellationReason = :reason, " +
+           "b.cancelledAt = :now, b.updatedAt = :now, b.holdExpiresAt = NULL " +
+           "WHERE b.id = :bookingId AND b.status IN :holding")
+    int cancelIfHolding(@Param("bookingId") UUID bookingId, @Param("reason") String reason,
+                        @Param("holding") List<BookingStatus> holding, @Param("cancelled") BookingStatus cancelled,
+                        @Param("now") LocalDateTime now);
+
+    default int cancelIfHolding(UUID bookingId, String reason, LocalDateTime now) {
+        return cancelIfHolding(bookingId, reason,
+                List.of(BookingStatus.PENDING, BookingStatus.PAID, BookingStatus.CONFIRMED),
+                BookingStatus.CANCELLED, now);
+    }
+
+    // Recommendation model input: one (user, activity) row per booking that was not cancelled, oldest
+    // first so capped histories keep each user's most recent bookings
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT b.user.id, b.activity.id FROM Booking b WHERE b.status <> :excluded ORDER BY b.createdAt, b.id")
+    Stream<Object[]> streamUserActivityPairs(@Param("excluded") BookingStatus excluded);
+
+    default Stream<Object[]> streamUserActivityPairs() {
+        return streamUserActivityPairs(BookingStatus.CANCELLED);
+    }
+
     // Methods for upcoming and past bookings
     List<Booking> findByUserIdAndStartTimeAfter(UUID userId, LocalDateTime startTime);
     
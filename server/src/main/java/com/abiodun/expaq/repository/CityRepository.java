@@ -29,4 +29,8 @@ public interface CityRepository extends JpaRepository<City, UUID> {
            "WHERE c.country.id = :countryId " +
            "GROUP BY c")
     List<Object[]> findByCountryIdWithActivityCount(@Param("countryId") UUID countryId);
+
+    // Suggestion index source: [id, name]
+    @Query("SELECT c.id, c.name FROM City c")
+    List<Object[]> findAllIdAndName();
 }
@@ -24,4 +24,8 @@ public interface CountryRepository extends JpaRepository<Country, UUID> {
            "WHERE c.id = :id " +
            "GROUP BY c")
     List<Object[]> findByIdWithCityAndActivityCount(@Param("id") UUID id);
+
+    // Suggestion index source: [id, name]
+    @Query("SELECT c.id, c.name FROM Country c")
+    List<Object[]> findAllIdAndName();
 }
@@ -0,0 +1,23 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.model.Payment;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.stream.Stream;
+
+/**
+ * GROUP BY aggregates over payments, filtered by a {@link Specification}. Results are streamed
+ * with a bounded fetch size and must be consumed inside a transaction.
+ */
+public interface PaymentAggregateRepository {
+
+    /**
+     * One row per (status, paymentMethod, currency): {@code [PaymentStatus, PaymentMethod, Currency, Long count, BigDecimal sum]}.
+     */
+    Stream<Object[]> streamTotalsByStatusMethodAndCurrency(Specification<Payment> filter);
+
+    /**
+     * One row per day of {@code createdAt}: {@code [LocalDate day, Long count, Long completedCount, BigDecimal completedSum]}.
+     */
+    Stream<Object[]> streamTotalsByDay(Specification<Payment> filter);
+}
@@ -0,0 +1,73 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+class PaymentAggregateRepositoryImpl implements PaymentAggregateRepository {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Stream<Object[]> streamTotalsByStatusMethodAndCurrency(Specification<Payment> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Payment> payment = query.from(Payment.class);
+        query.multiselect(
+                payment.get("status"),
+                payment.get("paymentMethod"),
+                payment.get("currency"),
+                cb.count(payment),
+                cb.sum(payment.<BigDecimal>get("amount")));
+        applyFilter(filter, payment, query, cb);
+        query.groupBy(payment.get("status"), payment.get("paymentMethod"), payment.get("currency"));
+        return stream(query);
+    }
+
+    @Override
+    public Stream<Object[]> streamTotalsByDay(Specification<Payment> filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Payment> payment = query.from(Payment.class);
+        Expression<LocalDate> day = cb.function("date", LocalDate.class, payment.get("createdAt"));
+        Expression<Boolean> completed = cb.equal(payment.get("status"), PaymentStatus.COMPLETED);
+        query.multiselect(
+                day,
+                cb.count(payment),
+                cb.sum(cb.<Long>selectCase().when(completed, 1L).otherwise(0L)),
+                cb.sum(cb.<BigDecimal>selectCase().when(completed, payment.<BigDecimal>get("amount")).otherwise(BigDecimal.ZERO)));
+        applyFilter(filter, payment, query, cb);
+        query.groupBy(day);
+        return stream(query);
+    }
+
+    private static void applyFilter(Specification<Payment> filter, Root<Payment> payment,
+                                    CriteriaQuery<Object[]> query, CriteriaBuilder cb) {
+        Predicate predicate = filter == null ? null : filter.toPredicate(payment, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    private Stream<Object[]> stream(CriteriaQuery<Object[]> query) {
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+}
@@ -0,0 +1,70 @@
+package com.abiodun.expaq.repository;
+
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.model.PaymentDailyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PaymentDailyRollupRepository extends JpaRepository<PaymentDailyRollup, PaymentDailyRollup.Key> {
+
+    // Adds a delta to one rollup cell, creating it on first use. Callers hold the day's shared rollup lock
+    @Modifying
+    @Query(value = "INSERT INTO payment_daily_rollup (rollup_date, currency, payment_method, status, payment_count, amount_sum, refund_sum) " +
+                   "VALUES (:day, :currency, :method, :status, :countDelta, :amountDelta, :refundDelta) " +
+                   "ON CONFLICT (rollup_date, currency, payment_method, status) DO UPDATE SET " +
+                   "payment_count = payment_daily_rollup.payment_count + EXCLUDED.payment_count, " +
+                   "amount_sum = payment_daily_rollup.amount_sum + EXCLUDED.amount_sum, " +
+                   "refund_sum = payment_daily_rollup.refund_sum + EXCLUDED.refund_sum",
+           nativeQuery = true)
+    int applyDelta(@Param("day") LocalDate day, @Param("currency") String currency, @Param("method") String method,
+                   @Param("status") String status, @Param("countDelta") long countDelta,
+                   @Param("amountDelta") BigDecimal amountDelta, @Param("refundDelta") BigDecimal refundDelta);
+
+    @Modifying
+    @Query("DELETE FROM PaymentDailyRollup r WHERE r.id.rollupDate >= :from AND r.id.rollupDate < :to")
+    int deleteDays(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Recomputes [from, to) from payments. Callers hold the days' exclusive rollup locks, so no delta can
+    // land between this statement's snapshot and its writes. Payments without a method go to UNKNOWN, as in
+    // PaymentAnalyticsAccumulator
+    @Modifying
+    @Query(value = "INSERT INTO payment_daily_rollup (rollup_date, currency, payment_method, status, payment_count, amount_sum, refund_sum) " +
+                   "SELECT CAST(p.created_at AS DATE), p.currency, COALESCE(p.payment_method, 'UNKNOWN'), p.status, COUNT(*), " +
+                   "COALESCE(SUM(p.amount), 0), COALESCE(SUM(CASE WHEN p.status = 'REFUNDED' THEN p.amount ELSE 0 END), 0) " +
+                   "FROM payments p WHERE p.created_at >= :from AND p.created_at < :to " +
+                   "GROUP BY CAST(p.created_at AS DATE), p.currency, p.payment_method, p.status " +
+                   "ON CONFLICT (rollup_date, currency, payment_method, status) DO UPDATE SET " +
+                   "payment_count = EXCLUDED.payment_count, amount_sum = EXCLUDED.amount_sum, refund_sum = EXCLUDED.refund_sum",
+           nativeQuery = true)
+    int rebuildDays(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT MIN(p.createdAt) FROM Payment p")
+    LocalDateTime findFirstPaymentTime();
+
+    // Same shapes as PaymentAggregateRepository, so both can feed one accumulator
+    @Query("SELECT r.id.status, r.id.paymentMethod, r.id.currency, SUM(r.paymentCount), SUM(r.amountSum) " +
+           "FROM PaymentDailyRollup r WHERE r.id.rollupDate BETWEEN :from AND :to " +
+           "GROUP BY r.id.status, r.id.paymentMethod, r.id.currency")
+    List<Object[]> sumTotalsByStatusMethodAndCurrency(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT r.id.rollupDate, SUM(r.paymentCount), " +
+           "SUM(CASE WHEN r.id.status = :completed THEN r.paymentCount ELSE 0 END), " +
+           "SUM(CASE WHEN r.id.status = :completed THEN r.amountSum ELSE 0 END) " +
+           "FROM PaymentDailyRollup r WHERE r.id.rollupDate BETWEEN :from AND :to " +
+           "GROUP BY r.id.rollupDate")
+    List<Object[]> sumTotalsByDay(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                  @Param("completed") PaymentStatus completed);
+
+    default List<Object[]> sumTotalsByDay(LocalDate from, LocalDate to) {
+        return sumTotalsByDay(from, to, PaymentStatus.COMPLETED);
+    }
+}
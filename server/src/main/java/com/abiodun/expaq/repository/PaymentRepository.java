@@ -3,20 +3,27 @@ package com.abiodun.expaq.repository;
 import com.abiodun.expaq.model.Payment;
 import com.abiodun.expaq.model.Payment.PaymentMethod;
 import com.abiodun.expaq.model.Payment.PaymentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, UUID> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID>, PaymentAggregateRepository {
     
     List<Payment> findByUserId(UUID userId);
     
@@ -27,6 +34,11 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     List<Payment> findByPaymentMethod(PaymentMethod paymentMethod);
     
     List<Payment> findByCurrency(String currency);
+
+    // Row lock that serializes status changes of one payment across webhooks, callbacks and verification
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Payment p WHERE p.id = :paymentId")
+    Optional<Payment> findByIdForUpdate(@Param("paymentId") UUID paymentId);
     
     @Query("SELECT p FROM Payment p WHERE p.user.id = :userId AND p.createdAt BETWEEN :startDate AND :endDate")
     List<Payment> findByUserIdAndDateRange(
@@ -63,4 +75,23 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
     
     @Query("SELECT COUNT(p) FROM Payment p WHERE p.status = :status")
     long countByStatus(@Param("status") String status);
-}
\ No newline at end of file
+
+    // Risk features: [total payments, failed payments] for one user
+    @Query("SELECT COUNT(p), COALESCE(SUM(CASE WHEN p.status = :failed THEN 1 ELSE 0 END), 0) " +
+           "FROM Payment p WHERE p.user.id = :userId")
+    List<Object[]> countTotalAndFailedByUserId(@Param("userId") UUID userId, @Param("failed") PaymentStatus failed);
+
+    default List<Object[]> countTotalAndFailedByUserId(UUID userId) {
+        return countTotalAndFailedByUserId(userId, PaymentStatus.FAILED);
+    }
+
+    // One row per payment with its user's totals attached, so batch scoring needs a single pass:
+    // [amount, created_at, payment_method, currency, user payment count, user failed count]
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "SELECT p.amount, p.created_at, p.payment_method, p.currency, " +
+                   "COUNT(*) OVER (PARTITION BY p.user_id), " +
+                   "SUM(CASE WHEN p.status = 'FAILED' THEN 1 ELSE 0 END) OVER (PARTITION BY p.user_id) " +
+                   "FROM payments p",
+           nativeQuery = true)
+    Stream<Object[]> streamPaymentsWithUserRiskCounts();
+}
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -111,6 +112,11 @@ public interface ReviewRepository extends JpaRepository<Review, UUID> {
     @Query("SELECT COUNT(r) FROM Review r WHERE r.activity.id = :activityId AND r.isEdited = :edited")
     int countByActivityIdAndEdited(@Param("activityId") UUID activityId, @Param("edited") boolean edited);
 
+    // One row per [activityId, rating, verified, edited] group with its review count
+    @Query("SELECT r.activity.id, r.rating, r.isVerified, r.isEdited, COUNT(r) FROM Review r " +
+            "WHERE r.activity.id IN :activityIds GROUP BY r.activity.id, r.rating, r.isVerified, r.isEdited")
+    List<Object[]> countByRatingVerifiedAndEdited(@Param("activityIds") Collection<UUID> activityIds);
+
     @Query("SELECT r FROM Review r WHERE r.activity.id = :activityId ORDER BY r.createdAt DESC")
     Page<Review> findLatestByActivityId(@Param("activityId") UUID activityId, Pageable pageable);
 
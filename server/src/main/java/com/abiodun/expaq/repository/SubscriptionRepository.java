@@ -9,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -23,6 +24,11 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, UUID
     @Query("SELECT s FROM Subscription s WHERE s.user.id = :userId AND s.status = 'ACTIVE' AND (s.endDate IS NULL OR s.endDate > :now)")
     Optional<Subscription> findActiveSubscriptionByUserId(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
     
+    // Active plan per user for entitlement lookups: [userId, planType, endDate]
+    @Query("SELECT s.user.id, s.planType, s.endDate FROM Subscription s WHERE s.user.id IN :userIds " +
+           "AND s.status = 'ACTIVE' AND (s.endDate IS NULL OR s.endDate > :now)")
+    List<Object[]> findActivePlansByUserIds(@Param("userIds") Collection<UUID> userIds, @Param("now") LocalDateTime now);
+    
     // Find all user's subscriptions
     List<Subscription> findByUserIdOrderByCreatedAtDesc(UUID userId);
     
@@ -44,9 +50,12 @@ public interface SubscriptionRepository extends JpaRepository<Subscription, UUID
     @Query("SELECT s FROM Subscription s WHERE s.status = 'ACTIVE' AND s.endDate IS NOT NULL AND s.endDate <= :now")
     List<Subscription> findExpiredSubscriptions(@Param("now") LocalDateTime now);
     
-    // Find subscriptions by payment provider
-    List<Subscription> findByStripeSubscriptionIdIsNotNull();
-    List<Subscription> findByPaystackSubscriptionCodeIsNotNull();
+    // Find subscriptions by payment provider reference (unique indexes; newest first if duplicates predate them)
+    @Query("SELECT s.id FROM Subscription s WHERE s.stripeSubscriptionId = :reference ORDER BY s.createdAt DESC")
+    List<UUID> findIdsByStripeSubscriptionId(@Param("reference") String reference);
+
+    @Query("SELECT s.id FROM Subscription s WHERE s.paystackSubscriptionCode = :reference ORDER BY s.createdAt DESC")
+    List<UUID> findIdsByPaystackSubscriptionCode(@Param("reference") String reference);
     
     // Analytics queries
     @Query("SELECT COUNT(s) FROM Subscription s WHERE s.status = :status")
@@ -2,12 +2,26 @@ package com.abiodun.expaq.repository;
 
 import com.abiodun.expaq.model.TokenBlacklist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 public interface TokenBlacklistRepository extends JpaRepository<TokenBlacklist, UUID> {
     boolean existsByToken(String token);
+
+    boolean existsByJti(String jti);
+
+    // Revocation key: the token ID, or the raw token for rows saved before tokens carried one
+    @Query("SELECT COALESCE(t.jti, t.token) FROM TokenBlacklist t WHERE t.expirationDate > :now")
+    List<String> findActiveRevocationKeys(@Param("now") Date now);
+
+    @Query("SELECT COALESCE(t.jti, t.token) FROM TokenBlacklist t WHERE t.blacklistedAt >= :since")
+    List<String> findRevocationKeysSince(@Param("since") LocalDateTime since);
+
     void deleteByExpirationDateBefore(Date date);
 //
 //    void deleteByUserId(UUID userId);
@@ -1,7 +1,8 @@
 package com.abiodun.expaq.security;
 
-import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.model.ExpaqUserDetails;
 import com.abiodun.expaq.service.JwtService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,14 +10,18 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
 
 @Slf4j
 @Component
@@ -25,7 +30,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final ExpaqUserDetailsService userDetailsService;
-    private final UserRepository userRepository;
+    private final ValidatedTokenCache tokenCache;
+    private final TokenVersionCache tokenVersionCache;
 
     // Public endpoints for specific HTTP methods
     private static final String[] PUBLIC_GET_ENDPOINTS = {
@@ -38,6 +44,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             "/api/auth/users-by-role/**",
             "/api/activities/search",
             "/api/activities/search/**",
+            "/api/search/suggest",
             "/api/activities/featured",
             "/api/activities/featured/**",
             "/api/activities/recommended",
@@ -77,7 +84,6 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             log.info("No valid Authorization header found");
@@ -87,48 +93,84 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         jwt = authHeader.substring(7);
         try {
-            userEmail = jwtService.extractEmail(jwt);
-            log.info("Extracted email from token: {}", userEmail);
-
-            if (userEmail != null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-                log.info("Loaded user details with authorities: {}", userDetails.getAuthorities());
-
-                if (jwtService.isTokenValid(jwt, userDetails)) {
-                    log.info("Token is valid for user: {}", userEmail);
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                    log.info("Authentication set in context for user: {} with authorities: {}",
-                            userEmail, userDetails.getAuthorities());
-                } else {
-                    log.warn("Token validation failed for user: {}", userEmail);
-                    SecurityContextHolder.clearContext();
-                    response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                    response.getWriter().write("Invalid token");
+            ValidatedTokenCache.ValidatedToken validated = tokenCache.get(jwt);
+            if (validated != null && jwtService.isRevoked(jwt, validated.getClaims())) {
+                // Revoked on another instance since it was cached
+                tokenCache.invalidateToken(jwt);
+                log.warn("Rejected revoked token");
+                rejectToken(response, "Invalid token");
+                return;
+            }
+            if (validated == null) {
+                Claims claims = jwtService.validateAndGetClaims(jwt);
+                if (claims == null) {
+                    log.warn("Token validation failed");
+                    rejectToken(response, "Invalid token");
+                    return;
+                }
+                String userEmail = claims.get("email", String.class);
+                if (userEmail == null) {
+                    log.warn("No email found in token");
+                    rejectToken(response, "Invalid token format");
                     return;
                 }
-            } else {
-                log.warn("No email found in token");
-                SecurityContextHolder.clearContext();
-                response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-                response.getWriter().write("Invalid token format");
+                ExpaqUserDetails userDetails;
+                if (claims.containsKey(JwtService.TOKEN_VERSION_CLAIM)) {
+                    userDetails = principalFromClaims(claims, userEmail);
+                } else {
+                    // Issued before tokens carried a version: authorize from the stored user
+                    userDetails = (ExpaqUserDetails) this.userDetailsService.loadUserByUsername(userEmail);
+                    if (!userEmail.equals(userDetails.getUsername())) {
+                        log.warn("Token validation failed for user: {}", userEmail);
+                        rejectToken(response, "Invalid token");
+                        return;
+                    }
+                }
+                validated = tokenCache.put(jwt, claims, userDetails);
+                log.info("Token is valid for user: {} with authorities: {}", userEmail, validated.getAuthorities());
+            }
+
+            Integer tokenVersion = validated.getClaims().get(JwtService.TOKEN_VERSION_CLAIM, Integer.class);
+            if (tokenVersion != null && !tokenVersionCache.isCurrent(validated.getUserDetails().getId(), tokenVersion)) {
+                tokenCache.invalidateToken(jwt);
+                log.warn("Rejected token with outdated version for user: {}", validated.getUserDetails().getId());
+                rejectToken(response, "Invalid token");
                 return;
             }
+
+            // The token is kept as the credentials so logout can revoke it
+            UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                    validated.getUserDetails(),
+                    jwt,
+                    validated.getAuthorities()
+            );
+            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authToken);
         } catch (Exception e) {
             log.error("Error processing JWT token: {}", e.getMessage(), e);
-            SecurityContextHolder.clearContext();
-            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
-            response.getWriter().write("Error processing token: " + e.getMessage());
+            rejectToken(response, "Error processing token: " + e.getMessage());
             return;
         }
         filterChain.doFilter(request, response);
     }
 
+    private static ExpaqUserDetails principalFromClaims(Claims claims, String email) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        List<?> roles = claims.get(JwtService.ROLES_CLAIM, List.class);
+        if (roles != null) {
+            for (Object role : roles) {
+                authorities.add(new SimpleGrantedAuthority(role.toString()));
+            }
+        }
+        return ExpaqUserDetails.fromToken(UUID.fromString(claims.getSubject()), email, authorities);
+    }
+
+    private void rejectToken(HttpServletResponse response, String message) throws IOException {
+        SecurityContextHolder.clearContext();
+        response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+        response.getWriter().write(message);
+    }
+
     private boolean isPublicEndpoint(String requestURI, String[] publicEndpoints) {
         for (String endpoint : publicEndpoints) {
             if (pathMatcher.match(endpoint, requestURI)) {
@@ -0,0 +1,115 @@
+package com.abiodun.expaq.security;
+
+import com.abiodun.expaq.repository.TokenBlacklistRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers "is this token revoked?" without touching the database for tokens that are not.
+ * A Bloom filter over the revocation keys of unexpired {@code token_blacklist} rows (the token
+ * ID, or the raw token for rows written before tokens carried one) rules out almost every token
+ * in memory. Filter hits are confirmed against the table and the answers cached.
+ * <p>
+ * The filter is rebuilt from the table on startup and after expired rows are purged, and new
+ * rows, including those written by other instances, are polled in between. Until the first
+ * rebuild, every check goes to the database.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationIndex {
+
+    private static final double FALSE_POSITIVE_RATE = 0.0001;
+    private static final int MIN_CAPACITY = 10_000;
+    // Re-reads a little of the previous window so rows committed late are not missed
+    private static final Duration POLL_OVERLAP = Duration.ofSeconds(5);
+
+    private final TokenBlacklistRepository tokenBlacklistRepository;
+
+    private final Cache<String, Boolean> confirmed = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    private volatile BloomFilter filter;
+    private final AtomicInteger entries = new AtomicInteger();
+    // Written under the monitor, read by refresh()
+    private int capacity;
+    private LocalDateTime polledUpTo;
+
+    public boolean isRevoked(String tokenId, String token) {
+        String key = tokenId != null ? tokenId : token;
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(key)) {
+            return false;
+        }
+        return confirmed.get(key, ignored -> tokenId != null
+                ? tokenBlacklistRepository.existsByJti(tokenId)
+                : tokenBlacklistRepository.existsByToken(token));
+    }
+
+    /**
+     * Records a revocation made by this instance; call once its row is saved.
+     */
+    public void revoked(String tokenId, String token) {
+        String key = tokenId != null ? tokenId : token;
+        add(key);
+        confirmed.put(key, Boolean.TRUE);
+    }
+
+    /**
+     * Adds rows written since the last poll, first rebuilding the filter if there is none yet or
+     * it has outgrown its sizing.
+     */
+    public synchronized void refresh() {
+        if (filter == null || entries.get() > capacity) {
+            rebuild();
+        } else {
+            poll();
+        }
+    }
+
+    /**
+     * Replaces the filter with one built from the unexpired rows, dropping purged revocations and
+     * resizing for the current row count.
+     */
+    public synchronized void rebuild() {
+        LocalDateTime started = LocalDateTime.now();
+        List<String> keys = tokenBlacklistRepository.findActiveRevocationKeys(new Date());
+        capacity = Math.max(MIN_CAPACITY, keys.size() * 2);
+        BloomFilter rebuilt = BloomFilter.create(capacity, FALSE_POSITIVE_RATE);
+        keys.forEach(rebuilt::put);
+        entries.set(keys.size());
+        filter = rebuilt;
+        polledUpTo = started;
+        log.info("Rebuilt token revocation index with {} entries", keys.size());
+        // Rows saved while the snapshot was being read
+        poll();
+    }
+
+    private void poll() {
+        LocalDateTime now = LocalDateTime.now();
+        for (String key : tokenBlacklistRepository.findRevocationKeysSince(polledUpTo.minus(POLL_OVERLAP))) {
+            add(key);
+            confirmed.invalidate(key);
+        }
+        polledUpTo = now;
+    }
+
+    private void add(String key) {
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(key);
+            entries.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.abiodun.expaq.security;
+
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Current token version per user. A token is only honoured while the version it was issued
+ * with is still current, so bumping the version revokes all of a user's tokens at once.
+ * <p>
+ * Any {@link UserAccessChangedEvent} bumps the version inside the publishing transaction.
+ * The local entry is dropped after commit. Other instances notice within
+ * {@code security.token-version.refresh-ms}: entries are reloaded in the background, so
+ * requests keep being served from memory meanwhile.
+ */
+@Component
+public class TokenVersionCache {
+
+    // Cached for users that no longer exist, so their tokens never match
+    private static final int MISSING_USER = -1;
+
+    private final UserRepository userRepository;
+    private final LoadingCache<UUID, Integer> versions;
+
+    public TokenVersionCache(UserRepository userRepository,
+                             @Value("${security.token-version.refresh-ms:30000}") long refreshMillis) {
+        this.userRepository = userRepository;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .refreshAfterWrite(Duration.ofMillis(refreshMillis))
+                .expireAfterAccess(Duration.ofHours(1))
+                .build(userId -> userRepository.findTokenVersionById(userId).orElse(MISSING_USER));
+    }
+
+    public boolean isCurrent(UUID userId, int tokenVersion) {
+        return versions.get(userId) == tokenVersion;
+    }
+
+    @EventListener
+    public void revokeTokens(UserAccessChangedEvent event) {
+        userRepository.incrementTokenVersion(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAccessChanged(UserAccessChangedEvent event) {
+        versions.invalidate(event.getUserId());
+    }
+}
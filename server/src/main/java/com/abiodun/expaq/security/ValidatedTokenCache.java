@@ -0,0 +1,108 @@
+package com.abiodun.expaq.security;
+
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.event.UserProfileChangedEvent;
+import com.abiodun.expaq.model.ExpaqUserDetails;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens that have already passed signature, expiry, blacklist and user checks, keyed by a
+ * SHA-256 of the token so raw tokens are not kept in memory. An entry lives until its token
+ * expires, capped at {@code security.token-cache.max-ttl-ms} so changes made on other instances
+ * are picked up eventually. Local role, status and credential changes evict the user's entries
+ * through {@link UserAccessChangedEvent}, and profile edits through {@link UserProfileChangedEvent},
+ * so cached user details are never older than the last local change.
+ */
+@Component
+public class ValidatedTokenCache {
+
+    private static final long MAX_TOKENS = 100_000;
+
+    private final Cache<String, ValidatedToken> tokens;
+
+    public ValidatedTokenCache(@Value("${security.token-cache.max-ttl-ms:900000}") long maxTtlMillis) {
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(MAX_TOKENS)
+                .expireAfter(new Expiry<String, ValidatedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, ValidatedToken token, long currentTime) {
+                        long untilExpiry = token.getClaims().getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(untilExpiry, maxTtlMillis)));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, ValidatedToken token, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, token, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, ValidatedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public ValidatedToken get(String token) {
+        return tokens.getIfPresent(hash(token));
+    }
+
+    public ValidatedToken put(String token, Claims claims, ExpaqUserDetails userDetails) {
+        // Resolve authorities now so cached hits never touch the user's lazy role collection
+        ValidatedToken validated = new ValidatedToken(claims, userDetails, List.copyOf(userDetails.getAuthorities()));
+        tokens.put(hash(token), validated);
+        return validated;
+    }
+
+    public void invalidateToken(String token) {
+        tokens.invalidate(hash(token));
+    }
+
+    public void invalidateUser(UUID userId) {
+        tokens.asMap().values().removeIf(validated -> userId.equals(validated.getUserDetails().getId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserAccessChanged(UserAccessChangedEvent event) {
+        invalidateUser(event.getUserId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        invalidateUser(event.getUserId());
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ValidatedToken {
+        private final Claims claims;
+        private final ExpaqUserDetails userDetails;
+        private final List<GrantedAuthority> authorities;
+    }
+}
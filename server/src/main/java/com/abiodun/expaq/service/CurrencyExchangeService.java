@@ -1,52 +1,142 @@
 package com.abiodun.expaq.service;
 
+import com.abiodun.expaq.service.exchange.ExchangeRateProvider;
+import com.abiodun.expaq.service.exchange.ExchangeRateTable;
+import com.abiodun.expaq.service.exchange.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Currency conversion from a cached rate table. The table is refreshed on a schedule; a lookup
+ * that finds it older than {@code exchange.rates.refresh-after-ms} still uses it but starts a
+ * background refresh, and only a missing or very stale table ({@code exchange.rates.max-stale-ms})
+ * makes callers wait. Concurrent refreshes share one in-flight fetch.
+ */
+@Slf4j
 @Service
 public class CurrencyExchangeService {
 
-    @Value("${exchange.api.key:}")
-    private String exchangeApiKey;
+    private final ExchangeRateProvider rateProvider;
+    private final Executor refreshExecutor;
 
-    private final WebClient.Builder webClientBuilder;
+    @Value("${exchange.rates.refresh-after-ms:3600000}")
+    private long refreshAfterMillis;
 
-    public CurrencyExchangeService(WebClient.Builder webClientBuilder) {
-        this.webClientBuilder = webClientBuilder;
+    @Value("${exchange.rates.max-stale-ms:86400000}")
+    private long maxStaleMillis;
+
+    private volatile ExchangeRateTable table;
+    private final AtomicReference<CompletableFuture<ExchangeRateTable>> inFlight = new AtomicReference<>();
+
+    public CurrencyExchangeService(ExchangeRateProvider rateProvider, @Qualifier("taskExecutor") Executor refreshExecutor) {
+        this.rateProvider = rateProvider;
+        this.refreshExecutor = refreshExecutor;
     }
 
     public BigDecimal convertToNaira(BigDecimal amount, String fromCurrency) {
         if ("NGN".equals(fromCurrency)) {
             return amount;
         }
+        return convert(new Money(amount, fromCurrency), "NGN").getAmount();
+    }
+
+    public Money convert(Money money, String toCurrency) {
+        return convert(currentTable(), money, toCurrency);
+    }
+
+    /**
+     * Converts every amount with the same rate table, so a batch is internally consistent.
+     */
+    public List<Money> convert(List<Money> amounts, String toCurrency) {
+        ExchangeRateTable rates = currentTable();
+        List<Money> converted = new ArrayList<>(amounts.size());
+        for (Money money : amounts) {
+            converted.add(convert(rates, money, toCurrency));
+        }
+        return converted;
+    }
+
+    public BigDecimal getRate(String fromCurrency, String toCurrency) {
+        return requireRate(currentTable(), fromCurrency, toCurrency);
+    }
+
+    /**
+     * Fetches a fresh table, joining a fetch that is already running. Called by the scheduler.
+     */
+    public void refresh() {
+        refreshAsync().join();
+    }
+
+    private static Money convert(ExchangeRateTable rates, Money money, String toCurrency) {
+        if (money.getCurrency().equals(toCurrency)) {
+            return money;
+        }
+        BigDecimal rate = requireRate(rates, money.getCurrency(), toCurrency);
+        return new Money(money.getAmount().multiply(rate).setScale(2, RoundingMode.HALF_UP), toCurrency);
+    }
 
-        WebClient client = webClientBuilder.baseUrl("https://api.exchangerate-api.com/v4/latest")
-                .build();
+    private static BigDecimal requireRate(ExchangeRateTable rates, String fromCurrency, String toCurrency) {
+        BigDecimal rate = rates.rate(fromCurrency, toCurrency);
+        if (rate == null) {
+            throw new RuntimeException("No exchange rate from " + fromCurrency + " to " + toCurrency);
+        }
+        return rate;
+    }
 
+    private ExchangeRateTable currentTable() {
+        ExchangeRateTable current = table;
+        if (current != null) {
+            long age = System.currentTimeMillis() - current.getFetchedAt().toEpochMilli();
+            if (age < refreshAfterMillis) {
+                return current;
+            }
+            if (age < maxStaleMillis) {
+                refreshAsync();
+                return current;
+            }
+        }
         try {
-            Map response = client.get()
-                    .uri("/" + fromCurrency)
-                    .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-
-            if (response != null && response.containsKey("rates")) {
-                Map<String, Double> rates = (Map<String, Double>) response.get("rates");
-                Double ngnRate = rates.get("NGN");
-
-                if (ngnRate != null) {
-                    return amount.multiply(BigDecimal.valueOf(ngnRate))
-                            .setScale(2, RoundingMode.HALF_UP);
+            return refreshAsync().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Currency conversion failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private CompletableFuture<ExchangeRateTable> refreshAsync() {
+        CompletableFuture<ExchangeRateTable> fetch = new CompletableFuture<>();
+        CompletableFuture<ExchangeRateTable> running = inFlight.compareAndExchange(null, fetch);
+        if (running != null) {
+            return running;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    ExchangeRateTable fetched = rateProvider.fetchRates();
+                    table = fetched;
+                    inFlight.set(null);
+                    fetch.complete(fetched);
+                } catch (RuntimeException e) {
+                    log.warn("Exchange rate refresh failed: {}", e.getMessage());
+                    inFlight.set(null);
+                    fetch.completeExceptionally(e);
                 }
-            }
-            throw new RuntimeException("Failed to get exchange rate");
-        } catch (Exception e) {
-            throw new RuntimeException("Currency conversion failed: " + e.getMessage(), e);
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.set(null);
+            fetch.completeExceptionally(e);
         }
+        return fetch;
     }
 }
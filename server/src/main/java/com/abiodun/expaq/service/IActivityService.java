@@ -1,10 +1,14 @@
 package com.abiodun.expaq.service;
 
+import com.abiodun.expaq.dto.ActivityClusterDTO;
 import com.abiodun.expaq.dto.ActivityDTO;
+import com.abiodun.expaq.dto.ActivityScrollResponse;
+import com.abiodun.expaq.dto.ActivitySearchFacets;
 import com.abiodun.expaq.dto.CreateActivityRequest;
 import com.abiodun.expaq.dto.LocationStatsDTO;
 import com.abiodun.expaq.dto.UpdateActivityRequest;
 import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.service.search.PriceBand;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -18,6 +22,18 @@ import java.util.UUID;
 
 public interface IActivityService {
 
+    /**
+     * How a listing page reports its total. {@code EXACT} runs a SQL count, {@code ESTIMATED}
+     * substitutes the planner's row estimate for the catalog when there is no filter (a null
+     * specification) and counts filtered listings exactly, and {@code NONE} only tells whether
+     * another page exists.
+     */
+    enum CountMode {
+        EXACT,
+        ESTIMATED,
+        NONE
+    }
+
     ActivityDTO createActivity(CreateActivityRequest request, UUID hostId);
 
     ActivityDTO updateActivity(UUID activityId, UpdateActivityRequest request, UUID hostId);
@@ -28,12 +44,26 @@ public interface IActivityService {
 
     Page<ActivityDTO> getAllActivities(Specification<Activity> spec, String sortBy, Pageable pageable);
 
+    Page<ActivityDTO> getAllActivities(Specification<Activity> spec, String sortBy, Pageable pageable, CountMode countMode);
+
+    ActivityScrollResponse scrollActivities(Specification<Activity> spec, String sortBy, String cursor, int size);
+
     ActivityDTO getActivity(UUID activityId);
 
     Page<ActivityDTO> searchActivities(String query, Pageable pageable);
 
+    Page<ActivityDTO> searchActivities(String query, UUID activityTypeId, UUID cityId, PriceBand priceBand, Pageable pageable);
+
+    ActivitySearchFacets getSearchFacets(String query);
+
     List<ActivityDTO> findNearbyActivities(double latitude, double longitude, double distance);
 
+    Page<ActivityDTO> findNearestActivities(double latitude, double longitude, Double radiusKm, UUID activityTypeId,
+                                            Pageable pageable);
+
+    List<ActivityClusterDTO> getActivityClusters(double minLatitude, double minLongitude,
+                                                 double maxLatitude, double maxLongitude, int zoom);
+
 //    List<ActivityDTO> findNearbyActivitiesByCategory(ActivityCategory category, double latitude, double longitude, double distance);
 
     Page<ActivityDTO> findFeaturedActivities(Pageable pageable);
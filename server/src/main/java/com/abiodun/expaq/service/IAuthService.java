@@ -32,7 +32,7 @@ public interface IAuthService {
 
     HostStatisticsDTO getHostStatistics(UUID hostId);
 
-    UserDTO becomeHost(UUID userId);
+    AuthResponse becomeHost(UUID userId);
 
     void updateUserPassword(UUID userId, UpdatePasswordRequest request);
     
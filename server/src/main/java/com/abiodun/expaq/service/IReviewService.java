@@ -4,7 +4,9 @@ import com.abiodun.expaq.dto.*;
 import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface IReviewService {
@@ -17,6 +19,7 @@ public interface IReviewService {
     ReviewPageResponse getReviewsByHostId(UUID hostId, Pageable pageable);
     ReviewPageResponse searchReviews(ReviewSearchCriteria criteria, Pageable pageable);
     ReviewStatistics getReviewStatistics(UUID activityId);
+    Map<UUID, ReviewStatistics> getReviewStatistics(Collection<UUID> activityIds);
     ReviewStatistics getHostReviewStatistics(UUID hostId);
     void verifyReview(UUID reviewId, UUID adminId);
     void unverifyReview(UUID reviewId, UUID adminId);
@@ -47,7 +47,7 @@ public interface ISubscriptionService {
     void processBilling(UUID subscriptionId);
     
     /**
-     * Process all subscriptions due for billing
+     * Bill due subscriptions for up to one run's time budget; the scheduler continues whatever is left
      */
     Map<String, Object> processAllBilling();
     
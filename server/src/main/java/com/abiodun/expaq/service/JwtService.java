@@ -1,7 +1,9 @@
 package com.abiodun.expaq.service;
 
+import com.abiodun.expaq.model.TokenBlacklist;
 import com.abiodun.expaq.model.User;
 import com.abiodun.expaq.repository.TokenBlacklistRepository;
+import com.abiodun.expaq.security.TokenRevocationIndex;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,9 +14,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.crypto.SecretKey;
 import java.security.Key;
+import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,17 +27,26 @@ public class JwtService {
 
     private static final Logger log = LoggerFactory.getLogger(JwtService.class);
 
+    // Tokens carrying this claim are authorized from their claims alone
+    public static final String TOKEN_VERSION_CLAIM = "tv";
+    public static final String ROLES_CLAIM = "roles";
+
     private final SecretKey key;
+    private final JwtParser parser;
     private final long jwtExpirationInMs;
     private final TokenBlacklistRepository tokenBlacklistRepository;
+    private final TokenRevocationIndex revocationIndex;
 
     public JwtService(
             @Value("${app.jwt.secret}") String jwtSecret,
             @Value("${app.jwt.expiration-in-ms}") long jwtExpirationInMs,
-            TokenBlacklistRepository tokenBlacklistRepository) {
+            TokenBlacklistRepository tokenBlacklistRepository,
+            TokenRevocationIndex revocationIndex) {
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
         this.jwtExpirationInMs = jwtExpirationInMs;
         this.tokenBlacklistRepository = tokenBlacklistRepository;
+        this.revocationIndex = revocationIndex;
     }
 
     public String extractUsername(String token) {
@@ -73,12 +86,14 @@ public class JwtService {
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(user.getId().toString())
                 .claim("email", user.getEmail())
-                .claim("roles", user.getRoles().stream()
+                .claim(ROLES_CLAIM, user.getRoles().stream()
                         .map(role -> "ROLE_" + role.getName())
                         .collect(Collectors.toList()))
                 .claim("username", user.getUsername())
+                .claim(TOKEN_VERSION_CLAIM, user.getTokenVersion())
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(key, SignatureAlgorithm.HS256)
@@ -89,7 +104,7 @@ public class JwtService {
         try {
             final String email = extractEmail(token);
             final boolean isTokenExpired = isTokenExpired(token);
-            final boolean isTokenBlacklisted = isTokenBlacklisted(token);
+            final boolean isTokenBlacklisted = isTokenBlacklisted(token, extractClaim(token, Claims::getId));
             
             boolean isValid = email.equals(userDetails.getUsername()) 
                 && !isTokenExpired 
@@ -109,17 +124,32 @@ public class JwtService {
         }
     }
 
+    /**
+     * Verifies the signature and expiry in a single parse, then checks the blacklist.
+     *
+     * @return the token's claims, or null if the token must not be accepted
+     */
+    public Claims validateAndGetClaims(String token) {
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (isTokenBlacklisted(token, claims.getId())) {
+                log.debug("Token is blacklisted");
+                return null;
+            }
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected token: {}", e.getMessage());
+            return null;
+        }
+    }
+
     public boolean validateToken(String token) {
         try {
-            if (isTokenBlacklisted(token)) {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (isTokenBlacklisted(token, claims.getId())) {
                 log.debug("Token is blacklisted");
                 return false;
             }
-
-            Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             log.error("Error validating token: {}", e.getMessage());
@@ -131,8 +161,31 @@ public class JwtService {
         return extractExpiration(token).before(new Date());
     }
 
-    private boolean isTokenBlacklisted(String token) {
-        return tokenBlacklistRepository.existsByToken(token);
+    /**
+     * Revokes a token until it expires.
+     */
+    public void blacklistToken(String token, UUID userId) {
+        Claims claims = extractAllClaims(token);
+        TokenBlacklist blacklistToken = new TokenBlacklist();
+        blacklistToken.setToken(token);
+        blacklistToken.setJti(claims.getId());
+        blacklistToken.setUserId(userId);
+        blacklistToken.setExpirationDate(claims.getExpiration());
+        blacklistToken.setBlacklistedAt(LocalDateTime.now());
+        tokenBlacklistRepository.save(blacklistToken);
+        revocationIndex.revoked(claims.getId(), token);
+    }
+
+    /**
+     * Revocation check for a token whose claims were already verified. Answered from memory unless
+     * the token is, or collides with, a revoked one.
+     */
+    public boolean isRevoked(String token, Claims claims) {
+        return isTokenBlacklisted(token, claims.getId());
+    }
+
+    private boolean isTokenBlacklisted(String token, String tokenId) {
+        return revocationIndex.isRevoked(tokenId, token);
     }
 
     private Date extractExpiration(String token) {
@@ -148,11 +201,7 @@ public class JwtService {
 //    }
     private Claims extractAllClaims(String token) {
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            return parser.parseClaimsJws(token).getBody();
         } catch (ExpiredJwtException ex) {
             System.out.println("The token is expired" + ex.getMessage() + ex.getClaims());
             return ex.getClaims(); // Still usable for some metadata (e.g., user ID for refresh)
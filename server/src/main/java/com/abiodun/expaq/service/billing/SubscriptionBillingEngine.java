@@ -0,0 +1,539 @@
+package com.abiodun.expaq.service.billing;
+
+import com.abiodun.expaq.event.SubscriptionChangedEvent;
+import com.abiodun.expaq.model.Subscription;
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import com.abiodun.expaq.service.EmailService;
+import com.abiodun.expaq.service.marketing.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bills due subscriptions in parallel. A run fixes its cutoff when it starts and walks the due
+ * subscriptions by keyset over {@code (next_billing_date, id)}, one chunk at a time. Each chunk is billed
+ * on a fixed worker pool, with charges paced by a token bucket per provider, and the run's checkpoint in
+ * {@code subscription_billing_runs} moves past the chunk once all of it is done. A run that dies is
+ * picked up from its checkpoint by the next run once its lease has lapsed; the run it was taken from
+ * notices at its next checkpoint and stops. A partial unique index allows only one RUNNING run at a time.
+ * A call stops after the chunk that passes {@code subscriptions.billing.max-run-ms} and gives up its lease,
+ * so the scheduler's next call picks the run up from its checkpoint on whichever instance gets there first.
+ * <p>
+ * Every charge first claims an idempotency key for the subscription's billing cycle in
+ * {@code subscription_billing_attempts}, with a lease of its own. A cycle that already has an outcome, or
+ * whose key is held by a live claim, is skipped. A PENDING key whose claim has lapsed is taken over by a
+ * conditional update, so only one caller retries the interrupted charge, under the same key so the
+ * provider can deduplicate it. Only the current claim may record the outcome. Chunk duration
+ * and failures are published as {@code subscriptions.billing.chunk} and
+ * {@code subscriptions.billing.chunk.failures}, and charges by provider and outcome as
+ * {@code subscriptions.billing.charges}.
+ */
+@Service
+@Slf4j
+public class SubscriptionBillingEngine {
+
+    private static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final UUID KEYSET_START_ID = new UUID(0, 0);
+    private static final long LEASE_MINUTES = 10;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final String NO_PROVIDER = "none";
+    private static final long SCHEMA_LOCK_KEY = 0x4249_4C4C_524EL;
+
+    private static final String DUE_COLUMNS = "id, next_billing_date, stripe_subscription_id, paystack_subscription_code";
+    private static final String COUNT_DUE_SQL = "SELECT COUNT(*) FROM subscriptions WHERE status = 'ACTIVE'"
+            + " AND auto_renew = true AND next_billing_date <= ? AND (next_billing_date, id) > (?, ?)";
+    private static final String DUE_CHUNK_SQL = "SELECT " + DUE_COLUMNS + " FROM subscriptions"
+            + " WHERE status = 'ACTIVE' AND auto_renew = true AND next_billing_date <= ?"
+            + " AND (next_billing_date, id) > (?, ?) ORDER BY next_billing_date, id LIMIT ?";
+    private static final String ANY_DUE_SQL = "SELECT EXISTS (SELECT 1 FROM subscriptions WHERE status = 'ACTIVE'"
+            + " AND auto_renew = true AND next_billing_date <= ?)";
+    private static final String ELIGIBLE_SQL = "SELECT " + DUE_COLUMNS + " FROM subscriptions"
+            + " WHERE id = ? AND status = 'ACTIVE' AND auto_renew = true";
+    // Takes over a run whose owner stopped renewing its lease
+    private static final String RESUME_RUN_SQL = "UPDATE subscription_billing_runs SET lease_owner = ?,"
+            + " lease_expires_at = ?, updated_at = ?"
+            + " WHERE id = (SELECT id FROM subscription_billing_runs WHERE status = 'RUNNING' AND lease_expires_at < ?"
+            + " ORDER BY started_at LIMIT 1 FOR UPDATE SKIP LOCKED)"
+            + " RETURNING id, cutoff, cursor_billing_date, cursor_subscription_id";
+    // The NOT EXISTS skips the insert cheaply; the partial unique index settles concurrent starts
+    private static final String START_RUN_SQL = "INSERT INTO subscription_billing_runs (id, status, cutoff, processed,"
+            + " succeeded, failed, skipped, lease_owner, lease_expires_at, started_at, updated_at)"
+            + " SELECT ?, 'RUNNING', ?, 0, 0, 0, 0, ?, ?, ?, ?"
+            + " WHERE NOT EXISTS (SELECT 1 FROM subscription_billing_runs WHERE status = 'RUNNING')"
+            + " ON CONFLICT DO NOTHING";
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+    private static final String CREATE_RUNNING_INDEX_SQL = "CREATE UNIQUE INDEX IF NOT EXISTS"
+            + " ux_subscription_billing_runs_running ON subscription_billing_runs (status) WHERE status = 'RUNNING'";
+    private static final String CHECKPOINT_SQL = "UPDATE subscription_billing_runs SET cursor_billing_date = ?,"
+            + " cursor_subscription_id = ?, processed = processed + ?, succeeded = succeeded + ?, failed = failed + ?,"
+            + " skipped = skipped + ?, lease_expires_at = ?, updated_at = ? WHERE id = ? AND lease_owner = ?";
+    // Hands a paused run straight to the next call instead of waiting for the lease to lapse
+    private static final String RELEASE_LEASE_SQL = "UPDATE subscription_billing_runs SET lease_expires_at = ?,"
+            + " updated_at = ? WHERE id = ? AND lease_owner = ?";
+    private static final String COMPLETE_RUN_SQL = "UPDATE subscription_billing_runs SET status = 'COMPLETED',"
+            + " completed_at = ?, updated_at = ? WHERE id = ? AND lease_owner = ?";
+    private static final String RUN_TOTALS_SQL = "SELECT processed, succeeded, failed, skipped"
+            + " FROM subscription_billing_runs WHERE id = ?";
+    private static final String CLAIM_KEY_SQL = "INSERT INTO subscription_billing_attempts (idempotency_key,"
+            + " subscription_id, run_id, provider, outcome, claimed_by, claimed_until, created_at)"
+            + " VALUES (?, ?, ?, ?, 'PENDING', ?, ?, ?) ON CONFLICT (idempotency_key) DO NOTHING";
+    // Keys claimed before claims had leases have no claimed_until and are treated as lapsed
+    private static final String TAKE_OVER_KEY_SQL = "UPDATE subscription_billing_attempts SET run_id = ?,"
+            + " claimed_by = ?, claimed_until = ? WHERE idempotency_key = ? AND outcome = 'PENDING'"
+            + " AND (claimed_until IS NULL OR claimed_until < ?)";
+    private static final String RECORD_OUTCOME_SQL = "UPDATE subscription_billing_attempts SET outcome = ?,"
+            + " error_message = ?, completed_at = ? WHERE idempotency_key = ? AND claimed_by = ?";
+
+    private static final RowMapper<DueSubscription> DUE_SUBSCRIPTION = (rs, rowNum) -> new DueSubscription(
+            rs.getObject("id", UUID.class),
+            rs.getTimestamp("next_billing_date").toLocalDateTime(),
+            providerOf(rs.getString("stripe_subscription_id"), rs.getString("paystack_subscription_code")));
+
+    // Returned by acquireRun() when there is no run to resume and nothing is due
+    private static final Checkpoint NOTHING_DUE = new Checkpoint(null, null, null, null, null, false);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SubscriptionRepository subscriptionRepository;
+    private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final int chunkSize;
+    private final long maxRunNanos;
+    private final ExecutorService workers;
+    private final Map<String, TokenBucket> providerBuckets = new HashMap<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean schemaReady;
+    private final Timer chunkTimer;
+    private final DistributionSummary chunkFailures;
+
+    public SubscriptionBillingEngine(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     SubscriptionRepository subscriptionRepository,
+                                     EmailService emailService,
+                                     ApplicationEventPublisher eventPublisher,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${subscriptions.billing.workers:8}") int workerThreads,
+                                     @Value("${subscriptions.billing.chunk-size:200}") int chunkSize,
+                                     @Value("${subscriptions.billing.stripe.rate-per-second:25}") double stripeRatePerSecond,
+                                     @Value("${subscriptions.billing.paystack.rate-per-second:10}") double paystackRatePerSecond,
+                                     @Value("${subscriptions.billing.max-run-ms:30000}") long maxRunMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.subscriptionRepository = subscriptionRepository;
+        this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.chunkSize = chunkSize;
+        this.maxRunNanos = TimeUnit.MILLISECONDS.toNanos(maxRunMillis);
+        long now = System.nanoTime();
+        // Burst of one second's worth, so a chunk start does not flood the provider
+        this.providerBuckets.put("stripe", new TokenBucket(stripeRatePerSecond, (int) Math.ceil(stripeRatePerSecond), now));
+        this.providerBuckets.put("paystack", new TokenBucket(paystackRatePerSecond, (int) Math.ceil(paystackRatePerSecond), now));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "billing-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.chunkTimer = Timer.builder("subscriptions.billing.chunk")
+                .description("Time to bill one chunk of due subscriptions")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.chunkFailures = DistributionSummary.builder("subscriptions.billing.chunk.failures")
+                .description("Failed charges per billing chunk")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resumes a paused or abandoned run if there is one, otherwise starts a run for everything due now if
+     * anything is, and bills until no due subscription is left or the call's time budget is used up.
+     *
+     * @return the run's id and totals so far, or only a zero {@code totalDue} if nothing was due
+     * @throws IllegalStateException if a run is already in progress here or on another instance
+     */
+    public Map<String, Object> runDueBilling() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A billing run is already in progress");
+        }
+        try {
+            Checkpoint checkpoint = acquireRun();
+            if (checkpoint == NOTHING_DUE) {
+                Map<String, Object> result = new HashMap<>();
+                result.put("completed", true);
+                result.put("totalDue", 0L);
+                return result;
+            }
+            if (checkpoint == null) {
+                throw new IllegalStateException("A billing run is already in progress on another instance");
+            }
+            long totalDue = jdbcTemplate.queryForObject(COUNT_DUE_SQL, Long.class,
+                    Timestamp.valueOf(checkpoint.cutoff), Timestamp.valueOf(checkpoint.cursorBillingDate),
+                    checkpoint.cursorSubscriptionId);
+            log.info("{} billing run {} with {} subscriptions due by {}", checkpoint.resumed ? "Resuming" : "Starting",
+                    checkpoint.runId, totalDue, checkpoint.cutoff);
+
+            boolean finished = billChunks(checkpoint);
+            LocalDateTime now = LocalDateTime.now();
+            if (finished && jdbcTemplate.update(COMPLETE_RUN_SQL, Timestamp.valueOf(now), Timestamp.valueOf(now),
+                    checkpoint.runId, checkpoint.owner) == 0) {
+                log.warn("Billing run {} was taken over before it could complete", checkpoint.runId);
+                finished = false;
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("runId", checkpoint.runId);
+            result.put("resumed", checkpoint.resumed);
+            result.put("completed", finished);
+            result.put("totalDue", totalDue);
+            jdbcTemplate.query(RUN_TOTALS_SQL, rs -> {
+                result.put("processed", rs.getLong("processed"));
+                result.put("successful", rs.getLong("succeeded"));
+                result.put("failed", rs.getLong("failed"));
+                result.put("skipped", rs.getLong("skipped"));
+            }, checkpoint.runId);
+            log.info("Billing run {} {}: {}", checkpoint.runId, finished ? "completed" : "paused or stopped", result);
+            return result;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Bills one subscription for its current cycle if it is active and renews automatically,
+     * under the same idempotency key a billing run would use.
+     */
+    public void billSubscription(UUID subscriptionId) {
+        List<DueSubscription> due = jdbcTemplate.query(ELIGIBLE_SQL, DUE_SUBSCRIPTION, subscriptionId);
+        if (due.isEmpty()) {
+            log.warn("Subscription {} is not eligible for billing", subscriptionId);
+            return;
+        }
+        try {
+            bill(due.get(0), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Creates the index that allows one RUNNING run at a time, from a scheduler thread after startup.
+     * Returns immediately once it exists, or while another instance is creating it.
+     */
+    public void ensureSchema() {
+        if (schemaReady) {
+            return;
+        }
+        // A session lock and the statement it guards need one connection
+        Boolean done = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                ensureSchema(new JdbcTemplate(new SingleConnectionDataSource(connection, true))));
+        schemaReady = Boolean.TRUE.equals(done);
+    }
+
+    private boolean ensureSchema(JdbcTemplate session) {
+        if (!Boolean.TRUE.equals(session.queryForObject(TRY_LOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY))) {
+            log.info("Another instance is creating the single running billing run index");
+            return false;
+        }
+        try {
+            session.execute(CREATE_RUNNING_INDEX_SQL);
+            return true;
+        } catch (RuntimeException e) {
+            // Fails while more than one run is RUNNING; starts then rely on the NOT EXISTS check alone
+            log.error("Could not create the single running billing run index", e);
+            return false;
+        } finally {
+            session.queryForObject(UNLOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY);
+        }
+    }
+
+    private Checkpoint acquireRun() {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp leaseUntil = Timestamp.valueOf(now.plusMinutes(LEASE_MINUTES));
+        UUID owner = UUID.randomUUID();
+        List<Checkpoint> abandoned = jdbcTemplate.query(RESUME_RUN_SQL, (rs, rowNum) -> {
+            Timestamp cursorDate = rs.getTimestamp("cursor_billing_date");
+            UUID cursorId = rs.getObject("cursor_subscription_id", UUID.class);
+            return new Checkpoint(rs.getObject("id", UUID.class), rs.getTimestamp("cutoff").toLocalDateTime(),
+                    cursorDate != null ? cursorDate.toLocalDateTime() : KEYSET_START,
+                    cursorId != null ? cursorId : KEYSET_START_ID, owner, true);
+        }, owner, leaseUntil, Timestamp.valueOf(now), Timestamp.valueOf(now));
+        if (!abandoned.isEmpty()) {
+            return abandoned.get(0);
+        }
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(ANY_DUE_SQL, Boolean.class, Timestamp.valueOf(now)))) {
+            return NOTHING_DUE;
+        }
+        UUID runId = UUID.randomUUID();
+        int started = jdbcTemplate.update(START_RUN_SQL, runId, Timestamp.valueOf(now), owner, leaseUntil,
+                Timestamp.valueOf(now), Timestamp.valueOf(now));
+        return started == 0 ? null : new Checkpoint(runId, now, KEYSET_START, KEYSET_START_ID, owner, false);
+    }
+
+    /**
+     * @return true once no due subscription is left, false if the run was paused, interrupted or taken over
+     */
+    private boolean billChunks(Checkpoint checkpoint) {
+        long runStarted = System.nanoTime();
+        LocalDateTime cursorDate = checkpoint.cursorBillingDate;
+        UUID cursorId = checkpoint.cursorSubscriptionId;
+        while (true) {
+            List<DueSubscription> chunk = jdbcTemplate.query(DUE_CHUNK_SQL, DUE_SUBSCRIPTION,
+                    Timestamp.valueOf(checkpoint.cutoff), Timestamp.valueOf(cursorDate), cursorId, chunkSize);
+            if (chunk.isEmpty()) {
+                return true;
+            }
+
+            long started = System.nanoTime();
+            Map<Outcome, Integer> counts = new EnumMap<>(Outcome.class);
+            List<Callable<Outcome>> tasks = new ArrayList<>(chunk.size());
+            for (DueSubscription due : chunk) {
+                tasks.add(() -> billSafely(due, checkpoint.runId));
+            }
+            try {
+                for (Future<Outcome> result : workers.invokeAll(tasks)) {
+                    counts.merge(result.get(), 1, Integer::sum);
+                }
+            } catch (InterruptedException e) {
+                // The checkpoint still points before this chunk; the next run redoes it under the same keys
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // billSafely() handles its own failures
+                log.error("Billing worker failed unexpectedly", e.getCause());
+                return false;
+            }
+
+            DueSubscription last = chunk.get(chunk.size() - 1);
+            cursorDate = last.nextBillingDate;
+            cursorId = last.id;
+            int succeeded = counts.getOrDefault(Outcome.SUCCEEDED, 0);
+            int failed = counts.getOrDefault(Outcome.FAILED, 0);
+            int skipped = counts.getOrDefault(Outcome.SKIPPED, 0);
+            LocalDateTime now = LocalDateTime.now();
+            int renewed = jdbcTemplate.update(CHECKPOINT_SQL, Timestamp.valueOf(cursorDate), cursorId, chunk.size(),
+                    succeeded, failed, skipped, Timestamp.valueOf(now.plusMinutes(LEASE_MINUTES)), Timestamp.valueOf(now),
+                    checkpoint.runId, checkpoint.owner);
+            if (renewed == 0) {
+                // Our lease lapsed and another instance resumed the run; its keys keep the charges single
+                log.warn("Billing run {} was taken over by another instance; stopping", checkpoint.runId);
+                return false;
+            }
+
+            long elapsed = System.nanoTime() - started;
+            chunkTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            chunkFailures.record(failed);
+            log.info("Billing run {}: chunk of {} in {} ms ({} per second), {} succeeded, {} failed, {} skipped",
+                    checkpoint.runId, chunk.size(), TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    String.format("%.1f", chunk.size() * 1e9 / Math.max(elapsed, 1)), succeeded, failed, skipped);
+
+            if (System.nanoTime() - runStarted >= maxRunNanos) {
+                LocalDateTime pausedAt = LocalDateTime.now();
+                jdbcTemplate.update(RELEASE_LEASE_SQL, Timestamp.valueOf(pausedAt), Timestamp.valueOf(pausedAt),
+                        checkpoint.runId, checkpoint.owner);
+                log.info("Billing run {} paused at its time budget; the next call continues it", checkpoint.runId);
+                return false;
+            }
+        }
+    }
+
+    private Outcome billSafely(DueSubscription due, UUID runId) {
+        try {
+            Subscription.SubscriptionStatus status = bill(due, runId);
+            if (status == null) {
+                return Outcome.SKIPPED;
+            }
+            return status == Subscription.SubscriptionStatus.ACTIVE ? Outcome.SUCCEEDED : Outcome.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Outcome.SKIPPED;
+        } catch (RuntimeException e) {
+            // The key stays PENDING, so the charge is retried under it once its claim lapses
+            log.error("Could not bill subscription {}", due.id, e);
+            charges(due.provider, "error").increment();
+            return Outcome.FAILED;
+        }
+    }
+
+    /**
+     * @return the subscription's status after billing, or null if nothing was billed because the cycle
+     * already has an outcome or a live claim, or the subscription moved on while the charge was in flight
+     */
+    private Subscription.SubscriptionStatus bill(DueSubscription due, UUID runId) throws InterruptedException {
+        String idempotencyKey = due.id + ":" + due.nextBillingDate;
+        UUID claim = UUID.randomUUID();
+        LocalDateTime claimedAt = LocalDateTime.now();
+        Timestamp claimedUntil = Timestamp.valueOf(claimedAt.plusMinutes(LEASE_MINUTES));
+        int claimed = jdbcTemplate.update(CLAIM_KEY_SQL, idempotencyKey, due.id, runId, due.provider, claim,
+                claimedUntil, Timestamp.valueOf(claimedAt));
+        if (claimed == 0 && jdbcTemplate.update(TAKE_OVER_KEY_SQL, runId, claim, claimedUntil, idempotencyKey,
+                Timestamp.valueOf(claimedAt)) == 0) {
+            charges(due.provider, "duplicate").increment();
+            return null;
+        }
+        TokenBucket bucket = providerBuckets.get(due.provider);
+        if (bucket != null) {
+            bucket.acquire(1);
+        }
+
+        boolean paid;
+        String error = null;
+        try {
+            paid = charge(due, idempotencyKey);
+        } catch (RuntimeException e) {
+            log.error("Error charging subscription: {}", due.id, e);
+            paid = false;
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        boolean success = paid;
+        String errorMessage = error == null || error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+
+        BillingResult result = transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (jdbcTemplate.update(RECORD_OUTCOME_SQL, success ? "SUCCEEDED" : "FAILED", errorMessage,
+                    Timestamp.valueOf(now), idempotencyKey, claim) == 0) {
+                // The claim lapsed mid-charge and was taken over; the new owner settles the cycle
+                log.warn("Lost the billing claim on subscription {}; leaving it to the new owner", due.id);
+                return null;
+            }
+            Subscription subscription = subscriptionRepository.findById(due.id).orElse(null);
+            if (subscription == null || subscription.getStatus() != Subscription.SubscriptionStatus.ACTIVE
+                    || !due.nextBillingDate.equals(subscription.getNextBillingDate())) {
+                log.warn("Subscription {} changed while being billed; leaving it as it is", due.id);
+                return null;
+            }
+            if (success) {
+                subscription.renewSubscription();
+            } else {
+                subscription.markPastDue();
+            }
+            subscriptionRepository.save(subscription);
+            if (!success) {
+                eventPublisher.publishEvent(new SubscriptionChangedEvent(subscription.getUser().getId()));
+            }
+            return new BillingResult(subscription, subscription.getUser().getEmail());
+        });
+        charges(due.provider, success ? "succeeded" : "failed").increment();
+        if (result == null) {
+            return null;
+        }
+
+        // After commit, so a mail failure cannot undo the billing
+        try {
+            if (success) {
+                emailService.sendBillingSuccessEmail(result.email, result.subscription);
+            } else {
+                log.warn("Payment failed for subscription: {}", due.id);
+                emailService.sendPaymentFailureEmail(result.email, result.subscription);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not send billing email for subscription {}", due.id, e);
+        }
+        return result.subscription.getStatus();
+    }
+
+    private boolean charge(DueSubscription due, String idempotencyKey) {
+        // In a real implementation this would charge the payment method through the subscription's
+        // provider, passing idempotencyKey so a retried charge is not taken twice.
+        // Simulate payment success/failure (90% success rate)
+        return Math.random() > 0.1;
+    }
+
+    private Counter charges(String provider, String outcome) {
+        return Counter.builder("subscriptions.billing.charges")
+                .description("Subscription charges, by provider and outcome")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static String providerOf(String stripeSubscriptionId, String paystackSubscriptionCode) {
+        if (stripeSubscriptionId != null) {
+            return "stripe";
+        }
+        return paystackSubscriptionCode != null ? "paystack" : NO_PROVIDER;
+    }
+
+    private enum Outcome {
+        SUCCEEDED,
+        FAILED,
+        SKIPPED
+    }
+
+    private static final class DueSubscription {
+        private final UUID id;
+        private final LocalDateTime nextBillingDate;
+        private final String provider;
+
+        private DueSubscription(UUID id, LocalDateTime nextBillingDate, String provider) {
+            this.id = id;
+            this.nextBillingDate = nextBillingDate;
+            this.provider = provider;
+        }
+    }
+
+    private static final class Checkpoint {
+        private final UUID runId;
+        private final LocalDateTime cutoff;
+        private final LocalDateTime cursorBillingDate;
+        private final UUID cursorSubscriptionId;
+        private final UUID owner;
+        private final boolean resumed;
+
+        private Checkpoint(UUID runId, LocalDateTime cutoff, LocalDateTime cursorBillingDate,
+                           UUID cursorSubscriptionId, UUID owner, boolean resumed) {
+            this.runId = runId;
+            this.cutoff = cutoff;
+            this.cursorBillingDate = cursorBillingDate;
+            this.cursorSubscriptionId = cursorSubscriptionId;
+            this.owner = owner;
+            this.resumed = resumed;
+        }
+    }
+
+    private static final class BillingResult {
+        private final Subscription subscription;
+        private final String email;
+
+        private BillingResult(Subscription subscription, String email) {
+            this.subscription = subscription;
+            this.email = email;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.abiodun.expaq.service.exchange;
+
+/**
+ * Source of exchange rates. Selected with {@code exchange.provider}: {@code http} (default) calls
+ * the exchange rate API, {@code stub} serves fixed rates for offline development and tests.
+ */
+public interface ExchangeRateProvider {
+
+    ExchangeRateTable fetchRates();
+}
@@ -0,0 +1,41 @@
+package com.abiodun.expaq.service.exchange;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the rates from one base currency to every quote currency. Any pair is
+ * derived by crossing through the base, so one fetch serves every conversion.
+ */
+@Getter
+public class ExchangeRateTable {
+
+    private final String base;
+    private final Map<String, BigDecimal> rates;
+    private final Instant fetchedAt;
+
+    public ExchangeRateTable(String base, Map<String, BigDecimal> rates, Instant fetchedAt) {
+        this.base = base;
+        this.rates = Map.copyOf(rates);
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * Units of {@code to} per unit of {@code from}, or null when either currency is unknown.
+     */
+    public BigDecimal rate(String from, String to) {
+        if (from.equals(to)) {
+            return BigDecimal.ONE;
+        }
+        BigDecimal fromRate = from.equals(base) ? BigDecimal.ONE : rates.get(from);
+        BigDecimal toRate = to.equals(base) ? BigDecimal.ONE : rates.get(to);
+        if (fromRate == null || toRate == null || fromRate.signum() == 0) {
+            return null;
+        }
+        return fromRate == BigDecimal.ONE ? toRate : toRate.divide(fromRate, MathContext.DECIMAL64);
+    }
+}
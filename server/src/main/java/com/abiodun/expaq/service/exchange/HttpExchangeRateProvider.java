@@ -0,0 +1,48 @@
+package com.abiodun.expaq.service.exchange;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "exchange.provider", havingValue = "http", matchIfMissing = true)
+public class HttpExchangeRateProvider implements ExchangeRateProvider {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final WebClient client;
+    private final String url;
+
+    public HttpExchangeRateProvider(WebClient.Builder webClientBuilder,
+                                    @Value("${exchange.api.url:https://api.exchangerate-api.com/v4/latest/USD}") String url) {
+        this.client = webClientBuilder.build();
+        this.url = url;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ExchangeRateTable fetchRates() {
+        Map<String, Object> response = client.get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(Map.class)
+                .block(TIMEOUT);
+        if (response == null || !(response.get("rates") instanceof Map<?, ?> rawRates)) {
+            throw new RuntimeException("Exchange rate response has no rates");
+        }
+        Map<String, BigDecimal> rates = new HashMap<>();
+        ((Map<String, Object>) rawRates).forEach((currency, rate) -> {
+            if (rate instanceof Number number) {
+                rates.put(currency, new BigDecimal(number.toString()));
+            }
+        });
+        return new ExchangeRateTable((String) response.getOrDefault("base", "USD"), rates, Instant.now());
+    }
+}
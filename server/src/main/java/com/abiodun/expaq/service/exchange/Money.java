@@ -0,0 +1,20 @@
+package com.abiodun.expaq.service.exchange;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * An amount in an ISO 4217 currency.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class Money {
+    private final BigDecimal amount;
+    private final String currency;
+}
@@ -0,0 +1,32 @@
+package com.abiodun.expaq.service.exchange;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Fixed USD-based rates, so payments can be exercised without network access.
+ */
+@Component
+@ConditionalOnProperty(name = "exchange.provider", havingValue = "stub")
+public class StubExchangeRateProvider implements ExchangeRateProvider {
+
+    static final Map<String, BigDecimal> RATES = Map.of(
+            "NGN", new BigDecimal("1500.00"),
+            "EUR", new BigDecimal("0.92"),
+            "GBP", new BigDecimal("0.79"),
+            "CAD", new BigDecimal("1.36"),
+            "AUD", new BigDecimal("1.52"),
+            "JPY", new BigDecimal("150.00"),
+            "GHS", new BigDecimal("15.50"),
+            "KES", new BigDecimal("129.00"),
+            "ZAR", new BigDecimal("18.20"));
+
+    @Override
+    public ExchangeRateTable fetchRates() {
+        return new ExchangeRateTable("USD", RATES, Instant.now());
+    }
+}
@@ -0,0 +1,21 @@
+package com.abiodun.expaq.service.fraud;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of running every {@link FraudRule} against one attempt: the highest risk seen and,
+ * when that reached {@link FraudRule#BLOCK}, the first rule that blocked.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class FraudAssessment {
+    private final double riskScore;
+    private final String blockingRule;
+
+    public boolean isBlocked() {
+        return blockingRule != null;
+    }
+}
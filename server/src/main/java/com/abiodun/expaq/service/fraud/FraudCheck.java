@@ -0,0 +1,28 @@
+package com.abiodun.expaq.service.fraud;
+
+import com.abiodun.expaq.model.Payment.Currency;
+import com.abiodun.expaq.model.Payment.PaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The facts about a payment attempt that fraud rules may look at. Amounts are kept as
+ * doubles because rules only compare them against thresholds.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class FraudCheck {
+    private final UUID userId;
+    private final double amount;
+    private final PaymentMethod paymentMethod;
+    private final Currency currency;
+    // Null when the attempt did not come from an HTTP request
+    private final String ipAddress;
+    private final LocalDateTime attemptedAt;
+    private final long attemptedAtMillis;
+}
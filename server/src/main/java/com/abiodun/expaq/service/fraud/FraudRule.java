@@ -0,0 +1,24 @@
+package com.abiodun.expaq.service.fraud;
+
+/**
+ * One check run by {@link FraudRuleEngine} before a payment reaches its provider. Any bean
+ * implementing this interface is picked up. Rules run on the request thread, so they must be
+ * cheap and thread-safe.
+ */
+public interface FraudRule {
+
+    /**
+     * Risk at or above this value blocks the payment.
+     */
+    double BLOCK = 1.0;
+
+    /**
+     * Stable name, used in logs and as the {@code rule} tag of the evaluation timer.
+     */
+    String getName();
+
+    /**
+     * @return risk between 0 and {@link #BLOCK}
+     */
+    double evaluate(FraudCheck check);
+}
@@ -0,0 +1,71 @@
+package com.abiodun.expaq.service.fraud;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free event counter over a sliding time window, kept as a ring of fixed-width buckets.
+ * Each slot packs the bucket number in its high bits and the count in its low
+ * {@value #COUNT_BITS} bits, so claiming a stale slot and counting into it is a single CAS.
+ * The window slides one bucket at a time; its resolution is {@code window / buckets}.
+ */
+public final class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final AtomicLongArray slots;
+    private final long bucketMillis;
+
+    public SlidingWindowCounter(long windowMillis, int buckets) {
+        if (buckets < 1 || windowMillis < buckets) {
+            throw new IllegalArgumentException("Window must span at least one millisecond per bucket");
+        }
+        this.slots = new AtomicLongArray(buckets);
+        this.bucketMillis = windowMillis / buckets;
+    }
+
+    /**
+     * Counts one event at {@code nowMillis} and returns the total within the window ending then.
+     */
+    public long incrementAndSum(long nowMillis) {
+        increment(nowMillis);
+        return sum(nowMillis);
+    }
+
+    public void increment(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        int index = (int) (bucket % slots.length());
+        while (true) {
+            long current = slots.get(index);
+            long stamp = current >>> COUNT_BITS;
+            long next;
+            if (stamp == bucket) {
+                if ((current & COUNT_MASK) == COUNT_MASK) {
+                    return; // saturated
+                }
+                next = current + 1;
+            } else if (stamp < bucket) {
+                next = (bucket << COUNT_BITS) | 1;
+            } else {
+                return; // a thread with a later clock already reused this slot
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                return;
+            }
+        }
+    }
+
+    public long sum(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        long oldest = bucket - slots.length() + 1;
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long slot = slots.get(i);
+            long stamp = slot >>> COUNT_BITS;
+            if (stamp >= oldest && stamp <= bucket) {
+                total += slot & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+}
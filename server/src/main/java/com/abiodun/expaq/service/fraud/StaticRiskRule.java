@@ -0,0 +1,29 @@
+package com.abiodun.expaq.service.fraud;
+
+import com.abiodun.expaq.service.impl.FraudDetectionServiceImpl;
+import com.abiodun.expaq.service.impl.UserRiskFeatureStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * The amount, time-of-day, history, method and currency score used for fraud reporting,
+ * applied to the attempt itself. It never blocks on its own.
+ */
+@Component
+@RequiredArgsConstructor
+public class StaticRiskRule implements FraudRule {
+
+    private final UserRiskFeatureStore riskFeatureStore;
+
+    @Override
+    public String getName() {
+        return "static-risk";
+    }
+
+    @Override
+    public double evaluate(FraudCheck check) {
+        UserRiskFeatureStore.UserRiskFeatures features = riskFeatureStore.get(check.getUserId());
+        return FraudDetectionServiceImpl.riskScore(check.getAmount(), check.getAttemptedAt(), check.getPaymentMethod(),
+                check.getCurrency().name(), features.getTotalPayments(), features.getFailedPayments());
+    }
+}
@@ -0,0 +1,51 @@
+package com.abiodun.expaq.service.fraud;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Limits payment attempts per key (user, IP address, ...) within a sliding window. Every
+ * evaluation counts as an attempt, including ones that end up blocked. Risk rises linearly
+ * towards half of {@link #BLOCK} as the limit is approached, and blocks once it is exceeded.
+ */
+public class VelocityRule implements FraudRule {
+
+    private static final int BUCKETS = 12;
+    private static final long MAX_TRACKED_KEYS = 200_000;
+
+    private final String name;
+    private final Function<FraudCheck, Object> key;
+    private final long windowMillis;
+    private final int limit;
+    private final Cache<Object, SlidingWindowCounter> counters;
+
+    public VelocityRule(String name, Function<FraudCheck, Object> key, Duration window, int limit) {
+        this.name = name;
+        this.key = key;
+        this.windowMillis = window.toMillis();
+        this.limit = limit;
+        this.counters = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_KEYS)
+                .expireAfterAccess(window)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public double evaluate(FraudCheck check) {
+        Object value = key.apply(check);
+        if (value == null) {
+            return 0;
+        }
+        long attempts = counters.get(value, ignored -> new SlidingWindowCounter(windowMillis, BUCKETS))
+                .incrementAndSum(check.getAttemptedAtMillis());
+        return attempts > limit ? BLOCK : 0.5 * attempts / limit;
+    }
+}
@@ -0,0 +1,150 @@
+package com.abiodun.expaq.service.geo;
+
+import com.abiodun.expaq.event.ActivityChangedEvent;
+import com.abiodun.expaq.repository.ActivityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Point;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Map pin clusters: active activities aggregated per geohash cell at every precision, kept current
+ * from committed {@link ActivityChangedEvent}s so a map view costs one lookup per visible cell.
+ * A periodic rebuild from the database corrects drift from changes made outside the activity
+ * service; changes that race with it are replayed on the new grid, which is safe because applying
+ * a change is idempotent. The grid is only built by the scheduled job, never on a request thread;
+ * until the first build completes {@link #clusters} returns no clusters.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ActivityClusterIndex {
+
+    public static final int MAX_CLUSTERS = 5_000;
+
+    private final ActivityRepository activityRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private ClusterGrid grid;
+    private final Map<UUID, RecordedChange> recentChanges = new HashMap<>();
+    private long changeSequence;
+
+    /**
+     * Geohash precision whose cells are roughly a map pin apart at a web-map zoom level (0-22).
+     */
+    public static int precisionForZoom(int zoom) {
+        int precision = (int) Math.ceil((zoom + 1) / 2.5);
+        return Math.max(1, Math.min(Geohash.MAX_PRECISION, precision));
+    }
+
+    /**
+     * Clusters for the cells overlapping the box. {@code minLng > maxLng} means the box crosses the antimeridian.
+     * Empty while the grid has not been built yet.
+     */
+    public List<Cluster> clusters(double minLat, double minLng, double maxLat, double maxLng, int zoom) {
+        int precision = precisionForZoom(zoom);
+        int bits = 5 * precision;
+        int lngBits = (bits + 1) / 2;
+        int latBits = bits / 2;
+        long minRow = Geohash.cellIndex(minLat, -90, 180, latBits);
+        long maxRow = Geohash.cellIndex(maxLat, -90, 180, latBits);
+
+        List<double[]> spans = minLng <= maxLng
+                ? List.of(new double[]{minLng, maxLng})
+                : List.of(new double[]{minLng, 180}, new double[]{-180, maxLng});
+        List<Cluster> clusters = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            if (grid == null) {
+                return clusters;
+            }
+            for (double[] span : spans) {
+                long minColumn = Geohash.cellIndex(span[0], -180, 360, lngBits);
+                long maxColumn = Geohash.cellIndex(span[1], -180, 360, lngBits);
+                clusters.addAll(grid.cells(precision, minColumn, maxColumn, minRow, maxRow,
+                        MAX_CLUSTERS - clusters.size()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return clusters;
+    }
+
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return grid != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            RecordedChange change = new RecordedChange(++changeSequence, event);
+            recentChanges.put(event.getActivityId(), change);
+            if (grid != null) {
+                apply(grid, change.event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public synchronized void rebuild() {
+        long startedAt;
+        lock.readLock().lock();
+        try {
+            startedAt = changeSequence;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ClusterGrid rebuilt = new ClusterGrid();
+        for (Object[] row : activityRepository.findActiveLocations()) {
+            Point point = (Point) row[1];
+            rebuilt.put((UUID) row[0], point.getY(), point.getX(), (BigDecimal) row[3]);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Changes recorded before the rebuild began are in what it read; later ones may not be
+            recentChanges.values().removeIf(change -> change.sequence <= startedAt);
+            recentChanges.values().forEach(change -> apply(rebuilt, change.event));
+            grid = rebuilt;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Rebuilt activity cluster grid with {} activities", rebuilt.size());
+    }
+
+    private static void apply(ClusterGrid grid, ActivityChangedEvent event) {
+        if (event.isListed() && event.getLatitude() != null) {
+            grid.put(event.getActivityId(), event.getLatitude(), event.getLongitude(), event.getPrice());
+        } else {
+            grid.remove(event.getActivityId());
+        }
+    }
+
+    private static final class RecordedChange {
+        private final long sequence;
+        private final ActivityChangedEvent event;
+
+        private RecordedChange(long sequence, ActivityChangedEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+    }
+}
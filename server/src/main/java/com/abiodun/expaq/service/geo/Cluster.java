@@ -0,0 +1,22 @@
+package com.abiodun.expaq.service.geo;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * Active activities in one geohash cell: how many, their mean position and the lowest price.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Cluster {
+    private final String geohash;
+    private final int count;
+    private final double latitude;
+    private final double longitude;
+    // Null when no activity in the cell has a price
+    private final BigDecimal minPrice;
+}
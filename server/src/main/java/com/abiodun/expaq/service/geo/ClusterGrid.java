@@ -0,0 +1,163 @@
+package com.abiodun.expaq.service.geo;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Count, coordinate sums and minimum price of the activities in every geohash cell at every
+ * precision up to {@link Geohash#MAX_PRECISION}. Adding or removing an activity touches one cell
+ * per precision; a removed minimum price is recomputed from at most 32 child cells per level,
+ * bottom-up from the finest cells, which keep their full price multiset.
+ * <p>
+ * Not thread-safe; {@link ActivityClusterIndex} guards it.
+ */
+class ClusterGrid {
+
+    private final Map<UUID, Member> members = new HashMap<>();
+    // levels[p] holds the cells of precision p; index 0 is unused
+    @SuppressWarnings("unchecked")
+    private final Map<Long, Cell>[] levels = new Map[Geohash.MAX_PRECISION + 1];
+
+    ClusterGrid() {
+        for (int p = 1; p <= Geohash.MAX_PRECISION; p++) {
+            levels[p] = new HashMap<>();
+        }
+    }
+
+    int size() {
+        return members.size();
+    }
+
+    void put(UUID id, double lat, double lng, BigDecimal price) {
+        remove(id);
+        Member member = new Member(lat, lng, price, Geohash.encode(lat, lng, Geohash.MAX_PRECISION));
+        members.put(id, member);
+        for (int p = 1; p <= Geohash.MAX_PRECISION; p++) {
+            long key = member.code >>> 5 * (Geohash.MAX_PRECISION - p);
+            Cell cell = levels[p].computeIfAbsent(key, k -> new Cell());
+            cell.count++;
+            cell.sumLat += lat;
+            cell.sumLng += lng;
+            if (price != null && (cell.minPrice == null || price.compareTo(cell.minPrice) < 0)) {
+                cell.minPrice = price;
+            }
+            if (p == Geohash.MAX_PRECISION && price != null) {
+                cell.prices().merge(price, 1, Integer::sum);
+            }
+        }
+    }
+
+    void remove(UUID id) {
+        Member member = members.remove(id);
+        if (member == null) {
+            return;
+        }
+        for (int p = Geohash.MAX_PRECISION; p >= 1; p--) {
+            long key = member.code >>> 5 * (Geohash.MAX_PRECISION - p);
+            Cell cell = levels[p].get(key);
+            if (--cell.count == 0) {
+                levels[p].remove(key);
+                continue;
+            }
+            cell.sumLat -= member.lat;
+            cell.sumLng -= member.lng;
+            if (member.price == null) {
+                continue;
+            }
+            if (p == Geohash.MAX_PRECISION) {
+                TreeMap<BigDecimal, Integer> prices = cell.prices();
+                prices.computeIfPresent(member.price, (price, count) -> count > 1 ? count - 1 : null);
+                cell.minPrice = prices.isEmpty() ? null : prices.firstKey();
+            } else if (member.price.compareTo(cell.minPrice) == 0) {
+                cell.minPrice = minOfChildren(p, key);
+            }
+        }
+    }
+
+    /**
+     * Non-empty cells of the given precision whose grid column and row fall in the given ranges,
+     * at most {@code limit} of them.
+     */
+    List<Cluster> cells(int precision, long minColumn, long maxColumn, long minRow, long maxRow, int limit) {
+        int bits = 5 * precision;
+        Map<Long, Cell> level = levels[precision];
+        List<Cluster> clusters = new ArrayList<>();
+        double area = (double) (maxColumn - minColumn + 1) * (maxRow - minRow + 1);
+        if (area <= level.size()) {
+            // Small window: probe each cell in it
+            for (long column = minColumn; column <= maxColumn && clusters.size() < limit; column++) {
+                for (long row = minRow; row <= maxRow && clusters.size() < limit; row++) {
+                    long key = Geohash.interleave(column, row, bits);
+                    Cell cell = level.get(key);
+                    if (cell != null) {
+                        clusters.add(cell.toCluster(key, precision));
+                    }
+                }
+            }
+        } else {
+            // Large window: fewer occupied cells than cells in view
+            for (Map.Entry<Long, Cell> entry : level.entrySet()) {
+                if (clusters.size() >= limit) {
+                    break;
+                }
+                long column = Geohash.lngIndex(entry.getKey(), bits);
+                long row = Geohash.latIndex(entry.getKey(), bits);
+                if (column >= minColumn && column <= maxColumn && row >= minRow && row <= maxRow) {
+                    clusters.add(entry.getValue().toCluster(entry.getKey(), precision));
+                }
+            }
+        }
+        return clusters;
+    }
+
+    private BigDecimal minOfChildren(int precision, long key) {
+        BigDecimal min = null;
+        Map<Long, Cell> children = levels[precision + 1];
+        for (long child = key << 5; child <= (key << 5 | 31); child++) {
+            Cell cell = children.get(child);
+            if (cell != null && cell.minPrice != null && (min == null || cell.minPrice.compareTo(min) < 0)) {
+                min = cell.minPrice;
+            }
+        }
+        return min;
+    }
+
+    private static final class Member {
+        private final double lat;
+        private final double lng;
+        private final BigDecimal price;
+        private final long code;
+
+        private Member(double lat, double lng, BigDecimal price, long code) {
+            this.lat = lat;
+            this.lng = lng;
+            this.price = price;
+            this.code = code;
+        }
+    }
+
+    private static final class Cell {
+        private int count;
+        private double sumLat;
+        private double sumLng;
+        private BigDecimal minPrice;
+        // Only used by finest-precision cells
+        private TreeMap<BigDecimal, Integer> prices;
+
+        private TreeMap<BigDecimal, Integer> prices() {
+            if (prices == null) {
+                prices = new TreeMap<>();
+            }
+            return prices;
+        }
+
+        private Cluster toCluster(long key, int precision) {
+            return new Cluster(Geohash.toString(key, precision), count, sumLat / count, sumLng / count, minPrice);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.abiodun.expaq.service.geo;
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Great-circle helpers for WGS 84 longitude/latitude coordinates.
+ */
+public final class GeoMath {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+    public static final double KM_PER_DEGREE_LATITUDE = Math.PI * EARTH_RADIUS_KM / 180;
+    // Half the circumference: no two points are further apart
+    public static final double MAX_DISTANCE_KM = Math.PI * EARTH_RADIUS_KM;
+
+    private GeoMath() {
+    }
+
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Longitude/latitude boxes that together contain every point within {@code radiusKm} of the
+     * centre. A box crossing the antimeridian is split in two; near the poles it spans all longitudes.
+     */
+    public static List<Envelope> boundingBoxes(double lat, double lng, double radiusKm) {
+        double dLat = radiusKm / KM_PER_DEGREE_LATITUDE;
+        double minLat = Math.max(-90, lat - dLat);
+        double maxLat = Math.min(90, lat + dLat);
+        // Longitude degrees shrink towards the poles; use the widest latitude the box reaches
+        double widest = Math.max(Math.abs(minLat), Math.abs(maxLat));
+        double cos = Math.cos(Math.toRadians(widest));
+        double dLng = cos < 1e-9 ? 360 : radiusKm / (KM_PER_DEGREE_LATITUDE * cos);
+
+        List<Envelope> boxes = new ArrayList<>(2);
+        if (dLng >= 180 || maxLat == 90 || minLat == -90) {
+            boxes.add(new Envelope(-180, 180, minLat, maxLat));
+            return boxes;
+        }
+        double minLng = lng - dLng;
+        double maxLng = lng + dLng;
+        boxes.add(new Envelope(Math.max(-180, minLng), Math.min(180, maxLng), minLat, maxLat));
+        if (minLng < -180) {
+            boxes.add(new Envelope(minLng + 360, 180, minLat, maxLat));
+        }
+        if (maxLng > 180) {
+            boxes.add(new Envelope(-180, maxLng - 360, minLat, maxLat));
+        }
+        return boxes;
+    }
+}
@@ -0,0 +1,88 @@
+package com.abiodun.expaq.service.geo;
+
+/**
+ * Geohashes as bit strings in a {@code long}: longitude and latitude bits interleaved, longitude
+ * first, five bits per base-32 character. A cell at a coarser precision is a prefix of its
+ * finer cells, so {@code code >>> 5 * (p - q)} maps a precision-p cell to its precision-q parent.
+ */
+public final class Geohash {
+
+    public static final int MAX_PRECISION = 8;
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    public static long encode(double lat, double lng, int precision) {
+        int bits = 5 * precision;
+        int lngBits = (bits + 1) / 2;
+        int latBits = bits / 2;
+        return interleave(cellIndex(lng, -180, 360, lngBits), cellIndex(lat, -90, 180, latBits), bits);
+    }
+
+    /**
+     * Code of the cell in column {@code lngIndex} and row {@code latIndex} of the precision's grid.
+     */
+    public static long interleave(long lngIndex, long latIndex, int bits) {
+        long code = 0;
+        int lngBit = (bits + 1) / 2 - 1;
+        int latBit = bits / 2 - 1;
+        for (int i = 0; i < bits; i++) {
+            code <<= 1;
+            if ((i & 1) == 0) {
+                code |= (lngIndex >>> lngBit--) & 1;
+            } else {
+                code |= (latIndex >>> latBit--) & 1;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Grid column (or row) of {@code value} in a range split into {@code 2^bits} equal cells.
+     */
+    public static long cellIndex(double value, double min, double span, int bits) {
+        long cells = 1L << bits;
+        long index = (long) Math.floor((value - min) / span * cells);
+        return Math.max(0, Math.min(cells - 1, index));
+    }
+
+    /**
+     * Inverse of {@link #interleave}: the grid column of a code.
+     */
+    public static long lngIndex(long code, int bits) {
+        return deinterleave(code, bits, 0);
+    }
+
+    /**
+     * Inverse of {@link #interleave}: the grid row of a code.
+     */
+    public static long latIndex(long code, int bits) {
+        return deinterleave(code, bits, 1);
+    }
+
+    private static long deinterleave(long code, int bits, int parity) {
+        long index = 0;
+        for (int i = parity; i < bits; i += 2) {
+            index = (index << 1) | ((code >>> (bits - 1 - i)) & 1);
+        }
+        return index;
+    }
+
+    public static double cellWidth(int precision) {
+        return 360.0 / (1L << ((5 * precision + 1) / 2));
+    }
+
+    public static double cellHeight(int precision) {
+        return 180.0 / (1L << (5 * precision / 2));
+    }
+
+    public static String toString(long code, int precision) {
+        char[] chars = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (code & 31)];
+            code >>>= 5;
+        }
+        return new String(chars);
+    }
+}
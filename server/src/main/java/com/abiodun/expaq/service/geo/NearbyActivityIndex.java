@@ -0,0 +1,265 @@
+package com.abiodun.expaq.service.geo;
+
+import com.abiodun.expaq.event.ActivityChangedEvent;
+import com.abiodun.expaq.repository.ActivityRepository;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory spatial index of active, located activities for nearby queries. A JTS {@link STRtree}
+ * snapshot is bulk-loaded from the database periodically (STR trees cannot change once built);
+ * activity changes committed since then are kept in a small overlay that overrides the snapshot
+ * until the next rebuild. Results are sorted by distance and paged with a bounded heap, so a page
+ * costs O(matches · log(offset + size)) without materializing entities.
+ * <p>
+ * Until the first build completes {@link #isReady()} is false and callers should use PostGIS.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NearbyActivityIndex {
+
+    // First ring searched for k-nearest queries; doubled until enough activities are found
+    private static final double INITIAL_NEAREST_RADIUS_KM = 10;
+
+    private final ActivityRepository activityRepository;
+
+    private volatile Snapshot snapshot;
+    private final Map<UUID, PendingActivity> pending = new ConcurrentHashMap<>();
+    private final AtomicLong changeSequence = new AtomicLong();
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Activities within {@code radiusKm} great-circle distance, nearest first.
+     */
+    public NearbyPage withinKm(double lat, double lng, double radiusKm, UUID activityTypeId, long offset, int limit) {
+        return search(GeoMath.boundingBoxes(lat, lng, radiusKm), entry -> GeoMath.haversineKm(lat, lng, entry.lat, entry.lng),
+                radiusKm, activityTypeId, offset, limit);
+    }
+
+    /**
+     * Activities within {@code distance} degrees, measured flat in longitude/latitude space. This is
+     * what {@code ST_DWithin} means on the SRID 4326 geometry column, so existing callers keep
+     * their semantics; distances in the result are still great-circle kilometres.
+     */
+    public NearbyPage withinDegrees(double lat, double lng, double distance, UUID activityTypeId, long offset, int limit) {
+        Envelope box = new Envelope(lng - distance, lng + distance, lat - distance, lat + distance);
+        NearbyPage page = search(List.of(box), entry -> Math.hypot(entry.lng - lng, entry.lat - lat),
+                distance, activityTypeId, offset, limit);
+        List<Double> kilometres = new ArrayList<>(page.ids.size());
+        for (int i = 0; i < page.ids.size(); i++) {
+            kilometres.add(GeoMath.haversineKm(lat, lng, page.latitudes.get(i), page.longitudes.get(i)));
+        }
+        return new NearbyPage(page.ids, kilometres, page.latitudes, page.longitudes, page.total);
+    }
+
+    /**
+     * The nearest activities regardless of distance; {@code total} is every indexed activity of the type.
+     * Searches rings of doubling radius until the requested page is filled.
+     */
+    public NearbyPage nearest(double lat, double lng, UUID activityTypeId, long offset, int limit) {
+        long wanted = offset + limit;
+        for (double radius = INITIAL_NEAREST_RADIUS_KM; ; radius *= 2) {
+            boolean whole = radius >= GeoMath.MAX_DISTANCE_KM;
+            NearbyPage page = withinKm(lat, lng, whole ? GeoMath.MAX_DISTANCE_KM : radius, activityTypeId, offset, limit);
+            if (whole || page.total >= wanted) {
+                return whole ? page : new NearbyPage(page.ids, page.distancesKm, page.latitudes, page.longitudes,
+                        countIndexed(activityTypeId));
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        Entry entry = event.isListed() && event.getLatitude() != null
+                ? new Entry(event.getActivityId(), event.getLatitude(), event.getLongitude(), event.getActivityTypeId())
+                : null;
+        pending.put(event.getActivityId(), new PendingActivity(changeSequence.incrementAndGet(), entry));
+    }
+
+    /**
+     * Bulk-loads a new tree. Overlay entries recorded before the rebuild started were committed
+     * before it read anything, so the new snapshot includes them and they can be dropped.
+     */
+    public synchronized void rebuild() {
+        long startedAt = changeSequence.get();
+        STRtree tree = new STRtree();
+        Map<UUID, Entry> entries = new HashMap<>();
+        for (Object[] row : activityRepository.findActiveLocations()) {
+            Point point = (Point) row[1];
+            Entry entry = new Entry((UUID) row[0], point.getY(), point.getX(), (UUID) row[2]);
+            tree.insert(new Envelope(entry.lng, entry.lng, entry.lat, entry.lat), entry);
+            entries.put(entry.id, entry);
+        }
+        tree.build();
+        snapshot = new Snapshot(tree, entries);
+        pending.values().removeIf(change -> change.sequence <= startedAt);
+        log.info("Rebuilt nearby activity index with {} activities", entries.size());
+    }
+
+    private NearbyPage search(List<Envelope> boxes, DistanceFunction distanceTo, double maxDistance,
+                              UUID activityTypeId, long offset, int limit) {
+        Snapshot current = snapshot;
+        int keep = (int) Math.min(Integer.MAX_VALUE - 1, offset + limit);
+        // Max-heap of the nearest `keep` matches: the root is the one to evict
+        PriorityQueue<Match> nearest = new PriorityQueue<>(Math.min(keep, 1024) + 1,
+                Comparator.comparingDouble((Match match) -> match.distance).reversed());
+        long[] total = new long[1];
+
+        MatchVisitor visitor = entry -> {
+            if (activityTypeId != null && !activityTypeId.equals(entry.activityTypeId)) {
+                return;
+            }
+            double distance = distanceTo.apply(entry);
+            if (distance > maxDistance) {
+                return;
+            }
+            total[0]++;
+            if (nearest.size() < keep) {
+                nearest.add(new Match(entry, distance));
+            } else if (keep > 0 && distance < nearest.peek().distance) {
+                nearest.poll();
+                nearest.add(new Match(entry, distance));
+            }
+        };
+        for (Envelope box : boxes) {
+            current.tree.query(box, item -> {
+                Entry entry = (Entry) item;
+                if (!pending.containsKey(entry.id)) {
+                    visitor.visit(entry);
+                }
+            });
+            for (PendingActivity change : pending.values()) {
+                if (change.entry != null && box.contains(change.entry.lng, change.entry.lat)) {
+                    visitor.visit(change.entry);
+                }
+            }
+        }
+
+        List<Match> sorted = new ArrayList<>(nearest);
+        sorted.sort(Comparator.comparingDouble((Match match) -> match.distance).thenComparing(match -> match.entry.id));
+        List<Match> page = offset >= sorted.size() ? Collections.emptyList() : sorted.subList((int) offset, sorted.size());
+        List<UUID> ids = new ArrayList<>(page.size());
+        List<Double> distances = new ArrayList<>(page.size());
+        List<Double> latitudes = new ArrayList<>(page.size());
+        List<Double> longitudes = new ArrayList<>(page.size());
+        for (Match match : page) {
+            ids.add(match.entry.id);
+            distances.add(match.distance);
+            latitudes.add(match.entry.lat);
+            longitudes.add(match.entry.lng);
+        }
+        return new NearbyPage(ids, distances, latitudes, longitudes, total[0]);
+    }
+
+    private long countIndexed(UUID activityTypeId) {
+        Snapshot current = snapshot;
+        long count = 0;
+        for (Entry entry : current.entries.values()) {
+            if (!pending.containsKey(entry.id) && (activityTypeId == null || activityTypeId.equals(entry.activityTypeId))) {
+                count++;
+            }
+        }
+        for (PendingActivity change : pending.values()) {
+            if (change.entry != null && (activityTypeId == null || activityTypeId.equals(change.entry.activityTypeId))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One page of nearby activity ids with their distance in kilometres and coordinates, plus the
+     * number of matches across all pages.
+     */
+    @Getter
+    public static final class NearbyPage {
+        private final List<UUID> ids;
+        private final List<Double> distancesKm;
+        private final List<Double> latitudes;
+        private final List<Double> longitudes;
+        private final long total;
+
+        private NearbyPage(List<UUID> ids, List<Double> distancesKm, List<Double> latitudes, List<Double> longitudes,
+                           long total) {
+            this.ids = ids;
+            this.distancesKm = distancesKm;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.total = total;
+        }
+    }
+
+    private interface DistanceFunction {
+        double apply(Entry entry);
+    }
+
+    private interface MatchVisitor {
+        void visit(Entry entry);
+    }
+
+    private static final class Entry {
+        private final UUID id;
+        private final double lat;
+        private final double lng;
+        private final UUID activityTypeId;
+
+        private Entry(UUID id, double lat, double lng, UUID activityTypeId) {
+            this.id = id;
+            this.lat = lat;
+            this.lng = lng;
+            this.activityTypeId = activityTypeId;
+        }
+    }
+
+    private static final class Match {
+        private final Entry entry;
+        private final double distance;
+
+        private Match(Entry entry, double distance) {
+            this.entry = entry;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Snapshot {
+        private final STRtree tree;
+        private final Map<UUID, Entry> entries;
+
+        private Snapshot(STRtree tree, Map<UUID, Entry> entries) {
+            this.tree = tree;
+            this.entries = entries;
+        }
+    }
+
+    // A null entry records that the activity was deleted, deactivated or lost its location
+    private static final class PendingActivity {
+        private final long sequence;
+        private final Entry entry;
+
+        private PendingActivity(long sequence, Entry entry) {
+            this.sequence = sequence;
+            this.entry = entry;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.abiodun.expaq.service.impl;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Turns a keyset scroll position over activities into an opaque URL-safe cursor and back.
+ * Only the properties activity listings can be sorted by are accepted, and each one is
+ * restored to its entity type so the seek predicate binds correctly. A null key is written as the
+ * bare property name, so it can never be mistaken for a value such as the title "null".
+ */
+final class ActivityCursorCodec {
+
+    private static final Map<String, Function<String, Object>> KEY_TYPES = Map.of(
+            "id", UUID::fromString,
+            "price", BigDecimal::new,
+            "title", value -> value,
+            "minParticipants", Integer::valueOf,
+            "averageRating", Double::valueOf,
+            "createdAt", LocalDateTime::parse
+    );
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private ActivityCursorCodec() {
+    }
+
+    static String encode(ScrollPosition position) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.isInitial()) {
+            return null;
+        }
+        return encode(keyset.getKeys());
+    }
+
+    static String encode(Map<String, ?> keys) {
+        StringJoiner joiner = new StringJoiner(".");
+        keys.forEach((key, value) -> joiner.add(value == null ? key
+                : key + "~" + ENCODER.encodeToString(value.toString().getBytes(StandardCharsets.UTF_8))));
+        return ENCODER.encodeToString(joiner.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static KeysetScrollPosition decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            String raw = new String(DECODER.decode(cursor), StandardCharsets.UTF_8);
+            Map<String, Object> keys = new LinkedHashMap<>();
+            for (String part : raw.split("\\.")) {
+                int separator = part.indexOf('~');
+                String key = separator < 0 ? part : part.substring(0, separator);
+                Function<String, Object> type = KEY_TYPES.get(key);
+                if (type == null) {
+                    throw new IllegalArgumentException("Unsupported cursor key: " + key);
+                }
+                if (separator < 0) {
+                    keys.put(key, null);
+                    continue;
+                }
+                String value = new String(DECODER.decode(part.substring(separator + 1)), StandardCharsets.UTF_8);
+                keys.put(key, type.apply(value));
+            }
+            return ScrollPosition.forward(keys);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid activity cursor", e);
+        }
+    }
+}
@@ -1,23 +1,37 @@
 package com.abiodun.expaq.service.impl;
 
+import com.abiodun.expaq.dto.ActivityClusterDTO;
 import com.abiodun.expaq.dto.ActivityDTO;
 import com.abiodun.expaq.dto.ActivityScheduleDTO;
+import com.abiodun.expaq.dto.ActivityScrollResponse;
+import com.abiodun.expaq.dto.ActivitySearchFacets;
 import com.abiodun.expaq.dto.CreateActivityRequest;
 import com.abiodun.expaq.dto.UpdateActivityRequest;
+import com.abiodun.expaq.event.ActivityChangedEvent;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.exception.UnauthorizedException;
 import com.abiodun.expaq.model.*;
 import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.ActivityTypeRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.CloudinaryService;
 import com.abiodun.expaq.service.IActivityService;
+import com.abiodun.expaq.service.geo.ActivityClusterIndex;
+import com.abiodun.expaq.service.geo.GeoMath;
+import com.abiodun.expaq.service.geo.NearbyActivityIndex;
+import com.abiodun.expaq.service.search.ActivitySearchIndex;
+import com.abiodun.expaq.service.search.PriceBand;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -44,8 +58,15 @@ public class ActivityServiceImpl implements IActivityService {
     private final UserRepository userRepository;
     private final ModelMapper modelMapper;
     private final CloudinaryService cloudinaryService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ActivityTypeRepository activityTypeRepository;
+    private final NearbyActivityIndex nearbyIndex;
+    private final ActivityClusterIndex clusterIndex;
+    private final ActivitySearchIndex searchIndex;
     private final GeometryFactory geometryFactory = new GeometryFactory();
     private static final String folder = "activities";
+    private static final int MAX_SCROLL_SIZE = 100;
+    private static final int MAX_NEARBY_RESULTS = 500;
 
     private static final Logger logger = LoggerFactory.getLogger(ActivityServiceImpl.class);;
 
@@ -757,6 +778,7 @@ public class ActivityServiceImpl implements IActivityService {
             try {
                 activity = activityRepository.save(activity);
                 logger.info("{} - Activity saved successfully with ID: {}", operation, activity.getId());
+                eventPublisher.publishEvent(ActivityChangedEvent.saved(activity));
             } catch (DataIntegrityViolationException e) {
                 String error = "Data integrity violation while saving activity. Possible duplicate or constraint violation";
                 logger.error("{} - Database Constraint Error: {} - Exception: {} ", operation, error, e.getMessage(), e );
@@ -895,6 +917,7 @@ public class ActivityServiceImpl implements IActivityService {
         if (request.getEndDate() != null) activity.setEndDate(request.getEndDate());
         // Save activity
         activity = activityRepository.save(activity);
+        eventPublisher.publishEvent(ActivityChangedEvent.saved(activity));
 
         return ActivityDTO.fromActivity(activity);
     }
@@ -911,6 +934,7 @@ public class ActivityServiceImpl implements IActivityService {
         }
 
         activityRepository.delete(activity);
+        eventPublisher.publishEvent(ActivityChangedEvent.deleted(activity));
     }
 
     @Override
@@ -924,48 +948,145 @@ public class ActivityServiceImpl implements IActivityService {
     @Override
     @Transactional(readOnly = true)
     public Page<ActivityDTO> getAllActivities(Specification<Activity> spec, String sortBy, Pageable pageable) {
-        List<Activity> activities;
+        return getAllActivities(spec, sortBy, pageable, CountMode.EXACT);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ActivityDTO> getAllActivities(Specification<Activity> spec, String sortBy, Pageable pageable,
+                                              CountMode countMode) {
+        Specification<Activity> filter = spec != null ? spec : Specification.where(null);
         Sort sort;
 
-        if ("lowPrice".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by(Sort.Direction.ASC, "price");
-        } else if ("highPrice".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by(Sort.Direction.DESC, "price");
-        } else if ("alphabetical".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by(Sort.Direction.ASC, "title");
-        } else if ("highRating".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by("reviews");
-        } else if ("lowRating".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by(Sort.Direction.DESC, "reviews");
-        } else if ("minParticipants".equalsIgnoreCase(sortBy)) {
-            sort = Sort.by(Sort.Direction.ASC, "minParticipants");
+        // If pageable has sort, use it instead
+        if (pageable.getSort().isSorted()) {
+            sort = pageable.getSort().and(Sort.by("id"));
         } else {
-            sort = Sort.unsorted();
+            sort = resolveSort(sortBy);
         }
 
-        // If pageable has sort, use it instead
-        if (pageable.getSort().isSorted()) {
-            sort = pageable.getSort();
+        if (countMode == null || countMode == CountMode.EXACT) {
+            Pageable page = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
+            return activityRepository.findAll(filter, page).map(this::mapToActivityDTO);
         }
 
-        activities = activityRepository.findAll(spec, sort);
+        // Fetch one row past the page instead of counting every match
+        ScrollPosition position = pageable.getOffset() == 0
+                ? ScrollPosition.offset()
+                : ScrollPosition.offset(pageable.getOffset() - 1);
+        Window<Activity> window = activityRepository.findBy(filter, query -> query
+                .sortBy(sort)
+                .limit(pageable.getPageSize())
+                .scroll(position));
 
-        // Convert to DTOs
-        List<ActivityDTO> dtos = activities.stream()
+        List<ActivityDTO> content = window.getContent().stream()
                 .map(this::mapToActivityDTO)
                 .collect(Collectors.toList());
+        long seen = pageable.getOffset() + content.size() + (window.hasNext() ? 1 : 0);
+        long total = seen;
+        if (countMode == CountMode.ESTIMATED && window.hasNext()) {
+            if (spec == null) {
+                Long estimate = activityRepository.estimateActivityCount();
+                total = Math.max(seen, estimate != null ? estimate : 0L);
+            } else {
+                // The catalog estimate knows nothing about filters; only the real count is right here
+                total = activityRepository.count(filter);
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
 
-        // Create a proper page
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), dtos.size());
+    @Override
+    @Transactional(readOnly = true)
+    public ActivityScrollResponse scrollActivities(Specification<Activity> spec, String sortBy, String cursor, int size) {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        Specification<Activity> filter = spec != null ? spec : Specification.where(null);
+        Sort sort = resolveSort(sortBy);
+        KeysetScrollPosition position = ActivityCursorCodec.decode(cursor);
+        String sortKey = sort.iterator().next().getProperty();
+
+        List<Activity> rows = new ArrayList<>(size);
+        String nextCursor = null;
+        boolean inNullTail = position.getKeys().containsKey(sortKey) && position.getKeys().get(sortKey) == null;
+        if (!inNullTail) {
+            Specification<Activity> keyed = "id".equals(sortKey) ? filter
+                    : filter.and((root, query, cb) -> cb.isNotNull(root.get(sortKey)));
+            Window<Activity> window = scroll(keyed, sort, position, size);
+            rows.addAll(window.getContent());
+            if (window.hasNext()) {
+                nextCursor = ActivityCursorCodec.encode(window.positionAt(window.size() - 1));
+            }
+            if (nextCursor != null || "id".equals(sortKey)) {
+                return toScrollResponse(rows, nextCursor);
+            }
+            position = ScrollPosition.keyset();
+        } else {
+            Map<String, Object> idOnly = new LinkedHashMap<>(position.getKeys());
+            idOnly.remove(sortKey);
+            position = idOnly.isEmpty() ? ScrollPosition.keyset() : ScrollPosition.forward(idOnly);
+        }
 
-        // Handle case where start might be >= dtos.size()
-        if (start >= dtos.size()) {
-            return new PageImpl<>(Collections.emptyList(), pageable, dtos.size());
+        // Rows without a sort key come last, in id order; the cursor marks the tail with a null key
+        Specification<Activity> unkeyed = filter.and((root, query, cb) -> cb.isNull(root.get(sortKey)));
+        int remaining = size - rows.size();
+        Window<Activity> tail = scroll(unkeyed, Sort.by("id"), position, Math.max(remaining, 1));
+        if (remaining == 0) {
+            // The page is full; only look whether there is a tail to continue into
+            if (!tail.isEmpty()) {
+                nextCursor = ActivityCursorCodec.encode(Collections.singletonMap(sortKey, null));
+            }
+            return toScrollResponse(rows, nextCursor);
         }
+        rows.addAll(tail.getContent());
+        if (tail.hasNext()) {
+            Map<String, Object> keys = new LinkedHashMap<>();
+            keys.put(sortKey, null);
+            keys.putAll(((KeysetScrollPosition) tail.positionAt(tail.size() - 1)).getKeys());
+            nextCursor = ActivityCursorCodec.encode(keys);
+        }
+        return toScrollResponse(rows, nextCursor);
+    }
 
-        List<ActivityDTO> pageContent = dtos.subList(start, end);
-        return new PageImpl<>(pageContent, pageable, dtos.size());
+    private Window<Activity> scroll(Specification<Activity> filter, Sort sort, KeysetScrollPosition position, int limit) {
+        return activityRepository.findBy(filter, query -> query
+                .sortBy(sort)
+                .limit(limit)
+                .scroll(position));
+    }
+
+    private ActivityScrollResponse toScrollResponse(List<Activity> rows, String nextCursor) {
+        List<ActivityDTO> content = rows.stream()
+                .map(this::mapToActivityDTO)
+                .collect(Collectors.toList());
+        return new ActivityScrollResponse(content, nextCursor, nextCursor != null, content.size());
+    }
+
+    /**
+     * Maps the listing sort keys onto entity properties. The id tie-breaker keeps
+     * LIMIT/OFFSET pages stable and is what makes keyset cursors unique.
+     */
+    private Sort resolveSort(String sortBy) {
+        Sort sort;
+        if ("lowPrice".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.ASC, "price");
+        } else if ("highPrice".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.DESC, "price");
+        } else if ("alphabetical".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.ASC, "title");
+        } else if ("highRating".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.DESC, "averageRating");
+        } else if ("lowRating".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.ASC, "averageRating");
+        } else if ("minParticipants".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.ASC, "minParticipants");
+        } else if ("newest".equalsIgnoreCase(sortBy)) {
+            sort = Sort.by(Sort.Direction.DESC, "createdAt");
+        } else {
+            return Sort.by("id");
+        }
+        return sort.and(Sort.by("id"));
     }
 
     @Override
@@ -977,9 +1098,13 @@ public class ActivityServiceImpl implements IActivityService {
         } else if ("alphabetical".equalsIgnoreCase(sortBy)) {
             pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("title").ascending());
         } else if ("nearby".equalsIgnoreCase(sortBy) && latitude != null && longitude != null && distance != null) {
-            Point point = geometryFactory.createPoint(new Coordinate(longitude, latitude));
-            return activityRepository.findByLocationWithinDistance(longitude, latitude, distance, pageable)
-                    .map(this::mapToActivityDTO);
+            if (!nearbyIndex.isReady()) {
+                return activityRepository.findByLocationWithinDistance(latitude, longitude, distance, pageable)
+                        .map(this::mapToActivityDTO);
+            }
+            NearbyActivityIndex.NearbyPage page = nearbyIndex.withinDegrees(latitude, longitude, distance, null,
+                    pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(toNearbyDTOs(page), pageable, page.getTotal());
         }
         return activityRepository.findAll(pageable).map(this::mapToActivityDTO);
     }
@@ -993,30 +1118,181 @@ public class ActivityServiceImpl implements IActivityService {
     @Override
     @Transactional(readOnly = true)
     public Page<ActivityDTO> searchActivities(String query, Pageable pageable) {
-        return activityRepository.searchActivities(query, pageable)
-                .map(this::mapToActivityDTO);
+        return searchActivities(query, null, null, null, pageable);
+    }
+
+    /**
+     * Ranked full-text search over title, location and description; every term matches as a prefix.
+     * Results are always ordered by relevance, so any sort on {@code pageable} is ignored. Until the
+     * search index is ready the same match is computed per row, which is slower but gives the same results.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ActivityDTO> searchActivities(String query, UUID activityTypeId, UUID cityId, PriceBand priceBand,
+                                              Pageable pageable) {
+        String tsQuery = ActivitySearchIndex.toTsQuery(query);
+        if (tsQuery == null) {
+            return Page.empty(pageable);
+        }
+        boolean indexed = searchIndex.isReady();
+        List<Object[]> rows = activityRepository.searchRanked(tsQuery, indexed, activityTypeId, cityId, priceBand,
+                pageable.getOffset(), pageable.getPageSize());
+        if (rows.isEmpty()) {
+            // Past the last page the window count is unavailable
+            long total = pageable.getOffset() > 0
+                    ? activityRepository.countMatches(tsQuery, indexed, activityTypeId, cityId, priceBand) : 0;
+            return new PageImpl<>(List.of(), pageable, total);
+        }
+
+        List<UUID> ids = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ids.add((UUID) row[0]);
+        }
+        List<ActivityDTO> content = new ArrayList<>(ids.size());
+        for (Activity activity : findAllInOrder(ids)) {
+            content.add(mapToActivityDTO(activity));
+        }
+        return new PageImpl<>(content, pageable, ((Number) rows.get(0)[1]).longValue());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ActivitySearchFacets getSearchFacets(String query) {
+        ActivitySearchFacets facets = new ActivitySearchFacets();
+        String tsQuery = ActivitySearchIndex.toTsQuery(query);
+        if (tsQuery == null) {
+            return facets;
+        }
+        for (Object[] row : activityRepository.countFacets(tsQuery, searchIndex.isReady())) {
+            String key = (String) row[1];
+            long count = ((Number) row[3]).longValue();
+            if (key == null) {
+                // Activities without a type or city still count towards the other facets
+                continue;
+            }
+            switch ((String) row[0]) {
+                case "type" -> facets.getActivityTypes().add(new ActivitySearchFacets.FacetCount(key, (String) row[2], count));
+                case "city" -> facets.getCities().add(new ActivitySearchFacets.FacetCount(key, (String) row[2], count));
+                default -> {
+                    PriceBand band = PriceBand.ofBucket(Integer.parseInt(key));
+                    facets.getPriceBands().add(new ActivitySearchFacets.FacetCount(band.name(), band.name(), count));
+                    facets.setTotalMatches(facets.getTotalMatches() + count);
+                }
+            }
+        }
+        return facets;
+    }
+
+    /**
+     * Activities within {@code distance} degrees (the {@code ST_DWithin} unit on the geometry column),
+     * nearest first and capped at {@link #MAX_NEARBY_RESULTS}.
+     */
     @Override
     @Transactional(readOnly = true)
     public List<ActivityDTO> findNearbyActivities(double latitude, double longitude, double distance) {
-        Point point = createPoint(latitude, longitude);
-        return activityRepository.findNearbyActivities(point, distance).stream()
-                .map(this::mapToActivityDTO)
-                .collect(Collectors.toList());
+        if (!nearbyIndex.isReady()) {
+            Point point = createPoint(latitude, longitude);
+            return activityRepository.findNearbyActivities(point, distance).stream()
+                    .map(this::mapToActivityDTO)
+                    .collect(Collectors.toList());
+        }
+        return toNearbyDTOs(nearbyIndex.withinDegrees(latitude, longitude, distance, null, 0, MAX_NEARBY_RESULTS));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<ActivityDTO> findNearbyActivitiesByActivityType(
             String type, double latitude, double longitude, double distance) {
-        Point point = createPoint(latitude, longitude);
-        return activityRepository.findNearbyActivitiesByActivityType(type, point, distance)
-                .stream()
-                .map(this::mapToActivityDTO)
+        UUID activityTypeId = resolveActivityTypeId(type);
+        if (activityTypeId == null) {
+            return List.of();
+        }
+        if (!nearbyIndex.isReady()) {
+            Point point = createPoint(latitude, longitude);
+            return activityRepository.findNearbyActivities(point, distance).stream()
+                    .filter(activity -> activity.getActivityType() != null
+                            && activityTypeId.equals(activity.getActivityType().getId()))
+                    .map(this::mapToActivityDTO)
+                    .collect(Collectors.toList());
+        }
+        return toNearbyDTOs(nearbyIndex.withinDegrees(latitude, longitude, distance, activityTypeId, 0, MAX_NEARBY_RESULTS));
+    }
+
+    /**
+     * Nearest activities first, within {@code radiusKm} when given, otherwise at any distance.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ActivityDTO> findNearestActivities(double latitude, double longitude, Double radiusKm,
+                                                   UUID activityTypeId, Pageable pageable) {
+        if (!nearbyIndex.isReady()) {
+            double radiusMeters = radiusKm != null ? radiusKm * 1000 : -1;
+            Pageable unsorted = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+            String typeId = activityTypeId != null ? activityTypeId.toString() : null;
+            return activityRepository.findNearestActivities(latitude, longitude, radiusMeters, typeId, unsorted)
+                    .map(activity -> {
+                        ActivityDTO dto = mapToActivityDTO(activity);
+                        if (activity.getLocationPoint() != null) {
+                            dto.setDistanceKm(GeoMath.haversineKm(latitude, longitude,
+                                    activity.getLocationPoint().getY(), activity.getLocationPoint().getX()));
+                        }
+                        return dto;
+                    });
+        }
+        NearbyActivityIndex.NearbyPage page = radiusKm != null
+                ? nearbyIndex.withinKm(latitude, longitude, radiusKm, activityTypeId, pageable.getOffset(), pageable.getPageSize())
+                : nearbyIndex.nearest(latitude, longitude, activityTypeId, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(toNearbyDTOs(page), pageable, page.getTotal());
+    }
+
+    @Override
+    public List<ActivityClusterDTO> getActivityClusters(double minLatitude, double minLongitude,
+                                                        double maxLatitude, double maxLongitude, int zoom) {
+        return clusterIndex.clusters(minLatitude, minLongitude, maxLatitude, maxLongitude, zoom).stream()
+                .map(ActivityClusterDTO::fromCluster)
                 .collect(Collectors.toList());
     }
 
+    private List<ActivityDTO> toNearbyDTOs(NearbyActivityIndex.NearbyPage page) {
+        Map<UUID, Double> distances = new HashMap<>();
+        for (int i = 0; i < page.getIds().size(); i++) {
+            distances.put(page.getIds().get(i), page.getDistancesKm().get(i));
+        }
+        List<ActivityDTO> dtos = new ArrayList<>(page.getIds().size());
+        for (Activity activity : findAllInOrder(page.getIds())) {
+            ActivityDTO dto = mapToActivityDTO(activity);
+            dto.setDistanceKm(distances.get(activity.getId()));
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+
+    // Accepts an activity type id or name
+    private UUID resolveActivityTypeId(String type) {
+        try {
+            return UUID.fromString(type);
+        } catch (IllegalArgumentException e) {
+            return activityTypeRepository.findFirstByNameIgnoreCase(type).map(ActivityType::getId).orElse(null);
+        }
+    }
+
+    // Loads activities in one batch, keeping the order of ids and skipping any deleted meanwhile
+    private List<Activity> findAllInOrder(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, Activity> byId = activityRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Activity::getId, activity -> activity));
+        List<Activity> ordered = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            Activity activity = byId.get(id);
+            if (activity != null) {
+                ordered.add(activity);
+            }
+        }
+        return ordered;
+    }
+
 
 
     @Override
@@ -1116,6 +1392,7 @@ public class ActivityServiceImpl implements IActivityService {
             activity.setActive(true);
             log.info("Activity {} activated after image upload", activityId);
         }
+        eventPublisher.publishEvent(ActivityChangedEvent.saved(activity));
 
         return ActivityDTO.fromActivity(activity);
     }
@@ -1,13 +1,14 @@
 package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.*;
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.event.UserProfileChangedEvent;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.exception.RoleNotFoundException;
 import com.abiodun.expaq.exception.UnauthorizedException;
 import com.abiodun.expaq.exception.UserAlreadyExistsException;
 import com.abiodun.expaq.model.Booking;
 import com.abiodun.expaq.model.Role;
-import com.abiodun.expaq.model.TokenBlacklist;
 import com.abiodun.expaq.model.User;
 import com.abiodun.expaq.repository.*;
 import com.abiodun.expaq.service.EmailService;
@@ -15,6 +16,7 @@ import com.abiodun.expaq.service.IAuthService;
 import com.abiodun.expaq.service.JwtService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -43,7 +45,7 @@ public class AuthServiceImpl implements IAuthService {
     private final ActivityRepository activityRepository;
     private final BookingRepository bookingRepository;
     private final ReviewRepository reviewRepository;
-    private final TokenBlacklistRepository tokenBlacklistRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     // Role names
     private static final String ROLE_USER = "USER";
@@ -67,6 +69,7 @@ public class AuthServiceImpl implements IAuthService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         user.setPasswordUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
 
 
         // Send email notification
@@ -168,6 +171,7 @@ public class AuthServiceImpl implements IAuthService {
         user.setActive(true);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
 
         // Send activation notification
         emailService.sendAccountActivatedNotification(
@@ -207,6 +211,7 @@ public class AuthServiceImpl implements IAuthService {
         // In a real application, you might want to soft delete or archive the user
         // For this example, we'll do a hard delete
         userRepository.delete(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
         
         // Send account deletion notification (optional)
         emailService.sendAccountDeletedNotification(
@@ -324,7 +329,13 @@ public class AuthServiceImpl implements IAuthService {
         return new AuthResponse(token, UserDTO.fromUser(user));
     }
 
-    public UserDTO becomeHost(UUID userId) {
+    /**
+     * Gives the user the HOST role. That revokes the tokens issued so far, so the response carries a
+     * new token issued with the bumped token version.
+     */
+    @Override
+    @Transactional
+    public AuthResponse becomeHost(UUID userId) {
         User user = userRepository.findById(userId).orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
         // Check if user is the host
@@ -335,14 +346,18 @@ public class AuthServiceImpl implements IAuthService {
                 Role hostRole = roleRepository.findByName("HOST");
                 // Set the HOST role to the user
                 user.setRoles(Collections.singleton(hostRole));
+                userRepository.save(user);
             } catch (Exception e) {
                 throw  new RoleNotFoundException("HOST  role not found in the database");
             }
         } else {
             throw new UnauthorizedException("User is already a host");
         }
-        UserDTO userDto = mapToUserDTO(user);
-        return userDto;
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
+        // The bump is a bulk update, so the entity still holds the version the old tokens were issued with
+        user.setTokenVersion(userRepository.findTokenVersionById(userId).orElse(user.getTokenVersion()));
+        String token = jwtService.generateToken(user);
+        return new AuthResponse(token, mapToUserDTO(user));
     }
 
     @Override
@@ -471,6 +486,7 @@ public class AuthServiceImpl implements IAuthService {
         user.setResetPasswordTokenExpiry(null);
         user.setPasswordUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(user.getId()));
     }
 
     @Transactional
@@ -542,15 +558,8 @@ public class AuthServiceImpl implements IAuthService {
         // Create a token blacklist entry
         String currentToken = SecurityContextHolder.getContext().getAuthentication().getCredentials().toString();
 
-        // Add token to blacklist with expiration
-        // You'll need to create a TokenBlacklist entity and repository
-        TokenBlacklist blacklistToken = new TokenBlacklist();
-        blacklistToken.setToken(currentToken);
-        blacklistToken.setUserId(userId);
-        blacklistToken.setExpirationDate(jwtService.getExpirationDateFromToken(currentToken));
-        blacklistToken.setBlacklistedAt(LocalDateTime.now());
-
-        tokenBlacklistRepository.save(blacklistToken);
+        // Revoke the token until it expires
+        jwtService.blacklistToken(currentToken, userId);
 
         // Clear security context
         SecurityContextHolder.clearContext();
@@ -638,8 +647,11 @@ public class AuthServiceImpl implements IAuthService {
         if (request.getProfilePictureUrl() != null) {
             user.setProfilePictureUrl(request.getProfilePictureUrl());
         }
-        if (request.getRoles() != null && !request.getRoles().isEmpty()) {
+        boolean accessChanged = false;
+        if (request.getRoles() != null && !request.getRoles().isEmpty()
+                && !roleNames(request.getRoles()).equals(roleNames(user.getRoles()))) {
             user.setRoles(request.getRoles());
+            accessChanged = true;
         }
         if (request.getDisplayName() != null && !request.getDisplayName().equals(user.getUsername())) {
             if (userRepository.existsByDisplayName(request.getDisplayName())) {
@@ -653,6 +665,7 @@ public class AuthServiceImpl implements IAuthService {
             }
             user.setEmail(request.getEmail());
             user.setVerified(false);
+            accessChanged = true;
             // Generate new verification token
             String verificationToken = UUID.randomUUID().toString();
             user.setVerificationToken(verificationToken);
@@ -662,8 +675,14 @@ public class AuthServiceImpl implements IAuthService {
 
         user.setUpdatedAt(LocalDateTime.now());
         user = userRepository.save(user);
+        // Only roles and email matter to authentication; other edits must not sign the user out
+        eventPublisher.publishEvent(accessChanged ? new UserAccessChangedEvent(userId) : new UserProfileChangedEvent(userId));
 
         return UserDTO.fromUser(user);
     }
+
+    private static Set<String> roleNames(Collection<Role> roles) {
+        return roles.stream().map(Role::getName).collect(Collectors.toSet());
+    }
 }
 
@@ -2,6 +2,8 @@ package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.BookingDTO;
 import com.abiodun.expaq.dto.CreateBookingRequest;
+import com.abiodun.expaq.event.BookingEvent;
+import com.abiodun.expaq.exception.InvalidBookingRequestException;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.model.Activity;
 import com.abiodun.expaq.model.Booking;
@@ -11,6 +13,7 @@ import com.abiodun.expaq.repository.BookingRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.IBookingService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -27,6 +30,8 @@ public class BookingServiceImpl implements IBookingService {
     private final BookingRepository bookingRepository;
     private final ActivityRepository activityRepository;
     private final UserRepository userRepository;
+    private final CapacityReservationService capacityReservationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -37,9 +42,9 @@ public class BookingServiceImpl implements IBookingService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
-        // Check if activity can accommodate the booking
-        if (!activity.canAccommodateBooking(request.getNumberOfGuests())) {
-            throw new RuntimeException("Activity cannot accommodate the requested number of guests");
+        // Atomically reserve the seats; the hold is released if the booking is never paid
+        if (!capacityReservationService.tryReserve(activity.getId(), request.getNumberOfGuests())) {
+            throw new InvalidBookingRequestException("Activity cannot accommodate the requested number of guests");
         }
         // Create booking
         Booking booking = new Booking();
@@ -52,15 +57,14 @@ public class BookingServiceImpl implements IBookingService {
         booking.setStatus(Booking.BookingStatus.PENDING);
         booking.setGuestEmail(user.getEmail());
         booking.setHost(activity.getHost());
+        booking.setHoldExpiresAt(capacityReservationService.newHoldExpiry());
 
         booking.calculateTotalPrice();
 
         // Save booking
         booking = bookingRepository.save(booking);
-
-        // Update activity's booked capacity
-        activity.addBooking(booking);
-        activityRepository.save(activity);
+        eventPublisher.publishEvent(BookingEvent.created(
+                booking.getId(), userId, activity.getId(), booking.getNumberOfGuests()));
 
         return BookingDTO.fromBooking(booking);
     }
@@ -82,14 +86,15 @@ public class BookingServiceImpl implements IBookingService {
             throw new RuntimeException("Unauthorized to cancel this booking");
         }
 
-        // Cancel booking
-        booking.cancel(reason);
-        bookingRepository.save(booking);
+        // Cancel booking; only the request that wins the status transition releases the seats
+        if (bookingRepository.cancelIfHolding(bookingId, reason, LocalDateTime.now()) == 0) {
+            throw new InvalidBookingRequestException("Booking can no longer be cancelled");
+        }
 
         // Update activity's booked capacity
-        Activity activity = booking.getActivity();
-        activity.cancelBooking(booking);
-        activityRepository.save(activity);
+        capacityReservationService.release(booking.getActivity().getId(), booking.getNumberOfGuests());
+        eventPublisher.publishEvent(BookingEvent.cancelled(
+                bookingId, userId, booking.getActivity().getId(), booking.getNumberOfGuests(), booking.getCreatedAt()));
     }
 
     @Override
@@ -187,19 +192,18 @@ public class BookingServiceImpl implements IBookingService {
     @Override
     @Transactional
     public void updateBookingPayment(UUID bookingId, String paymentId, String paymentStatus) {
-        Booking booking = bookingRepository.findById(bookingId)
-                .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
-
-        booking.setPaymentId(paymentId);
-        booking.setPaymentStatus(paymentStatus);
-        booking.setStatus(Booking.BookingStatus.PAID);
-        booking.setPaymentDate(LocalDateTime.now());
-
-        if ("SUCCESS".equals(paymentStatus)) {
-            booking.confirm();
+        if (!bookingRepository.existsById(bookingId)) {
+            throw new ResourceNotFoundException("Booking not found");
         }
 
-        bookingRepository.save(booking);
+        Booking.BookingStatus target = "SUCCESS".equals(paymentStatus)
+                ? Booking.BookingStatus.CONFIRMED
+                : Booking.BookingStatus.PAID;
+        // Conditional status moves only; saving a loaded entity could overwrite an expiry that raced us
+        if (!capacityReservationService.securePaidBooking(bookingId, target)) {
+            throw new InvalidBookingRequestException("Booking is no longer available; the payment must be refunded");
+        }
+        bookingRepository.recordPayment(bookingId, paymentId, paymentStatus, LocalDateTime.now());
     }
 
     @Override
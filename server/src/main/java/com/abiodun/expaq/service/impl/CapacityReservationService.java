@@ -0,0 +1,176 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.BookingEvent;
+import com.abiodun.expaq.exception.ResourceNotFoundException;
+import com.abiodun.expaq.model.Booking;
+import com.abiodun.expaq.model.Booking.BookingStatus;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserves activity capacity with a compare-and-increment UPDATE on {@code bookedCapacity}, so the
+ * database row lock is the only serialization point and no JVM lock or booking-list load is needed.
+ * New bookings hold their seats for a limited time; unpaid holds are released by {@link #releaseExpiredHolds()},
+ * which publishes a cancellation {@link BookingEvent} for each, like a cancellation by the user.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class CapacityReservationService {
+
+    private static final int EXPIRY_BATCH_SIZE = 200;
+    private static final int RECONCILE_BATCH_SIZE = 500;
+
+    private final ActivityRepository activityRepository;
+    private final BookingRepository bookingRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${booking.hold.ttl-minutes:30}")
+    private long holdTtlMinutes;
+
+    /**
+     * Atomically takes {@code guests} seats if they are still free.
+     *
+     * @return true when the seats were reserved, false when the activity is full
+     */
+    @Transactional
+    public boolean tryReserve(UUID activityId, int guests) {
+        if (guests < 1) {
+            throw new IllegalArgumentException("Number of guests must be at least 1");
+        }
+        return activityRepository.tryReserveCapacity(activityId, guests) == 1;
+    }
+
+    /**
+     * Gives back seats taken by {@link #tryReserve}. Callers must only release a booking once,
+     * which the conditional status transitions in {@link BookingRepository} guarantee.
+     */
+    @Transactional
+    public void release(UUID activityId, int guests) {
+        if (activityRepository.releaseCapacity(activityId, guests) == 0) {
+            log.warn("Capacity release of {} seats on activity {} would go negative; skipped", guests, activityId);
+        }
+    }
+
+    /**
+     * Moves a paid booking to {@code target} (PAID or CONFIRMED). Only a booking that still holds its
+     * seats moves directly. If its hold already expired and the seats were released, they are reserved
+     * again first.
+     *
+     * @return false if the booking can no longer be honoured: it was cancelled for another reason, or
+     * its activity filled up after the hold expired
+     */
+    @Transactional
+    public boolean securePaidBooking(UUID bookingId, BookingStatus target) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BookingStatus> holding = target == BookingStatus.CONFIRMED
+                ? List.of(BookingStatus.PENDING, BookingStatus.PAID)
+                : List.of(BookingStatus.PENDING);
+        if (bookingRepository.advanceIfHolding(bookingId, holding, target, now) == 1) {
+            return true;
+        }
+
+        Booking booking = bookingRepository.findById(bookingId)
+                .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
+        if (booking.getStatus() == target || booking.getStatus() == BookingStatus.CONFIRMED) {
+            // Already applied, e.g. a repeated callback
+            return true;
+        }
+        if (booking.getStatus() != BookingStatus.CANCELLED
+                || !BookingRepository.HOLD_EXPIRED_REASON.equals(booking.getCancellationReason())) {
+            return false;
+        }
+
+        UUID activityId = booking.getActivity().getId();
+        int guests = booking.getNumberOfGuests();
+        if (!tryReserve(activityId, guests)) {
+            log.warn("Payment arrived for expired booking {} but activity {} is full", bookingId, activityId);
+            return false;
+        }
+        if (bookingRepository.reviveExpiredHold(bookingId, BookingStatus.CANCELLED,
+                BookingRepository.HOLD_EXPIRED_REASON, target, now) == 1) {
+            log.info("Re-reserved {} seats for booking {} paid after its hold expired", guests, bookingId);
+            // Undoes the cancellation event published when the hold expired
+            eventPublisher.publishEvent(new BookingEvent(BookingEvent.Type.CREATED, bookingId,
+                    booking.getUser().getId(), activityId, guests, booking.getCreatedAt(), now));
+            return true;
+        }
+        // Changed concurrently; give the seats back
+        release(activityId, guests);
+        return false;
+    }
+
+    /**
+     * Recomputes every activity's booked seats from its bookings, one short transaction per batch of
+     * activities. Each batch row-locks its activities first, which waits for in-flight reservations on
+     * them to commit and holds new ones back until the recount is done, so none is overwritten; other
+     * activities, and other updates to the rest of the table, are never blocked.
+     *
+     * @return number of activities whose count was corrected
+     */
+    public int reconcileBookedCapacity() {
+        AtomicInteger repaired = new AtomicInteger();
+        UUID after = new UUID(0L, 0L);
+        List<UUID> batch;
+        do {
+            UUID from = after;
+            batch = transactionTemplate.execute(status -> {
+                List<UUID> locked = activityRepository.lockCapacityBatch(from, RECONCILE_BATCH_SIZE);
+                if (!locked.isEmpty()) {
+                    repaired.addAndGet(activityRepository.reconcileBookedCapacity(locked));
+                }
+                return locked;
+            });
+            if (!batch.isEmpty()) {
+                after = batch.get(batch.size() - 1);
+            }
+        } while (batch.size() == RECONCILE_BATCH_SIZE);
+        return repaired.get();
+    }
+
+    public LocalDateTime newHoldExpiry() {
+        return LocalDateTime.now().plusMinutes(holdTtlMinutes);
+    }
+
+    /**
+     * Cancels pending bookings whose hold has lapsed and returns their seats. Each booking is
+     * expired with a conditional UPDATE, so a concurrent cancel or payment cannot release it twice.
+     *
+     * @return number of holds released
+     */
+    @Transactional
+    public int releaseExpiredHolds() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> expired = bookingRepository.findExpiredHolds(now, PageRequest.of(0, EXPIRY_BATCH_SIZE));
+        int released = 0;
+        for (Object[] hold : expired) {
+            UUID bookingId = (UUID) hold[0];
+            UUID activityId = (UUID) hold[1];
+            int guests = ((Number) hold[2]).intValue();
+            if (bookingRepository.expireHold(bookingId, now) == 1) {
+                release(activityId, guests);
+                eventPublisher.publishEvent(BookingEvent.cancelled(
+                        bookingId, (UUID) hold[3], activityId, guests, (LocalDateTime) hold[4]));
+                released++;
+            }
+        }
+        if (released > 0) {
+            log.info("Released {} expired booking holds", released);
+        }
+        return released;
+    }
+}
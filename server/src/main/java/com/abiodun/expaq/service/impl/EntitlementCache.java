@@ -0,0 +1,119 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.SubscriptionChangedEvent;
+import com.abiodun.expaq.model.Subscription;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Entitlements per user, from the user's active subscription. Users are loaded on first use, with
+ * many users loaded by one query, and dropped when a {@link SubscriptionChangedEvent} for them commits.
+ * An entry remembers when its subscription ends and reads as the free tier from then on, so a lapsed
+ * subscription stops granting features even before the expiry job runs. Entries are refreshed in the
+ * background after a while, so changes made by other instances show up without slowing lookups down.
+ */
+@Slf4j
+@Service
+public class EntitlementCache {
+
+    private static final int MAX_USERS = 100_000;
+    private static final Duration REFRESH_AFTER = Duration.ofMinutes(10);
+    private static final Duration TTL = Duration.ofMinutes(30);
+    private static final int PRELOAD_BATCH_SIZE = 1_000;
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final ActivityRepository activityRepository;
+    private final LoadingCache<UUID, UserEntitlements> entitlements;
+
+    public EntitlementCache(SubscriptionRepository subscriptionRepository, ActivityRepository activityRepository) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.activityRepository = activityRepository;
+        this.entitlements = Caffeine.newBuilder()
+                .maximumSize(MAX_USERS)
+                .refreshAfterWrite(REFRESH_AFTER)
+                .expireAfterWrite(TTL)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public UserEntitlements load(UUID userId) {
+                        return loadAll(Set.of(userId)).get(userId);
+                    }
+
+                    @Override
+                    public Map<UUID, UserEntitlements> loadAll(Set<? extends UUID> userIds) {
+                        return compute(userIds);
+                    }
+                });
+    }
+
+    public Entitlements get(UUID userId) {
+        UserEntitlements user = entitlements.get(userId);
+        return user.validUntilMillis > System.currentTimeMillis() ? user.entitlements : Entitlements.FREE;
+    }
+
+    /**
+     * Loads every host with an active listing who is not cached yet.
+     *
+     * @return number of hosts loaded
+     */
+    public int preloadActiveHosts() {
+        List<UUID> hostIds = activityRepository.findActiveHostIds();
+        int loaded = 0;
+        for (int from = 0; from < hostIds.size(); from += PRELOAD_BATCH_SIZE) {
+            List<UUID> batch = hostIds.subList(from, Math.min(from + PRELOAD_BATCH_SIZE, hostIds.size()));
+            int cachedBefore = entitlements.getAllPresent(batch).size();
+            entitlements.getAll(batch);
+            loaded += batch.size() - cachedBefore;
+        }
+        if (loaded > 0) {
+            log.info("Preloaded entitlements for {} hosts", loaded);
+        }
+        return loaded;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubscriptionChanged(SubscriptionChangedEvent event) {
+        entitlements.invalidate(event.getUserId());
+    }
+
+    private Map<UUID, UserEntitlements> compute(Collection<? extends UUID> userIds) {
+        Map<UUID, UserEntitlements> result = new HashMap<>();
+        for (UUID userId : userIds) {
+            result.put(userId, UserEntitlements.FREE);
+        }
+        for (Object[] row : subscriptionRepository.findActivePlansByUserIds(List.copyOf(userIds), LocalDateTime.now())) {
+            LocalDateTime endDate = (LocalDateTime) row[2];
+            long validUntil = endDate == null ? Long.MAX_VALUE : Timestamp.valueOf(endDate).getTime();
+            result.put((UUID) row[0], new UserEntitlements(
+                    Entitlements.forPlan((Subscription.PlanType) row[1]), validUntil));
+        }
+        return result;
+    }
+
+    private static final class UserEntitlements {
+        private static final UserEntitlements FREE = new UserEntitlements(Entitlements.FREE, Long.MAX_VALUE);
+
+        private final Entitlements entitlements;
+        private final long validUntilMillis;
+
+        private UserEntitlements(Entitlements entitlements, long validUntilMillis) {
+            this.entitlements = entitlements;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.model.Subscription;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What a subscription tier allows: a bitmask of features plus the tier's limits. There is one shared
+ * instance per plan and one for users without a subscription, so caching a user's entitlements costs a
+ * reference. Plan instances are derived from {@link Subscription#hasFeature} and the plan limits on
+ * {@link Subscription}, so the two cannot drift apart.
+ */
+public final class Entitlements {
+
+    private static final List<String> FEATURES = List.of(
+            "create_activities", "manage_bookings", "basic_analytics", "standard_support",
+            "featured_listings", "reduced_commission", "advanced_calendar", "priority_search",
+            "detailed_analytics", "custom_branding", "bulk_operations", "priority_support");
+    private static final Map<String, Long> FEATURE_BITS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < FEATURES.size(); i++) {
+            FEATURE_BITS.put(FEATURES.get(i), 1L << i);
+        }
+    }
+
+    /** Free tier, for users without an active subscription. */
+    public static final Entitlements FREE = new Entitlements(
+            FEATURE_BITS.get("create_activities") | FEATURE_BITS.get("manage_bookings") | FEATURE_BITS.get("basic_analytics"),
+            false, 5, 5, new BigDecimal("0.10"));
+
+    private static final Map<Subscription.PlanType, Entitlements> BY_PLAN = new EnumMap<>(Subscription.PlanType.class);
+
+    static {
+        for (Subscription.PlanType planType : Subscription.PlanType.values()) {
+            Subscription plan = new Subscription();
+            plan.setPlanType(planType);
+            plan.setStatus(Subscription.SubscriptionStatus.ACTIVE);
+            long bits = 0;
+            for (String feature : FEATURES) {
+                if (plan.hasFeature(feature)) {
+                    bits |= FEATURE_BITS.get(feature);
+                }
+            }
+            // Enterprise has every feature, including ones not listed here
+            BY_PLAN.put(planType, new Entitlements(bits, planType == Subscription.PlanType.ENTERPRISE,
+                    plan.getMaxActivities(), plan.getMaxPhotosPerActivity(), plan.getCommissionRate()));
+        }
+    }
+
+    private final long featureBits;
+    private final boolean allFeatures;
+    private final int maxActivities;
+    private final int maxPhotosPerActivity;
+    private final BigDecimal commissionRate;
+
+    private Entitlements(long featureBits, boolean allFeatures, int maxActivities, int maxPhotosPerActivity,
+                         BigDecimal commissionRate) {
+        this.featureBits = featureBits;
+        this.allFeatures = allFeatures;
+        this.maxActivities = maxActivities;
+        this.maxPhotosPerActivity = maxPhotosPerActivity;
+        this.commissionRate = commissionRate;
+    }
+
+    public static Entitlements forPlan(Subscription.PlanType planType) {
+        return BY_PLAN.get(planType);
+    }
+
+    public boolean hasFeature(String featureName) {
+        Long bit = FEATURE_BITS.get(featureName);
+        if (bit == null) {
+            bit = FEATURE_BITS.get(featureName.toLowerCase(Locale.ROOT));
+        }
+        return bit == null ? allFeatures : (featureBits & bit) != 0;
+    }
+
+    /**
+     * @return the activity limit, or -1 for unlimited
+     */
+    public int getMaxActivities() {
+        return maxActivities;
+    }
+
+    public int getMaxPhotosPerActivity() {
+        return maxPhotosPerActivity;
+    }
+
+    public BigDecimal getCommissionRate() {
+        return commissionRate;
+    }
+}
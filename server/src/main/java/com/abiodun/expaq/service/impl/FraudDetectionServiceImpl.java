@@ -2,19 +2,22 @@ package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.model.Payment;
 import com.abiodun.expaq.model.Payment.PaymentMethod;
-import com.abiodun.expaq.model.Payment.PaymentStatus;
 import com.abiodun.expaq.repository.PaymentRepository;
 import com.abiodun.expaq.service.IFraudDetectionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -22,168 +25,201 @@ import java.util.stream.Collectors;
 public class FraudDetectionServiceImpl implements IFraudDetectionService {
 
     private final PaymentRepository paymentRepository;
-    private static final BigDecimal HIGH_RISK_THRESHOLD = new BigDecimal("0.7");
-    private static final BigDecimal MEDIUM_RISK_THRESHOLD = new BigDecimal("0.4");
+    private final UserRiskFeatureStore riskFeatureStore;
+    private static final double HIGH_RISK_THRESHOLD = 0.7;
+    private static final double MEDIUM_RISK_THRESHOLD = 0.4;
+    private static final int RISK_FACTORS = 5;
+    // Bucket for payments without a (known) method, as in the daily payment rollup
+    static final String UNKNOWN_METHOD = "UNKNOWN";
 
     @Override
     public BigDecimal calculateRiskScore(Payment payment) {
-        List<BigDecimal> riskFactors = new ArrayList<>();
-
-        // Amount-based risk
-        riskFactors.add(calculateAmountRisk(payment.getAmount()));
-
-        // Time-based risk
-        riskFactors.add(calculateTimeRisk(payment.getCreatedAt()));
-
-        // User history risk
-        riskFactors.add(calculateUserHistoryRisk(payment.getUser().getId()));
-
-        // Payment method risk
-        riskFactors.add(calculatePaymentMethodRisk(payment.getPaymentMethod()));
-
-        // Currency risk
-        riskFactors.add(calculateCurrencyRisk(String.valueOf(payment.getCurrency())));
-
-        // Calculate weighted average of risk factors
-        return riskFactors.stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(new BigDecimal(riskFactors.size()), 2, RoundingMode.HALF_UP);
+        UserRiskFeatureStore.UserRiskFeatures features = riskFeatureStore.get(payment.getUser().getId());
+        double score = riskScore(payment.getAmount().doubleValue(), payment.getCreatedAt(), payment.getPaymentMethod(),
+                String.valueOf(payment.getCurrency()), features.getTotalPayments(), features.getFailedPayments());
+        return BigDecimal.valueOf(score).setScale(2, RoundingMode.HALF_UP);
     }
 
     @Override
     public boolean isSuspiciousTransaction(Payment payment) {
-        return calculateRiskScore(payment).compareTo(HIGH_RISK_THRESHOLD) >= 0;
+        return calculateRiskScore(payment).doubleValue() >= HIGH_RISK_THRESHOLD;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getFraudRatesByPaymentMethod() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateFraudRates(allPayments, p -> p.getPaymentMethod().name());
+        return calculateFraudRates(row -> row.paymentMethod);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getFraudRatesByCurrency() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateFraudRates(allPayments, Payment::getCurrency);
+        return calculateFraudRates(row -> row.currency);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getFraudRatesByTimePeriod() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateFraudRates(allPayments, 
-            p -> p.getCreatedAt().truncatedTo(ChronoUnit.DAYS).toString());
+        return calculateFraudRates(row -> row.createdAt.truncatedTo(ChronoUnit.DAYS).toString());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getRiskScoresByPaymentMethod() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateAverageRiskScores(allPayments, p -> p.getPaymentMethod().name());
+        return calculateAverageRiskScores(row -> row.paymentMethod);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getRiskScoresByCurrency() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateAverageRiskScores(allPayments, Payment::getCurrency);
+        return calculateAverageRiskScores(row -> row.currency);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Map<String, BigDecimal> getRiskScoresByTimePeriod() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateAverageRiskScores(allPayments,
-            p -> p.getCreatedAt().truncatedTo(ChronoUnit.DAYS).toString());
+        return calculateAverageRiskScores(row -> row.createdAt.truncatedTo(ChronoUnit.DAYS).toString());
     }
 
-    private BigDecimal calculateAmountRisk(BigDecimal amount) {
+    /**
+     * Unweighted mean of the amount, time, user history, payment method and currency risks,
+     * rounded to two decimals. A null method scores like any other unlisted method.
+     */
+    public static double riskScore(double amount, LocalDateTime createdAt, PaymentMethod method, String currency,
+                                   long userPayments, long userFailedPayments) {
+        double total = calculateAmountRisk(amount)
+                + calculateTimeRisk(createdAt)
+                + calculateUserHistoryRisk(userPayments, userFailedPayments)
+                + calculatePaymentMethodRisk(method)
+                + calculateCurrencyRisk(currency);
+        return round(total / RISK_FACTORS, 2);
+    }
+
+    private static double calculateAmountRisk(double amount) {
         // Higher amounts have higher risk
-        if (amount.compareTo(new BigDecimal("1000")) > 0) {
-            return new BigDecimal("0.8");
-        } else if (amount.compareTo(new BigDecimal("500")) > 0) {
-            return new BigDecimal("0.6");
-        } else if (amount.compareTo(new BigDecimal("100")) > 0) {
-            return new BigDecimal("0.4");
+        if (amount > 1000) {
+            return 0.8;
+        } else if (amount > 500) {
+            return 0.6;
+        } else if (amount > 100) {
+            return 0.4;
         }
-        return new BigDecimal("0.2");
+        return 0.2;
     }
 
-    private BigDecimal calculateTimeRisk(LocalDateTime paymentTime) {
+    private static double calculateTimeRisk(LocalDateTime paymentTime) {
         // Transactions during unusual hours have higher risk
         int hour = paymentTime.getHour();
         if (hour >= 23 || hour <= 4) {
-            return new BigDecimal("0.7");
+            return 0.7;
         } else if (hour >= 21 || hour <= 6) {
-            return new BigDecimal("0.5");
+            return 0.5;
         }
-        return new BigDecimal("0.2");
+        return 0.2;
     }
 
-    private BigDecimal calculateUserHistoryRisk(UUID userId) {
-        List<Payment> userPayments = paymentRepository.findByUserId(userId);
-        if (userPayments.isEmpty()) {
-            return new BigDecimal("0.6"); // New users have higher risk
+    private static double calculateUserHistoryRisk(long userPayments, long userFailedPayments) {
+        if (userPayments == 0) {
+            return 0.6; // New users have higher risk
         }
-
-        long failedPayments = userPayments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.FAILED)
-                .count();
-
-        return new BigDecimal(failedPayments)
-                .divide(new BigDecimal(userPayments.size()), 2, RoundingMode.HALF_UP)
-                .multiply(new BigDecimal("0.8"));
+        return round((double) userFailedPayments / userPayments, 2) * 0.8;
     }
 
-    private BigDecimal calculatePaymentMethodRisk(PaymentMethod method) {
+    private static double calculatePaymentMethodRisk(PaymentMethod method) {
+        if (method == null) {
+            return 0.7;
+        }
         return switch (method) {
-            case CREDIT_CARD -> new BigDecimal("0.3");
-            case DEBIT_CARD -> new BigDecimal("0.4");
-            case BANK_TRANSFER -> new BigDecimal("0.5");
-            case WALLET -> new BigDecimal("0.6");
-            default -> new BigDecimal("0.7");
+            case CREDIT_CARD -> 0.3;
+            case DEBIT_CARD -> 0.4;
+            case BANK_TRANSFER -> 0.5;
+            case WALLET -> 0.6;
+            default -> 0.7;
         };
     }
 
-    private BigDecimal calculateCurrencyRisk(String currency) {
+    private static double calculateCurrencyRisk(String currency) {
         return switch (currency.toUpperCase()) {
-            case "USD", "EUR", "GBP" -> new BigDecimal("0.3");
-            case "JPY", "CAD", "AUD" -> new BigDecimal("0.4");
-            default -> new BigDecimal("0.6");
+            case "USD", "EUR", "GBP" -> 0.3;
+            case "JPY", "CAD", "AUD" -> 0.4;
+            default -> 0.6;
         };
     }
 
-    private <T> Map<String, BigDecimal> calculateFraudRates(List<Payment> payments, 
-            java.util.function.Function<Payment, T> groupingFunction) {
-        Map<T, List<Payment>> groupedPayments = payments.stream()
-                .collect(Collectors.groupingBy(groupingFunction));
-
-        return groupedPayments.entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> e.getKey().toString(),
-                        e -> {
-                            List<Payment> methodPayments = e.getValue();
-                            long suspiciousCount = methodPayments.stream()
-                                    .filter(this::isSuspiciousTransaction)
-                                    .count();
-                            return new BigDecimal(suspiciousCount)
-                                    .divide(new BigDecimal(methodPayments.size()), 4, RoundingMode.HALF_UP)
-                                    .multiply(new BigDecimal("100"));
-                        }
-                ));
-    }
-
-    private <T> Map<String, BigDecimal> calculateAverageRiskScores(List<Payment> payments,
-            java.util.function.Function<Payment, T> groupingFunction) {
-        Map<T, List<Payment>> groupedPayments = payments.stream()
-                .collect(Collectors.groupingBy(groupingFunction));
-
-        return groupedPayments.entrySet().stream()
-                .collect(Collectors.toMap(
-                        e -> e.getKey().toString(),
-                        e -> {
-                            List<Payment> methodPayments = e.getValue();
-                            BigDecimal totalRisk = methodPayments.stream()
-                                    .map(this::calculateRiskScore)
-                                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-                            return totalRisk.divide(new BigDecimal(methodPayments.size()), 2, RoundingMode.HALF_UP);
-                        }
-                ));
-    }
-} 
\ No newline at end of file
+    // Half-up rounding in double arithmetic; the nudge absorbs representation error such as 0.545 -> 0.54499...
+    private static double round(double value, int places) {
+        double scale = Math.pow(10, places);
+        return Math.floor(value * scale + 0.5 + 1e-9) / scale;
+    }
+
+    private Map<String, BigDecimal> calculateFraudRates(Function<ScoredPayment, String> groupingFunction) {
+        Map<String, long[]> suspiciousAndTotal = new HashMap<>();
+        scanPayments(row -> {
+            long[] counts = suspiciousAndTotal.computeIfAbsent(groupingFunction.apply(row), key -> new long[2]);
+            if (row.score >= HIGH_RISK_THRESHOLD) {
+                counts[0]++;
+            }
+            counts[1]++;
+        });
+
+        Map<String, BigDecimal> rates = new HashMap<>();
+        suspiciousAndTotal.forEach((key, counts) -> rates.put(key, BigDecimal.valueOf(counts[0])
+                .divide(BigDecimal.valueOf(counts[1]), 4, RoundingMode.HALF_UP)
+                .multiply(new BigDecimal("100"))));
+        return rates;
+    }
+
+    private Map<String, BigDecimal> calculateAverageRiskScores(Function<ScoredPayment, String> groupingFunction) {
+        Map<String, double[]> totalAndCount = new HashMap<>();
+        scanPayments(row -> {
+            double[] sums = totalAndCount.computeIfAbsent(groupingFunction.apply(row), key -> new double[2]);
+            sums[0] += row.score;
+            sums[1]++;
+        });
+
+        Map<String, BigDecimal> averages = new HashMap<>();
+        totalAndCount.forEach((key, sums) -> averages.put(key,
+                BigDecimal.valueOf(sums[0] / sums[1]).setScale(2, RoundingMode.HALF_UP)));
+        return averages;
+    }
+
+    /**
+     * Scores every payment in one streaming pass. Each row already carries its user's totals,
+     * so neither entities nor per-user queries are needed, and only one fetch batch is in memory.
+     */
+    private void scanPayments(Consumer<ScoredPayment> consumer) {
+        try (Stream<Object[]> rows = paymentRepository.streamPaymentsWithUserRiskCounts()) {
+            ScoredPayment row = new ScoredPayment();
+            rows.forEach(values -> {
+                row.createdAt = values[1] instanceof Timestamp timestamp
+                        ? timestamp.toLocalDateTime() : (LocalDateTime) values[1];
+                PaymentMethod method = parseMethod((String) values[2]);
+                row.paymentMethod = method != null ? method.name() : UNKNOWN_METHOD;
+                row.currency = (String) values[3];
+                row.score = riskScore(((Number) values[0]).doubleValue(), row.createdAt, method, row.currency,
+                        ((Number) values[4]).longValue(), ((Number) values[5]).longValue());
+                consumer.accept(row);
+            });
+        }
+    }
+
+    // Null for rows without a method or with one this build no longer knows
+    private static PaymentMethod parseMethod(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return PaymentMethod.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Reused for every row of a scan
+    private static final class ScoredPayment {
+        private LocalDateTime createdAt;
+        private String paymentMethod;
+        private String currency;
+        private double score;
+    }
+}
@@ -1,6 +1,7 @@
 package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.UserDTO;
+import com.abiodun.expaq.event.UserAccessChangedEvent;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.model.Role;
 import com.abiodun.expaq.model.User;
@@ -9,6 +10,7 @@ import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.dto.request.BecomeHostRequest;
 import com.abiodun.expaq.service.HostService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +25,9 @@ public class HostServiceImpl implements HostService {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     @Transactional
     public UserDTO applyToBecomeHost(BecomeHostRequest request, UUID userId) {
@@ -48,6 +53,7 @@ public class HostServiceImpl implements HostService {
         // Add HOST role to user
         user.getRoles().add(hostRole);
         userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
 
         // TODO: Save additional host details to a separate table if needed
         // TODO: Implement approval workflow if required
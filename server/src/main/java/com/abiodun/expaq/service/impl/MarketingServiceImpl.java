@@ -8,12 +8,15 @@ import com.abiodun.expaq.repository.MarketingExecutionRepository;
 import com.abiodun.expaq.repository.MarketingMetricRepository;
 import com.abiodun.expaq.service.IMarketingService;
 import com.abiodun.expaq.service.EmailService;
+import com.abiodun.expaq.service.marketing.CampaignDispatcher;
+import com.abiodun.expaq.service.marketing.TrackingEventIngestor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -32,6 +35,8 @@ public class MarketingServiceImpl implements IMarketingService {
     private final MarketingExecutionRepository executionRepository;
     private final MarketingMetricRepository metricRepository;
     private final EmailService emailService;
+    private final TrackingEventIngestor trackingEventIngestor;
+    private final CampaignDispatcher campaignDispatcher;
     
     // Campaign Management
     
@@ -236,8 +241,8 @@ public class MarketingServiceImpl implements IMarketingService {
         MarketingExecution execution = executionRepository.findByTrackingCode(trackingCode);
         if (execution != null) {
             execution.markAsOpened();
+            execution.updateEngagementMetrics();
             executionRepository.save(execution);
-            calculateExecutionMetrics(execution.getId());
         }
     }
     
@@ -246,8 +251,8 @@ public class MarketingServiceImpl implements IMarketingService {
         MarketingExecution execution = executionRepository.findByTrackingCode(trackingCode);
         if (execution != null) {
             execution.markAsClicked();
+            execution.updateEngagementMetrics();
             executionRepository.save(execution);
-            calculateExecutionMetrics(execution.getId());
         }
     }
     
@@ -256,8 +261,8 @@ public class MarketingServiceImpl implements IMarketingService {
         MarketingExecution execution = executionRepository.findByTrackingCode(trackingCode);
         if (execution != null) {
             execution.markAsConverted(conversionValue);
+            execution.updateEngagementMetrics();
             executionRepository.save(execution);
-            calculateExecutionMetrics(execution.getId());
         }
     }
     
@@ -303,35 +308,22 @@ public class MarketingServiceImpl implements IMarketingService {
         }
     }
     
+    // The dispatcher claims, sends and records executions in its own short statements
+    
     @Override
     @Async
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void processScheduledExecutions() {
-        List<MarketingExecution> scheduledExecutions = executionRepository
-            .findByStatusAndScheduledAtBefore(MarketingExecution.ExecutionStatus.SCHEDULED, LocalDateTime.now());
-        
-        for (MarketingExecution execution : scheduledExecutions) {
-            sendExecution(execution.getId());
-        }
+        campaignDispatcher.dispatchDue();
     }
     
     @Override
     @Async
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void retryFailedExecutions() {
-        List<MarketingExecution.ExecutionStatus> retryableStatuses = Arrays.asList(
-            MarketingExecution.ExecutionStatus.FAILED,
-            MarketingExecution.ExecutionStatus.BOUNCED
-        );
-        
-        List<MarketingExecution> executions = executionRepository.findExecutionsForRetry(retryableStatuses);
-        
-        for (MarketingExecution execution : executions) {
-            if (execution.canRetry()) {
-                execution.incrementRetryCount();
-                execution.setStatus(MarketingExecution.ExecutionStatus.PENDING);
-                executionRepository.save(execution);
-                sendExecution(execution.getId());
-            }
-        }
+        int requeued = campaignDispatcher.requeueFailed();
+        log.info("Requeued {} failed marketing executions", requeued);
+        campaignDispatcher.dispatchDue();
     }
     
     @Override
@@ -569,23 +561,27 @@ public class MarketingServiceImpl implements IMarketingService {
     }
     
     // Tracking & Events
+    // Opens, clicks and conversions are written behind by the ingestor, so they need no transaction here
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void trackEmailOpen(String trackingCode, String userAgent, String ipAddress) {
-        markExecutionOpened(trackingCode);
-        log.info("Tracked email open for tracking code: {}", trackingCode);
+        trackingEventIngestor.recordOpened(trackingCode);
+        log.debug("Tracked email open for tracking code: {}", trackingCode);
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void trackEmailClick(String trackingCode, String clickedUrl, String userAgent, String ipAddress) {
-        markExecutionClicked(trackingCode);
-        log.info("Tracked email click for tracking code: {} URL: {}", trackingCode, clickedUrl);
+        trackingEventIngestor.recordClicked(trackingCode);
+        log.debug("Tracked email click for tracking code: {} URL: {}", trackingCode, clickedUrl);
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void trackConversion(String trackingCode, String conversionEvent, BigDecimal value) {
-        markExecutionConverted(trackingCode, value);
-        log.info("Tracked conversion for tracking code: {} Event: {} Value: {}", 
+        trackingEventIngestor.recordConverted(trackingCode, value);
+        log.debug("Tracked conversion for tracking code: {} Event: {} Value: {}", 
                 trackingCode, conversionEvent, value);
     }
     
@@ -0,0 +1,104 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.PaymentAnalyticsDTO;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Single-pass fold of the grouped payment totals into a {@link PaymentAnalyticsDTO}. Rows are
+ * added as they are streamed from the database, so memory is bounded by the number of distinct
+ * statuses, methods, currencies and days rather than by the number of payments.
+ */
+final class PaymentAnalyticsAccumulator {
+
+    private static final BigDecimal HUNDRED = new BigDecimal("100");
+
+    private long paymentCount;
+    private BigDecimal totalRevenue = BigDecimal.ZERO;
+    private BigDecimal totalRefunds = BigDecimal.ZERO;
+    private final Map<String, BigDecimal> revenueByPaymentMethod = new HashMap<>();
+    private final Map<String, Long> completedCountByPaymentMethod = new HashMap<>();
+    private final Map<String, Long> paymentCountByPaymentMethod = new HashMap<>();
+    private final Map<String, Long> refundCountByPaymentMethod = new HashMap<>();
+    private final Map<String, Long> paymentCountByStatus = new HashMap<>();
+    private final Map<String, BigDecimal> revenueByCurrency = new HashMap<>();
+    private final Map<String, BigDecimal> revenueByTimePeriod = new HashMap<>();
+    private final Map<String, Long> paymentCountByTimePeriod = new HashMap<>();
+
+    /**
+     * Adds one {@code [status, paymentMethod, currency, count, sum]} group.
+     */
+    void addTotals(Object[] row) {
+        PaymentStatus status = (PaymentStatus) row[0];
+        String method = name(row[1]);
+        String currency = name(row[2]);
+        long count = ((Number) row[3]).longValue();
+        BigDecimal sum = row[4] != null ? (BigDecimal) row[4] : BigDecimal.ZERO;
+
+        paymentCount += count;
+        paymentCountByStatus.merge(name(status), count, Long::sum);
+        paymentCountByPaymentMethod.merge(method, count, Long::sum);
+        if (status == PaymentStatus.COMPLETED) {
+            totalRevenue = totalRevenue.add(sum);
+            revenueByPaymentMethod.merge(method, sum, BigDecimal::add);
+            completedCountByPaymentMethod.merge(method, count, Long::sum);
+            revenueByCurrency.merge(currency, sum, BigDecimal::add);
+        } else if (status == PaymentStatus.REFUNDED) {
+            totalRefunds = totalRefunds.add(sum);
+            refundCountByPaymentMethod.merge(method, count, Long::sum);
+        }
+    }
+
+    /**
+     * Adds one {@code [day, count, completedCount, completedSum]} group.
+     */
+    void addDay(Object[] row) {
+        String period = ((LocalDate) row[0]).atStartOfDay().toString();
+        paymentCountByTimePeriod.merge(period, ((Number) row[1]).longValue(), Long::sum);
+        if (((Number) row[2]).longValue() > 0) {
+            revenueByTimePeriod.merge(period, (BigDecimal) row[3], BigDecimal::add);
+        }
+    }
+
+    PaymentAnalyticsDTO toAnalytics() {
+        if (paymentCount == 0) {
+            return PaymentAnalyticsDTO.builder().build();
+        }
+
+        Map<String, BigDecimal> averageTransactionValue = new HashMap<>();
+        revenueByPaymentMethod.forEach((method, revenue) -> averageTransactionValue.put(method,
+                revenue.divide(BigDecimal.valueOf(completedCountByPaymentMethod.get(method)), 2, RoundingMode.HALF_UP)));
+
+        Map<String, BigDecimal> refundRateByPaymentMethod = new HashMap<>();
+        paymentCountByPaymentMethod.forEach((method, count) -> refundRateByPaymentMethod.put(method,
+                BigDecimal.valueOf(refundCountByPaymentMethod.getOrDefault(method, 0L))
+                        .divide(BigDecimal.valueOf(count), 4, RoundingMode.HALF_UP)
+                        .multiply(HUNDRED)));
+
+        return PaymentAnalyticsDTO.builder()
+                .totalRevenue(totalRevenue)
+                .totalRefunds(totalRefunds)
+                .netRevenue(totalRevenue.subtract(totalRefunds))
+                .revenueByPaymentMethod(revenueByPaymentMethod)
+                .paymentCountByStatus(paymentCountByStatus)
+                .revenueByCurrency(revenueByCurrency)
+                .revenueByTimePeriod(revenueByTimePeriod)
+                .averageTransactionValue(averageTransactionValue)
+                .paymentCountByTimePeriod(paymentCountByTimePeriod)
+                .refundRateByPaymentMethod(refundRateByPaymentMethod)
+                .build();
+    }
+
+    private static String name(Object value) {
+        if (value instanceof Enum<?> e) {
+            return e.name();
+        }
+        // Rollup rows carry the payment method as a string
+        return value instanceof String s ? s : "UNKNOWN";
+    }
+}
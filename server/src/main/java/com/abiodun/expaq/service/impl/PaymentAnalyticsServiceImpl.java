@@ -2,69 +2,101 @@ package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.PaymentAnalyticsDTO;
 import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.Currency;
 import com.abiodun.expaq.model.Payment.PaymentMethod;
 import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
 import com.abiodun.expaq.repository.PaymentRepository;
 import com.abiodun.expaq.service.IPaymentAnalyticsService;
-import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Transactional(readOnly = true)
 public class PaymentAnalyticsServiceImpl implements IPaymentAnalyticsService {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentDailyRollupRepository rollupRepository;
+    private final PaymentRollupService paymentRollupService;
 
     @Override
     public PaymentAnalyticsDTO getOverallAnalytics() {
-        List<Payment> allPayments = paymentRepository.findAll();
-        return calculateAnalytics(allPayments);
+        return calculateAnalytics(null);
     }
 
     @Override
     public PaymentAnalyticsDTO getAnalyticsByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        List<Payment> payments = paymentRepository.findByDateRange(startDate, endDate);
-        return calculateAnalytics(payments);
+        LocalDate firstFullDay = startDate.toLocalDate().atStartOfDay().equals(startDate)
+                ? startDate.toLocalDate() : startDate.toLocalDate().plusDays(1);
+        LocalDate lastFullDay = endDate.toLocalDate().minusDays(1);
+        if (!paymentRollupService.isReady() || firstFullDay.isAfter(lastFullDay)) {
+            return calculateAnalytics((root, query, cb) -> cb.between(root.get("createdAt"), startDate, endDate));
+        }
+
+        // Whole days come from the rollup; only the partial days at either end touch raw payments
+        PaymentAnalyticsAccumulator accumulator = new PaymentAnalyticsAccumulator();
+        rollupRepository.sumTotalsByStatusMethodAndCurrency(firstFullDay, lastFullDay).forEach(accumulator::addTotals);
+        rollupRepository.sumTotalsByDay(firstFullDay, lastFullDay).forEach(accumulator::addDay);
+        LocalDateTime fullDaysStart = firstFullDay.atStartOfDay();
+        LocalDateTime fullDaysEnd = lastFullDay.plusDays(1).atStartOfDay();
+        if (startDate.isBefore(fullDaysStart)) {
+            accumulate(accumulator, (root, query, cb) -> cb.and(
+                    cb.greaterThanOrEqualTo(root.get("createdAt"), startDate),
+                    cb.lessThan(root.get("createdAt"), fullDaysStart)));
+        }
+        accumulate(accumulator, (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.get("createdAt"), fullDaysEnd),
+                cb.lessThanOrEqualTo(root.get("createdAt"), endDate)));
+        return accumulator.toAnalytics();
     }
 
     @Override
     public PaymentAnalyticsDTO getUserAnalytics(UUID userId) {
-        List<Payment> userPayments = paymentRepository.findByUserId(userId);
-        return calculateAnalytics(userPayments);
+        return calculateAnalytics((root, query, cb) -> cb.equal(root.get("user").get("id"), userId));
     }
 
     @Override
     public PaymentAnalyticsDTO getBookingAnalytics(UUID bookingId) {
-        List<Payment> bookingPayments = paymentRepository.findByBookingId(bookingId);
-        return calculateAnalytics(bookingPayments);
+        return calculateAnalytics((root, query, cb) -> cb.equal(root.get("booking").get("id"), bookingId));
     }
 
     @Override
     public PaymentAnalyticsDTO getAnalyticsByStatus(PaymentStatus status) {
-        List<Payment> payments = paymentRepository.findByStatus(status);
-        return calculateAnalytics(payments);
+        return calculateAnalytics((root, query, cb) -> cb.equal(root.get("status"), status));
     }
 
     @Override
     public PaymentAnalyticsDTO getAnalyticsByPaymentMethod(String paymentMethod) {
-        List<Payment> payments = paymentRepository.findByPaymentMethod(PaymentMethod.valueOf(paymentMethod.toUpperCase()));
-        return calculateAnalytics(payments);
+        PaymentMethod method;
+        try {
+            method = PaymentMethod.valueOf(paymentMethod.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // No payment can use a method we do not know
+            return new PaymentAnalyticsAccumulator().toAnalytics();
+        }
+        return calculateAnalytics((root, query, cb) -> cb.equal(root.get("paymentMethod"), method));
     }
 
     @Override
     public PaymentAnalyticsDTO getAnalyticsByCurrency(String currency) {
-        List<Payment> payments = paymentRepository.findByCurrency(currency);
-        return calculateAnalytics(payments);
+        Currency paymentCurrency;
+        try {
+            paymentCurrency = Currency.valueOf(currency.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            // No payment can be in a currency we do not support
+            return new PaymentAnalyticsAccumulator().toAnalytics();
+        }
+        return calculateAnalytics((root, query, cb) -> cb.equal(root.get("currency"), paymentCurrency));
     }
 
     @Override
@@ -80,132 +112,22 @@ public class PaymentAnalyticsServiceImpl implements IPaymentAnalyticsService {
         return getAnalyticsByDateRange(startDate, endDate);
     }
 
-    private PaymentAnalyticsDTO calculateAnalytics(List<Payment> payments) {
-        if (payments.isEmpty()) {
-            return PaymentAnalyticsDTO.builder().build();
-        }
-
-        BigDecimal totalRevenue = calculateTotalRevenue(payments);
-        BigDecimal totalRefunds = calculateTotalRefunds(payments);
-        BigDecimal netRevenue = totalRevenue.subtract(totalRefunds);
-
-        return PaymentAnalyticsDTO.builder()
-                .totalRevenue(totalRevenue)
-                .totalRefunds(totalRefunds)
-                .netRevenue(netRevenue)
-                .revenueByPaymentMethod(calculateRevenueByPaymentMethod(payments))
-                .paymentCountByStatus(calculatePaymentCountByStatus(payments))
-                .revenueByCurrency(calculateRevenueByCurrency(payments))
-                .revenueByTimePeriod(calculateRevenueByTimePeriod(payments))
-                .averageTransactionValue(calculateAverageTransactionValue(payments))
-                .paymentCountByTimePeriod(calculatePaymentCountByTimePeriod(payments))
-                .refundRateByPaymentMethod(calculateRefundRateByPaymentMethod(payments))
-                .build();
-    }
-
-    private BigDecimal calculateTotalRevenue(List<Payment> payments) {
-        return payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    private BigDecimal calculateTotalRefunds(List<Payment> payments) {
-        return payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.REFUNDED)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
-
-    private Map<String, BigDecimal> calculateRevenueByPaymentMethod(List<Payment> payments) {
-        return payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .collect(Collectors.groupingBy(
-                        p -> p.getPaymentMethod().name(),
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                Payment::getAmount,
-                                BigDecimal::add
-                        )
-                ));
+    /**
+     * Aggregates in the database and folds the grouped rows as they stream in, so no
+     * {@link Payment} entities are loaded whatever the size of the table.
+     */
+    private PaymentAnalyticsDTO calculateAnalytics(Specification<Payment> filter) {
+        PaymentAnalyticsAccumulator accumulator = new PaymentAnalyticsAccumulator();
+        accumulate(accumulator, filter);
+        return accumulator.toAnalytics();
     }
 
-    private Map<String, Long> calculatePaymentCountByStatus(List<Payment> payments) {
-        return payments.stream()
-                .collect(Collectors.groupingBy(
-                        p -> p.getStatus().name(),
-                        Collectors.counting()
-                ));
-    }
-
-    private Map<String, BigDecimal> calculateRevenueByCurrency(List<Payment> payments) {
-        return payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .collect(Collectors.groupingBy(
-                        payment -> payment.getCurrency().name(),  // Convert Currency enum to String
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                Payment::getAmount,
-                                BigDecimal::add
-                        )
-                ));
-    }
-
-    private Map<String, BigDecimal> calculateRevenueByTimePeriod(List<Payment> payments) {
-        return payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .collect(Collectors.groupingBy(
-                        p -> p.getCreatedAt().truncatedTo(ChronoUnit.DAYS).toString(),
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                Payment::getAmount,
-                                BigDecimal::add
-                        )
-                ));
-    }
-
-    private Map<String, BigDecimal> calculateAverageTransactionValue(List<Payment> payments) {
-        Map<String, List<Payment>> paymentsByMethod = payments.stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .collect(Collectors.groupingBy(p -> p.getPaymentMethod().name()));
-
-        return paymentsByMethod.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> {
-                            List<Payment> methodPayments = e.getValue();
-                            BigDecimal total = methodPayments.stream()
-                                    .map(Payment::getAmount)
-                                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-                            return total.divide(new BigDecimal(methodPayments.size()), 2, RoundingMode.HALF_UP);
-                        }
-                ));
-    }
-
-    private Map<String, Long> calculatePaymentCountByTimePeriod(List<Payment> payments) {
-        return payments.stream()
-                .collect(Collectors.groupingBy(
-                        p -> p.getCreatedAt().truncatedTo(ChronoUnit.DAYS).toString(),
-                        Collectors.counting()
-                ));
-    }
-
-    private Map<String, BigDecimal> calculateRefundRateByPaymentMethod(List<Payment> payments) {
-        Map<String, List<Payment>> paymentsByMethod = payments.stream()
-                .collect(Collectors.groupingBy(p -> p.getPaymentMethod().name()));
-
-        return paymentsByMethod.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        e -> {
-                            List<Payment> methodPayments = e.getValue();
-                            long refundCount = methodPayments.stream()
-                                    .filter(p -> p.getStatus() == PaymentStatus.REFUNDED)
-                                    .count();
-                            return new BigDecimal(refundCount)
-                                    .divide(new BigDecimal(methodPayments.size()), 4, RoundingMode.HALF_UP)
-                                    .multiply(new BigDecimal("100"));
-                        }
-                ));
+    private void accumulate(PaymentAnalyticsAccumulator accumulator, Specification<Payment> filter) {
+        try (Stream<Object[]> totals = paymentRepository.streamTotalsByStatusMethodAndCurrency(filter)) {
+            totals.forEach(accumulator::addTotals);
+        }
+        try (Stream<Object[]> days = paymentRepository.streamTotalsByDay(filter)) {
+            days.forEach(accumulator::addDay);
+        }
     }
 }
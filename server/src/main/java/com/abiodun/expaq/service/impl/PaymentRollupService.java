@@ -0,0 +1,165 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Keeps {@code payment_daily_rollup} in step with payments. Status changes move one payment between
+ * rollup cells inside the caller's transaction; the backfill rebuilds whole days from {@code payments}
+ * in bounded chunks, and is also used nightly to reconcile recent days.
+ *
+ * <p>Deltas and rebuilds of the same day are serialized with a transaction-scoped advisory lock per
+ * day: deltas share it, a rebuild takes it exclusively before reading {@code payments}. A rebuild
+ * therefore sees every delta committed before it and blocks later ones until it commits, so neither
+ * overwrites the other.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PaymentRollupService {
+
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+    private static final String UNKNOWN_METHOD = "UNKNOWN";
+    // First half of the two-key advisory locks; the second half is the day's epoch day
+    private static final int DAY_LOCK_NAMESPACE = 7_207;
+    private static final int PROGRESS_ID = 1;
+
+    private static final String LOCK_DAY_SHARED_SQL = "SELECT pg_advisory_xact_lock_shared(?, ?)";
+    private static final String LOCK_DAYS_SQL = "SELECT pg_advisory_xact_lock(?, d) FROM generate_series(?, ?) d";
+    private static final String INIT_PROGRESS_SQL = "INSERT INTO payment_rollup_backfill (id) VALUES (?)"
+            + " ON CONFLICT (id) DO NOTHING";
+    private static final String PROGRESS_SQL = "SELECT rebuilt_until, completed_at FROM payment_rollup_backfill"
+            + " WHERE id = ?";
+    private static final String ADVANCE_PROGRESS_SQL = "UPDATE payment_rollup_backfill SET rebuilt_until = ?"
+            + " WHERE id = ? AND (rebuilt_until IS NULL OR rebuilt_until < ?)";
+    private static final String COMPLETE_PROGRESS_SQL = "UPDATE payment_rollup_backfill SET completed_at = ?"
+            + " WHERE id = ? AND completed_at IS NULL";
+
+    private final PaymentDailyRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean backfilled;
+
+    /**
+     * True once the rollup is known to cover every payment day. Until then analytics must
+     * aggregate raw payments.
+     */
+    public boolean isReady() {
+        return backfilled;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Payment payment) {
+        apply(payment, payment.getStatus(), 1);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChange(Payment payment, PaymentStatus previousStatus) {
+        if (previousStatus == payment.getStatus()) {
+            return;
+        }
+        apply(payment, previousStatus, -1);
+        apply(payment, payment.getStatus(), 1);
+    }
+
+    private void apply(Payment payment, PaymentStatus status, int sign) {
+        if (status == null || payment.getCreatedAt() == null) {
+            return;
+        }
+        LocalDate day = payment.getCreatedAt().toLocalDate();
+        jdbcTemplate.query(LOCK_DAY_SHARED_SQL, (RowCallbackHandler) rs -> { }, DAY_LOCK_NAMESPACE, (int) day.toEpochDay());
+        BigDecimal amount = payment.getAmount() != null ? payment.getAmount() : BigDecimal.ZERO;
+        BigDecimal signed = sign > 0 ? amount : amount.negate();
+        rollupRepository.applyDelta(
+                day,
+                payment.getCurrency().name(),
+                payment.getPaymentMethod() != null ? payment.getPaymentMethod().name() : UNKNOWN_METHOD,
+                status.name(),
+                sign,
+                signed,
+                status == PaymentStatus.REFUNDED ? signed : BigDecimal.ZERO);
+    }
+
+    /**
+     * Builds the rollup from the first payment onwards, then marks it ready. Progress is stored with
+     * every chunk, so a backfill interrupted on one instance is resumed from the first unbuilt day by
+     * the next attempt; once the stored backfill is complete this only reads the marker.
+     */
+    public void backfillIfNeeded() {
+        if (backfilled) {
+            return;
+        }
+        jdbcTemplate.update(INIT_PROGRESS_SQL, PROGRESS_ID);
+        BackfillProgress progress = jdbcTemplate.queryForObject(PROGRESS_SQL, (rs, rowNum) -> new BackfillProgress(
+                rs.getObject("rebuilt_until", LocalDate.class),
+                rs.getObject("completed_at", LocalDateTime.class)), PROGRESS_ID);
+        if (progress.completedAt == null) {
+            LocalDateTime firstPayment = rollupRepository.findFirstPaymentTime();
+            if (firstPayment != null) {
+                LocalDate from = progress.rebuiltUntil != null ? progress.rebuiltUntil : firstPayment.toLocalDate();
+                if (progress.rebuiltUntil != null) {
+                    log.info("Resuming payment rollup backfill from {}", from);
+                }
+                rebuild(from, LocalDate.now().plusDays(1), true);
+            }
+            jdbcTemplate.update(COMPLETE_PROGRESS_SQL, Timestamp.valueOf(LocalDateTime.now()), PROGRESS_ID);
+        }
+        backfilled = true;
+    }
+
+    /**
+     * Recomputes the days in {@code [from, to)}, one transaction per chunk so locks and undo stay bounded.
+     *
+     * @return number of rollup cells written
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        return rebuild(from, to, false);
+    }
+
+    private int rebuild(LocalDate from, LocalDate to, boolean recordProgress) {
+        int written = 0;
+        for (LocalDate chunkStart = from; chunkStart.isBefore(to); chunkStart = chunkStart.plusDays(BACKFILL_CHUNK_DAYS)) {
+            LocalDate chunkEnd = chunkStart.plusDays(BACKFILL_CHUNK_DAYS).isBefore(to)
+                    ? chunkStart.plusDays(BACKFILL_CHUNK_DAYS) : to;
+            LocalDate start = chunkStart;
+            written += transactionTemplate.execute(status -> {
+                // In its own statement, so the rebuild below reads payments after the lock is held
+                jdbcTemplate.query(LOCK_DAYS_SQL, (RowCallbackHandler) rs -> { }, DAY_LOCK_NAMESPACE,
+                        (int) start.toEpochDay(), (int) chunkEnd.toEpochDay() - 1);
+                rollupRepository.deleteDays(start, chunkEnd);
+                int cells = rollupRepository.rebuildDays(start.atStartOfDay(), chunkEnd.atStartOfDay());
+                if (recordProgress) {
+                    jdbcTemplate.update(ADVANCE_PROGRESS_SQL, chunkEnd, PROGRESS_ID, chunkEnd);
+                }
+                return cells;
+            });
+        }
+        log.info("Rebuilt payment rollup for {} to {}: {} cells", from, to, written);
+        return written;
+    }
+
+    private static final class BackfillProgress {
+        private final LocalDate rebuiltUntil;
+        private final LocalDateTime completedAt;
+
+        private BackfillProgress(LocalDate rebuiltUntil, LocalDateTime completedAt) {
+            this.rebuiltUntil = rebuiltUntil;
+            this.completedAt = completedAt;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.PaymentDTO;
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.exception.PaymentBlockedException;
+import com.abiodun.expaq.exception.PaymentCreationFailedException;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.model.Booking;
 import com.abiodun.expaq.model.Payment;
@@ -11,21 +14,28 @@ import com.abiodun.expaq.repository.BookingRepository;
 import com.abiodun.expaq.repository.PaymentRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.IPaymentService;
+import com.abiodun.expaq.service.fraud.FraudAssessment;
+import com.abiodun.expaq.service.fraud.FraudRuleEngine;
 import com.abiodun.expaq.service.payment.PaymentProvider;
+import com.abiodun.expaq.service.payment.PaymentRefundOutbox;
 import com.abiodun.expaq.service.payment.PaystackClient;
 import com.abiodun.expaq.service.payment.StripePaymentProvider;
 import com.abiodun.expaq.service.payment.PaystackPaymentProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -39,6 +49,12 @@ public class PaymentServiceImpl implements IPaymentService {
     private final UserRepository userRepository;
     private final StripePaymentProvider stripePaymentProvider;
     private final PaystackPaymentProvider paystackPaymentProvider;
+    private final PaymentRollupService paymentRollupService;
+    private final FraudRuleEngine fraudRuleEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final CapacityReservationService capacityReservationService;
+    private final PaymentRefundOutbox refundOutbox;
 
     private boolean isValidEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
@@ -50,7 +66,7 @@ public class PaymentServiceImpl implements IPaymentService {
     }
 
     @Override
-    @Transactional
+    @Transactional(noRollbackFor = PaymentCreationFailedException.class)
     public PaymentDTO createPayment(UUID bookingId, UUID userId, String paymentMethod) {
         Booking booking = bookingRepository.findById(bookingId)
                 .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
@@ -84,6 +100,13 @@ public class PaymentServiceImpl implements IPaymentService {
             payment.setCurrency(Payment.Currency.USD);
         }
 
+        // Screen before the provider is involved, so a blocked attempt costs nothing upstream
+        FraudAssessment assessment = fraudRuleEngine.evaluate(payment);
+        if (assessment.isBlocked()) {
+            log.warn("Blocked payment for booking {} by user {}: rule {}", bookingId, userId, assessment.getBlockingRule());
+            throw new PaymentBlockedException("Payment attempt declined by fraud checks. Please try again later.");
+        }
+
         try {
             PaystackClient.PaymentInitResponse paystackResponse = null;
             if (paymentMethod.equalsIgnoreCase("STRIPE")) {
@@ -99,6 +122,8 @@ public class PaymentServiceImpl implements IPaymentService {
             }
 
             Payment savedPayment = paymentRepository.save(payment);
+            paymentRollupService.recordCreated(savedPayment);
+            eventPublisher.publishEvent(PaymentEvent.of(savedPayment, null));
             PaymentDTO paymentDTO = PaymentDTO.fromPayment(savedPayment);
 
             // Set the authorization URL if it's a Paystack payment
@@ -115,8 +140,11 @@ public class PaymentServiceImpl implements IPaymentService {
             log.error("Error creating payment", e);
             payment.setStatus(PaymentStatus.FAILED);
             payment.setErrorMessage(e.getMessage());
-            paymentRepository.save(payment);
-            throw new RuntimeException("Failed to create payment: " + e.getMessage());
+            Payment failedPayment = paymentRepository.save(payment);
+            paymentRollupService.recordCreated(failedPayment);
+            eventPublisher.publishEvent(PaymentEvent.of(failedPayment, null));
+            // Commits the FAILED payment, so the rollup and risk features count the attempt
+            throw new PaymentCreationFailedException("Failed to create payment: " + e.getMessage());
         }
     }
 
@@ -141,34 +169,76 @@ public class PaymentServiceImpl implements IPaymentService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Confirms completions with the provider first, outside any transaction, so a slow provider does
+     * not hold a connection; the status change itself is one short transaction under the payment's row
+     * lock, so the rollup and {@link PaymentEvent} see each change exactly once. A payment already in
+     * the requested status is returned unchanged, which makes repeated webhooks and callbacks cheap.
+     */
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public PaymentDTO updatePaymentStatus(UUID paymentId, PaymentStatus status, String transactionId) {
-        Payment payment = paymentRepository.findById(paymentId)
+        Payment current = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment not found"));
+        if (current.getStatus() == status) {
+            if (status == PaymentStatus.COMPLETED && refundOutbox.attempt(paymentId)) {
+                // A redelivery is a cheap moment to retry a refund still owed for a lost booking
+                return PaymentDTO.fromPayment(paymentRepository.findById(paymentId).orElse(current));
+            }
+            return PaymentDTO.fromPayment(current);
+        }
 
         try {
             if (status == PaymentStatus.COMPLETED) {
-                if ("STRIPE".equals(payment.getPaymentProvider())) {
-                    stripePaymentProvider.confirmPayment(payment.getPaymentProviderReference());
-                } else if ("PAYSTACK".equals(payment.getPaymentProvider())) {
-                    System.out.println("Confirming Paystack payment with reference: " + payment.getPaymentProviderReference());
-                    paystackPaymentProvider.confirmPayment(payment.getPaymentProviderReference());
+                if ("STRIPE".equals(current.getPaymentProvider())) {
+                    stripePaymentProvider.confirmPayment(current.getPaymentProviderReference());
+                } else if ("PAYSTACK".equals(current.getPaymentProvider())) {
+                    log.info("Confirming Paystack payment with reference: {}", current.getPaymentProviderReference());
+                    paystackPaymentProvider.confirmPayment(current.getPaymentProviderReference());
+                }
+            }
+        } catch (PaymentProvider.PaymentException e) {
+            log.error("Error updating payment status", e);
+            throw new RuntimeException("Failed to update payment status: " + e.getMessage());
+        }
+
+        AtomicBoolean bookingLost = new AtomicBoolean();
+        PaymentDTO updated = transactionTemplate.execute(tx -> {
+            // Locked, so a concurrent change of the same payment waits and then sees the new status
+            Payment payment = paymentRepository.findByIdForUpdate(paymentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Payment not found"));
+            if (payment.getStatus() == status) {
+                // Applied concurrently while the provider was being asked; counted once, by that change
+                return PaymentDTO.fromPayment(payment);
+            }
+            if (status == PaymentStatus.COMPLETED) {
+                // Only a booking that still holds (or can retake) its seats is confirmed
+                bookingLost.set(!capacityReservationService.securePaidBooking(
+                        payment.getBooking().getId(), Booking.BookingStatus.CONFIRMED));
+                if (bookingLost.get()) {
+                    // Committed with the payment so the refund survives a crash or a failed provider call
+                    refundOutbox.enqueue(paymentId, "Booking no longer available");
                 }
-                payment.getBooking().confirm();
-                bookingRepository.save(payment.getBooking());
             }
 
+            PaymentStatus previousStatus = payment.getStatus();
             payment.setStatus(status);
             payment.setTransactionId(transactionId);
             Payment updatedPayment = paymentRepository.save(payment);
+            paymentRollupService.recordStatusChange(updatedPayment, previousStatus);
+            eventPublisher.publishEvent(PaymentEvent.of(updatedPayment, previousStatus));
             log.info("Updated payment {} status to {}", paymentId, status);
-            
+
             return PaymentDTO.fromPayment(updatedPayment);
-        } catch (PaymentProvider.PaymentException e) {
-            log.error("Error updating payment status", e);
-            throw new RuntimeException("Failed to update payment status: " + e.getMessage());
+        });
+        if (bookingLost.get()) {
+            // The money was taken but the seats are gone; hand it back
+            log.warn("Refunding payment {}: its booking expired and the activity is full", paymentId);
+            if (refundOutbox.attempt(paymentId)) {
+                return paymentRepository.findById(paymentId).map(PaymentDTO::fromPayment).orElse(updated);
+            }
         }
+        return updated;
     }
 
     @Override
@@ -184,9 +254,12 @@ public class PaymentServiceImpl implements IPaymentService {
                 paystackPaymentProvider.refundPayment(payment.getPaymentProviderReference(), payment.getAmount());
             }
 
+            PaymentStatus previousStatus = payment.getStatus();
             payment.setStatus(PaymentStatus.REFUNDED);
             payment.setErrorMessage(reason);
             Payment updatedPayment = paymentRepository.save(payment);
+            paymentRollupService.recordStatusChange(updatedPayment, previousStatus);
+            eventPublisher.publishEvent(PaymentEvent.of(updatedPayment, previousStatus));
             log.info("Processed refund for payment {}", paymentId);
             
             return PaymentDTO.fromPayment(updatedPayment);
@@ -220,8 +293,11 @@ public class PaymentServiceImpl implements IPaymentService {
         Payment payment = paymentRepository.findById(paymentId)
                 .orElseThrow(() -> new ResourceNotFoundException("Payment not found"));
 
+        PaymentStatus previousStatus = payment.getStatus();
         payment.setStatus(PaymentStatus.CANCELLED);
-        paymentRepository.save(payment);
+        Payment cancelledPayment = paymentRepository.save(payment);
+        paymentRollupService.recordStatusChange(cancelledPayment, previousStatus);
+        eventPublisher.publishEvent(PaymentEvent.of(cancelledPayment, previousStatus));
         log.info("Cancelled payment {}", paymentId);
     }
 
@@ -1,6 +1,7 @@
 package com.abiodun.expaq.service.impl;
 
 import com.abiodun.expaq.dto.*;
+import com.abiodun.expaq.event.ReviewChangedEvent;
 import com.abiodun.expaq.exception.ResourceNotFoundException;
 import com.abiodun.expaq.mapper.ReviewMapper;
 import com.abiodun.expaq.model.Activity;
@@ -13,6 +14,7 @@ import com.abiodun.expaq.repository.ReviewRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.IReviewService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.crossstore.ChangeSetPersister;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -20,7 +22,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -34,6 +38,8 @@ public class ReviewServiceImpl implements IReviewService {
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final ReviewMapper reviewMapper;
+    private final ReviewStatisticsCache reviewStatisticsCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -72,9 +78,9 @@ public class ReviewServiceImpl implements IReviewService {
         // Save review
         review = reviewRepository.save(review);
 
-        // Update activity's average rating
-        activity.updateAverageRating();
-        activityRepository.save(activity);
+        // Update activity's rating aggregates
+        activityRepository.applyRatingDelta(activity.getId(), 1, review.getRating());
+        eventPublisher.publishEvent(new ReviewChangedEvent(activity.getId()));
 
         return reviewMapper.toReviewResponse(review);
     }
@@ -90,6 +96,8 @@ public class ReviewServiceImpl implements IReviewService {
             throw new RuntimeException("Unauthorized to update this review");
         }
 
+        int previousRating = review.getRating();
+
         // Update review
         review.update(
             request.getRating(),
@@ -99,6 +107,12 @@ public class ReviewServiceImpl implements IReviewService {
         );
 
         review = reviewRepository.save(review);
+
+        // Shift the activity's rating sum by the change; the count is unchanged
+        if (review.getRating() != previousRating) {
+            activityRepository.applyRatingDelta(review.getActivity().getId(), 0, review.getRating() - previousRating);
+        }
+        eventPublisher.publishEvent(new ReviewChangedEvent(review.getActivity().getId()));
         return reviewMapper.toReviewResponse(review);
     }
 
@@ -113,13 +127,14 @@ public class ReviewServiceImpl implements IReviewService {
             throw new RuntimeException("Unauthorized to delete this review");
         }
 
+        UUID activityId = review.getActivity().getId();
+
         // Delete review
         reviewRepository.delete(review);
 
-        // Update activity's average rating
-        Activity activity = review.getActivity();
-        activity.updateAverageRating();
-        activityRepository.save(activity);
+        // Update activity's rating aggregates
+        activityRepository.applyRatingDelta(activityId, -1, -review.getRating());
+        eventPublisher.publishEvent(new ReviewChangedEvent(activityId));
     }
 
     @Override
@@ -136,20 +151,7 @@ public class ReviewServiceImpl implements IReviewService {
                 .map(reviewMapper::toReviewResponse)
                 .collect(Collectors.toList());
 
-        double averageRating = reviewRepository.calculateAverageRatingByActivityId(activityId);
-        int totalReviews = reviewRepository.countByActivityId(activityId);
-        int fiveStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 5);
-        int fourStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 4);
-        int threeStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 3);
-        int twoStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 2);
-        int oneStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 1);
-        int verifiedReviews = reviewRepository.countByActivityIdAndVerified(activityId, true);
-        int editedReviews = reviewRepository.countByActivityIdAndEdited(activityId, true);
-
-        ReviewStatistics statistics = new ReviewStatistics(
-                averageRating, totalReviews, fiveStarReviews, fourStarReviews,
-                threeStarReviews, twoStarReviews, oneStarReviews, verifiedReviews, editedReviews
-        );
+        ReviewStatistics statistics = reviewStatisticsCache.get(activityId);
 
         return new ReviewPageResponse(
                 reviews,
@@ -213,20 +215,12 @@ public class ReviewServiceImpl implements IReviewService {
 
     @Override
     public ReviewStatistics getReviewStatistics(UUID activityId) {
-        double averageRating = reviewRepository.calculateAverageRatingByActivityId(activityId);
-        int totalReviews = reviewRepository.countByActivityId(activityId);
-        int fiveStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 5);
-        int fourStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 4);
-        int threeStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 3);
-        int twoStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 2);
-        int oneStarReviews = reviewRepository.countByActivityIdAndRating(activityId, 1);
-        int verifiedReviews = reviewRepository.countByActivityIdAndVerified(activityId, true);
-        int editedReviews = reviewRepository.countByActivityIdAndEdited(activityId, true);
-
-        return new ReviewStatistics(
-                averageRating, totalReviews, fiveStarReviews, fourStarReviews,
-                threeStarReviews, twoStarReviews, oneStarReviews, verifiedReviews, editedReviews
-        );
+        return reviewStatisticsCache.get(activityId);
+    }
+
+    @Override
+    public Map<UUID, ReviewStatistics> getReviewStatistics(Collection<UUID> activityIds) {
+        return reviewStatisticsCache.getAll(activityIds);
     }
 
     @Override
@@ -259,6 +253,7 @@ public class ReviewServiceImpl implements IReviewService {
                 .orElseThrow(() -> new ResourceNotFoundException("Review not found"));
         review.verify();
         reviewRepository.save(review);
+        eventPublisher.publishEvent(new ReviewChangedEvent(review.getActivity().getId()));
     }
 
     @Override
@@ -268,6 +263,7 @@ public class ReviewServiceImpl implements IReviewService {
                 .orElseThrow(() -> new ResourceNotFoundException("Review not found"));
         review.unverify();
         reviewRepository.save(review);
+        eventPublisher.publishEvent(new ReviewChangedEvent(review.getActivity().getId()));
     }
 
     @Override
@@ -344,17 +340,18 @@ public class ReviewServiceImpl implements IReviewService {
 
     @Override
     public double getAverageRating(UUID activityId) {
-        return reviewRepository.calculateAverageRatingByActivityId(activityId);
+        return reviewStatisticsCache.get(activityId).getAverageRating();
     }
 
     @Override
     public List<Integer> getRatingDistribution(UUID activityId) {
+        ReviewStatistics statistics = reviewStatisticsCache.get(activityId);
         return List.of(
-                reviewRepository.countByActivityIdAndRating(activityId, 1),
-                reviewRepository.countByActivityIdAndRating(activityId, 2),
-                reviewRepository.countByActivityIdAndRating(activityId, 3),
-                reviewRepository.countByActivityIdAndRating(activityId, 4),
-                reviewRepository.countByActivityIdAndRating(activityId, 5)
+                statistics.getOneStarReviews(),
+                statistics.getTwoStarReviews(),
+                statistics.getThreeStarReviews(),
+                statistics.getFourStarReviews(),
+                statistics.getFiveStarReviews()
         );
     }
 }
@@ -0,0 +1,95 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.ReviewStatistics;
+import com.abiodun.expaq.event.ReviewChangedEvent;
+import com.abiodun.expaq.repository.ReviewRepository;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Review statistics per activity, computed by one GROUP BY query over rating, verified and
+ * edited flags and cached until a {@link ReviewChangedEvent} for the activity commits. Looking up
+ * many activities loads all the missing ones with a single query. Entries also expire, so
+ * changes made by other instances show up eventually.
+ */
+@Service
+public class ReviewStatisticsCache {
+
+    private static final int MAX_ACTIVITIES = 10_000;
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final ReviewRepository reviewRepository;
+    private final LoadingCache<UUID, ReviewStatistics> statistics;
+
+    public ReviewStatisticsCache(ReviewRepository reviewRepository) {
+        this.reviewRepository = reviewRepository;
+        this.statistics = Caffeine.newBuilder()
+                .maximumSize(MAX_ACTIVITIES)
+                .expireAfterWrite(TTL)
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ReviewStatistics load(UUID activityId) {
+                        return loadAll(Set.of(activityId)).get(activityId);
+                    }
+
+                    @Override
+                    public Map<UUID, ReviewStatistics> loadAll(Set<? extends UUID> activityIds) {
+                        return compute(activityIds);
+                    }
+                });
+    }
+
+    public ReviewStatistics get(UUID activityId) {
+        return statistics.get(activityId);
+    }
+
+    public Map<UUID, ReviewStatistics> getAll(Collection<UUID> activityIds) {
+        return statistics.getAll(activityIds);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReviewChanged(ReviewChangedEvent event) {
+        statistics.invalidate(event.getActivityId());
+    }
+
+    private Map<UUID, ReviewStatistics> compute(Collection<? extends UUID> activityIds) {
+        // Per activity: [1..5 star counts at 0..4, verified, edited, total, rating sum]
+        Map<UUID, long[]> counts = new HashMap<>();
+        for (UUID activityId : activityIds) {
+            counts.put(activityId, new long[9]);
+        }
+        for (Object[] row : reviewRepository.countByRatingVerifiedAndEdited(List.copyOf(activityIds))) {
+            long[] c = counts.get((UUID) row[0]);
+            int rating = ((Number) row[1]).intValue();
+            long count = ((Number) row[4]).longValue();
+            if (rating >= 1 && rating <= 5) {
+                c[rating - 1] += count;
+            }
+            if (Boolean.TRUE.equals(row[2])) {
+                c[5] += count;
+            }
+            if (Boolean.TRUE.equals(row[3])) {
+                c[6] += count;
+            }
+            c[7] += count;
+            c[8] += rating * count;
+        }
+
+        Map<UUID, ReviewStatistics> result = new HashMap<>();
+        counts.forEach((activityId, c) -> result.put(activityId, new ReviewStatistics(
+                c[7] > 0 ? (double) c[8] / c[7] : 0, (int) c[7],
+                (int) c[4], (int) c[3], (int) c[2], (int) c[1], (int) c[0], (int) c[5], (int) c[6])));
+        return result;
+    }
+}
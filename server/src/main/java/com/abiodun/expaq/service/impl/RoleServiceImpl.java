@@ -1,5 +1,6 @@
 package com.abiodun.expaq.service.impl;
 
+import com.abiodun.expaq.event.UserAccessChangedEvent;
 import com.abiodun.expaq.exception.RoleAlreadyExistException;
 import com.abiodun.expaq.exception.RoleNotFoundException;
 import com.abiodun.expaq.exception.UserNotFoundException;
@@ -10,6 +11,7 @@ import com.abiodun.expaq.repository.RoleRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.IRoleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -19,6 +21,7 @@ import java.util.*;
 public class RoleServiceImpl implements IRoleService {
     private final RoleRepository roleRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public List<Role> getRoles() {
@@ -58,6 +61,7 @@ public class RoleServiceImpl implements IRoleService {
         for (User user : users) {
             user.setRoles(null);
             userRepository.save(user);
+            eventPublisher.publishEvent(new UserAccessChangedEvent(user.getId()));
         }
         return role;
     }
@@ -72,7 +76,9 @@ public class RoleServiceImpl implements IRoleService {
 
         if (user.getRoles() != null && user.getRoles().contains(role)) {
             user.setRoles(null);
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
+            return saved;
         }
         throw new IllegalArgumentException("User does not belong to the specified role");
     }
@@ -82,7 +88,9 @@ public class RoleServiceImpl implements IRoleService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new UserNotFoundException("User not found with id: " + userId));
         user.setRoles(Collections.singleton(userRole));
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new UserAccessChangedEvent(userId));
+        return saved;
     }
 
     @Override
@@ -0,0 +1,163 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Resolves a payment provider's subscription reference (Stripe subscription id, Paystack subscription
+ * code) to our subscription id. Both columns carry unique indexes, so a miss is one index probe, and
+ * resolved ids are cached because webhooks for the same subscription keep arriving over its lifetime.
+ * A reference never moves to another subscription, so entries only expire to bound memory.
+ * <p>
+ * This class owns the unique indexes; the entity mapping does not declare them, so Hibernate never
+ * builds them with a blocking CREATE INDEX or before the data is clean. {@link #ensureSchema()} runs from
+ * a scheduler thread after startup and first cleans up the reference columns: surrounding whitespace is
+ * trimmed and blank values become NULL, since empty strings would otherwise collide. An index is only
+ * built once no value is shared, and one left INVALID by an interrupted concurrent build is dropped and
+ * built again. One instance does this at a time, under a session advisory lock; the others, and columns
+ * that could not be indexed yet, are retried on the next run.
+ */
+@Slf4j
+@Component
+public class SubscriptionReferenceIndex {
+
+    private static final int MAX_REFERENCES = 10_000;
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private static final long SCHEMA_LOCK_KEY = 0x5355_4252_4546L;
+
+    private static final List<String> REFERENCE_COLUMNS = List.of("stripe_subscription_id", "paystack_subscription_code");
+
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+    private static final String NORMALIZE_SQL = "UPDATE subscriptions SET %1$s = NULLIF(TRIM(%1$s), '')"
+            + " WHERE %1$s = '' OR %1$s <> TRIM(%1$s)";
+    private static final String DUPLICATES_SQL = "SELECT %1$s FROM subscriptions WHERE %1$s IS NOT NULL"
+            + " GROUP BY %1$s HAVING COUNT(*) > 1 LIMIT 10";
+    private static final String INDEX_VALID_SQL = "SELECT i.indisvalid FROM pg_index i"
+            + " JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?";
+    private static final String DROP_INDEX_SQL = "DROP INDEX CONCURRENTLY IF EXISTS %1$s";
+    private static final String CREATE_INDEX_SQL = "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS %1$s"
+            + " ON subscriptions (%2$s)";
+
+    private final SubscriptionRepository subscriptionRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache<String, UUID> subscriptionIds;
+
+    private volatile boolean ready;
+
+    public SubscriptionReferenceIndex(SubscriptionRepository subscriptionRepository, JdbcTemplate jdbcTemplate) {
+        this.subscriptionRepository = subscriptionRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.subscriptionIds = Caffeine.newBuilder()
+                .maximumSize(MAX_REFERENCES)
+                .expireAfterWrite(TTL)
+                .build();
+    }
+
+    /**
+     * @param provider "stripe" or "paystack", in any case
+     * @return the subscription the provider knows by {@code reference}, if any
+     */
+    public Optional<UUID> findSubscriptionId(String provider, String reference) {
+        if (provider == null || reference == null || reference.isBlank()) {
+            return Optional.empty();
+        }
+        String normalizedProvider = provider.toLowerCase(Locale.ROOT);
+        String normalizedReference = reference.trim();
+        String key = normalizedProvider + ':' + normalizedReference;
+        UUID cached = subscriptionIds.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        List<UUID> ids = switch (normalizedProvider) {
+            case "stripe" -> subscriptionRepository.findIdsByStripeSubscriptionId(normalizedReference);
+            case "paystack" -> subscriptionRepository.findIdsByPaystackSubscriptionCode(normalizedReference);
+            default -> List.of();
+        };
+        // Unknown references are not cached: the subscription may be linked to them moments later
+        if (ids.isEmpty()) {
+            return Optional.empty();
+        }
+        subscriptionIds.put(key, ids.get(0));
+        return Optional.of(ids.get(0));
+    }
+
+    /**
+     * Cleans up the reference columns and builds their unique indexes. Returns immediately once both
+     * indexes are in place, or while another instance is doing it.
+     */
+    public void ensureSchema() {
+        if (ready) {
+            return;
+        }
+        // A session lock and the statements it guards need one connection; CONCURRENTLY also needs autocommit
+        Boolean done = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                ensureSchema(new JdbcTemplate(new SingleConnectionDataSource(connection, true))));
+        ready = Boolean.TRUE.equals(done);
+    }
+
+    /**
+     * @param session a template bound to a single connection
+     * @return true once every reference column is indexed
+     */
+    boolean ensureSchema(JdbcTemplate session) {
+        if (!Boolean.TRUE.equals(session.queryForObject(TRY_LOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY))) {
+            log.info("Another instance is indexing subscription references");
+            return false;
+        }
+        try {
+            boolean indexed = true;
+            for (String column : REFERENCE_COLUMNS) {
+                indexed &= indexColumn(session, column);
+            }
+            return indexed;
+        } finally {
+            session.queryForObject(UNLOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY);
+        }
+    }
+
+    private boolean indexColumn(JdbcTemplate session, String column) {
+        try {
+            int normalized = session.update(String.format(NORMALIZE_SQL, column));
+            if (normalized > 0) {
+                log.info("Normalized {} subscription {} values", normalized, column);
+            }
+            List<String> duplicates = session.queryForList(String.format(DUPLICATES_SQL, column), String.class);
+            if (!duplicates.isEmpty()) {
+                // Lookups still work, resolving to the newest subscription, but the index has to wait
+                log.error("Not indexing subscriptions.{}: values shared by several subscriptions, e.g. {}",
+                        column, duplicates);
+                return false;
+            }
+            String index = indexName(column);
+            List<Boolean> valid = session.queryForList(INDEX_VALID_SQL, Boolean.class, index);
+            if (!valid.isEmpty() && !valid.get(0)) {
+                log.warn("Index {} is invalid after an interrupted build; rebuilding it", index);
+                session.execute(String.format(DROP_INDEX_SQL, index));
+            }
+            session.execute(String.format(CREATE_INDEX_SQL, index, column));
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not index subscriptions.{}; provider lookups fall back to a table scan", column, e);
+            return false;
+        }
+    }
+
+    static String indexName(String column) {
+        return "ux_subscriptions_" + column;
+    }
+}
@@ -1,5 +1,6 @@
 package com.abiodun.expaq.service.impl;
 
+import com.abiodun.expaq.event.SubscriptionChangedEvent;
 import com.abiodun.expaq.model.Subscription;
 import com.abiodun.expaq.model.User;
 import com.abiodun.expaq.repository.ActivityRepository;
@@ -7,11 +8,14 @@ import com.abiodun.expaq.repository.SubscriptionRepository;
 import com.abiodun.expaq.repository.UserRepository;
 import com.abiodun.expaq.service.ISubscriptionService;
 import com.abiodun.expaq.service.EmailService;
+import com.abiodun.expaq.service.billing.SubscriptionBillingEngine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -30,6 +34,10 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
     private final UserRepository userRepository;
     private final ActivityRepository activityRepository;
     private final EmailService emailService;
+    private final SubscriptionReferenceIndex subscriptionReferenceIndex;
+    private final SubscriptionBillingEngine billingEngine;
+    private final EntitlementCache entitlementCache;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Override
     public Subscription createSubscription(UUID userId, Subscription.PlanType planType, 
@@ -62,6 +70,7 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         // In a real implementation, this would integrate with Stripe/Paystack
         // For now, we'll simulate payment processing
         simulatePaymentProcessing(subscription, paymentMethodId);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(userId));
         
         log.info("Subscription created successfully: {}", subscription.getId());
         return subscription;
@@ -87,6 +96,7 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         // Cancel current subscription
         activeSubscription.cancel("Plan change");
         subscriptionRepository.save(activeSubscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(userId));
         
         // Create new subscription with new plan
         return createSubscription(userId, newPlanType, activeSubscription.getBillingCycle(), null);
@@ -101,6 +111,7 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         
         activeSubscription.cancel(reason);
         subscriptionRepository.save(activeSubscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(userId));
         
         // Send cancellation email
         try {
@@ -127,83 +138,18 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void processBilling(UUID subscriptionId) {
         log.info("Processing billing for subscription: {}", subscriptionId);
-        
-        Subscription subscription = subscriptionRepository.findById(subscriptionId)
-            .orElseThrow(() -> new IllegalArgumentException("Subscription not found: " + subscriptionId));
-        
-        if (!subscription.getAutoRenew() || subscription.getStatus() != Subscription.SubscriptionStatus.ACTIVE) {
-            log.warn("Subscription {} is not eligible for billing", subscriptionId);
-            return;
-        }
-        
-        try {
-            // In a real implementation, this would charge the payment method
-            boolean paymentSuccess = simulatePaymentCharge(subscription);
-            
-            if (paymentSuccess) {
-                subscription.renewSubscription();
-                subscriptionRepository.save(subscription);
-                log.info("Billing processed successfully for subscription: {}", subscriptionId);
-                
-                // Send billing success email
-                emailService.sendBillingSuccessEmail(subscription.getUser().getEmail(), subscription);
-            } else {
-                subscription.markPastDue();
-                subscriptionRepository.save(subscription);
-                log.warn("Payment failed for subscription: {}", subscriptionId);
-                
-                // Send payment failure email
-                emailService.sendPaymentFailureEmail(subscription.getUser().getEmail(), subscription);
-            }
-        } catch (Exception e) {
-            log.error("Error processing billing for subscription: {}", subscriptionId, e);
-            subscription.markPastDue();
-            subscriptionRepository.save(subscription);
-        }
+        // Charges outside any transaction; the engine commits each outcome on its own
+        billingEngine.billSubscription(subscriptionId);
     }
     
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Map<String, Object> processAllBilling() {
         log.info("Processing billing for all due subscriptions");
-        
-        LocalDateTime now = LocalDateTime.now();
-        List<Subscription> dueSubscriptions = subscriptionRepository.findSubscriptionsDueForBilling(now);
-        
-        int processed = 0;
-        int successful = 0;
-        int failed = 0;
-        
-        for (Subscription subscription : dueSubscriptions) {
-            try {
-                Subscription.SubscriptionStatus originalStatus = subscription.getStatus();
-                processBilling(subscription.getId());
-                
-                // Refresh subscription to check new status
-                subscription = subscriptionRepository.findById(subscription.getId()).orElse(subscription);
-                
-                if (subscription.getStatus() == Subscription.SubscriptionStatus.ACTIVE) {
-                    successful++;
-                } else {
-                    failed++;
-                }
-                processed++;
-                
-            } catch (Exception e) {
-                log.error("Failed to process billing for subscription: {}", subscription.getId(), e);
-                failed++;
-            }
-        }
-        
-        Map<String, Object> result = new HashMap<>();
-        result.put("totalDue", dueSubscriptions.size());
-        result.put("processed", processed);
-        result.put("successful", successful);
-        result.put("failed", failed);
-        
-        log.info("Billing processing completed: {}", result);
-        return result;
+        return billingEngine.runDueBilling();
     }
     
     @Override
@@ -306,53 +252,29 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
     
     @Override
     public boolean hasFeatureAccess(UUID userId, String featureName) {
-        Optional<Subscription> subscription = getUserActiveSubscription(userId);
-        
-        if (subscription.isEmpty()) {
-            // User has basic (free) access
-            return switch (featureName.toLowerCase()) {
-                case "create_activities", "manage_bookings", "basic_analytics" -> true;
-                default -> false;
-            };
-        }
-        
-        return subscription.get().hasFeature(featureName);
+        return entitlementCache.get(userId).hasFeature(featureName);
     }
     
     @Override
     public Map<String, Object> getUserSubscriptionLimits(UUID userId) {
-        Map<String, Object> limits = new HashMap<>();
+        Entitlements entitlements = entitlementCache.get(userId);
         
-        Optional<Subscription> subscription = getUserActiveSubscription(userId);
-        
-        if (subscription.isEmpty()) {
-            // Free tier limits
-            limits.put("maxActivities", 5);
-            limits.put("maxPhotosPerActivity", 5);
-            limits.put("commissionRate", new BigDecimal("0.10"));
-            limits.put("hasAdvancedAnalytics", false);
-            limits.put("hasPrioritySupport", false);
-        } else {
-            Subscription sub = subscription.get();
-            limits.put("maxActivities", sub.getMaxActivities());
-            limits.put("maxPhotosPerActivity", sub.getMaxPhotosPerActivity());
-            limits.put("commissionRate", sub.getCommissionRate());
-            limits.put("hasAdvancedAnalytics", sub.hasFeature("detailed_analytics"));
-            limits.put("hasPrioritySupport", sub.hasFeature("priority_support"));
-        }
+        Map<String, Object> limits = new HashMap<>();
+        limits.put("maxActivities", entitlements.getMaxActivities());
+        limits.put("maxPhotosPerActivity", entitlements.getMaxPhotosPerActivity());
+        limits.put("commissionRate", entitlements.getCommissionRate());
+        limits.put("hasAdvancedAnalytics", entitlements.hasFeature("detailed_analytics"));
+        limits.put("hasPrioritySupport", entitlements.hasFeature("priority_support"));
         
         // Add current usage
-//        UUID currentActivities = activityRepository.countByUserId(userId);
-//        limits.put("currentActivities", currentActivities);
+        limits.put("currentActivities", activityRepository.countByHostId(userId));
         
         return limits;
     }
     
     @Override
     public BigDecimal getUserCommissionRate(UUID userId) {
-        Optional<Subscription> subscription = getUserActiveSubscription(userId);
-        return subscription.map(Subscription::getCommissionRate)
-                          .orElse(new BigDecimal("0.10")); // Default 10%
+        return entitlementCache.get(userId).getCommissionRate();
     }
     
     @Override
@@ -364,6 +286,7 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         for (Subscription subscription : expiredSubscriptions) {
             subscription.expire();
             subscriptionRepository.save(subscription);
+            eventPublisher.publishEvent(new SubscriptionChangedEvent(subscription.getUser().getId()));
             
             // Send expiration email
             try {
@@ -396,15 +319,8 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
     
     @Override
     public Optional<Subscription> getByPaymentId(String paymentId, String provider) {
-        return switch (provider.toLowerCase()) {
-            case "stripe" -> subscriptionRepository.findByStripeSubscriptionIdIsNotNull().stream()
-                    .filter(s -> paymentId.equals(s.getStripeSubscriptionId()))
-                    .findFirst();
-            case "paystack" -> subscriptionRepository.findByPaystackSubscriptionCodeIsNotNull().stream()
-                    .filter(s -> paymentId.equals(s.getPaystackSubscriptionCode()))
-                    .findFirst();
-            default -> Optional.empty();
-        };
+        return subscriptionReferenceIndex.findSubscriptionId(provider, paymentId)
+            .flatMap(subscriptionRepository::findById);
     }
     
     @Override
@@ -414,6 +330,7 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         
         subscription.setStatus(status);
         subscriptionRepository.save(subscription);
+        eventPublisher.publishEvent(new SubscriptionChangedEvent(subscription.getUser().getId()));
     }
     
     @Override
@@ -492,17 +409,14 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
     
     @Override
     public boolean canCreateActivity(UUID userId) {
-        Map<String, Object> limits = getUserSubscriptionLimits(userId);
-        int maxActivities = (Integer) limits.get("maxActivities");
-        long currentActivities = (Long) limits.get("currentActivities");
-        
-        return maxActivities == -1 || currentActivities < maxActivities;
+        int maxActivities = entitlementCache.get(userId).getMaxActivities();
+        // Only limited plans need the count
+        return maxActivities == -1 || activityRepository.countByHostId(userId) < maxActivities;
     }
     
     @Override
     public boolean canUploadPhotos(UUID userId, int photoCount) {
-        Map<String, Object> limits = getUserSubscriptionLimits(userId);
-        int maxPhotos = (Integer) limits.get("maxPhotosPerActivity");
+        int maxPhotos = entitlementCache.get(userId).getMaxPhotosPerActivity();
         
         return maxPhotos == -1 || photoCount <= maxPhotos;
     }
@@ -543,11 +457,6 @@ public class SubscriptionServiceImpl implements ISubscriptionService {
         subscriptionRepository.save(subscription);
     }
     
-    private boolean simulatePaymentCharge(Subscription subscription) {
-        // Simulate payment success/failure (90% success rate)
-        return Math.random() > 0.1;
-    }
-    
     private int getMaxActivitiesForPlan(Subscription.PlanType planType) {
         return switch (planType) {
             case BASIC -> 5;
@@ -0,0 +1,87 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Per-user fraud features (payment totals and failures) held in a bounded cache. A miss costs one
+ * aggregate query; afterwards the entry is kept current from committed {@link PaymentEvent}s. Entries
+ * expire after a while so any drift (for example from payments changed outside the payment service)
+ * is corrected by a reload. Attempt velocity is not kept here: {@code VelocityRule} counts it per user
+ * and per IP address when a payment is attempted.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserRiskFeatureStore {
+
+    private static final long MAX_USERS = 100_000;
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private final PaymentRepository paymentRepository;
+
+    private final Cache<UUID, UserRiskFeatures> features = Caffeine.newBuilder()
+            .maximumSize(MAX_USERS)
+            .expireAfterWrite(TTL)
+            .build();
+
+    public UserRiskFeatures get(UUID userId) {
+        return features.get(userId, this::load);
+    }
+
+    @TransactionalEventListener
+    public void onPaymentEvent(PaymentEvent event) {
+        // Absent users are loaded fresh on their next lookup, which already includes this change
+        UserRiskFeatures current = features.getIfPresent(event.getUserId());
+        if (current != null) {
+            current.apply(event);
+        }
+    }
+
+    private UserRiskFeatures load(UUID userId) {
+        Object[] counts = paymentRepository.countTotalAndFailedByUserId(userId).get(0);
+        return new UserRiskFeatures(((Number) counts[0]).longValue(), ((Number) counts[1]).longValue());
+    }
+
+    /**
+     * Mutable counters for one user. Methods are synchronized; contention is per user and tiny.
+     */
+    public static final class UserRiskFeatures {
+        private long totalPayments;
+        private long failedPayments;
+
+        UserRiskFeatures(long totalPayments, long failedPayments) {
+            this.totalPayments = totalPayments;
+            this.failedPayments = failedPayments;
+        }
+
+        public synchronized long getTotalPayments() {
+            return totalPayments;
+        }
+
+        public synchronized long getFailedPayments() {
+            return failedPayments;
+        }
+
+        synchronized void apply(PaymentEvent event) {
+            if (event.isCreation()) {
+                totalPayments++;
+            } else if (event.getPreviousStatus() == event.getStatus()) {
+                return;
+            } else if (event.getPreviousStatus() == PaymentStatus.FAILED) {
+                failedPayments--;
+            }
+            if (event.getStatus() == PaymentStatus.FAILED) {
+                failedPayments++;
+            }
+        }
+    }
+}
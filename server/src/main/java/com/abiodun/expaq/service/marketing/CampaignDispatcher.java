@@ -0,0 +1,403 @@
+package com.abiodun.expaq.service.marketing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends due marketing executions in bulk. A run claims due {@code SCHEDULED} executions a page at a
+ * time, walking {@code (scheduled_at, id)} by keyset, and moves them to {@code SENDING} in the same
+ * statement so overlapping runs on other instances skip them. Claimed executions are split into
+ * chunks that a fixed pool of sender threads hands to the mail sender one chunk per SMTP connection,
+ * after taking tokens from the SMTP provider's bucket. Outcomes are collected and written back as
+ * batched {@code DELIVERED}/{@code FAILED} updates after every page; a failed write keeps them queued
+ * and is retried. Executions still {@code SENDING} after 15 minutes may already have been mailed, so
+ * they are marked failed with no retries left instead of being resent.
+ * <p>
+ * At most two chunks per sender are in flight, so claiming never runs far ahead of sending. A run stops
+ * claiming once {@code marketing.dispatch.max-run-ms} has passed, so it never holds the scheduler or a
+ * request thread for the whole backlog; what is left stays {@code SCHEDULED} for the next run. Send
+ * outcomes are counted in {@code marketing.dispatch.sends} (a rate gives sends per second), and
+ * {@code marketing.dispatch.backlog} tracks the due executions not yet claimed.
+ */
+@Service
+@Slf4j
+public class CampaignDispatcher {
+
+    private static final Timestamp KEYSET_START = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+    private static final UUID KEYSET_START_ID = new UUID(0, 0);
+    private static final long STALE_SEND_MINUTES = 15;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final int OUTCOME_WRITE_ATTEMPTS = 3;
+    private static final long OUTCOME_RETRY_MILLIS = 500;
+
+    private static final String COUNT_DUE_SQL = "SELECT COUNT(*) FROM marketing_executions"
+            + " WHERE status = 'SCHEDULED' AND scheduled_at <= ?";
+    // SKIP LOCKED lets concurrent runs claim disjoint pages
+    private static final String CLAIM_PAGE_SQL = "UPDATE marketing_executions SET status = 'SENDING', updated_at = ?"
+            + " WHERE id IN (SELECT id FROM marketing_executions WHERE status = 'SCHEDULED' AND scheduled_at <= ?"
+            + " AND (scheduled_at, id) > (?, ?) ORDER BY scheduled_at, id LIMIT ? FOR UPDATE SKIP LOCKED)"
+            + " RETURNING id, scheduled_at, recipient_email, subject_line, message_content";
+    private static final String DELIVERED_SQL = "UPDATE marketing_executions SET status = 'DELIVERED', sent_at = ?,"
+            + " delivered_at = ?, updated_at = ? WHERE id = ? AND status = 'SENDING'";
+    private static final String FAILED_SQL = "UPDATE marketing_executions SET status = 'FAILED', error_message = ?,"
+            + " updated_at = ? WHERE id = ? AND status = 'SENDING'";
+    // retry_count = max_retries keeps them out of REQUEUE_FAILED_SQL
+    private static final String FAIL_STALE_SQL = "UPDATE marketing_executions SET status = 'FAILED',"
+            + " retry_count = max_retries, error_message = 'Interrupted during dispatch; may have been sent, not retried',"
+            + " updated_at = ? WHERE status = 'SENDING' AND updated_at < ?";
+    private static final String REQUEUE_FAILED_SQL = "UPDATE marketing_executions SET status = 'SCHEDULED',"
+            + " retry_count = retry_count + 1, scheduled_at = ?, error_message = NULL, updated_at = ?"
+            + " WHERE status IN ('FAILED', 'BOUNCED') AND retry_count < max_retries";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JavaMailSender mailSender;
+    private final int pageSize;
+    private final int chunkSize;
+    private final int maxInFlightChunks;
+    private final long maxRunNanos;
+    private final TokenBucket smtpBucket;
+    private final ExecutorService senders;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Semaphore inFlightChunks;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong backlog = new AtomicLong();
+    private final ConcurrentLinkedQueue<Outcome> outcomes = new ConcurrentLinkedQueue<>();
+
+    private final Counter delivered;
+    private final Counter failed;
+
+    public CampaignDispatcher(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              JavaMailSender mailSender,
+                              MeterRegistry meterRegistry,
+                              @Value("${marketing.dispatch.senders:8}") int senderThreads,
+                              @Value("${marketing.dispatch.page-size:500}") int pageSize,
+                              @Value("${marketing.dispatch.chunk-size:20}") int chunkSize,
+                              @Value("${marketing.dispatch.smtp.rate-per-second:20}") double smtpRatePerSecond,
+                              @Value("${marketing.dispatch.max-run-ms:20000}") long maxRunMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.mailSender = mailSender;
+        this.pageSize = pageSize;
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = senderThreads * 2;
+        this.maxRunNanos = TimeUnit.MILLISECONDS.toNanos(maxRunMillis);
+        this.inFlightChunks = new Semaphore(maxInFlightChunks);
+        // Burst of one chunk, so a full chunk never waits longer than its own share of the rate
+        this.smtpBucket = new TokenBucket(smtpRatePerSecond, chunkSize, System.nanoTime());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "campaign-sender-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Gauge.builder("marketing.dispatch.backlog", backlog, AtomicLong::get)
+                .description("Due marketing executions not yet claimed by a dispatch run")
+                .register(meterRegistry);
+        Gauge.builder("marketing.dispatch.in-flight", inFlight, AtomicInteger::get)
+                .description("Claimed marketing executions waiting for or in an SMTP send")
+                .register(meterRegistry);
+        this.delivered = Counter.builder("marketing.dispatch.sends")
+                .description("Marketing executions sent, by outcome")
+                .tag("provider", "smtp")
+                .tag("outcome", "delivered")
+                .register(meterRegistry);
+        this.failed = Counter.builder("marketing.dispatch.sends")
+                .description("Marketing executions sent, by outcome")
+                .tag("provider", "smtp")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends executions due now until none is left or the run's time budget is spent. Returns at once
+     * with 0 if a run is already in progress on this instance.
+     *
+     * @return number of executions claimed by this run
+     */
+    public int dispatchDue() {
+        if (!running.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            return dispatch();
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Puts failed and bounced executions that have retries left back on the schedule, in one statement.
+     *
+     * @return number of executions requeued
+     */
+    public int requeueFailed() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        return jdbcTemplate.update(REQUEUE_FAILED_SQL, now, now);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        senders.shutdownNow();
+    }
+
+    private int dispatch() {
+        long started = System.nanoTime();
+        LocalDateTime runStart = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(runStart);
+        // Outcomes a previous run could not write, before the sweep below takes their executions
+        recordOutcomes();
+        // Left behind by a crash mid-send or outcomes that were never written
+        int stale = jdbcTemplate.update(FAIL_STALE_SQL, now,
+                Timestamp.valueOf(runStart.minusMinutes(STALE_SEND_MINUTES)));
+        if (stale > 0) {
+            log.warn("Marked {} interrupted marketing sends as failed without retry", stale);
+        }
+        Long due = jdbcTemplate.queryForObject(COUNT_DUE_SQL, Long.class, now);
+        backlog.set(due != null ? due : 0);
+
+        Timestamp cursorAt = KEYSET_START;
+        UUID cursorId = KEYSET_START_ID;
+        int claimed = 0;
+        try {
+            while (System.nanoTime() - started < maxRunNanos) {
+                List<Claimed> page = jdbcTemplate.query(CLAIM_PAGE_SQL, (rs, rowNum) -> new Claimed(
+                                rs.getObject("id", UUID.class),
+                                rs.getTimestamp("scheduled_at"),
+                                rs.getString("recipient_email"),
+                                rs.getString("subject_line"),
+                                rs.getString("message_content")),
+                        Timestamp.valueOf(LocalDateTime.now()), now, cursorAt, cursorId, pageSize);
+                if (page.isEmpty()) {
+                    break;
+                }
+                claimed += page.size();
+                backlog.updateAndGet(remaining -> Math.max(0, remaining - page.size()));
+                inFlight.addAndGet(page.size());
+                for (Claimed execution : page) {
+                    if (execution.isAfter(cursorAt, cursorId)) {
+                        cursorAt = execution.scheduledAt;
+                        cursorId = execution.id;
+                    }
+                }
+                for (int from = 0; from < page.size(); from += chunkSize) {
+                    List<Claimed> chunk = page.subList(from, Math.min(from + chunkSize, page.size()));
+                    inFlightChunks.acquire();
+                    senders.execute(() -> {
+                        try {
+                            send(chunk);
+                        } finally {
+                            inFlightChunks.release();
+                        }
+                    });
+                }
+                recordOutcomes();
+            }
+            // Wait for the last chunks
+            inFlightChunks.acquire(maxInFlightChunks);
+            inFlightChunks.release(maxInFlightChunks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            recordRemainingOutcomes();
+        }
+
+        if (claimed > 0) {
+            double seconds = (System.nanoTime() - started) / 1e9;
+            log.info("Dispatched {} marketing executions in {}s ({} per second), {} still due", claimed,
+                    String.format("%.1f", seconds), String.format("%.1f", claimed / Math.max(seconds, 0.001)),
+                    backlog.get());
+        }
+        return claimed;
+    }
+
+    private void send(List<Claimed> chunk) {
+        List<Claimed> sendable = new ArrayList<>(chunk.size());
+        List<SimpleMailMessage> messages = new ArrayList<>(chunk.size());
+        for (Claimed execution : chunk) {
+            if (execution.recipientEmail == null || execution.recipientEmail.isBlank()) {
+                complete(execution, null, "No recipient email");
+                continue;
+            }
+            // Same message as EmailService.sendMarketingEmail
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(execution.recipientEmail);
+            message.setSubject(execution.subjectLine);
+            message.setText(execution.messageContent);
+            sendable.add(execution);
+            messages.add(message);
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        String chunkError = null;
+        try {
+            smtpBucket.acquire(messages.size());
+            // One SMTP connection for the whole chunk
+            mailSender.send(messages.toArray(new SimpleMailMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            chunkError = e.getMessage();
+        } catch (RuntimeException e) {
+            chunkError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            chunkError = "Interrupted before sending";
+        }
+
+        LocalDateTime sentAt = LocalDateTime.now();
+        for (int i = 0; i < sendable.size(); i++) {
+            Exception failure = failures.get(messages.get(i));
+            if (chunkError == null || (!failures.isEmpty() && failure == null)) {
+                complete(sendable.get(i), sentAt, null);
+            } else {
+                complete(sendable.get(i), null, failure != null ? failure.getMessage() : chunkError);
+            }
+        }
+    }
+
+    private void complete(Claimed execution, LocalDateTime sentAt, String error) {
+        outcomes.add(new Outcome(execution.id, sentAt, error));
+        inFlight.decrementAndGet();
+        if (error == null) {
+            delivered.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    /**
+     * Writes collected outcomes in one transaction. If the write fails they are queued again for the
+     * next call.
+     *
+     * @return whether the outcomes were written
+     */
+    private boolean recordOutcomes() {
+        List<Outcome> batch = new ArrayList<>();
+        List<Object[]> deliveredRows = new ArrayList<>();
+        List<Object[]> failedRows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Outcome outcome;
+        while ((outcome = outcomes.poll()) != null) {
+            batch.add(outcome);
+            if (outcome.error == null) {
+                Timestamp sentAt = Timestamp.valueOf(outcome.sentAt);
+                deliveredRows.add(new Object[]{sentAt, sentAt, now, outcome.executionId});
+            } else {
+                failedRows.add(new Object[]{truncate(outcome.error), now, outcome.executionId});
+            }
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!deliveredRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELIVERED_SQL, deliveredRows);
+                }
+                if (!failedRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(FAILED_SQL, failedRows);
+                }
+            });
+            return true;
+        } catch (RuntimeException e) {
+            outcomes.addAll(batch);
+            log.warn("Could not record {} marketing send outcomes: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Retries the last outcome write of a run a few times. Whatever is still unwritten stays queued
+     * for the start of the next run.
+     */
+    private void recordRemainingOutcomes() {
+        for (int attempt = 1; !recordOutcomes(); attempt++) {
+            if (attempt == OUTCOME_WRITE_ATTEMPTS) {
+                log.error("Could not record {} marketing send outcomes; retrying on the next run", outcomes.size());
+                return;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(OUTCOME_RETRY_MILLIS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static final class Claimed {
+        private final UUID id;
+        private final Timestamp scheduledAt;
+        private final String recipientEmail;
+        private final String subjectLine;
+        private final String messageContent;
+
+        private Claimed(UUID id, Timestamp scheduledAt, String recipientEmail, String subjectLine, String messageContent) {
+            this.id = id;
+            this.scheduledAt = scheduledAt;
+            this.recipientEmail = recipientEmail;
+            this.subjectLine = subjectLine;
+            this.messageContent = messageContent;
+        }
+
+        private boolean isAfter(Timestamp at, UUID otherId) {
+            int byTime = scheduledAt.compareTo(at);
+            // Postgres orders uuids by their bytes, which is unsigned order on the two halves
+            return byTime > 0 || (byTime == 0 && compareUnsigned(id, otherId) > 0);
+        }
+
+        private static int compareUnsigned(UUID a, UUID b) {
+            int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+            return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+        }
+    }
+
+    private static final class Outcome {
+        private final UUID executionId;
+        private final LocalDateTime sentAt;
+        private final String error;
+
+        private Outcome(UUID executionId, LocalDateTime sentAt, String error) {
+            this.executionId = executionId;
+            this.sentAt = sentAt;
+            this.error = error;
+        }
+    }
+}
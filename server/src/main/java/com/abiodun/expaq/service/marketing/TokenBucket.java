@@ -0,0 +1,43 @@
+package com.abiodun.expaq.service.marketing;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Callers reserve permits under a short lock and sleep outside it; a
+ * reservation larger than the available tokens puts the bucket into debt, which later callers wait out.
+ */
+public final class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double permitsPerSecond, int capacity, long nowNanos) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = nowNanos;
+    }
+
+    public void acquire(int permits) throws InterruptedException {
+        long wait = reserve(permits, System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Takes {@code permits} now.
+     *
+     * @return nanoseconds the caller must wait before using them
+     */
+    synchronized long reserve(int permits, long nowNanos) {
+        if (nowNanos > lastRefill) {
+            tokens = Math.min(capacity, tokens + (nowNanos - lastRefill) * permitsPerNano);
+            lastRefill = nowNanos;
+        }
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+    }
+}
@@ -0,0 +1,50 @@
+package com.abiodun.expaq.service.marketing;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * An email open, click or conversion for one tracking code, as queued and logged by
+ * {@link TrackingEventIngestor}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class TrackingEvent {
+
+    public enum Type {
+        OPENED, CLICKED, CONVERTED
+    }
+
+    private final Type type;
+    private final String trackingCode;
+    private final long occurredAt;
+    private final BigDecimal value;
+
+    /**
+     * One log line: {@code type|trackingCode|occurredAt|value}. Tracking codes are validated before
+     * they are logged, so they never contain the separator.
+     */
+    String encode() {
+        return type.name() + '|' + trackingCode + '|' + occurredAt + '|' + (value != null ? value.toPlainString() : "");
+    }
+
+    /**
+     * Parses a log line, or returns null for a malformed one such as a line torn by a crash.
+     */
+    static TrackingEvent decode(String record) {
+        String[] parts = record.split("\\|", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        try {
+            return new TrackingEvent(Type.valueOf(parts[0]), parts[1], Long.parseLong(parts[2]),
+                    parts[3].isEmpty() ? null : new BigDecimal(parts[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.abiodun.expaq.service.marketing;
+
+import com.abiodun.expaq.model.MarketingExecution.ExecutionStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind ingest for email opens, clicks and conversions. Request threads append the event to a
+ * local {@link TrackingEventLog} and put it on a bounded lock-free queue; {@link #flush()} drains the
+ * queue, coalesces the events per tracking code and applies them with batched JDBC updates in one
+ * transaction, then deletes the log segments it covered. After a crash the remaining segments are
+ * replayed, so every accepted event is written at least once. The updates are idempotent, which
+ * makes the replay of an event that was already written harmless.
+ * <p>
+ * Each process logs to the first {@code instance-N} directory under {@code marketing.tracking.log-dir}
+ * it can lock, so processes sharing a host (a rolling restart) never touch each other's segments. A
+ * crashed process's directory is replayed by whichever process locks it next. The directory should be
+ * on a persistent volume; events in a log that is wiped before replay are lost.
+ * <p>
+ * When the queue is full the caller writes its own event synchronously, so a burst slows tracking
+ * requests down instead of losing events. Queue depth, overflows and flush timings are published
+ * under {@code marketing.tracking.*}.
+ */
+@Service
+@Lazy(false) // Take the log lock, or fail, at startup rather than on the first tracked event
+@Slf4j
+public class TrackingEventIngestor {
+
+    private static final Pattern TRACKING_CODE = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final int BATCH_SIZE = 500;
+    private static final int LOG_INSTANCES = 8;
+
+    // Same transitions as MarketingExecution.markAsOpened/markAsClicked/markAsConverted plus updateEngagementMetrics
+    private static final String OPENED_SQL = "UPDATE marketing_executions SET status = 'OPENED', opened_at = ?,"
+            + " engagement_count = 1, updated_at = ? WHERE tracking_code = ? AND status IN ("
+            + statusesBefore(ExecutionStatus.OPENED) + ")";
+    private static final String CLICKED_SQL = "UPDATE marketing_executions SET status = 'CLICKED', clicked_at = ?,"
+            + " engagement_count = 1, updated_at = ? WHERE tracking_code = ? AND status IN ("
+            + statusesBefore(ExecutionStatus.CLICKED) + ")";
+    private static final String CONVERTED_SQL = "UPDATE marketing_executions SET status = 'CONVERTED', converted_at = ?,"
+            + " conversion_value = ?, conversion_count = 1,"
+            + " engagement_count = CASE WHEN opened_at IS NOT NULL OR clicked_at IS NOT NULL THEN 1 ELSE engagement_count END,"
+            + " updated_at = ? WHERE tracking_code = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int capacity;
+    private final TrackingEventLog eventLog;
+
+    private final ConcurrentLinkedQueue<TrackingEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private final Counter queued;
+    private final Counter overflowed;
+    private final Counter flushFailures;
+    private final Timer flushTimer;
+    private final DistributionSummary flushSize;
+
+    // Only touched by flush(), which is synchronized
+    private Map<String, PendingUpdate> carryOver = new LinkedHashMap<>();
+    private boolean recovered;
+
+    public TrackingEventIngestor(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${marketing.tracking.queue-capacity:50000}") int capacity,
+                                 @Value("${marketing.tracking.log-dir:data/tracking}") String logDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.capacity = capacity;
+        this.eventLog = openLog(Path.of(logDir));
+
+        Gauge.builder("marketing.tracking.queue.depth", depth, AtomicInteger::get)
+                .description("Tracking events waiting to be written")
+                .register(meterRegistry);
+        this.queued = Counter.builder("marketing.tracking.events")
+                .description("Tracking events accepted, by how they were written")
+                .tag("path", "queued")
+                .register(meterRegistry);
+        this.overflowed = Counter.builder("marketing.tracking.events")
+                .description("Tracking events accepted, by how they were written")
+                .tag("path", "overflow")
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("marketing.tracking.flush.failures")
+                .description("Flushes that failed and will be retried")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("marketing.tracking.flush")
+                .description("Time to write one batch of coalesced tracking events")
+                .publishPercentiles(0.99)
+                .register(meterRegistry);
+        this.flushSize = DistributionSummary.builder("marketing.tracking.flush.executions")
+                .description("Executions updated by one flush")
+                .register(meterRegistry);
+    }
+
+    public void recordOpened(String trackingCode) {
+        record(new TrackingEvent(TrackingEvent.Type.OPENED, trackingCode, System.currentTimeMillis(), null));
+    }
+
+    public void recordClicked(String trackingCode) {
+        record(new TrackingEvent(TrackingEvent.Type.CLICKED, trackingCode, System.currentTimeMillis(), null));
+    }
+
+    public void recordConverted(String trackingCode, BigDecimal value) {
+        record(new TrackingEvent(TrackingEvent.Type.CONVERTED, trackingCode, System.currentTimeMillis(), value));
+    }
+
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    private void record(TrackingEvent event) {
+        if (event.getTrackingCode() == null || !TRACKING_CODE.matcher(event.getTrackingCode()).matches()) {
+            // Cannot match any execution
+            log.debug("Ignoring tracking event with malformed code");
+            return;
+        }
+        if (depth.incrementAndGet() > capacity) {
+            depth.decrementAndGet();
+            overflowed.increment();
+            Map<String, PendingUpdate> single = new LinkedHashMap<>();
+            merge(single, event);
+            write(single);
+            return;
+        }
+        if (eventLog == null) {
+            queue.offer(event);
+        } else {
+            // Queued under the log's lock, so a rotation never seals an event that is not on the queue yet
+            synchronized (eventLog) {
+                try {
+                    eventLog.append(event.encode());
+                } catch (IOException e) {
+                    log.warn("Could not append tracking event to the local log: {}", e.getMessage());
+                }
+                queue.offer(event);
+            }
+        }
+        queued.increment();
+    }
+
+    /**
+     * Writes everything accepted so far. A failed write keeps its coalesced updates and log segments
+     * for the next call.
+     */
+    public synchronized void flush() {
+        List<Path> segments = List.of();
+        Map<String, PendingUpdate> updates = carryOver;
+        if (eventLog != null) {
+            try {
+                if (!recovered) {
+                    replay(eventLog.leftoverSegments(), updates);
+                    recovered = true;
+                }
+                segments = eventLog.rotate();
+            } catch (IOException e) {
+                log.warn("Tracking event log unavailable, flushing from memory only: {}", e.getMessage());
+            }
+        }
+        TrackingEvent event;
+        while ((event = queue.poll()) != null) {
+            depth.decrementAndGet();
+            merge(updates, event);
+        }
+        if (updates.isEmpty() && segments.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> write(updates));
+        } catch (RuntimeException e) {
+            carryOver = updates;
+            flushFailures.increment();
+            throw e;
+        }
+        carryOver = new LinkedHashMap<>();
+        flushSize.record(updates.size());
+        if (!segments.isEmpty()) {
+            try {
+                eventLog.delete(segments);
+            } catch (IOException e) {
+                // Replayed after a restart, which is harmless
+                log.warn("Could not delete flushed tracking log segments: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Final tracking event flush failed; events will be replayed from the local log", e);
+        }
+        if (eventLog != null) {
+            try {
+                eventLog.close();
+            } catch (IOException e) {
+                log.warn("Could not close tracking event log: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void write(Map<String, PendingUpdate> updates) {
+        List<Object[]> opened = new ArrayList<>();
+        List<Object[]> clicked = new ArrayList<>();
+        List<Object[]> converted = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        updates.forEach((trackingCode, update) -> {
+            if (update.openedAt != 0) {
+                opened.add(new Object[]{toTimestamp(update.openedAt), now, trackingCode});
+            }
+            if (update.clickedAt != 0) {
+                clicked.add(new Object[]{toTimestamp(update.clickedAt), now, trackingCode});
+            }
+            if (update.convertedAt != 0) {
+                converted.add(new Object[]{toTimestamp(update.convertedAt), update.conversionValue, now, trackingCode});
+            }
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            batchUpdate(OPENED_SQL, opened);
+            batchUpdate(CLICKED_SQL, clicked);
+            batchUpdate(CONVERTED_SQL, converted);
+        });
+    }
+
+    private void batchUpdate(String sql, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, rows, BATCH_SIZE, (statement, row) -> {
+            for (int i = 0; i < row.length; i++) {
+                statement.setObject(i + 1, row[i]);
+            }
+        });
+    }
+
+    private void replay(List<Path> segments, Map<String, PendingUpdate> updates) throws IOException {
+        int replayed = 0;
+        for (Path segment : segments) {
+            for (String record : TrackingEventLog.read(segment)) {
+                TrackingEvent event = TrackingEvent.decode(record);
+                if (event != null) {
+                    merge(updates, event);
+                    replayed++;
+                }
+            }
+        }
+        if (replayed > 0) {
+            log.info("Replaying {} tracking events from {} log segments", replayed, segments.size());
+        }
+    }
+
+    static void merge(Map<String, PendingUpdate> updates, TrackingEvent event) {
+        updates.computeIfAbsent(event.getTrackingCode(), code -> new PendingUpdate()).apply(event);
+    }
+
+    private static Timestamp toTimestamp(long epochMillis) {
+        return Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+
+    private static String statusesBefore(ExecutionStatus status) {
+        return Arrays.stream(ExecutionStatus.values())
+                .filter(candidate -> candidate.ordinal() < status.ordinal())
+                .map(candidate -> "'" + candidate.name() + "'")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static TrackingEventLog openLog(Path baseDirectory) {
+        for (int instance = 0; instance < LOG_INSTANCES; instance++) {
+            Path directory = baseDirectory.resolve("instance-" + instance);
+            try {
+                TrackingEventLog eventLog = new TrackingEventLog(directory);
+                log.info("Logging tracking events to {}", directory);
+                return eventLog;
+            } catch (TrackingEventLog.DirectoryInUseException e) {
+                log.debug(e.getMessage());
+            } catch (IOException e) {
+                log.error("Could not open tracking event log in {}; queued events will not survive a crash", directory, e);
+                return null;
+            }
+        }
+        // Running without a log would leave another process's leftovers unreplayed and break at-least-once
+        throw new IllegalStateException("All " + LOG_INSTANCES + " tracking event log directories under "
+                + baseDirectory + " are locked by other processes");
+    }
+
+    /**
+     * Net effect of several events for one execution: the first open and click, and the latest conversion.
+     * Times are epoch millis, 0 when absent.
+     */
+    static final class PendingUpdate {
+        long openedAt;
+        long clickedAt;
+        long convertedAt;
+        BigDecimal conversionValue;
+
+        void apply(TrackingEvent event) {
+            switch (event.getType()) {
+                case OPENED -> openedAt = openedAt == 0 ? event.getOccurredAt() : Math.min(openedAt, event.getOccurredAt());
+                case CLICKED -> clickedAt = clickedAt == 0 ? event.getOccurredAt() : Math.min(clickedAt, event.getOccurredAt());
+                case CONVERTED -> {
+                    if (event.getOccurredAt() >= convertedAt) {
+                        convertedAt = event.getOccurredAt();
+                        conversionValue = event.getValue();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.abiodun.expaq.service.marketing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Local append-only log of accepted tracking events, split into segments. Events go to the active
+ * segment; {@link #rotate()} seals it, and sealed segments are deleted once their events are in the
+ * database. Segments left behind by a previous process are sealed on open and replayed by the caller.
+ * Writes reach the OS page cache, so they survive a process crash but not necessarily a host crash.
+ * <p>
+ * The log holds an exclusive lock on its directory until {@link #close()}, so a second process never
+ * mistakes this one's live segments for leftovers. The OS drops the lock when the holder dies.
+ */
+final class TrackingEventLog implements Closeable {
+
+    private static final String PREFIX = "tracking-";
+    private static final String SUFFIX = ".log";
+    private static final String LOCK_FILE = ".lock";
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final List<Path> sealed = new ArrayList<>();
+    private final List<Path> leftover;
+    private long nextSegment;
+    private Path activePath;
+    private FileChannel active;
+    private long activeBytes;
+
+    TrackingEventLog(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            // Held until the channel is closed
+            if (tryLock(lockChannel) == null) {
+                throw new DirectoryInUseException(directory);
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(TrackingEventLog::isSegment).sorted().forEach(sealed::add);
+            }
+            this.leftover = List.copyOf(sealed);
+            for (Path segment : sealed) {
+                nextSegment = Math.max(nextSegment, segmentNumber(segment) + 1);
+            }
+            openSegment();
+        } catch (IOException | RuntimeException e) {
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Segments that existed before this log was opened.
+     */
+    List<Path> leftoverSegments() {
+        return leftover;
+    }
+
+    synchronized void append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + '\n').getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            activeBytes += active.write(buffer);
+        }
+    }
+
+    /**
+     * Seals the active segment and starts a new one, unless nothing has been written to it.
+     *
+     * @return every sealed segment not yet deleted, oldest first
+     */
+    synchronized List<Path> rotate() throws IOException {
+        if (activeBytes == 0) {
+            return List.copyOf(sealed);
+        }
+        active.close();
+        sealed.add(activePath);
+        openSegment();
+        return List.copyOf(sealed);
+    }
+
+    synchronized void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+            sealed.remove(segment);
+        }
+    }
+
+    /**
+     * Records of a sealed segment. A torn last line from a crash mid-write is returned as-is and
+     * left to the caller's parser to reject.
+     */
+    static List<String> read(Path segment) throws IOException {
+        return Files.readAllLines(segment, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            active.close();
+        } finally {
+            // Closing the channel releases the lock
+            lockChannel.close();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        activePath = directory.resolve(String.format("%s%019d%s", PREFIX, nextSegment++, SUFFIX));
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        activeBytes = 0;
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another log in this JVM
+            return null;
+        }
+    }
+
+    private static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Another open log, in this process or another one, holds the directory.
+     */
+    static final class DirectoryInUseException extends IOException {
+        DirectoryInUseException(Path directory) {
+            super("Tracking event log directory " + directory + " is in use by another process");
+        }
+    }
+}
@@ -8,6 +8,13 @@ public interface PaymentProvider {
     Object createPaymentIntent(Payment payment) throws PaymentException;
     void confirmPayment(String paymentIntentId) throws PaymentException;
     void refundPayment(String paymentIntentId, BigDecimal amount) throws PaymentException;
+
+    /**
+     * Refunds with a caller-chosen key that stays the same across retries of one refund, so a
+     * repeated call never refunds twice. A payment the provider reports as already refunded counts
+     * as success.
+     */
+    void refundPayment(String paymentIntentId, BigDecimal amount, String idempotencyKey) throws PaymentException;
     PaymentStatus getPaymentStatus(String paymentIntentId) throws PaymentException;
 
     enum PaymentStatus {
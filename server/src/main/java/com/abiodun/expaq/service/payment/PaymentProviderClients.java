@@ -0,0 +1,87 @@
+package com.abiodun.expaq.service.payment;
+
+import com.stripe.Stripe;
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.exception.StripeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-provider outbound plumbing. Paystack gets its own HTTP client, and so its own connection pool,
+ * with connect and read timeouts; Stripe's SDK gets the same timeouts. Each provider has its own
+ * {@link ProviderCallGuard}, so a slow or failing provider cannot take request threads from the other
+ * or from the rest of the application.
+ */
+@Component
+public class PaymentProviderClients {
+
+    private final RestTemplate paystackRestTemplate;
+    private final ProviderCallGuard paystack;
+    private final ProviderCallGuard stripe;
+
+    public PaymentProviderClients(MeterRegistry meterRegistry,
+                                  @Value("${payments.providers.connect-timeout-ms:2000}") int connectTimeoutMillis,
+                                  @Value("${payments.providers.read-timeout-ms:10000}") int readTimeoutMillis,
+                                  @Value("${payments.providers.max-concurrent-calls:20}") int maxConcurrentCalls,
+                                  @Value("${payments.providers.max-wait-ms:50}") long maxWaitMillis,
+                                  @Value("${payments.providers.circuit.window-size:20}") int windowSize,
+                                  @Value("${payments.providers.circuit.minimum-calls:10}") int minimumCalls,
+                                  @Value("${payments.providers.circuit.failure-rate-percent:50}") int failureRatePercent,
+                                  @Value("${payments.providers.circuit.open-ms:30000}") long openMillis,
+                                  @Value("${payments.providers.circuit.half-open-probes:3}") int halfOpenProbes) {
+        HttpClient paystackHttpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(paystackHttpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        this.paystackRestTemplate = new RestTemplate(requestFactory);
+
+        // The SDK's client is static; these apply to every Stripe call
+        Stripe.setConnectTimeout(connectTimeoutMillis);
+        Stripe.setReadTimeout(readTimeoutMillis);
+
+        long openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.paystack = new ProviderCallGuard("paystack",
+                new ProviderCircuitBreaker(windowSize, minimumCalls, failureRatePercent, openNanos, halfOpenProbes),
+                maxConcurrentCalls, maxWaitMillis,
+                e -> e instanceof ResourceAccessException || e instanceof HttpServerErrorException
+                        || e instanceof HttpClientErrorException.TooManyRequests,
+                meterRegistry);
+        this.stripe = new ProviderCallGuard("stripe",
+                new ProviderCircuitBreaker(windowSize, minimumCalls, failureRatePercent, openNanos, halfOpenProbes),
+                maxConcurrentCalls, maxWaitMillis,
+                PaymentProviderClients::isStripeOutage,
+                meterRegistry);
+    }
+
+    public RestTemplate paystackRestTemplate() {
+        return paystackRestTemplate;
+    }
+
+    public ProviderCallGuard paystack() {
+        return paystack;
+    }
+
+    public ProviderCallGuard stripe() {
+        return stripe;
+    }
+
+    private static boolean isStripeOutage(Throwable e) {
+        if (e instanceof ApiConnectionException) {
+            return true;
+        }
+        return e instanceof StripeException stripeException
+                && stripeException.getStatusCode() != null
+                && (stripeException.getStatusCode() >= 500 || stripeException.getStatusCode() == 429);
+    }
+}
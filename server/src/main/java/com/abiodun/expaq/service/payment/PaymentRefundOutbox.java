@@ -0,0 +1,184 @@
+package com.abiodun.expaq.service.payment;
+
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.service.impl.PaymentRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Durable queue of refunds the system owes. {@link #enqueue} runs inside the caller's transaction, so
+ * the obligation commits together with whatever made it necessary. {@link #attempt} and {@link #drain()}
+ * then claim the row, call the provider outside any transaction and only afterwards mark the payment
+ * {@code REFUNDED} and delete the row in a short one. A failed call leaves the row pending with
+ * exponential backoff; refunds are never given up on, only logged loudly once they keep failing.
+ * Every provider call for a row carries the same idempotency key, so retries cannot refund twice.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentRefundOutbox {
+
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+    private static final int ALERT_AFTER_ATTEMPTS = 8;
+    private static final long STALE_PROCESSING_MINUTES = 5;
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final int BATCH_SIZE = 20;
+
+    private static final String ENQUEUE_SQL = "INSERT INTO payment_refund_outbox (payment_id, reason, status,"
+            + " attempts, created_at, next_attempt_at) VALUES (?, ?, 'PENDING', 0, ?, ?)"
+            + " ON CONFLICT (payment_id) DO NOTHING";
+    private static final String CLAIM_ONE_SQL = "UPDATE payment_refund_outbox SET status = 'PROCESSING',"
+            + " attempts = attempts + 1, locked_at = ? WHERE payment_id = ? AND status = 'PENDING'"
+            + " RETURNING payment_id, reason, attempts";
+    private static final String CLAIM_DUE_SQL = "UPDATE payment_refund_outbox SET status = 'PROCESSING',"
+            + " attempts = attempts + 1, locked_at = ? WHERE payment_id IN (SELECT payment_id FROM payment_refund_outbox"
+            + " WHERE status = 'PENDING' AND next_attempt_at <= ? ORDER BY next_attempt_at LIMIT ? FOR UPDATE SKIP LOCKED)"
+            + " RETURNING payment_id, reason, attempts";
+    private static final String DONE_SQL = "DELETE FROM payment_refund_outbox WHERE payment_id = ?";
+    private static final String RETRY_SQL = "UPDATE payment_refund_outbox SET status = 'PENDING', last_error = ?,"
+            + " next_attempt_at = ? WHERE payment_id = ?";
+    private static final String RELEASE_STALE_SQL = "UPDATE payment_refund_outbox SET status = 'PENDING'"
+            + " WHERE status = 'PROCESSING' AND locked_at < ?";
+
+    private static final RowMapper<ClaimedRefund> CLAIMED = (rs, rowNum) -> new ClaimedRefund(
+            rs.getObject("payment_id", UUID.class), rs.getString("reason"), rs.getInt("attempts"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PaymentRepository paymentRepository;
+    private final StripePaymentProvider stripePaymentProvider;
+    private final PaystackPaymentProvider paystackPaymentProvider;
+    private final PaymentRollupService paymentRollupService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Records that the payment must be refunded. Joins the caller's transaction; a refund already queued
+     * for the payment is left as it is.
+     */
+    public void enqueue(UUID paymentId, String reason) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(ENQUEUE_SQL, paymentId, reason, now, now);
+    }
+
+    /**
+     * Tries the payment's queued refund now, if there is one and nobody else is working on it.
+     * Never throws: a failure is recorded on the row and retried by {@link #drain()}.
+     *
+     * @return true if the refund went through
+     */
+    public boolean attempt(UUID paymentId) {
+        List<ClaimedRefund> claimed = jdbcTemplate.query(CLAIM_ONE_SQL, CLAIMED,
+                Timestamp.valueOf(LocalDateTime.now()), paymentId);
+        return !claimed.isEmpty() && process(claimed.get(0));
+    }
+
+    /**
+     * Retries every refund that is due. Other instances draining at the same time claim disjoint rows.
+     *
+     * @return number of refunds that went through
+     */
+    public int drain() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = jdbcTemplate.update(RELEASE_STALE_SQL,
+                Timestamp.valueOf(now.minusMinutes(STALE_PROCESSING_MINUTES)));
+        if (released > 0) {
+            log.warn("Released {} refunds left in processing", released);
+        }
+
+        int done = 0;
+        while (true) {
+            Timestamp claimedAt = Timestamp.valueOf(LocalDateTime.now());
+            List<ClaimedRefund> batch = jdbcTemplate.query(CLAIM_DUE_SQL, CLAIMED, claimedAt, claimedAt, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return done;
+            }
+            for (ClaimedRefund refund : batch) {
+                if (process(refund)) {
+                    done++;
+                }
+            }
+        }
+    }
+
+    private boolean process(ClaimedRefund refund) {
+        try {
+            Payment payment = paymentRepository.findById(refund.paymentId).orElse(null);
+            if (payment != null && payment.getStatus() != PaymentStatus.REFUNDED) {
+                // Outside any transaction: a slow provider must not hold a connection or row locks
+                // The same key on every retry of this row, so a call that went through but whose DONE
+                // write was lost is not refunded a second time
+                String idempotencyKey = idempotencyKey(refund.paymentId);
+                if ("STRIPE".equals(payment.getPaymentProvider())) {
+                    stripePaymentProvider.refundPayment(payment.getPaymentProviderReference(), payment.getAmount(),
+                            idempotencyKey);
+                } else if ("PAYSTACK".equals(payment.getPaymentProvider())) {
+                    paystackPaymentProvider.refundPayment(payment.getPaymentProviderReference(), payment.getAmount(),
+                            idempotencyKey);
+                }
+            }
+            transactionTemplate.executeWithoutResult(tx -> {
+                paymentRepository.findById(refund.paymentId)
+                        .filter(current -> current.getStatus() != PaymentStatus.REFUNDED)
+                        .ifPresent(current -> markRefunded(current, refund.reason));
+                jdbcTemplate.update(DONE_SQL, refund.paymentId);
+            });
+            log.info("Refunded payment {}: {}", refund.paymentId, refund.reason);
+            return true;
+        } catch (PaymentProvider.PaymentException | RuntimeException e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            jdbcTemplate.update(RETRY_SQL, error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH),
+                    Timestamp.valueOf(LocalDateTime.now().plus(backoff(refund.attempts))), refund.paymentId);
+            if (refund.attempts >= ALERT_AFTER_ATTEMPTS) {
+                log.error("Refund for payment {} still failing after {} attempts", refund.paymentId, refund.attempts, e);
+            } else {
+                log.warn("Refund for payment {} failed on attempt {}: {}", refund.paymentId, refund.attempts, error);
+            }
+            return false;
+        }
+    }
+
+    private void markRefunded(Payment payment, String reason) {
+        PaymentStatus previousStatus = payment.getStatus();
+        payment.setStatus(PaymentStatus.REFUNDED);
+        payment.setErrorMessage(reason);
+        Payment updatedPayment = paymentRepository.save(payment);
+        paymentRollupService.recordStatusChange(updatedPayment, previousStatus);
+        eventPublisher.publishEvent(PaymentEvent.of(updatedPayment, previousStatus));
+    }
+
+    /** The outbox holds at most one refund per payment, so the payment id identifies the row. */
+    static String idempotencyKey(UUID paymentId) {
+        return "refund-" + paymentId;
+    }
+
+    static Duration backoff(int attempts) {
+        Duration delay = Duration.ofSeconds(1L << Math.min(attempts, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private static final class ClaimedRefund {
+        private final UUID paymentId;
+        private final String reason;
+        private final int attempts;
+
+        private ClaimedRefund(UUID paymentId, String reason, int attempts) {
+            this.paymentId = paymentId;
+            this.reason = reason;
+            this.attempts = attempts;
+        }
+    }
+}
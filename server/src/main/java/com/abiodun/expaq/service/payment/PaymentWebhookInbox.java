@@ -0,0 +1,271 @@
+package com.abiodun.expaq.service.payment;
+
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.service.IPaymentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable inbox for payment provider webhooks. {@link #accept} only inserts the event, keyed by the
+ * provider's event id so redeliveries are dropped, which lets the webhook endpoint answer within a few
+ * milliseconds. {@link #drain()} then claims due events and processes them on a worker pool.
+ * <p>
+ * An event is only claimable once every earlier event for the same payment is done, so each payment's
+ * events are applied in the order they arrived, retries included. Processing goes through
+ * {@link IPaymentService#updatePaymentStatus}, which calls the provider before opening its transaction.
+ * Failures are retried with exponential backoff and parked as {@code FAILED} after {@link #MAX_ATTEMPTS}.
+ * Inbox depth and the age of the oldest unprocessed event are published as gauges, and the time from
+ * receipt to processing as the {@code payments.webhooks.processing.lag} timer.
+ */
+@Service
+@Slf4j
+public class PaymentWebhookInbox {
+
+    static final int MAX_ATTEMPTS = 8;
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(30);
+    private static final long STALE_PROCESSING_MINUTES = 5;
+    private static final int MAX_ERROR_LENGTH = 255;
+
+    private static final String INSERT_SQL = "INSERT INTO payment_webhook_inbox (id, provider, provider_event_id,"
+            + " event_type, payment_id, target_status, transaction_id, status, attempts, received_at, next_attempt_at)"
+            + " VALUES (?, ?, ?, ?, ?, ?, ?, 'PENDING', 0, ?, ?)"
+            + " ON CONFLICT (provider, provider_event_id) DO NOTHING";
+    // One event per payment at most: anything with an unfinished predecessor waits for it
+    private static final String CLAIM_SQL = "UPDATE payment_webhook_inbox SET status = 'PROCESSING',"
+            + " attempts = attempts + 1, locked_at = ? WHERE id IN (SELECT i.id FROM payment_webhook_inbox i"
+            + " WHERE i.status = 'PENDING' AND i.next_attempt_at <= ? AND NOT EXISTS (SELECT 1 FROM payment_webhook_inbox e"
+            + " WHERE e.payment_id = i.payment_id AND e.status IN ('PENDING', 'PROCESSING')"
+            + " AND (e.received_at, e.id) < (i.received_at, i.id))"
+            + " ORDER BY i.received_at LIMIT ? FOR UPDATE SKIP LOCKED)"
+            + " RETURNING id, provider, payment_id, target_status, transaction_id, attempts, received_at";
+    private static final String DONE_SQL = "UPDATE payment_webhook_inbox SET status = 'DONE', processed_at = ?,"
+            + " last_error = NULL WHERE id = ?";
+    private static final String RETRY_SQL = "UPDATE payment_webhook_inbox SET status = ?, last_error = ?,"
+            + " next_attempt_at = ? WHERE id = ?";
+    private static final String RELEASE_STALE_SQL = "UPDATE payment_webhook_inbox SET status = 'PENDING'"
+            + " WHERE status = 'PROCESSING' AND locked_at < ?";
+    private static final String BACKLOG_SQL = "SELECT COUNT(*), MIN(received_at) FROM payment_webhook_inbox"
+            + " WHERE status IN ('PENDING', 'PROCESSING')";
+    private static final String PURGE_SQL = "DELETE FROM payment_webhook_inbox WHERE status = 'DONE' AND processed_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IPaymentService paymentService;
+    private final ExecutorService workers;
+    private final int batchSize;
+
+    private final AtomicLong depth = new AtomicLong();
+    private final AtomicLong oldestReceivedMillis = new AtomicLong();
+
+    private final Counter accepted;
+    private final Counter duplicates;
+    private final Counter processed;
+    private final Counter retried;
+    private final Counter parked;
+    private final Timer processingLag;
+
+    public PaymentWebhookInbox(JdbcTemplate jdbcTemplate,
+                               IPaymentService paymentService,
+                               MeterRegistry meterRegistry,
+                               @Value("${payments.webhooks.workers:4}") int workerThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.paymentService = paymentService;
+        this.batchSize = workerThreads * 4;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("payments.webhooks.inbox.depth", depth, AtomicLong::get)
+                .description("Webhook events received but not yet processed")
+                .register(meterRegistry);
+        Gauge.builder("payments.webhooks.inbox.lag", oldestReceivedMillis, oldest -> oldest.get() == 0
+                        ? 0 : (System.currentTimeMillis() - oldest.get()) / 1000.0)
+                .description("Age in seconds of the oldest unprocessed webhook event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.accepted = Counter.builder("payments.webhooks.received")
+                .tag("outcome", "accepted")
+                .register(meterRegistry);
+        this.duplicates = Counter.builder("payments.webhooks.received")
+                .tag("outcome", "duplicate")
+                .register(meterRegistry);
+        this.processed = Counter.builder("payments.webhooks.processed")
+                .tag("outcome", "done")
+                .register(meterRegistry);
+        this.retried = Counter.builder("payments.webhooks.processed")
+                .tag("outcome", "retry")
+                .register(meterRegistry);
+        this.parked = Counter.builder("payments.webhooks.processed")
+                .tag("outcome", "failed")
+                .register(meterRegistry);
+        this.processingLag = Timer.builder("payments.webhooks.processing.lag")
+                .description("Time from receiving a webhook to applying it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores a webhook for processing in its own short statement.
+     *
+     * @return false if the provider already delivered this event
+     */
+    public boolean accept(String provider, String providerEventId, String eventType, UUID paymentId,
+                          PaymentStatus targetStatus, String transactionId) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int inserted = jdbcTemplate.update(INSERT_SQL, UUID.randomUUID(), provider, providerEventId, eventType,
+                paymentId, targetStatus.name(), transactionId, now, now);
+        if (inserted == 0) {
+            duplicates.increment();
+            log.info("Ignoring redelivered {} webhook {}", provider, providerEventId);
+            return false;
+        }
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Processes due events until none are left. Meant to be called from a single scheduler thread;
+     * other instances draining at the same time claim disjoint events.
+     *
+     * @return number of events processed successfully
+     */
+    public int drain() {
+        LocalDateTime now = LocalDateTime.now();
+        int released = jdbcTemplate.update(RELEASE_STALE_SQL,
+                Timestamp.valueOf(now.minusMinutes(STALE_PROCESSING_MINUTES)));
+        if (released > 0) {
+            log.warn("Released {} webhook events left in processing", released);
+        }
+
+        int done = 0;
+        try {
+            while (true) {
+                Timestamp claimedAt = Timestamp.valueOf(LocalDateTime.now());
+                List<ClaimedEvent> batch = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> new ClaimedEvent(
+                        rs.getObject("id", UUID.class),
+                        rs.getString("provider"),
+                        rs.getObject("payment_id", UUID.class),
+                        PaymentStatus.valueOf(rs.getString("target_status")),
+                        rs.getString("transaction_id"),
+                        rs.getInt("attempts"),
+                        rs.getTimestamp("received_at").toLocalDateTime()), claimedAt, claimedAt, batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<Callable<Boolean>> tasks = new ArrayList<>(batch.size());
+                for (ClaimedEvent event : batch) {
+                    tasks.add(() -> process(event));
+                }
+                for (Future<Boolean> result : workers.invokeAll(tasks)) {
+                    if (Boolean.TRUE.equals(result.get())) {
+                        done++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // process() handles its own failures
+            log.error("Webhook worker failed unexpectedly", e.getCause());
+        } finally {
+            refreshBacklog();
+        }
+        return done;
+    }
+
+    /**
+     * Deletes processed events older than the dedup window.
+     */
+    public int purgeProcessed(Duration retention) {
+        return jdbcTemplate.update(PURGE_SQL, Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private boolean process(ClaimedEvent event) {
+        try {
+            paymentService.updatePaymentStatus(event.paymentId, event.targetStatus, event.transactionId);
+            LocalDateTime now = LocalDateTime.now();
+            jdbcTemplate.update(DONE_SQL, Timestamp.valueOf(now), event.id);
+            processed.increment();
+            processingLag.record(Duration.between(event.receivedAt, now));
+            return true;
+        } catch (RuntimeException e) {
+            boolean exhausted = event.attempts >= MAX_ATTEMPTS;
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            jdbcTemplate.update(RETRY_SQL, exhausted ? "FAILED" : "PENDING",
+                    error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH),
+                    Timestamp.valueOf(LocalDateTime.now().plus(backoff(event.attempts))), event.id);
+            if (exhausted) {
+                parked.increment();
+                log.error("Giving up on {} webhook {} for payment {} after {} attempts",
+                        event.provider, event.id, event.paymentId, event.attempts, e);
+            } else {
+                retried.increment();
+                log.warn("Webhook {} for payment {} failed on attempt {}: {}",
+                        event.id, event.paymentId, event.attempts, error);
+            }
+            return false;
+        }
+    }
+
+    static Duration backoff(int attempts) {
+        Duration delay = Duration.ofSeconds(1L << Math.min(attempts, 20));
+        return delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay;
+    }
+
+    private void refreshBacklog() {
+        jdbcTemplate.query(BACKLOG_SQL, rs -> {
+            depth.set(rs.getLong(1));
+            Timestamp oldest = rs.getTimestamp(2);
+            oldestReceivedMillis.set(oldest != null ? oldest.getTime() : 0);
+        });
+    }
+
+    private static final class ClaimedEvent {
+        private final UUID id;
+        private final String provider;
+        private final UUID paymentId;
+        private final PaymentStatus targetStatus;
+        private final String transactionId;
+        private final int attempts;
+        private final LocalDateTime receivedAt;
+
+        private ClaimedEvent(UUID id, String provider, UUID paymentId, PaymentStatus targetStatus,
+                             String transactionId, int attempts, LocalDateTime receivedAt) {
+            this.id = id;
+            this.provider = provider;
+            this.paymentId = paymentId;
+            this.targetStatus = targetStatus;
+            this.transactionId = transactionId;
+            this.attempts = attempts;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.abiodun.expaq.service.payment;
 
 import com.abiodun.expaq.config.PaystackConfig;
+import com.abiodun.expaq.exception.PaymentProviderUnavailableException;
 import com.abiodun.expaq.service.impl.CurrencyConversionService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -11,7 +12,7 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -23,7 +24,7 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaystackClient {
     private final PaystackConfig paystackConfig;
-    private final RestTemplate restTemplate;
+    private final PaymentProviderClients providerClients;
     private final ObjectMapper objectMapper;
     private final CurrencyConversionService currencyConversionService;
 
@@ -70,11 +71,12 @@ public class PaystackClient {
 
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
 
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                paystackConfig.getBaseUrl() + "/transaction/initialize",
-                request,
-                String.class
-            );
+            ResponseEntity<String> response = providerClients.paystack().execute("initialize", () ->
+                providerClients.paystackRestTemplate().postForEntity(
+                    paystackConfig.getBaseUrl() + "/transaction/initialize",
+                    request,
+                    String.class
+                ));
 
             log.debug("Paystack response: {}", response.getBody());
 
@@ -93,6 +95,8 @@ public class PaystackClient {
             initResponse.setAccessCode(data.get("access_code").asText());
 
             return initResponse;
+        } catch (PaymentProviderUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error initializing payment: {}", e.getMessage());
             throw new RuntimeException("Error initializing payment: " + e.getMessage(), e);
@@ -104,47 +108,76 @@ public class PaystackClient {
             HttpHeaders headers = createHeaders();
             HttpEntity<?> request = new HttpEntity<>(headers);
 
-            ResponseEntity<String> response = restTemplate.exchange(
-                paystackConfig.getBaseUrl() + "/transaction/verify/" + reference,
-                HttpMethod.GET,
-                request,
-                String.class
-            );
+            ResponseEntity<String> response = providerClients.paystack().execute("verify", () ->
+                providerClients.paystackRestTemplate().exchange(
+                    paystackConfig.getBaseUrl() + "/transaction/verify/" + reference,
+                    HttpMethod.GET,
+                    request,
+                    String.class
+                ));
 
             JsonNode jsonResponse = objectMapper.readTree(response.getBody());
             if (!jsonResponse.get("status").asBoolean() ||
                 !jsonResponse.get("data").get("status").asText().equals("success")) {
                 throw new RuntimeException("Payment verification failed");
             }
+        } catch (PaymentProviderUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Error verifying payment: " + e.getMessage(), e);
         }
     }
 
-    public void refundPayment(String reference, BigDecimal amount) {
+    /**
+     * Paystack has no idempotency header for refunds, so the key only travels as the merchant note;
+     * what keeps a retry from refunding twice is that a fully reversed transaction counts as done.
+     */
+    public void refundPayment(String reference, BigDecimal amount, String idempotencyKey) {
         try {
             HttpHeaders headers = createHeaders();
             
             Map<String, Object> body = new HashMap<>();
             body.put("transaction", reference);
             body.put("amount", amount.multiply(new BigDecimal("100")).intValue()); // Convert to kobo
+            if (idempotencyKey != null) {
+                body.put("merchant_note", idempotencyKey);
+            }
 
             HttpEntity<Map<String, Object>> request = new HttpEntity<>(body, headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                paystackConfig.getBaseUrl() + "/refund",
-                request,
-                String.class
-            );
+            ResponseEntity<String> response = providerClients.paystack().execute("refund", () ->
+                providerClients.paystackRestTemplate().postForEntity(
+                    paystackConfig.getBaseUrl() + "/refund",
+                    request,
+                    String.class
+                ));
 
             JsonNode jsonResponse = objectMapper.readTree(response.getBody());
             if (!jsonResponse.get("status").asBoolean()) {
-                throw new RuntimeException("Refund failed: " + jsonResponse.get("message").asText());
+                String message = jsonResponse.get("message").asText();
+                if (isAlreadyReversed(message)) {
+                    log.info("Paystack transaction {} was already refunded", reference);
+                    return;
+                }
+                throw new RuntimeException("Refund failed: " + message);
+            }
+        } catch (PaymentProviderUnavailableException e) {
+            throw e;
+        } catch (HttpClientErrorException e) {
+            // Paystack answers a repeated refund with a 400 rather than a status=false body
+            if (isAlreadyReversed(e.getResponseBodyAsString())) {
+                log.info("Paystack transaction {} was already refunded", reference);
+                return;
             }
+            throw new RuntimeException("Error processing refund: " + e.getMessage(), e);
         } catch (Exception e) {
             throw new RuntimeException("Error processing refund: " + e.getMessage(), e);
         }
     }
 
+    static boolean isAlreadyReversed(String message) {
+        return message != null && message.toLowerCase().contains("fully reversed");
+    }
+
     private HttpHeaders createHeaders() {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
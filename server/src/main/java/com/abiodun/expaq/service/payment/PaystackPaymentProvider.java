@@ -1,5 +1,6 @@
 package com.abiodun.expaq.service.payment;
 
+import com.abiodun.expaq.exception.PaymentProviderUnavailableException;
 import com.abiodun.expaq.model.Payment;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -37,6 +38,9 @@ public class PaystackPaymentProvider implements PaymentProvider {
                 payment.getCurrency().toString(),
                 metadata
             );
+        } catch (PaymentProviderUnavailableException e) {
+            // Refused locally; let callers fail fast rather than record a provider error
+            throw e;
         } catch (Exception e) {
             log.error("Error creating Paystack payment intent for user {}: {}",
                     payment.getUser().getId(), e.getMessage(), e);
@@ -49,6 +53,8 @@ public class PaystackPaymentProvider implements PaymentProvider {
         try {
             log.info("Confirming Paystack payment with reference: {}", paymentIntentId);
             paystackClient.verifyPayment(paymentIntentId);
+        } catch (PaymentProviderUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error confirming Paystack payment", e);
             throw new PaymentException("Error verifying payment: " + e.getMessage(), e);
@@ -57,8 +63,15 @@ public class PaystackPaymentProvider implements PaymentProvider {
 
     @Override
     public void refundPayment(String paymentIntentId, BigDecimal amount) throws PaymentException {
+        refundPayment(paymentIntentId, amount, null);
+    }
+
+    @Override
+    public void refundPayment(String paymentIntentId, BigDecimal amount, String idempotencyKey) throws PaymentException {
         try {
-            paystackClient.refundPayment(paymentIntentId, amount);
+            paystackClient.refundPayment(paymentIntentId, amount, idempotencyKey);
+        } catch (PaymentProviderUnavailableException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error refunding Paystack payment", e);
             throw new PaymentException("Failed to refund payment: " + e.getMessage());
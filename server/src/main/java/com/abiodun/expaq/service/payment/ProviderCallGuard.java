@@ -0,0 +1,121 @@
+package com.abiodun.expaq.service.payment;
+
+import com.abiodun.expaq.exception.PaymentProviderUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Isolation for calls to one payment provider: a circuit breaker, then a bulkhead that caps concurrent
+ * calls and waits at most {@code maxWaitMillis} for a slot. Refused calls fail at once with
+ * {@link PaymentProviderUnavailableException} instead of tying up request threads behind a slow provider.
+ * <p>
+ * Only errors matching {@code countsAsFailure} (timeouts, connection errors, 5xx, 429 rate limiting)
+ * count against the breaker; a declined card is a healthy answer. Every call is timed in {@code payments.provider.calls},
+ * tagged by provider, operation and outcome.
+ */
+public class ProviderCallGuard {
+
+    @FunctionalInterface
+    public interface ProviderCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private final String provider;
+    private final ProviderCircuitBreaker breaker;
+    private final Semaphore bulkhead;
+    private final long maxWaitMillis;
+    private final Predicate<Throwable> countsAsFailure;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Counter circuitOpenRejections;
+    private final Counter bulkheadRejections;
+
+    ProviderCallGuard(String provider, ProviderCircuitBreaker breaker, int maxConcurrentCalls, long maxWaitMillis,
+                      Predicate<Throwable> countsAsFailure, MeterRegistry meterRegistry) {
+        this.provider = provider;
+        this.breaker = breaker;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.maxWaitMillis = maxWaitMillis;
+        this.countsAsFailure = countsAsFailure;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("payments.provider.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("Circuit state per provider: 0 closed, 1 open, 2 half-open")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("payments.provider.calls.active", bulkhead, b -> maxConcurrentCalls - b.availablePermits())
+                .description("Provider calls in progress")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.circuitOpenRejections = Counter.builder("payments.provider.rejections")
+                .tag("provider", provider)
+                .tag("reason", "circuit_open")
+                .register(meterRegistry);
+        this.bulkheadRejections = Counter.builder("payments.provider.rejections")
+                .tag("provider", provider)
+                .tag("reason", "bulkhead_full")
+                .register(meterRegistry);
+    }
+
+    public <T, E extends Exception> T execute(String operation, ProviderCall<T, E> call) throws E {
+        if (!breaker.tryAcquire(System.nanoTime())) {
+            circuitOpenRejections.increment();
+            throw new PaymentProviderUnavailableException(provider + " is temporarily unavailable");
+        }
+        if (!acquireSlot()) {
+            breaker.release();
+            bulkheadRejections.increment();
+            throw new PaymentProviderUnavailableException(provider + " is busy, please retry shortly");
+        }
+
+        long started = System.nanoTime();
+        String outcome = "success";
+        try {
+            T result = call.call();
+            breaker.onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (countsAsFailure.test(e)) {
+                outcome = "failure";
+                breaker.onFailure(System.nanoTime());
+            } else {
+                outcome = "rejected_by_provider";
+                breaker.onSuccess();
+            }
+            throw e;
+        } catch (Error e) {
+            breaker.release();
+            throw e;
+        } finally {
+            bulkhead.release();
+            timer(operation, outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Timer timer(String operation, String outcome) {
+        return timers.computeIfAbsent(operation + ':' + outcome, key -> Timer.builder("payments.provider.calls")
+                .description("Latency of calls to a payment provider")
+                .tag("provider", provider)
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+}
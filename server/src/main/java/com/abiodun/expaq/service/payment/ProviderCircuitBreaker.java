@@ -0,0 +1,125 @@
+package com.abiodun.expaq.service.payment;
+
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker for one payment provider. While closed it tracks the outcome of the
+ * last {@code windowSize} calls and opens once at least {@code minimumCalls} were seen and the failure
+ * rate reaches the threshold. After {@code openNanos} it lets {@code halfOpenProbes} calls through;
+ * if all succeed it closes, and any failure opens it again. Methods are synchronized; the critical
+ * sections are a few field updates.
+ */
+final class ProviderCircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final boolean[] failedCalls;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long openNanos;
+    private final int halfOpenProbes;
+
+    private State state = State.CLOSED;
+    private int next;
+    private int recorded;
+    private int failures;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+
+    ProviderCircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, long openNanos, int halfOpenProbes) {
+        this.failedCalls = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.openNanos = openNanos;
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    /**
+     * @return false if the call must not be made; otherwise exactly one of {@link #onSuccess},
+     * {@link #onFailure} or {@link #release} must follow
+     */
+    synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probeSuccesses >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            // A call admitted before the circuit opened may finish here without holding a probe
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (++probeSuccesses >= halfOpenProbes) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRatePercent * recorded) {
+                open(nowNanos);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit without an outcome, for calls that were never made.
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == failedCalls.length) {
+            if (failedCalls[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        failedCalls[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % failedCalls.length;
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openedAt = nowNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        Arrays.fill(failedCalls, false);
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
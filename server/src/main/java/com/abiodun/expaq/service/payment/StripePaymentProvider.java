@@ -6,6 +6,7 @@ import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
 import com.stripe.model.PaymentIntent;
 import com.stripe.model.Refund;
+import com.stripe.net.RequestOptions;
 import com.stripe.param.PaymentIntentCreateParams;
 import com.stripe.param.RefundCreateParams;
 import lombok.RequiredArgsConstructor;
@@ -22,7 +23,10 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class StripePaymentProvider implements PaymentProvider {
 
+    private static final String CHARGE_ALREADY_REFUNDED = "charge_already_refunded";
+
     private final PaymentConfig paymentConfig;
+    private final PaymentProviderClients providerClients;
 
     @Override
     public String createPaymentIntent(Payment payment) throws PaymentException {
@@ -36,7 +40,7 @@ public class StripePaymentProvider implements PaymentProvider {
                 "user_id", payment.getUser().getId().toString()
             ));
 
-            PaymentIntent intent = PaymentIntent.create(params);
+            PaymentIntent intent = providerClients.stripe().execute("create_intent", () -> PaymentIntent.create(params));
             return intent.getId();
         } catch (StripeException e) {
             throw new PaymentException("Failed to create payment intent: " + e.getMessage());
@@ -46,7 +50,7 @@ public class StripePaymentProvider implements PaymentProvider {
     @Override
     public void confirmPayment(String paymentIntentId) throws PaymentException {
         try {
-            PaymentIntent intent = PaymentIntent.retrieve(paymentIntentId);
+            PaymentIntent intent = providerClients.stripe().execute("retrieve_intent", () -> PaymentIntent.retrieve(paymentIntentId));
             if (!"succeeded".equals(intent.getStatus())) {
                 throw new PaymentException("Payment not succeeded");
             }
@@ -58,6 +62,11 @@ public class StripePaymentProvider implements PaymentProvider {
 
     @Override
     public void refundPayment(String paymentIntentId, BigDecimal amount) throws PaymentException {
+        refundPayment(paymentIntentId, amount, null);
+    }
+
+    @Override
+    public void refundPayment(String paymentIntentId, BigDecimal amount, String idempotencyKey) throws PaymentException {
         try {
             Map<String, Object> params = new HashMap<>();
             params.put("payment_intent", paymentIntentId);
@@ -65,8 +74,13 @@ public class StripePaymentProvider implements PaymentProvider {
                 params.put("amount", amount.multiply(new BigDecimal("100")).longValue());
             }
 
-            Refund.create(params);
+            RequestOptions options = RequestOptions.builder().setIdempotencyKey(idempotencyKey).build();
+            providerClients.stripe().execute("refund", () -> Refund.create(params, options));
         } catch (StripeException e) {
+            if (CHARGE_ALREADY_REFUNDED.equals(e.getCode())) {
+                log.info("Stripe payment {} was already refunded", paymentIntentId);
+                return;
+            }
             log.error("Error refunding Stripe payment", e);
             throw new PaymentException("Failed to refund payment", e);
         }
@@ -75,7 +89,7 @@ public class StripePaymentProvider implements PaymentProvider {
     @Override
     public PaymentStatus getPaymentStatus(String paymentIntentId) throws PaymentException {
         try {
-            PaymentIntent intent = PaymentIntent.retrieve(paymentIntentId);
+            PaymentIntent intent = providerClients.stripe().execute("retrieve_intent", () -> PaymentIntent.retrieve(paymentIntentId));
             return switch (intent.getStatus()) {
                 case "succeeded" -> PaymentStatus.SUCCEEDED;
                 case "requires_payment_method", "requires_confirmation", "requires_action" -> PaymentStatus.PENDING;
@@ -0,0 +1,213 @@
+package com.abiodun.expaq.service.recommendation;
+
+import com.abiodun.expaq.event.BookingEvent;
+import com.abiodun.expaq.model.ActivityPopularity;
+import com.abiodun.expaq.repository.ActivityPopularityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Popularity (all-time bookings) and trending (exponentially decayed bookings) counters per activity.
+ * Booking events only touch striped in-memory adders; {@link #flush()} periodically writes the
+ * deltas to {@code activity_popularity}, reloads the table so other instances' bookings are
+ * included, and recomputes the top-N lists with a bounded heap. Reads return those lists.
+ * <p>
+ * Trending weights use forward decay: a booking at time t adds {@code 2^((t - landmark) / halfLife)},
+ * so scores never need to be decayed in memory and ordering is the same as by the current score.
+ * <p>
+ * When the table is empty the first flush seeds it from the bookings table and remembers when it did.
+ * Events that happened before that watermark are already part of the seed and are dropped; events
+ * received before the first flush are held back until the watermark is known.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ActivityPopularityTracker {
+
+    private static final int TOP_SIZE = 100;
+
+    private final ActivityPopularityRepository popularityRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${popularity.trending.half-life-hours:168}")
+    private double halfLifeHours;
+
+    private final long landmarkMillis = System.currentTimeMillis();
+    private final Map<UUID, Counter> counters = new ConcurrentHashMap<>();
+    private final List<BookingEvent> beforeSeed = new ArrayList<>();
+    private volatile boolean seeded;
+    private volatile LocalDateTime seedWatermark;
+    private volatile boolean loaded;
+
+    private volatile List<UUID> topPopular = List.of();
+    private volatile List<UUID> topTrending = List.of();
+
+    @TransactionalEventListener
+    public void onBookingEvent(BookingEvent event) {
+        if (!seeded) {
+            synchronized (beforeSeed) {
+                if (!seeded) {
+                    beforeSeed.add(event);
+                    return;
+                }
+            }
+        }
+        apply(event);
+    }
+
+    private void apply(BookingEvent event) {
+        LocalDateTime watermark = seedWatermark;
+        if (watermark != null && !event.getOccurredAt().isAfter(watermark)) {
+            // Created before the seed, or cancelled before it and so left out of it
+            return;
+        }
+        Counter counter = counters.computeIfAbsent(event.getActivityId(), activityId -> new Counter());
+        double weight = weightAt(event.getBookedAt() != null ? event.getBookedAt() : event.getOccurredAt());
+        if (event.getType() == BookingEvent.Type.CREATED) {
+            counter.count.increment();
+            counter.trend.add(weight);
+        } else {
+            counter.count.decrement();
+            counter.trend.add(-weight);
+        }
+    }
+
+    public boolean isReady() {
+        return loaded;
+    }
+
+    public List<UUID> topPopular(int limit) {
+        List<UUID> top = topPopular;
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    public List<UUID> topTrending(int limit) {
+        List<UUID> top = topTrending;
+        return top.subList(0, Math.min(limit, top.size()));
+    }
+
+    /**
+     * Writes pending deltas in one transaction, then refreshes totals and rankings. The adders are
+     * never reset; each counter remembers what it already flushed, so concurrent bookings are not lost.
+     */
+    public synchronized void flush() {
+        if (!seeded) {
+            seedWatermark = transactionTemplate.execute(status -> {
+                if (popularityRepository.count() != 0) {
+                    return null;
+                }
+                LocalDateTime seededAt = LocalDateTime.now();
+                int activities = popularityRepository.backfillFromBookings(seededAt, halfLifeSeconds());
+                log.info("Seeded popularity counters for {} activities from bookings", activities);
+                return seededAt;
+            });
+            synchronized (beforeSeed) {
+                beforeSeed.forEach(this::apply);
+                beforeSeed.clear();
+                seeded = true;
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        double toNow = Math.pow(0.5, (toMillis(now) - landmarkMillis) / halfLifeMillis());
+        List<Runnable> markFlushed = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> counters.forEach((activityId, counter) -> {
+            long count = counter.count.sum();
+            double trend = counter.trend.sum();
+            long countDelta = count - counter.flushedCount;
+            double trendDelta = trend - counter.flushedTrend;
+            if (countDelta != 0 || trendDelta != 0) {
+                popularityRepository.applyDelta(activityId, countDelta, trendDelta * toNow, now, halfLifeSeconds());
+                markFlushed.add(() -> {
+                    counter.flushedCount = count;
+                    counter.flushedTrend = trend;
+                });
+            }
+        }));
+        // Only after commit, so a failed flush is retried with the same deltas
+        markFlushed.forEach(Runnable::run);
+
+        for (ActivityPopularity row : popularityRepository.findAll()) {
+            Counter counter = counters.computeIfAbsent(row.getActivityId(), activityId -> new Counter());
+            counter.baseCount = row.getBookingCount();
+            counter.baseTrend = row.getTrendingScore()
+                    * Math.pow(2, (toMillis(row.getUpdatedAt()) - landmarkMillis) / halfLifeMillis());
+        }
+        topPopular = rank(Counter::popularity);
+        topTrending = rank(Counter::trending);
+        loaded = true;
+    }
+
+    private List<UUID> rank(ToDoubleFunction<Counter> score) {
+        // Min-heap of the best TOP_SIZE entries seen so far
+        PriorityQueue<Map.Entry<UUID, Double>> heap = new PriorityQueue<>(TOP_SIZE + 1, Map.Entry.comparingByValue());
+        counters.forEach((activityId, counter) -> {
+            double value = score.applyAsDouble(counter);
+            if (value <= 0) {
+                return;
+            }
+            if (heap.size() < TOP_SIZE) {
+                heap.add(Map.entry(activityId, value));
+            } else if (value > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(Map.entry(activityId, value));
+            }
+        });
+        UUID[] ranked = new UUID[heap.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = heap.poll().getKey();
+        }
+        return Arrays.asList(ranked);
+    }
+
+    private double weightAt(LocalDateTime time) {
+        return Math.pow(2, (toMillis(time) - landmarkMillis) / halfLifeMillis());
+    }
+
+    private double halfLifeMillis() {
+        return halfLifeHours * 3_600_000d;
+    }
+
+    private double halfLifeSeconds() {
+        return halfLifeHours * 3_600d;
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static final class Counter {
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder trend = new DoubleAdder();
+        // Only touched by flush(), which is synchronized
+        private long flushedCount;
+        private double flushedTrend;
+        private long baseCount;
+        private double baseTrend;
+
+        private double popularity() {
+            return baseCount + count.sum() - flushedCount;
+        }
+
+        private double trending() {
+            return baseTrend + trend.sum() - flushedTrend;
+        }
+    }
+}
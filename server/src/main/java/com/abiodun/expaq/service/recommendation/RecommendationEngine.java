@@ -0,0 +1,133 @@
+package com.abiodun.expaq.service.recommendation;
+
+import com.abiodun.expaq.event.BookingEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves recommendations from the current {@link RecommendationIndex} snapshot without touching
+ * the database. The index is swapped atomically by {@link #rebuild()}; between rebuilds, each new
+ * booking refreshes that user's candidates against the current neighbour arrays. Cancellations
+ * are only reflected by the next rebuild.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecommendationEngine {
+
+    private final RecommendationModelBuilder modelBuilder;
+
+    private volatile RecommendationIndex index = RecommendationIndex.empty();
+    private final Map<UUID, UserUpdate> recentUpdates = new ConcurrentHashMap<>();
+
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        RecommendationIndex rebuilt = modelBuilder.build();
+        index = rebuilt;
+        // Ordinals are only valid within one snapshot. Bookings made while the build was running
+        // may be missing from it, so those are replayed against the new index; the rest are dropped.
+        recentUpdates.values().removeIf(update -> update.index != rebuilt && update.updatedAt < started);
+        recentUpdates.replaceAll((userId, update) -> update.index == rebuilt
+                ? update : replay(rebuilt, userId, update.recentActivities));
+    }
+
+    public boolean isReady() {
+        return index.size() > 0;
+    }
+
+    @TransactionalEventListener
+    public void onBookingEvent(BookingEvent event) {
+        if (event.getType() != BookingEvent.Type.CREATED) {
+            return;
+        }
+        RecommendationIndex current = index;
+        recentUpdates.compute(event.getUserId(), (userId, previous) -> {
+            List<UUID> recentActivities = new ArrayList<>();
+            if (previous != null) {
+                recentActivities.addAll(previous.recentActivities);
+            }
+            if (recentActivities.size() == RecommendationModelBuilder.MAX_HISTORY_PER_USER) {
+                recentActivities.remove(0);
+            }
+            recentActivities.add(event.getActivityId());
+            return replay(current, userId, recentActivities);
+        });
+    }
+
+    private static UserUpdate replay(RecommendationIndex snapshot, UUID userId, List<UUID> recentActivities) {
+        int[] history = snapshot.historyOf(userId);
+        for (UUID activityId : recentActivities) {
+            int ordinal = snapshot.ordinalOf(activityId);
+            // Activities newer than the snapshot are picked up by the next rebuild
+            if (ordinal >= 0) {
+                history = RecommendationModelBuilder.appendToHistory(history, ordinal);
+            }
+        }
+        int[] candidates = history == null
+                ? null : snapshot.scoreCandidates(history, RecommendationModelBuilder.CANDIDATES_PER_USER);
+        return new UserUpdate(snapshot, recentActivities, history, candidates, System.currentTimeMillis());
+    }
+
+    /**
+     * Activity ids for the user, best first: precomputed co-booking candidates, topped up with the
+     * most booked activities the user has not booked yet.
+     */
+    public List<UUID> recommendForUser(UUID userId, int limit) {
+        RecommendationIndex current = index;
+        UserUpdate update = recentUpdates.get(userId);
+        if (update != null && update.index != current) {
+            update = null;
+        }
+        int[] history = update != null ? update.history : current.historyOf(userId);
+        int[] candidates = update != null ? update.candidates : current.candidatesOf(userId);
+
+        boolean[] seen = new boolean[current.size()];
+        if (history != null) {
+            for (int item : history) {
+                seen[item] = true;
+            }
+        }
+        List<UUID> result = new ArrayList<>(limit);
+        if (candidates != null) {
+            for (int i = 0; i < candidates.length && result.size() < limit; i++) {
+                result.add(current.activityAt(candidates[i]));
+                seen[candidates[i]] = true;
+            }
+        }
+        current.fillWithPopular(result, limit, seen);
+        return result;
+    }
+
+    public List<UUID> similarTo(UUID activityId, int limit) {
+        return index.similarTo(activityId, limit);
+    }
+
+    public List<UUID> popular(int limit) {
+        List<UUID> result = new ArrayList<>(limit);
+        index.fillWithPopular(result, limit, null);
+        return result;
+    }
+
+    private static final class UserUpdate {
+        private final RecommendationIndex index;
+        private final List<UUID> recentActivities;
+        private final int[] history;
+        private final int[] candidates;
+        private final long updatedAt;
+
+        private UserUpdate(RecommendationIndex index, List<UUID> recentActivities, int[] history,
+                           int[] candidates, long updatedAt) {
+            this.index = index;
+            this.recentActivities = recentActivities;
+            this.history = history;
+            this.candidates = candidates;
+            this.updatedAt = updatedAt;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.abiodun.expaq.service.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable snapshot of the recommendation model. Activities are addressed by a dense ordinal
+ * and everything else is stored in primitive arrays indexed by it: item-item neighbours in
+ * compressed-row form ({@code neighborStart[i]..neighborStart[i + 1]}), booking counts, and the
+ * popularity order. Per-user booking history and precomputed candidates are kept as ordinal arrays.
+ */
+public final class RecommendationIndex {
+
+    private static final RecommendationIndex EMPTY = new RecommendationIndex(
+            new UUID[0], new int[]{0}, new int[0], new float[0], new int[0], new int[0],
+            Collections.emptyMap(), Collections.emptyMap(), 0L);
+
+    private final UUID[] activityIds;
+    private final Map<UUID, Integer> ordinals;
+    private final int[] neighborStart;
+    private final int[] neighbors;
+    private final float[] neighborScores;
+    private final int[] bookingCounts;
+    private final int[] popularOrder;
+    private final Map<UUID, int[]> userHistory;
+    private final Map<UUID, int[]> userCandidates;
+    private final long builtAt;
+
+    RecommendationIndex(UUID[] activityIds, int[] neighborStart, int[] neighbors, float[] neighborScores,
+                        int[] bookingCounts, int[] popularOrder, Map<UUID, int[]> userHistory,
+                        Map<UUID, int[]> userCandidates, long builtAt) {
+        this.activityIds = activityIds;
+        this.neighborStart = neighborStart;
+        this.neighbors = neighbors;
+        this.neighborScores = neighborScores;
+        this.bookingCounts = bookingCounts;
+        this.popularOrder = popularOrder;
+        this.userHistory = userHistory;
+        this.userCandidates = userCandidates;
+        this.builtAt = builtAt;
+        this.ordinals = new HashMap<>(activityIds.length * 2);
+        for (int i = 0; i < activityIds.length; i++) {
+            ordinals.put(activityIds[i], i);
+        }
+    }
+
+    public static RecommendationIndex empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return activityIds.length;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * @return the activity's ordinal, or -1 when it was not active at build time
+     */
+    public int ordinalOf(UUID activityId) {
+        Integer ordinal = ordinals.get(activityId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    public int bookingCount(int ordinal) {
+        return bookingCounts[ordinal];
+    }
+
+    public UUID activityAt(int ordinal) {
+        return activityIds[ordinal];
+    }
+
+    public int[] historyOf(UUID userId) {
+        return userHistory.get(userId);
+    }
+
+    public int[] candidatesOf(UUID userId) {
+        return userCandidates.get(userId);
+    }
+
+    /**
+     * Activities most often booked by the same users as {@code activityId}, best match first.
+     */
+    public List<UUID> similarTo(UUID activityId, int limit) {
+        int ordinal = ordinalOf(activityId);
+        if (ordinal < 0) {
+            return List.of();
+        }
+        int end = Math.min(neighborStart[ordinal + 1], neighborStart[ordinal] + limit);
+        List<UUID> result = new ArrayList<>(end - neighborStart[ordinal]);
+        for (int i = neighborStart[ordinal]; i < end; i++) {
+            result.add(activityIds[neighbors[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Appends the most booked activities to {@code target} until it holds {@code limit} entries,
+     * skipping ordinals flagged in {@code exclude} (which may be null).
+     */
+    public void fillWithPopular(List<UUID> target, int limit, boolean[] exclude) {
+        for (int i = 0; i < popularOrder.length && target.size() < limit; i++) {
+            int ordinal = popularOrder[i];
+            if (exclude == null || !exclude[ordinal]) {
+                target.add(activityIds[ordinal]);
+                if (exclude != null) {
+                    exclude[ordinal] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores every neighbour of the activities in {@code history} by summed similarity and returns
+     * the best {@code limit} ordinals that are not already in the history.
+     */
+    public int[] scoreCandidates(int[] history, int limit) {
+        return scoreCandidates(history, limit, new float[activityIds.length], new int[activityIds.length]);
+    }
+
+    int[] scoreCandidates(int[] history, int limit, float[] scratch, int[] touched) {
+        if (limit <= 0) {
+            return new int[0];
+        }
+        int touchedCount = 0;
+        for (int item : history) {
+            for (int i = neighborStart[item]; i < neighborStart[item + 1]; i++) {
+                int neighbor = neighbors[i];
+                if (scratch[neighbor] == 0f) {
+                    touched[touchedCount++] = neighbor;
+                }
+                scratch[neighbor] += neighborScores[i];
+            }
+        }
+        for (int item : history) {
+            scratch[item] = 0f;
+        }
+        int[] best = new int[limit];
+        float[] bestScores = new float[limit];
+        int count = topK(scratch, touched, touchedCount, best, bestScores);
+        for (int i = 0; i < touchedCount; i++) {
+            scratch[touched[i]] = 0f;
+        }
+        return count == limit ? best : Arrays.copyOf(best, count);
+    }
+
+    /**
+     * Keeps the highest scoring of the touched ordinals in {@code best}/{@code bestScores}, sorted
+     * descending, using insertion into the fixed-size arrays (limits are small).
+     *
+     * @return number of entries written
+     */
+    static int topK(float[] scores, int[] touched, int touchedCount, int[] best, float[] bestScores) {
+        int count = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int ordinal = touched[t];
+            float score = scores[ordinal];
+            if (score <= 0f || (count == best.length && score <= bestScores[count - 1])) {
+                continue;
+            }
+            int position = count < best.length ? count++ : count - 1;
+            while (position > 0 && bestScores[position - 1] < score) {
+                best[position] = best[position - 1];
+                bestScores[position] = bestScores[position - 1];
+                position--;
+            }
+            best[position] = ordinal;
+            bestScores[position] = score;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,205 @@
+package com.abiodun.expaq.service.recommendation;
+
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Builds a {@link RecommendationIndex} from the bookings table in one streaming pass.
+ * Item-item similarity is the cosine of co-booking counts: the number of distinct users who booked
+ * both activities divided by the geometric mean of each activity's distinct bookers. Only the best
+ * {@value #NEIGHBORS_PER_ACTIVITY} neighbours are kept per activity, and each user gets the best
+ * {@value #CANDIDATES_PER_USER} unbooked activities by summed neighbour similarity.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class RecommendationModelBuilder {
+
+    static final int NEIGHBORS_PER_ACTIVITY = 20;
+    static final int CANDIDATES_PER_USER = 20;
+    // Bounds the pairwise work for very heavy bookers, who say little about any single activity
+    static final int MAX_HISTORY_PER_USER = 100;
+
+    private final ActivityRepository activityRepository;
+    private final BookingRepository bookingRepository;
+
+    @Transactional(readOnly = true)
+    public RecommendationIndex build() {
+        long started = System.currentTimeMillis();
+        List<UUID> activityIds = activityRepository.findActiveActivityIds();
+        RecommendationIndex index;
+        try (Stream<Object[]> pairs = bookingRepository.streamUserActivityPairs()) {
+            index = build(activityIds, pairs.iterator());
+        }
+        log.info("Built recommendation index over {} activities in {} ms",
+                index.size(), System.currentTimeMillis() - started);
+        return index;
+    }
+
+    static RecommendationIndex build(List<UUID> activityIdList, Iterator<Object[]> userActivityPairs) {
+        UUID[] activityIds = activityIdList.toArray(new UUID[0]);
+        int n = activityIds.length;
+        Map<UUID, Integer> ordinals = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            ordinals.put(activityIds[i], i);
+        }
+
+        // Distinct booked ordinals per user, the most recent MAX_HISTORY_PER_USER of them like
+        // appendToHistory(); bookings of inactive activities are ignored
+        Map<UUID, IntBuffer> histories = new HashMap<>();
+        while (userActivityPairs.hasNext()) {
+            Object[] row = userActivityPairs.next();
+            Integer ordinal = ordinals.get((UUID) row[1]);
+            if (ordinal != null) {
+                histories.computeIfAbsent((UUID) row[0], userId -> new IntBuffer()).addDistinct(ordinal);
+            }
+        }
+
+        Map<UUID, int[]> userHistory = new HashMap<>(histories.size() * 2);
+        int[][] userItems = new int[histories.size()][];
+        int[] bookingCounts = new int[n];
+        int user = 0;
+        for (Map.Entry<UUID, IntBuffer> entry : histories.entrySet()) {
+            int[] items = entry.getValue().toArray();
+            userHistory.put(entry.getKey(), items);
+            userItems[user++] = items;
+            for (int item : items) {
+                bookingCounts[item]++;
+            }
+        }
+
+        // Inverted lists (activity -> users) in compressed-row form
+        int[] itemUserStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            itemUserStart[i + 1] = itemUserStart[i] + bookingCounts[i];
+        }
+        int[] itemUsers = new int[itemUserStart[n]];
+        int[] fill = Arrays.copyOf(itemUserStart, n);
+        for (int u = 0; u < userItems.length; u++) {
+            for (int item : userItems[u]) {
+                itemUsers[fill[item]++] = u;
+            }
+        }
+
+        float[] scratch = new float[n];
+        int[] touched = new int[n];
+        int[] best = new int[NEIGHBORS_PER_ACTIVITY];
+        float[] bestScores = new float[NEIGHBORS_PER_ACTIVITY];
+        int[] neighborStart = new int[n + 1];
+        int[] neighbors = new int[n * NEIGHBORS_PER_ACTIVITY];
+        float[] neighborScores = new float[n * NEIGHBORS_PER_ACTIVITY];
+        for (int i = 0; i < n; i++) {
+            int touchedCount = 0;
+            for (int k = itemUserStart[i]; k < itemUserStart[i + 1]; k++) {
+                for (int other : userItems[itemUsers[k]]) {
+                    if (other == i) {
+                        continue;
+                    }
+                    if (scratch[other] == 0f) {
+                        touched[touchedCount++] = other;
+                    }
+                    scratch[other]++;
+                }
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int other = touched[t];
+                scratch[other] = (float) (scratch[other] / Math.sqrt((double) bookingCounts[i] * bookingCounts[other]));
+            }
+            int count = RecommendationIndex.topK(scratch, touched, touchedCount, best, bestScores);
+            System.arraycopy(best, 0, neighbors, neighborStart[i], count);
+            System.arraycopy(bestScores, 0, neighborScores, neighborStart[i], count);
+            neighborStart[i + 1] = neighborStart[i] + count;
+            for (int t = 0; t < touchedCount; t++) {
+                scratch[touched[t]] = 0f;
+            }
+        }
+
+        // Most booked first, ties broken by ordinal, sorted as packed primitive keys
+        long[] popularityKeys = new long[n];
+        for (int i = 0; i < n; i++) {
+            popularityKeys[i] = ((long) (Integer.MAX_VALUE - bookingCounts[i]) << 32) | i;
+        }
+        Arrays.sort(popularityKeys);
+        int[] popularOrder = new int[n];
+        for (int i = 0; i < n; i++) {
+            popularOrder[i] = (int) popularityKeys[i];
+        }
+
+        // Candidates are scored against the finished neighbour arrays, so the map is filled after construction
+        Map<UUID, int[]> userCandidates = new HashMap<>(userHistory.size() * 2);
+        RecommendationIndex index = new RecommendationIndex(activityIds, neighborStart,
+                Arrays.copyOf(neighbors, neighborStart[n]), Arrays.copyOf(neighborScores, neighborStart[n]),
+                bookingCounts, popularOrder, userHistory, userCandidates, System.currentTimeMillis());
+        for (Map.Entry<UUID, int[]> entry : userHistory.entrySet()) {
+            userCandidates.put(entry.getKey(),
+                    index.scoreCandidates(entry.getValue(), CANDIDATES_PER_USER, scratch, touched));
+        }
+        return index;
+    }
+
+    /**
+     * Appends {@code ordinal} to {@code history} unless it is already present, keeping at most
+     * {@link #MAX_HISTORY_PER_USER} entries (the oldest are dropped).
+     */
+    static int[] appendToHistory(int[] history, int ordinal) {
+        if (history == null) {
+            return new int[]{ordinal};
+        }
+        for (int item : history) {
+            if (item == ordinal) {
+                return history;
+            }
+        }
+        int keep = Math.min(history.length, MAX_HISTORY_PER_USER - 1);
+        int[] updated = Arrays.copyOfRange(history, history.length - keep, history.length + 1);
+        updated[keep] = ordinal;
+        return updated;
+    }
+
+    /**
+     * Grows up to {@code MAX_HISTORY_PER_USER} values, then works as a ring buffer that overwrites the
+     * oldest value. {@link #toArray()} returns the values oldest first.
+     */
+    private static final class IntBuffer {
+        private int[] values = new int[4];
+        private int size;
+        // Index of the oldest value once the buffer is full
+        private int head;
+
+        void addDistinct(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    return;
+                }
+            }
+            if (size == MAX_HISTORY_PER_USER) {
+                values[head] = value;
+                head = (head + 1) % MAX_HISTORY_PER_USER;
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(size * 2, MAX_HISTORY_PER_USER));
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            int[] ordered = new int[size];
+            System.arraycopy(values, head, ordered, 0, size - head);
+            System.arraycopy(values, 0, ordered, size - head, head);
+            return ordered;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.abiodun.expaq.service.search;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the Postgres full-text index behind activity search: {@code activities.search_vector}, kept
+ * current by a trigger, and a GIN index that makes {@code @@} matches (including prefix terms) index
+ * lookups instead of table scans. Neither can be expressed through JPA mappings, so
+ * {@link #ensureSchema()} sets them up from a scheduler thread after startup.
+ *
+ * <p>The schema work never rewrites the table: the column is added nullable (a catalog-only change),
+ * existing rows are filled in small batches, and the index is built {@code CONCURRENTLY}. One instance
+ * does it at a time, under a session advisory lock; the others retry on their next run. A concurrent
+ * build that failed part way leaves an INVALID index that {@code IF NOT EXISTS} would skip forever, so
+ * such an index is dropped and rebuilt. Databases that already have the column as a generated one
+ * keep it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ActivitySearchIndex {
+
+    static final String INDEX_NAME = "idx_activities_search_vector";
+    private static final int BACKFILL_BATCH = 1_000;
+    private static final long SCHEMA_LOCK_KEY = 0x5345_4152_4348L;
+
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_lock(?)";
+    private static final String UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+    // Empty when the column is missing; attgenerated is 's' for a stored generated column
+    private static final String COLUMN_SQL = "SELECT attgenerated FROM pg_attribute"
+            + " WHERE attrelid = 'activities'::regclass AND attname = 'search_vector' AND NOT attisdropped";
+    private static final String INDEX_VALID_SQL = "SELECT i.indisvalid FROM pg_index i"
+            + " JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?";
+    private static final String TRIGGER_EXISTS_SQL = "SELECT COUNT(*) FROM pg_trigger"
+            + " WHERE tgrelid = 'activities'::regclass AND tgname = 'activities_search_vector_update'";
+
+    // Adding a nullable column without a default only touches the catalog; the timeout keeps its brief
+    // exclusive lock from queueing behind long transactions and stalling traffic
+    private static final String ADD_SEARCH_VECTOR = "ALTER TABLE activities ADD COLUMN IF NOT EXISTS search_vector tsvector";
+    private static final String SET_LOCK_TIMEOUT = "SET lock_timeout = '5s'";
+    private static final String RESET_LOCK_TIMEOUT = "RESET lock_timeout";
+
+    static final String CREATE_TRIGGER_FUNCTION = "CREATE OR REPLACE FUNCTION activities_search_vector_update()"
+            + " RETURNS trigger LANGUAGE plpgsql AS $$ BEGIN NEW.search_vector := " + searchVector("NEW.")
+            + "; RETURN NEW; END $$";
+    private static final String CREATE_TRIGGER = "CREATE TRIGGER activities_search_vector_update"
+            + " BEFORE INSERT OR UPDATE OF title, location, address, description ON activities"
+            + " FOR EACH ROW EXECUTE FUNCTION activities_search_vector_update()";
+    static final String BACKFILL_BATCH_SQL = "UPDATE activities SET search_vector = " + searchVector("")
+            + " WHERE id IN (SELECT id FROM activities WHERE search_vector IS NULL LIMIT " + BACKFILL_BATCH + ")";
+
+    static final String CREATE_SEARCH_INDEX =
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME + " ON activities USING GIN (search_vector)";
+    private static final String DROP_SEARCH_INDEX = "DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME;
+
+    private static final Pattern TERM = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int MAX_TERMS = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile boolean ready;
+
+    /**
+     * Whether the column, trigger and index are in place and every row has its vector. Until then
+     * searches should compute the vector per row instead of reading the column.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Brings the column, trigger and index into place and fills in rows that predate them. Returns
+     * immediately once that has succeeded, or while another instance is doing it.
+     */
+    public void ensureSchema() {
+        if (ready) {
+            return;
+        }
+        // A session lock and the statements it guards need one connection; CONCURRENTLY also needs autocommit
+        Boolean done = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                ensureSchema(new JdbcTemplate(new SingleConnectionDataSource(connection, true))));
+        ready = Boolean.TRUE.equals(done);
+    }
+
+    private boolean ensureSchema(JdbcTemplate session) {
+        if (!Boolean.TRUE.equals(session.queryForObject(TRY_LOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY))) {
+            log.info("Another instance is preparing the activity search index");
+            return false;
+        }
+        try {
+            List<String> column = session.queryForList(COLUMN_SQL, String.class);
+            if (column.isEmpty() || !"s".equals(column.get(0))) {
+                prepareTriggerColumn(session, column.isEmpty());
+            }
+            ensureValidIndex(session);
+            return true;
+        } finally {
+            session.queryForObject(UNLOCK_SQL, Boolean.class, SCHEMA_LOCK_KEY);
+        }
+    }
+
+    private void prepareTriggerColumn(JdbcTemplate session, boolean addColumn) {
+        if (addColumn) {
+            session.execute(SET_LOCK_TIMEOUT);
+            try {
+                session.execute(ADD_SEARCH_VECTOR);
+            } finally {
+                session.execute(RESET_LOCK_TIMEOUT);
+            }
+        }
+        session.execute(CREATE_TRIGGER_FUNCTION);
+        Long triggers = session.queryForObject(TRIGGER_EXISTS_SQL, Long.class);
+        if (triggers == null || triggers == 0) {
+            session.execute(CREATE_TRIGGER);
+        }
+        // Rows written from here on get their vector from the trigger; each batch commits on its own
+        int filled = 0;
+        int batch;
+        while ((batch = session.update(BACKFILL_BATCH_SQL)) > 0) {
+            filled += batch;
+        }
+        if (filled > 0) {
+            log.info("Filled in search vectors for {} activities", filled);
+        }
+    }
+
+    private void ensureValidIndex(JdbcTemplate session) {
+        List<Boolean> valid = session.queryForList(INDEX_VALID_SQL, Boolean.class, INDEX_NAME);
+        if (!valid.isEmpty() && !valid.get(0)) {
+            log.warn("Activity search index {} is invalid after an interrupted build; rebuilding it", INDEX_NAME);
+            session.execute(DROP_SEARCH_INDEX);
+        }
+        session.execute(CREATE_SEARCH_INDEX);
+    }
+
+    /**
+     * The vector stored for a row, over columns qualified with {@code row} (such as "a." or "NEW.").
+     * Title outranks location, which outranks the description. 'simple' skips stemming so prefixes match what users type.
+     */
+    public static String searchVector(String row) {
+        return "setweight(to_tsvector('simple'::regconfig, coalesce(" + row + "title, '')), 'A') || "
+                + "setweight(to_tsvector('simple'::regconfig, coalesce(" + row + "location, '') || ' ' || coalesce("
+                + row + "address, '')), 'B') || "
+                + "setweight(to_tsvector('simple'::regconfig, coalesce(" + row + "description, '')), 'C')";
+    }
+
+    /**
+     * Turns free text into a {@code to_tsquery('simple', ...)} expression in which every term must
+     * match as a prefix, so partial input such as "kaya tou" already finds "Kayaking tour". Only
+     * letters and digits survive, which keeps tsquery operators in the input from reaching Postgres.
+     *
+     * @return the query, or null when the text contains no searchable terms
+     */
+    public static String toTsQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        StringJoiner query = new StringJoiner(" & ");
+        Matcher matcher = TERM.matcher(text.toLowerCase(Locale.ROOT));
+        int terms = 0;
+        while (matcher.find() && terms < MAX_TERMS) {
+            query.add(matcher.group() + ":*");
+            terms++;
+        }
+        return terms == 0 ? null : query.toString();
+    }
+}
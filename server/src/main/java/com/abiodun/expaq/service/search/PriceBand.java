@@ -0,0 +1,40 @@
+package com.abiodun.expaq.service.search;
+
+import java.math.BigDecimal;
+
+/**
+ * Price ranges used to facet and filter search results. The ordinal is the bucket returned by
+ * {@code width_bucket(price, UPPER_BOUNDS)}, so the constants must stay in ascending order.
+ */
+public enum PriceBand {
+    UNDER_25(null, new BigDecimal("25")),
+    FROM_25_TO_50(new BigDecimal("25"), new BigDecimal("50")),
+    FROM_50_TO_100(new BigDecimal("50"), new BigDecimal("100")),
+    FROM_100_TO_250(new BigDecimal("100"), new BigDecimal("250")),
+    OVER_250(new BigDecimal("250"), null);
+
+    // Bucket boundaries in SQL array form, shared by the filter and the facet query
+    public static final String UPPER_BOUNDS = "ARRAY[25, 50, 100, 250]::numeric[]";
+
+    private final BigDecimal min;
+    private final BigDecimal max;
+
+    PriceBand(BigDecimal min, BigDecimal max) {
+        this.min = min;
+        this.max = max;
+    }
+
+    /** Inclusive lower bound, or null for the lowest band. */
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    /** Exclusive upper bound, or null for the highest band. */
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public static PriceBand ofBucket(int bucket) {
+        return values()[bucket];
+    }
+}
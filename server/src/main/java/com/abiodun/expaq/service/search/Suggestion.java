@@ -0,0 +1,28 @@
+package com.abiodun.expaq.service.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.UUID;
+
+/**
+ * One completion the typeahead can offer. Higher scores rank first.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class Suggestion {
+
+    public enum Type {
+        ACTIVITY,
+        ACTIVITY_TYPE,
+        CITY,
+        COUNTRY
+    }
+
+    private final Type type;
+    private final UUID id;
+    private final String text;
+    private final long score;
+}
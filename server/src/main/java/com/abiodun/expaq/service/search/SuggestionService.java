@@ -0,0 +1,165 @@
+package com.abiodun.expaq.service.search;
+
+import com.abiodun.expaq.event.ActivityChangedEvent;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.ActivityTypeRepository;
+import com.abiodun.expaq.repository.CityRepository;
+import com.abiodun.expaq.repository.CountryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Typeahead over activity titles, activity types, cities and countries, answered from memory.
+ * A {@link SuggestionTrie} snapshot is rebuilt from the database periodically; activity changes
+ * committed since then sit in a small overlay that overrides the snapshot until the next rebuild
+ * folds them in. Activities rank by bookings plus reviews; types, cities and countries by the
+ * combined score of their active activities.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SuggestionService {
+
+    /** Most suggestions a lookup returns: each trie node only keeps its best {@link SuggestionTrie#TOP_PER_NODE}. */
+    public static final int MAX_SUGGESTIONS = SuggestionTrie.TOP_PER_NODE;
+
+    private final ActivityRepository activityRepository;
+    private final ActivityTypeRepository activityTypeRepository;
+    private final CityRepository cityRepository;
+    private final CountryRepository countryRepository;
+
+    private volatile Snapshot snapshot = new Snapshot(SuggestionTrie.EMPTY, Map.of());
+    private final Map<UUID, PendingActivity> pending = new ConcurrentHashMap<>();
+    private final AtomicLong changeSequence = new AtomicLong();
+
+    public boolean isReady() {
+        return snapshot.trie != SuggestionTrie.EMPTY;
+    }
+
+    /**
+     * @param requestedLimit capped at {@link #MAX_SUGGESTIONS}
+     */
+    public List<Suggestion> suggest(String text, int requestedLimit) {
+        String prefix = SuggestionTrie.normalize(text);
+        int limit = Math.min(requestedLimit, MAX_SUGGESTIONS);
+        if (prefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Snapshot current = snapshot;
+        if (pending.isEmpty()) {
+            return current.trie.lookup(prefix, limit);
+        }
+
+        // Over-fetch so suggestions superseded by the overlay can be dropped without running short
+        List<Suggestion> merged = new ArrayList<>(limit + pending.size());
+        for (Suggestion suggestion : current.trie.lookup(prefix, SuggestionTrie.TOP_PER_NODE)) {
+            if (suggestion.getType() != Suggestion.Type.ACTIVITY || !pending.containsKey(suggestion.getId())) {
+                merged.add(suggestion);
+            }
+        }
+        for (PendingActivity change : pending.values()) {
+            if (change.suggestion != null && SuggestionTrie.matches(change.normalizedText, prefix)) {
+                merged.add(change.suggestion);
+            }
+        }
+        merged.sort(Comparator.comparingLong(Suggestion::getScore).reversed());
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        Suggestion suggestion = null;
+        if (event.isListed() && event.getTitle() != null) {
+            // Keep the popularity earned so far; the next rebuild refreshes it
+            long score = snapshot.activityScores.getOrDefault(event.getActivityId(), 0L);
+            suggestion = new Suggestion(Suggestion.Type.ACTIVITY, event.getActivityId(), event.getTitle(), score);
+        }
+        pending.put(event.getActivityId(), new PendingActivity(changeSequence.incrementAndGet(), suggestion));
+    }
+
+    /**
+     * Rebuilds the trie from the database. Overlay entries recorded before the rebuild started were
+     * committed before it read anything, so they are part of the new snapshot and can be dropped.
+     */
+    public synchronized void rebuild() {
+        long startedAt = changeSequence.get();
+        List<Suggestion> suggestions = new ArrayList<>();
+        Map<UUID, Long> activityScores = new HashMap<>();
+        Map<UUID, Long> typeScores = new HashMap<>();
+        Map<UUID, Long> cityScores = new HashMap<>();
+        Map<UUID, Long> countryScores = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+
+        for (Object[] row : activityRepository.findActiveSuggestionRows()) {
+            UUID id = (UUID) row[0];
+            long score = ((Number) row[5]).longValue() + ((Number) row[6]).longValue();
+            activityScores.put(id, score);
+            suggestions.add(new Suggestion(Suggestion.Type.ACTIVITY, id, (String) row[1], score));
+            // Every active activity counts for its place and type, booked or not
+            addScore(cityScores, (UUID) row[2], score + 1);
+            addScore(countryScores, (UUID) row[3], score + 1);
+            addScore(typeScores, (UUID) row[4], score + 1);
+        }
+        addNamed(suggestions, seen, Suggestion.Type.ACTIVITY_TYPE, activityTypeRepository.findAllIdAndName(), typeScores);
+        addNamed(suggestions, seen, Suggestion.Type.CITY, cityRepository.findAllIdAndName(), cityScores);
+        addNamed(suggestions, seen, Suggestion.Type.COUNTRY, countryRepository.findAllIdAndName(), countryScores);
+
+        snapshot = new Snapshot(SuggestionTrie.build(suggestions), activityScores);
+        pending.values().removeIf(change -> change.sequence <= startedAt);
+        log.info("Rebuilt suggestion index with {} entries", suggestions.size());
+    }
+
+    private static void addNamed(List<Suggestion> suggestions, Set<String> seen, Suggestion.Type type,
+                                 List<Object[]> rows, Map<UUID, Long> scores) {
+        for (Object[] row : rows) {
+            String name = (String) row[1];
+            // Duplicate place names would only crowd out other completions
+            if (name != null && seen.add(type + ":" + SuggestionTrie.normalize(name))) {
+                UUID id = (UUID) row[0];
+                suggestions.add(new Suggestion(type, id, name, scores.getOrDefault(id, 0L)));
+            }
+        }
+    }
+
+    private static void addScore(Map<UUID, Long> scores, UUID id, long score) {
+        if (id != null) {
+            scores.merge(id, score, Long::sum);
+        }
+    }
+
+    private static final class Snapshot {
+        private final SuggestionTrie trie;
+        private final Map<UUID, Long> activityScores;
+
+        private Snapshot(SuggestionTrie trie, Map<UUID, Long> activityScores) {
+            this.trie = trie;
+            this.activityScores = activityScores;
+        }
+    }
+
+    // A null suggestion records that the activity was deleted or deactivated
+    private static final class PendingActivity {
+        private final long sequence;
+        private final Suggestion suggestion;
+        private final String normalizedText;
+
+        private PendingActivity(long sequence, Suggestion suggestion) {
+            this.sequence = sequence;
+            this.suggestion = suggestion;
+            this.normalizedText = suggestion != null ? SuggestionTrie.normalize(suggestion.getText()) : null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.abiodun.expaq.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable prefix index over suggestion texts. Each text is indexed from its start and from the
+ * start of each later word, so "tou" completes "Kayak Tour". Every node stores the indexes of its
+ * best {@link #TOP_PER_NODE} suggestions, so a lookup walks the prefix and copies that list:
+ * O(prefix length), independent of how many suggestions share the prefix.
+ * <p>
+ * Nodes are flattened into parallel arrays with sorted child labels, which keeps the structure
+ * compact and lets lookups run without allocation beyond the result.
+ */
+public final class SuggestionTrie {
+
+    static final int TOP_PER_NODE = 16;
+    // Longer keys only add nodes; nobody types 48 characters before picking a completion
+    private static final int MAX_KEY_LENGTH = 48;
+    private static final int MAX_WORD_STARTS = 6;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public static final SuggestionTrie EMPTY = build(List.of());
+
+    private final Suggestion[] suggestions;
+    private final char[][] childLabels;
+    private final int[][] children;
+    private final int[][] top;
+
+    private SuggestionTrie(Suggestion[] suggestions, char[][] childLabels, int[][] children, int[][] top) {
+        this.suggestions = suggestions;
+        this.childLabels = childLabels;
+        this.children = children;
+        this.top = top;
+    }
+
+    public static SuggestionTrie build(List<Suggestion> input) {
+        // Inserting best-first means the first TOP_PER_NODE arrivals at a node are its top list
+        Suggestion[] sorted = input.toArray(new Suggestion[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(Suggestion::getScore).reversed()
+                .thenComparing(Suggestion::getText));
+
+        List<BuildNode> nodes = new ArrayList<>();
+        nodes.add(new BuildNode());
+        for (int index = 0; index < sorted.length; index++) {
+            for (String key : keys(sorted[index].getText())) {
+                int node = 0;
+                for (int i = 0; i < key.length(); i++) {
+                    BuildNode current = nodes.get(node);
+                    int child = current.child(key.charAt(i));
+                    if (child < 0) {
+                        child = nodes.size();
+                        current.addChild(key.charAt(i), child);
+                        nodes.add(new BuildNode());
+                    }
+                    node = child;
+                    nodes.get(node).offer(index);
+                }
+            }
+        }
+
+        char[][] labels = new char[nodes.size()][];
+        int[][] childIndexes = new int[nodes.size()][];
+        int[][] tops = new int[nodes.size()][];
+        for (int n = 0; n < nodes.size(); n++) {
+            BuildNode node = nodes.get(n);
+            labels[n] = node.labels;
+            childIndexes[n] = node.children;
+            tops[n] = node.topSize == node.top.length ? node.top : Arrays.copyOf(node.top, node.topSize);
+        }
+        return new SuggestionTrie(sorted, labels, childIndexes, tops);
+    }
+
+    /**
+     * Best suggestions whose text, or one of its words, starts with {@code prefix}; best first.
+     * The prefix must already be {@linkplain #normalize(String) normalized}.
+     */
+    public List<Suggestion> lookup(String prefix, int limit) {
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        int node = 0;
+        for (int i = 0; i < prefix.length() && i < MAX_KEY_LENGTH; i++) {
+            int c = Arrays.binarySearch(childLabels[node], prefix.charAt(i));
+            if (c < 0) {
+                return List.of();
+            }
+            node = children[node][c];
+        }
+        int[] best = top[node];
+        int count = Math.min(limit, best.length);
+        List<Suggestion> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(suggestions[best[i]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return suggestions.length;
+    }
+
+    /**
+     * Lower case, accents removed and every run of punctuation or spacing collapsed to one space,
+     * so "Côte d'Azur" and "cote d azur" share a key.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return NON_WORD.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * True when {@code normalizedText} would be found by {@code prefix}, matching {@link #lookup}.
+     */
+    public static boolean matches(String normalizedText, String prefix) {
+        String indexed = prefix.length() > MAX_KEY_LENGTH ? prefix.substring(0, MAX_KEY_LENGTH) : prefix;
+        for (String key : keysOfNormalized(normalizedText)) {
+            if (key.startsWith(indexed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> keys(String text) {
+        return keysOfNormalized(normalize(text));
+    }
+
+    private static List<String> keysOfNormalized(String normalized) {
+        List<String> keys = new ArrayList<>(2);
+        int start = 0;
+        for (int word = 0; word < MAX_WORD_STARTS && start < normalized.length(); word++) {
+            keys.add(normalized.substring(start, Math.min(normalized.length(), start + MAX_KEY_LENGTH)));
+            int space = normalized.indexOf(' ', start);
+            if (space < 0) {
+                break;
+            }
+            start = space + 1;
+        }
+        return keys;
+    }
+
+    // Sorted parallel arrays rather than maps: most nodes have a single child and a short top list
+    private static final class BuildNode {
+        private char[] labels = new char[0];
+        private int[] children = new int[0];
+        private int[] top = new int[1];
+        private int topSize;
+
+        private int child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : -1;
+        }
+
+        private void addChild(char label, int child) {
+            int at = -Arrays.binarySearch(labels, label) - 1;
+            char[] newLabels = new char[labels.length + 1];
+            int[] newChildren = new int[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            newLabels[at] = label;
+            newChildren[at] = child;
+            System.arraycopy(labels, at, newLabels, at + 1, labels.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            labels = newLabels;
+            children = newChildren;
+        }
+
+        private void offer(int index) {
+            // A text can reach the same node through two of its keys ("tour tours")
+            if (topSize == TOP_PER_NODE || (topSize > 0 && top[topSize - 1] == index)) {
+                return;
+            }
+            if (topSize == top.length) {
+                top = Arrays.copyOf(top, Math.min(TOP_PER_NODE, top.length * 2));
+            }
+            top[topSize++] = index;
+        }
+    }
+}
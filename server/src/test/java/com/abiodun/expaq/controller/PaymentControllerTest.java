@@ -0,0 +1,75 @@
+package com.abiodun.expaq.controller;
+
+import com.abiodun.expaq.exception.GlobalExceptionHandler;
+import com.abiodun.expaq.exception.PaymentBlockedException;
+import com.abiodun.expaq.exception.PaymentProviderUnavailableException;
+import com.abiodun.expaq.model.ExpaqUserDetails;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.service.IPaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PaymentControllerTest {
+
+    private final IPaymentService paymentService = mock(IPaymentService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new PaymentController(paymentService, mock(PaymentRepository.class)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        ExpaqUserDetails principal = ExpaqUserDetails.fromToken(UUID.randomUUID(), "guest@example.com", List.of());
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void blockedPaymentIsRejectedWith429() throws Exception {
+        when(paymentService.createPayment(any(), any(), any())).thenThrow(new PaymentBlockedException("Payment blocked"));
+
+        mockMvc.perform(initialize()).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    void unavailableProviderIsReportedWith503() throws Exception {
+        when(paymentService.createPayment(any(), any(), any()))
+                .thenThrow(new PaymentProviderUnavailableException("stripe is unavailable"));
+
+        mockMvc.perform(initialize()).andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void otherFailuresStayBadRequests() throws Exception {
+        when(paymentService.createPayment(any(), any(), any())).thenThrow(new IllegalStateException("Booking not payable"));
+
+        mockMvc.perform(initialize()).andExpect(status().isBadRequest());
+    }
+
+    private RequestBuilder initialize() {
+        return post("/api/payments/initialize")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"bookingId\":\"" + UUID.randomUUID() + "\",\"paymentMethod\":\"STRIPE\"}");
+    }
+}
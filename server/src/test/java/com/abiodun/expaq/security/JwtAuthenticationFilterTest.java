@@ -0,0 +1,112 @@
+package com.abiodun.expaq.security;
+
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.model.ExpaqUserDetails;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private static final String JWT = "header.payload.signature";
+
+    private final JwtService jwtService = mock(JwtService.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ExpaqUserDetailsService userDetailsService = mock(ExpaqUserDetailsService.class);
+    private final ValidatedTokenCache tokenCache = new ValidatedTokenCache(900_000L);
+    private final TokenVersionCache tokenVersionCache = new TokenVersionCache(userRepository, 30_000L);
+    private final JwtAuthenticationFilter filter =
+            new JwtAuthenticationFilter(jwtService, userDetailsService, tokenCache, tokenVersionCache);
+    private final FilterChain filterChain = mock(FilterChain.class);
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authorizesFromClaimsWhileTheTokenVersionIsCurrent() throws Exception {
+        when(jwtService.validateAndGetClaims(JWT)).thenReturn(claims(3));
+        when(userRepository.findTokenVersionById(userId)).thenReturn(Optional.of(3));
+
+        MockHttpServletResponse response = filter(JWT);
+
+        assertEquals(200, response.getStatus());
+        verify(filterChain).doFilter(any(), any());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        assertEquals(userId, ((ExpaqUserDetails) authentication.getPrincipal()).getId());
+        assertEquals("ROLE_GUEST", authentication.getAuthorities().iterator().next().getAuthority());
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void rejectsATokenIssuedBeforeTheStoredVersion() throws Exception {
+        when(jwtService.validateAndGetClaims(JWT)).thenReturn(claims(3));
+        when(userRepository.findTokenVersionById(userId)).thenReturn(Optional.of(4));
+
+        MockHttpServletResponse response = filter(JWT);
+
+        assertEquals(401, response.getStatus());
+        verify(filterChain, never()).doFilter(any(), any());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertNull(tokenCache.get(JWT));
+    }
+
+    @Test
+    void rejectsACachedTokenOnceTheVersionIsBumped() throws Exception {
+        when(jwtService.validateAndGetClaims(JWT)).thenReturn(claims(3));
+        when(userRepository.findTokenVersionById(userId)).thenReturn(Optional.of(3), Optional.of(4));
+        assertEquals(200, filter(JWT).getStatus());
+        assertNotNull(tokenCache.get(JWT));
+
+        // What TokenVersionCache does after the access change commits
+        tokenVersionCache.onUserAccessChanged(new UserAccessChangedEvent(userId));
+        SecurityContextHolder.clearContext();
+
+        assertEquals(401, filter(JWT).getStatus());
+        verify(filterChain, times(1)).doFilter(any(), any());
+    }
+
+    private MockHttpServletResponse filter(String jwt) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/bookings");
+        request.addHeader("Authorization", "Bearer " + jwt);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, filterChain);
+        return response;
+    }
+
+    private Claims claims(int tokenVersion) {
+        Claims claims = Jwts.claims()
+                .setSubject(userId.toString())
+                .setExpiration(new Date(System.currentTimeMillis() + 3_600_000L));
+        claims.put("email", "guest@example.com");
+        claims.put(JwtService.TOKEN_VERSION_CLAIM, tokenVersion);
+        claims.put(JwtService.ROLES_CLAIM, List.of("ROLE_GUEST"));
+        return claims;
+    }
+}
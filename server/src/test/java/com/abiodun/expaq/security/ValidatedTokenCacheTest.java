@@ -0,0 +1,88 @@
+package com.abiodun.expaq.security;
+
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.model.ExpaqUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidatedTokenCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final ValidatedTokenCache cache = new ValidatedTokenCache(900_000L);
+
+    @Test
+    void servesAValidatedTokenUntilItExpires() throws Exception {
+        UUID userId = UUID.randomUUID();
+        cache.put("token-a", claims(userId, 300), user(userId));
+        assertNotNull(cache.get("token-a"));
+
+        Thread.sleep(400);
+
+        assertNull(cache.get("token-a"));
+    }
+
+    @Test
+    void neverServesATokenThatHasAlreadyExpired() {
+        UUID userId = UUID.randomUUID();
+        cache.put("token-a", claims(userId, -1_000), user(userId));
+
+        assertNull(cache.get("token-a"));
+    }
+
+    @Test
+    void accessChangeEvictsOnlyThatUsersTokens() {
+        UUID userId = UUID.randomUUID();
+        UUID otherId = UUID.randomUUID();
+        cache.put("token-a", claims(userId, HOUR), user(userId));
+        cache.put("token-b", claims(userId, HOUR), user(userId));
+        cache.put("token-c", claims(otherId, HOUR), user(otherId));
+
+        cache.onUserAccessChanged(new UserAccessChangedEvent(userId));
+
+        assertNull(cache.get("token-a"));
+        assertNull(cache.get("token-b"));
+        assertNotNull(cache.get("token-c"));
+    }
+
+    @Test
+    void keysTokensByTheirSha256() {
+        // SHA-256("abc") from FIPS 180-2
+        assertEquals("ungWv48Bz+pBQUDeXa4iI7ADYaOWF3qctBD/YfIAFa0=", ValidatedTokenCache.hash("abc"));
+
+        UUID userId = UUID.randomUUID();
+        cache.put("header.payload.signatureA", claims(userId, HOUR), user(userId));
+        assertNotNull(cache.get("header.payload.signatureA"));
+        // Tokens that differ only in their signature never share an entry
+        assertNull(cache.get("header.payload.signatureB"));
+    }
+
+    @Test
+    void resolvesAuthoritiesWhenCaching() {
+        UUID userId = UUID.randomUUID();
+
+        ValidatedTokenCache.ValidatedToken validated = cache.put("token-a", claims(userId, HOUR), user(userId));
+
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_GUEST")), validated.getAuthorities());
+    }
+
+    private static Claims claims(UUID userId, long expiresInMillis) {
+        return Jwts.claims()
+                .setSubject(userId.toString())
+                .setExpiration(new Date(System.currentTimeMillis() + expiresInMillis));
+    }
+
+    private static ExpaqUserDetails user(UUID userId) {
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority("ROLE_GUEST"));
+        return ExpaqUserDetails.fromToken(userId, userId + "@example.com", authorities);
+    }
+}
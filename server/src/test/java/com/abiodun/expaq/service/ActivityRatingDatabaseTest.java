@@ -0,0 +1,154 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.Review;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.ReviewRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the rating aggregate delta and reconcile statements of {@link ActivityRepository} against a
+ * real PostgreSQL. Point {@code EXPAQ_TEST_DATABASE_URL} at a throwaway database to run it, as for
+ * {@link CapacityReservationDatabaseTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ActivityRatingDatabaseTest {
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ReviewRepository reviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User host;
+
+    @BeforeEach
+    void setUp() {
+        host = user("host");
+    }
+
+    @Test
+    void deltasKeepCountSumAndAverageInStep() {
+        UUID activityId = activity();
+
+        applyDelta(activityId, 1, 5);
+        applyDelta(activityId, 1, 2);
+        assertAggregates(activityId, 2, 7, 3.5);
+
+        // Rating edited from 2 to 4
+        applyDelta(activityId, 0, 2);
+        assertAggregates(activityId, 2, 9, 4.5);
+
+        applyDelta(activityId, -1, -5);
+        applyDelta(activityId, -1, -4);
+        assertAggregates(activityId, 0, 0, 0.0);
+    }
+
+    @Test
+    void reconcileRepairsOnlyDriftedActivities() {
+        UUID drifted = activity();
+        UUID inStep = activity();
+        UUID unreviewed = activity();
+        review(drifted, 5);
+        review(drifted, 3);
+        review(inStep, 4);
+        applyDelta(inStep, 1, 4);
+        // A delta lost for drifted, and a stale count left on unreviewed
+        applyDelta(drifted, 1, 5);
+        jdbcTemplate.update("UPDATE activities SET rating_count = 1, rating_sum = 2, average_rating = 2"
+                + " WHERE id = ?", unreviewed);
+
+        assertEquals(2, activityRepository.reconcileRatingAggregates());
+
+        assertAggregates(drifted, 2, 8, 4.0);
+        assertAggregates(inStep, 1, 4, 4.0);
+        assertAggregates(unreviewed, 0, 0, 0.0);
+        assertEquals(0, activityRepository.reconcileRatingAggregates());
+    }
+
+    private void applyDelta(UUID activityId, int countDelta, long sumDelta) {
+        transactionTemplate.executeWithoutResult(status ->
+                activityRepository.applyRatingDelta(activityId, countDelta, sumDelta));
+    }
+
+    private void assertAggregates(UUID activityId, int count, long sum, double average) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT rating_count, rating_sum, average_rating"
+                + " FROM activities WHERE id = ?", activityId);
+        assertEquals(count, ((Number) row.get("rating_count")).intValue());
+        assertEquals(sum, ((Number) row.get("rating_sum")).longValue());
+        assertEquals(average, ((Number) row.get("average_rating")).doubleValue(), 1e-9);
+    }
+
+    private User user(String name) {
+        User user = new User();
+        user.setEmail(name + "-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Test");
+        user.setLastName(name);
+        return userRepository.save(user);
+    }
+
+    private UUID activity() {
+        Activity activity = new Activity();
+        activity.setTitle("Kayak tour");
+        activity.setDescription("Two hours on the lagoon");
+        activity.setPrice(new BigDecimal("25.00"));
+        activity.setAddress("1 Marina Road");
+        activity.setHost(host);
+        activity.setStartDate(LocalDateTime.now().plusDays(7));
+        activity.setEndDate(LocalDateTime.now().plusDays(7).plusHours(2));
+        activity.setMinParticipants(1);
+        activity.setMaxParticipants(10);
+        activity.setDurationMinutes(120);
+        activity.setActive(true);
+        return activityRepository.save(activity).getId();
+    }
+
+    private void review(UUID activityId, int rating) {
+        Review review = new Review();
+        review.setActivity(activityRepository.getReferenceById(activityId));
+        review.setUser(user("guest"));
+        review.setHost(host);
+        review.setRating(rating);
+        review.setCreatedAt(LocalDateTime.now());
+        review.setUpdatedAt(LocalDateTime.now());
+        reviewRepository.save(review);
+    }
+}
@@ -0,0 +1,167 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.impl.CapacityReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link CapacityReservationService} against a real PostgreSQL (with PostGIS, like production), so
+ * the conditional capacity UPDATEs are serialized by the database's own row locks rather than the
+ * counter stand-in used by {@link CapacityReservationServiceTest}. Point {@code EXPAQ_TEST_DATABASE_URL}
+ * at a throwaway database to run it; the schema is created and dropped by Hibernate.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(CapacityReservationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class CapacityReservationDatabaseTest {
+
+    private static final int MAX_PARTICIPANTS = 100;
+    private static final int THREADS = 16;
+    private static final int REQUESTS = 1_000;
+
+    @Autowired
+    private CapacityReservationService capacityReservationService;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UUID activityId;
+
+    @BeforeEach
+    void setUp() {
+        User host = new User();
+        host.setEmail("host-" + UUID.randomUUID() + "@example.com");
+        host.setPassword("secret");
+        host.setFirstName("Test");
+        host.setLastName("Host");
+        host = userRepository.save(host);
+
+        Activity activity = new Activity();
+        activity.setTitle("Kayak tour");
+        activity.setDescription("Two hours on the lagoon");
+        activity.setPrice(new BigDecimal("25.00"));
+        activity.setAddress("1 Marina Road");
+        activity.setHost(host);
+        activity.setStartDate(LocalDateTime.now().plusDays(7));
+        activity.setEndDate(LocalDateTime.now().plusDays(7).plusHours(2));
+        activity.setMinParticipants(1);
+        activity.setMaxParticipants(MAX_PARTICIPANTS);
+        activity.setDurationMinutes(120);
+        activity.setActive(true);
+        activityId = activityRepository.save(activity).getId();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        List<Future<Integer>> results = runConcurrently(request -> {
+            int guests = 1 + request % 3;
+            return capacityReservationService.tryReserve(activityId, guests) ? guests : 0;
+        });
+
+        int reserved = 0;
+        for (Future<Integer> result : results) {
+            reserved += result.get();
+        }
+        int booked = activityRepository.findById(activityId).orElseThrow().getBookedCapacity();
+        assertEquals(reserved, booked);
+        assertTrue(booked <= MAX_PARTICIPANTS);
+        assertTrue(booked > MAX_PARTICIPANTS - 3, "Only a remainder smaller than the largest request may stay free");
+    }
+
+    @Test
+    void concurrentReservationsAndReleasesBalance() throws Exception {
+        List<Future<Integer>> results = runConcurrently(request -> {
+            if (!capacityReservationService.tryReserve(activityId, 2)) {
+                return 0;
+            }
+            if (request % 2 == 0) {
+                capacityReservationService.release(activityId, 2);
+                return 0;
+            }
+            return 2;
+        });
+
+        int held = 0;
+        for (Future<Integer> result : results) {
+            held += result.get();
+        }
+        assertEquals(held, activityRepository.findById(activityId).orElseThrow().getBookedCapacity());
+    }
+
+    @Test
+    void reconcileRepairsDriftedCounts() {
+        // No bookings hold seats on this activity, so the correct count is zero
+        jdbcTemplate.update("UPDATE activities SET booked_capacity = 7 WHERE id = ?", activityId);
+
+        assertTrue(capacityReservationService.reconcileBookedCapacity() >= 1);
+
+        assertEquals(0, activityRepository.findById(activityId).orElseThrow().getBookedCapacity());
+        assertEquals(0, capacityReservationService.reconcileBookedCapacity());
+    }
+
+    private List<Future<Integer>> runConcurrently(Request request) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>(REQUESTS);
+        try {
+            for (int i = 0; i < REQUESTS; i++) {
+                int requestNumber = i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return request.run(requestNumber);
+                }));
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        return results;
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        int run(int requestNumber);
+    }
+}
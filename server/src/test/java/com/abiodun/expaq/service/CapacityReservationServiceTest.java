@@ -0,0 +1,298 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.event.BookingEvent;
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.Booking;
+import com.abiodun.expaq.model.Booking.BookingStatus;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.service.impl.CapacityReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for {@link CapacityReservationService}. The repositories are mocks: the capacity UPDATEs
+ * are stood in for by a compare-and-set on a counter that applies the same predicate as the SQL. The
+ * parallel tests therefore check the service's own accounting under concurrency (no lost or doubled
+ * releases, retries honouring a rejected reservation), not the row locking of the database itself;
+ * {@link CapacityReservationDatabaseTest} covers that against PostgreSQL.
+ */
+@ExtendWith(MockitoExtension.class)
+class CapacityReservationServiceTest {
+
+    private static final int MAX_PARTICIPANTS = 250;
+    private static final int REQUESTS = 5_000;
+
+    @Mock
+    private ActivityRepository activityRepository;
+
+    @Mock
+    private BookingRepository bookingRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CapacityReservationService capacityReservationService;
+
+    private UUID activityId;
+    private AtomicInteger bookedCapacity;
+
+    @BeforeEach
+    void setUp() {
+        activityId = UUID.randomUUID();
+        bookedCapacity = new AtomicInteger();
+        ReflectionTestUtils.setField(capacityReservationService, "holdTtlMinutes", 30L);
+
+        // Mirror the conditional UPDATEs: the row is only changed when the predicate still holds
+        lenient().when(activityRepository.tryReserveCapacity(eq(activityId), anyInt())).thenAnswer(invocation -> {
+            int guests = invocation.getArgument(1);
+            while (true) {
+                int current = bookedCapacity.get();
+                if (current + guests > MAX_PARTICIPANTS) {
+                    return 0;
+                }
+                if (bookedCapacity.compareAndSet(current, current + guests)) {
+                    return 1;
+                }
+            }
+        });
+        lenient().when(activityRepository.releaseCapacity(eq(activityId), anyInt())).thenAnswer(invocation -> {
+            int guests = invocation.getArgument(1);
+            while (true) {
+                int current = bookedCapacity.get();
+                if (current < guests) {
+                    return 0;
+                }
+                if (bookedCapacity.compareAndSet(current, current - guests)) {
+                    return 1;
+                }
+            }
+        });
+    }
+
+    @Test
+    void tryReserve_KeepsAccountingWithinCapacityAgainstStubbedUpdate() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            int guests = ThreadLocalRandom.current().nextInt(1, 5);
+            results.add(pool.submit(() -> {
+                start.await();
+                return capacityReservationService.tryReserve(activityId, guests) ? guests : 0;
+            }));
+        }
+        start.countDown();
+
+        int reservedSeats = 0;
+        int successfulBookings = 0;
+        for (Future<Integer> result : results) {
+            int seats = result.get(30, TimeUnit.SECONDS);
+            reservedSeats += seats;
+            if (seats > 0) {
+                successfulBookings++;
+            }
+        }
+        pool.shutdown();
+
+        assertTrue(bookedCapacity.get() <= MAX_PARTICIPANTS);
+        assertEquals(reservedSeats, bookedCapacity.get());
+        assertTrue(successfulBookings < REQUESTS);
+        // Every seat should be taken except at most a gap smaller than the largest party size
+        assertTrue(MAX_PARTICIPANTS - bookedCapacity.get() < 4);
+    }
+
+    @Test
+    void reserveAndReleaseInParallel_BalancesAgainstStubbedUpdate() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+
+        for (int i = 0; i < REQUESTS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                if (capacityReservationService.tryReserve(activityId, 2)) {
+                    capacityReservationService.release(activityId, 2);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(0, bookedCapacity.get());
+    }
+
+    @Test
+    void tryReserve_RejectsNonPositiveGuests() {
+        assertThrows(IllegalArgumentException.class, () -> capacityReservationService.tryReserve(activityId, 0));
+        verify(activityRepository, never()).tryReserveCapacity(any(), anyInt());
+    }
+
+    @Test
+    void releaseExpiredHolds_ReleasesOnlyHoldsItExpired() {
+        UUID expiredBooking = UUID.randomUUID();
+        UUID concurrentlyPaidBooking = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        LocalDateTime bookedAt = LocalDateTime.now().minusHours(1);
+        bookedCapacity.set(5);
+
+        when(bookingRepository.findExpiredHolds(any(LocalDateTime.class), any(Pageable.class))).thenReturn(List.of(
+                new Object[]{expiredBooking, activityId, 3, userId, bookedAt},
+                new Object[]{concurrentlyPaidBooking, activityId, 2, userId, bookedAt}));
+        when(bookingRepository.expireHold(eq(expiredBooking), any(LocalDateTime.class))).thenReturn(1);
+        when(bookingRepository.expireHold(eq(concurrentlyPaidBooking), any(LocalDateTime.class))).thenReturn(0);
+
+        int released = capacityReservationService.releaseExpiredHolds();
+
+        assertEquals(1, released);
+        assertEquals(2, bookedCapacity.get());
+        verify(activityRepository).releaseCapacity(activityId, 3);
+        verify(activityRepository, never()).releaseCapacity(activityId, 2);
+        ArgumentCaptor<BookingEvent> event = ArgumentCaptor.forClass(BookingEvent.class);
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(BookingEvent.Type.CANCELLED, event.getValue().getType());
+        assertEquals(expiredBooking, event.getValue().getBookingId());
+        assertEquals(bookedAt, event.getValue().getBookedAt());
+    }
+
+    @Test
+    void securePaidBooking_AdvancesBookingThatStillHoldsSeats() {
+        UUID bookingId = UUID.randomUUID();
+        when(bookingRepository.advanceIfHolding(eq(bookingId), anyList(), eq(BookingStatus.CONFIRMED),
+                any(LocalDateTime.class))).thenReturn(1);
+
+        assertTrue(capacityReservationService.securePaidBooking(bookingId, BookingStatus.CONFIRMED));
+        verify(activityRepository, never()).tryReserveCapacity(any(), anyInt());
+    }
+
+    @Test
+    void securePaidBooking_RetakesSeatsForExpiredHold() {
+        Booking booking = expiredBooking(3);
+        bookedCapacity.set(MAX_PARTICIPANTS - 3);
+        when(bookingRepository.findById(booking.getId())).thenReturn(Optional.of(booking));
+        when(bookingRepository.reviveExpiredHold(eq(booking.getId()), eq(BookingStatus.CANCELLED),
+                eq(BookingRepository.HOLD_EXPIRED_REASON), eq(BookingStatus.CONFIRMED), any(LocalDateTime.class)))
+                .thenReturn(1);
+
+        assertTrue(capacityReservationService.securePaidBooking(booking.getId(), BookingStatus.CONFIRMED));
+        assertEquals(MAX_PARTICIPANTS, bookedCapacity.get());
+        verify(eventPublisher).publishEvent(any(BookingEvent.class));
+    }
+
+    @Test
+    void securePaidBooking_RejectsExpiredHoldWhenActivityIsFull() {
+        Booking booking = expiredBooking(3);
+        bookedCapacity.set(MAX_PARTICIPANTS - 2);
+        when(bookingRepository.findById(booking.getId())).thenReturn(Optional.of(booking));
+
+        assertFalse(capacityReservationService.securePaidBooking(booking.getId(), BookingStatus.CONFIRMED));
+        assertEquals(MAX_PARTICIPANTS - 2, bookedCapacity.get());
+        verify(bookingRepository, never()).reviveExpiredHold(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void securePaidBooking_GivesSeatsBackWhenRevivalLosesRace() {
+        Booking booking = expiredBooking(3);
+        when(bookingRepository.findById(booking.getId())).thenReturn(Optional.of(booking));
+        when(bookingRepository.reviveExpiredHold(any(), any(), any(), any(), any())).thenReturn(0);
+
+        assertFalse(capacityReservationService.securePaidBooking(booking.getId(), BookingStatus.CONFIRMED));
+        assertEquals(0, bookedCapacity.get());
+    }
+
+    @Test
+    void securePaidBooking_DoesNotRestoreBookingCancelledByUser() {
+        Booking booking = expiredBooking(3);
+        booking.setCancellationReason("Change of plans");
+        when(bookingRepository.findById(booking.getId())).thenReturn(Optional.of(booking));
+
+        assertFalse(capacityReservationService.securePaidBooking(booking.getId(), BookingStatus.CONFIRMED));
+        verify(activityRepository, never()).tryReserveCapacity(any(), anyInt());
+    }
+
+    @Test
+    void reconcileBookedCapacity_LocksEachBatchBeforeRecountingIt() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        List<UUID> firstBatch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            firstBatch.add(UUID.randomUUID());
+        }
+        List<UUID> secondBatch = List.of(UUID.randomUUID());
+        when(activityRepository.lockCapacityBatch(any(UUID.class), eq(500)))
+                .thenReturn(firstBatch)
+                .thenReturn(secondBatch);
+        when(activityRepository.reconcileBookedCapacity(anyList())).thenReturn(2, 1);
+
+        assertEquals(3, capacityReservationService.reconcileBookedCapacity());
+
+        InOrder order = inOrder(activityRepository);
+        order.verify(activityRepository).lockCapacityBatch(new UUID(0L, 0L), 500);
+        order.verify(activityRepository).reconcileBookedCapacity(firstBatch);
+        order.verify(activityRepository).lockCapacityBatch(firstBatch.get(499), 500);
+        order.verify(activityRepository).reconcileBookedCapacity(secondBatch);
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void newHoldExpiry_UsesConfiguredTtl() {
+        LocalDateTime expiry = capacityReservationService.newHoldExpiry();
+
+        assertTrue(expiry.isAfter(LocalDateTime.now().plusMinutes(29)));
+        assertTrue(expiry.isBefore(LocalDateTime.now().plusMinutes(31)));
+    }
+
+    private Booking expiredBooking(int guests) {
+        Activity activity = new Activity();
+        activity.setId(activityId);
+        Booking booking = new Booking();
+        booking.setId(UUID.randomUUID());
+        booking.setActivity(activity);
+        booking.setUser(new User());
+        booking.setNumberOfGuests(guests);
+        booking.setStatus(BookingStatus.CANCELLED);
+        booking.setCancellationReason(BookingRepository.HOLD_EXPIRED_REASON);
+        return booking;
+    }
+}
@@ -0,0 +1,95 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.service.exchange.ExchangeRateProvider;
+import com.abiodun.expaq.service.exchange.ExchangeRateTable;
+import com.abiodun.expaq.service.exchange.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyExchangeServiceTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private volatile Instant fetchedAt = Instant.now();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    private final ExchangeRateProvider provider = () -> {
+        fetches.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return new ExchangeRateTable("USD", Map.of("NGN", new BigDecimal("1500"), "EUR", new BigDecimal("0.9")), fetchedAt);
+    };
+
+    private final CurrencyExchangeService service = new CurrencyExchangeService(provider, executor);
+
+    {
+        ReflectionTestUtils.setField(service, "refreshAfterMillis", 60_000L);
+        ReflectionTestUtils.setField(service, "maxStaleMillis", 600_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentMissesShareOneFetch() throws Exception {
+        release = new CountDownLatch(1);
+        List<Future<BigDecimal>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(executor.submit(() -> service.convertToNaira(new BigDecimal("10"), "USD")));
+        }
+        Thread.sleep(100);
+        release.countDown();
+
+        for (Future<BigDecimal> result : results) {
+            assertEquals(new BigDecimal("15000.00"), result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void staleTableIsServedWhileRefreshing() throws InterruptedException {
+        fetchedAt = Instant.now().minusSeconds(120);
+        service.refresh();
+        fetchedAt = Instant.now();
+        release = new CountDownLatch(1);
+
+        // Stale but usable: answered immediately, refresh runs in the background
+        assertEquals(new BigDecimal("15000.00"), service.convertToNaira(new BigDecimal("10"), "USD"));
+        release.countDown();
+        for (int i = 0; i < 50 && fetches.get() < 2; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void bulkConversionCrossesThroughTheBase() {
+        List<Money> converted = service.convert(List.of(
+                new Money(new BigDecimal("9"), "EUR"),
+                new Money(new BigDecimal("1500"), "NGN")), "USD");
+
+        assertEquals(new Money(new BigDecimal("10.00"), "USD"), converted.get(0));
+        assertEquals(new Money(new BigDecimal("1.00"), "USD"), converted.get(1));
+        assertEquals(1, fetches.get());
+    }
+}
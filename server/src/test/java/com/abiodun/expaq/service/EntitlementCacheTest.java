@@ -0,0 +1,87 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.event.SubscriptionChangedEvent;
+import com.abiodun.expaq.model.Subscription;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import com.abiodun.expaq.service.impl.EntitlementCache;
+import com.abiodun.expaq.service.impl.Entitlements;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class EntitlementCacheTest {
+
+    private final SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final EntitlementCache cache = new EntitlementCache(subscriptionRepository, activityRepository);
+
+    @Test
+    void planEntitlementsMatchSubscriptionFeatures() {
+        for (Subscription.PlanType planType : Subscription.PlanType.values()) {
+            Subscription subscription = new Subscription();
+            subscription.setPlanType(planType);
+            subscription.setStatus(Subscription.SubscriptionStatus.ACTIVE);
+            Entitlements entitlements = Entitlements.forPlan(planType);
+            for (String feature : List.of("create_activities", "Featured_Listings", "bulk_operations", "white_label")) {
+                assertEquals(subscription.hasFeature(feature), entitlements.hasFeature(feature), planType + " " + feature);
+            }
+            assertEquals(subscription.getMaxActivities(), entitlements.getMaxActivities());
+            assertEquals(subscription.getCommissionRate(), entitlements.getCommissionRate());
+        }
+    }
+
+    @Test
+    void usersWithoutSubscriptionGetFreeTierAndAreCached() {
+        UUID userId = UUID.randomUUID();
+        when(subscriptionRepository.findActivePlansByUserIds(anyCollection(), any())).thenReturn(Collections.emptyList());
+
+        assertSame(Entitlements.FREE, cache.get(userId));
+        assertTrue(cache.get(userId).hasFeature("basic_analytics"));
+        assertFalse(cache.get(userId).hasFeature("standard_support"));
+        assertEquals(new BigDecimal("0.10"), cache.get(userId).getCommissionRate());
+        verify(subscriptionRepository, times(1)).findActivePlansByUserIds(anyCollection(), any());
+    }
+
+    @Test
+    void subscriptionChangeReloadsUser() {
+        UUID userId = UUID.randomUUID();
+        when(subscriptionRepository.findActivePlansByUserIds(anyCollection(), any()))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(List.<Object[]>of(new Object[]{userId, Subscription.PlanType.PREMIUM, null}));
+
+        assertSame(Entitlements.FREE, cache.get(userId));
+        cache.onSubscriptionChanged(new SubscriptionChangedEvent(userId));
+        assertSame(Entitlements.forPlan(Subscription.PlanType.PREMIUM), cache.get(userId));
+    }
+
+    @Test
+    void lapsedSubscriptionReadsAsFreeTier() {
+        UUID userId = UUID.randomUUID();
+        when(subscriptionRepository.findActivePlansByUserIds(anyCollection(), any())).thenReturn(
+                List.<Object[]>of(new Object[]{userId, Subscription.PlanType.ENTERPRISE, LocalDateTime.now().minusSeconds(1)}));
+
+        assertSame(Entitlements.FREE, cache.get(userId));
+    }
+
+    @Test
+    void preloadLoadsActiveHostsInOneQuery() {
+        List<UUID> hosts = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        when(activityRepository.findActiveHostIds()).thenReturn(hosts);
+        when(subscriptionRepository.findActivePlansByUserIds(anyCollection(), any())).thenReturn(Collections.emptyList());
+
+        assertEquals(3, cache.preloadActiveHosts());
+        assertEquals(0, cache.preloadActiveHosts());
+        hosts.forEach(cache::get);
+        verify(subscriptionRepository, times(1)).findActivePlansByUserIds(anyCollection(), any());
+    }
+}
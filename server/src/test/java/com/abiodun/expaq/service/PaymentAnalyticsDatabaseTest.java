@@ -0,0 +1,205 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.dto.PaymentAnalyticsDTO;
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.Booking;
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.impl.PaymentAnalyticsServiceImpl;
+import com.abiodun.expaq.service.impl.PaymentRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the GROUP BY analytics queries of {@link PaymentAnalyticsServiceImpl}, and the rollup path for
+ * date ranges, against a real PostgreSQL. Point {@code EXPAQ_TEST_DATABASE_URL} at a throwaway
+ * database to run it, as for {@link CapacityReservationDatabaseTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({PaymentAnalyticsServiceImpl.class, PaymentRollupService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class PaymentAnalyticsDatabaseTest {
+
+    @Autowired
+    private IPaymentAnalyticsService analyticsService;
+
+    @Autowired
+    private PaymentRollupService paymentRollupService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentDailyRollupRepository rollupRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Booking booking;
+    private Booking otherBooking;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM payment_daily_rollup");
+        jdbcTemplate.update("DELETE FROM payment_rollup_backfill");
+        jdbcTemplate.update("DELETE FROM payments");
+        booking = booking();
+        otherBooking = booking();
+    }
+
+    @Test
+    void aggregatesMatchThePaymentsAndRespectTheFilter() {
+        LocalDateTime noon = LocalDate.now().minusDays(2).atTime(12, 0);
+        insertPayment(booking, noon, PaymentStatus.COMPLETED, Payment.Currency.USD, "30.00");
+        insertPayment(booking, noon, PaymentStatus.COMPLETED, Payment.Currency.USD, "20.00");
+        insertPayment(booking, noon.plusDays(1), PaymentStatus.REFUNDED, Payment.Currency.USD, "20.00");
+        insertPayment(booking, noon.plusDays(1), PaymentStatus.FAILED, Payment.Currency.NGN, "99.00");
+        insertPayment(otherBooking, noon, PaymentStatus.COMPLETED, Payment.Currency.NGN, "1000.00");
+
+        PaymentAnalyticsDTO overall = analyticsService.getOverallAnalytics();
+        assertAmount("1050.00", overall.getTotalRevenue());
+        assertAmount("20.00", overall.getTotalRefunds());
+        assertEquals(Map.of("COMPLETED", 3L, "REFUNDED", 1L, "FAILED", 1L), overall.getPaymentCountByStatus());
+        assertEquals(3L, overall.getPaymentCountByTimePeriod().get(noon.toLocalDate().atStartOfDay().toString()));
+        assertAmount("1050.00", overall.getRevenueByTimePeriod().get(noon.toLocalDate().atStartOfDay().toString()));
+
+        PaymentAnalyticsDTO forUser = analyticsService.getUserAnalytics(booking.getUser().getId());
+        assertAmount("50.00", forUser.getTotalRevenue());
+        assertAmount("30.00", forUser.getNetRevenue());
+        assertAmount("25.00", forUser.getAverageTransactionValue().get("STRIPE"));
+
+        PaymentAnalyticsDTO inNaira = analyticsService.getAnalyticsByCurrency("ngn");
+        assertEquals(Map.of("COMPLETED", 1L, "FAILED", 1L), inNaira.getPaymentCountByStatus());
+        assertAmount("1000.00", inNaira.getRevenueByCurrency().get("NGN"));
+    }
+
+    @Test
+    void dateRangeFromTheRollupMatchesTheRawPayments() {
+        LocalDate day = LocalDate.now().minusDays(10);
+        insertPayment(booking, day.atTime(10, 0), PaymentStatus.COMPLETED, Payment.Currency.USD, "1.00");
+        insertPayment(booking, day.atTime(18, 0), PaymentStatus.COMPLETED, Payment.Currency.USD, "2.00");
+        insertPayment(booking, day.plusDays(1).atTime(12, 0), PaymentStatus.COMPLETED, Payment.Currency.USD, "4.00");
+        insertPayment(booking, day.plusDays(2).atTime(12, 0), PaymentStatus.REFUNDED, Payment.Currency.USD, "8.00");
+        insertPayment(booking, day.plusDays(3).atTime(8, 0), PaymentStatus.COMPLETED, Payment.Currency.USD, "16.00");
+        insertPayment(booking, day.plusDays(3).atTime(10, 0), PaymentStatus.COMPLETED, Payment.Currency.USD, "32.00");
+        LocalDateTime start = day.atTime(15, 0);
+        LocalDateTime end = day.plusDays(3).atTime(9, 0);
+
+        PaymentRollupService notReady = mock(PaymentRollupService.class);
+        PaymentAnalyticsDTO raw = transactionTemplate.execute(status ->
+                new PaymentAnalyticsServiceImpl(paymentRepository, rollupRepository, notReady)
+                        .getAnalyticsByDateRange(start, end));
+        paymentRollupService.backfillIfNeeded();
+        assertTrue(paymentRollupService.isReady());
+
+        PaymentAnalyticsDTO rolledUp = analyticsService.getAnalyticsByDateRange(start, end);
+
+        assertAmount("22.00", raw.getTotalRevenue());
+        assertAmount("8.00", raw.getTotalRefunds());
+        assertAmount(raw.getTotalRevenue().toPlainString(), rolledUp.getTotalRevenue());
+        assertAmount(raw.getTotalRefunds().toPlainString(), rolledUp.getTotalRefunds());
+        assertEquals(raw.getPaymentCountByStatus(), rolledUp.getPaymentCountByStatus());
+        assertEquals(raw.getPaymentCountByTimePeriod(), rolledUp.getPaymentCountByTimePeriod());
+        assertEquals(raw.getRevenueByTimePeriod().keySet(), rolledUp.getRevenueByTimePeriod().keySet());
+        raw.getRevenueByTimePeriod().forEach((period, amount) ->
+                assertAmount(amount.toPlainString(), rolledUp.getRevenueByTimePeriod().get(period)));
+    }
+
+    private void insertPayment(Booking paidBooking, LocalDateTime createdAt, PaymentStatus status,
+                               Payment.Currency currency, String amount) {
+        Payment payment = new Payment();
+        payment.setBooking(paidBooking);
+        payment.setUser(paidBooking.getUser());
+        payment.setAmount(new BigDecimal(amount));
+        payment.setStatus(status);
+        payment.setPaymentMethod(Payment.PaymentMethod.STRIPE);
+        payment.setCurrency(currency);
+        UUID id = paymentRepository.save(payment).getId();
+        // created_at is set by Hibernate on insert and not updatable through the entity
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?", createdAt, id);
+    }
+
+    private Booking booking() {
+        User user = new User();
+        user.setEmail("guest-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Test");
+        user.setLastName("Guest");
+        user = userRepository.save(user);
+
+        Activity activity = new Activity();
+        activity.setTitle("Kayak tour");
+        activity.setDescription("Two hours on the lagoon");
+        activity.setPrice(new BigDecimal("25.00"));
+        activity.setAddress("1 Marina Road");
+        activity.setHost(user);
+        activity.setStartDate(LocalDateTime.now().plusDays(7));
+        activity.setEndDate(LocalDateTime.now().plusDays(7).plusHours(2));
+        activity.setMinParticipants(1);
+        activity.setMaxParticipants(100);
+        activity.setDurationMinutes(120);
+        activity.setActive(true);
+        activity = activityRepository.save(activity);
+
+        Booking newBooking = new Booking();
+        newBooking.setActivity(activity);
+        newBooking.setUser(user);
+        newBooking.setHost(user);
+        newBooking.setTotalPrice(new BigDecimal("25.00"));
+        newBooking.setNumberOfGuests(1);
+        newBooking.setStartTime(activity.getStartDate());
+        newBooking.setEndTime(activity.getEndDate());
+        newBooking.setGuestEmail(user.getEmail());
+        return bookingRepository.save(newBooking);
+    }
+
+    private static void assertAmount(String expected, BigDecimal actual) {
+        assertNotNull(actual);
+        assertEquals(0, new BigDecimal(expected).compareTo(actual), () -> expected + " != " + actual);
+    }
+}
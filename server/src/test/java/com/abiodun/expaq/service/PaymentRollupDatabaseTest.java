@@ -0,0 +1,211 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.Booking;
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.impl.PaymentRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link PaymentRollupService} and the rollup's native upserts against a real PostgreSQL, which
+ * the {@code ON CONFLICT} statements and advisory locks need. Point {@code EXPAQ_TEST_DATABASE_URL} at
+ * a throwaway database to run it, as for {@link CapacityReservationDatabaseTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(PaymentRollupService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class PaymentRollupDatabaseTest {
+
+    private static final int WRITERS = 8;
+    private static final int PAYMENTS_PER_WRITER = 50;
+
+    @Autowired
+    private PaymentRollupService paymentRollupService;
+
+    @Autowired
+    private PaymentDailyRollupRepository rollupRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Booking booking;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM payment_daily_rollup");
+        jdbcTemplate.update("DELETE FROM payments");
+
+        User user = new User();
+        user.setEmail("guest-" + UUID.randomUUID() + "@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Test");
+        user.setLastName("Guest");
+        user = userRepository.save(user);
+
+        Activity activity = new Activity();
+        activity.setTitle("Kayak tour");
+        activity.setDescription("Two hours on the lagoon");
+        activity.setPrice(new BigDecimal("25.00"));
+        activity.setAddress("1 Marina Road");
+        activity.setHost(user);
+        activity.setStartDate(LocalDateTime.now().plusDays(7));
+        activity.setEndDate(LocalDateTime.now().plusDays(7).plusHours(2));
+        activity.setMinParticipants(1);
+        activity.setMaxParticipants(100);
+        activity.setDurationMinutes(120);
+        activity.setActive(true);
+        activity = activityRepository.save(activity);
+
+        booking = new Booking();
+        booking.setActivity(activity);
+        booking.setUser(user);
+        booking.setHost(user);
+        booking.setTotalPrice(new BigDecimal("25.00"));
+        booking.setNumberOfGuests(1);
+        booking.setStartTime(activity.getStartDate());
+        booking.setEndTime(activity.getEndDate());
+        booking.setGuestEmail(user.getEmail());
+        booking = bookingRepository.save(booking);
+    }
+
+    @Test
+    void rebuildMatchesPaymentsAndDeltasAddToIt() {
+        LocalDate day = LocalDate.now().minusDays(3);
+        insertPayment(day, PaymentStatus.COMPLETED, "10.00");
+        insertPayment(day, PaymentStatus.COMPLETED, "15.00");
+        insertPayment(day, PaymentStatus.REFUNDED, "7.50");
+
+        paymentRollupService.rebuild(day, day.plusDays(1));
+
+        assertCell(day, "COMPLETED", 2, "25.00", "0.00");
+        assertCell(day, "REFUNDED", 1, "7.50", "7.50");
+
+        transactionTemplate.executeWithoutResult(status -> rollupRepository.applyDelta(day, "USD", "STRIPE",
+                "COMPLETED", -1, new BigDecimal("-10.00"), BigDecimal.ZERO));
+        transactionTemplate.executeWithoutResult(status -> rollupRepository.applyDelta(day, "USD", "STRIPE",
+                "REFUNDED", 1, new BigDecimal("10.00"), new BigDecimal("10.00")));
+
+        assertCell(day, "COMPLETED", 1, "15.00", "0.00");
+        assertCell(day, "REFUNDED", 2, "17.50", "17.50");
+    }
+
+    @Test
+    void rebuildsRunningAlongsideNewPaymentsLoseNoDeltas() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> writers = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < PAYMENTS_PER_WRITER; n++) {
+                        transactionTemplate.executeWithoutResult(status ->
+                                paymentRollupService.recordCreated(paymentRepository.save(newPayment())));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            LocalDate today = LocalDate.now();
+            while (!writers.stream().allMatch(Future::isDone)) {
+                paymentRollupService.rebuild(today, today.plusDays(1));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+
+        Long rolledUp = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(payment_count), 0) FROM payment_daily_rollup",
+                Long.class);
+        assertEquals(WRITERS * PAYMENTS_PER_WRITER, rolledUp);
+    }
+
+    private Payment newPayment() {
+        Payment payment = new Payment();
+        payment.setBooking(booking);
+        payment.setUser(booking.getUser());
+        payment.setAmount(new BigDecimal("25.00"));
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setPaymentMethod(Payment.PaymentMethod.STRIPE);
+        payment.setCurrency(Payment.Currency.USD);
+        return payment;
+    }
+
+    private void insertPayment(LocalDate day, PaymentStatus status, String amount) {
+        Payment payment = newPayment();
+        payment.setStatus(status);
+        payment.setAmount(new BigDecimal(amount));
+        UUID id = paymentRepository.save(payment).getId();
+        // created_at is set by Hibernate on insert and not updatable through the entity
+        jdbcTemplate.update("UPDATE payments SET created_at = ? WHERE id = ?", day.atTime(12, 0), id);
+    }
+
+    private void assertCell(LocalDate day, String status, long count, String amount, String refunded) {
+        Map<String, Object> cell = jdbcTemplate.queryForMap("SELECT payment_count, amount_sum, refund_sum"
+                + " FROM payment_daily_rollup WHERE rollup_date = ? AND currency = 'USD'"
+                + " AND payment_method = 'STRIPE' AND status = ?", day, status);
+        assertEquals(count, ((Number) cell.get("payment_count")).longValue());
+        assertEquals(0, new BigDecimal(amount).compareTo((BigDecimal) cell.get("amount_sum")));
+        assertEquals(0, new BigDecimal(refunded).compareTo((BigDecimal) cell.get("refund_sum")));
+    }
+}
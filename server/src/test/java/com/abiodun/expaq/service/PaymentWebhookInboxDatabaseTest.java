@@ -0,0 +1,126 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.service.payment.PaymentWebhookInbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs {@link PaymentWebhookInbox} against a real PostgreSQL, which its {@code ON CONFLICT} insert and
+ * {@code SKIP LOCKED} claims need. Point {@code EXPAQ_TEST_DATABASE_URL} at a throwaway database to run
+ * it, as for {@link CapacityReservationDatabaseTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.datasource.hikari.maximum-pool-size=20",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class PaymentWebhookInboxDatabaseTest {
+
+    private static final int REDELIVERIES = 16;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final IPaymentService paymentService = mock(IPaymentService.class);
+    private PaymentWebhookInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM payment_webhook_inbox");
+        inbox = new PaymentWebhookInbox(jdbcTemplate, paymentService, new SimpleMeterRegistry(), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    @Test
+    void concurrentRedeliveriesAreStoredOnce() throws Exception {
+        UUID paymentId = UUID.randomUUID();
+        ExecutorService executor = Executors.newFixedThreadPool(REDELIVERIES);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> deliveries = new ArrayList<>();
+        try {
+            for (int i = 0; i < REDELIVERIES; i++) {
+                deliveries.add(executor.submit(() -> {
+                    start.await();
+                    return inbox.accept("stripe", "evt_123", "payment_intent.succeeded", paymentId,
+                            PaymentStatus.COMPLETED, "pi_123");
+                }));
+            }
+            start.countDown();
+            int accepted = 0;
+            for (Future<Boolean> delivery : deliveries) {
+                if (delivery.get(1, TimeUnit.MINUTES)) {
+                    accepted++;
+                }
+            }
+            assertEquals(1, accepted);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_webhook_inbox", Integer.class));
+        // The same event id from the other provider is a different event
+        assertTrue(inbox.accept("paystack", "evt_123", "charge.success", paymentId, PaymentStatus.COMPLETED, "ref_1"));
+    }
+
+    @Test
+    void laterEventsForAPaymentWaitForAFailedEarlierOne() throws Exception {
+        UUID paymentId = UUID.randomUUID();
+        inbox.accept("stripe", "evt_1", "payment_intent.succeeded", paymentId, PaymentStatus.COMPLETED, "pi_123");
+        // received_at orders the events
+        Thread.sleep(5);
+        inbox.accept("stripe", "evt_2", "charge.refunded", paymentId, PaymentStatus.REFUNDED, "pi_123");
+        when(paymentService.updatePaymentStatus(any(), any(), any())).thenThrow(new IllegalStateException("timeout"));
+
+        assertEquals(0, inbox.drain());
+
+        verify(paymentService, times(1)).updatePaymentStatus(any(), any(), any());
+        verify(paymentService).updatePaymentStatus(paymentId, PaymentStatus.COMPLETED, "pi_123");
+
+        // Backoff elapsed and the provider is back
+        jdbcTemplate.update("UPDATE payment_webhook_inbox SET next_attempt_at = received_at");
+        reset(paymentService);
+
+        assertEquals(2, inbox.drain());
+
+        InOrder inOrder = inOrder(paymentService);
+        inOrder.verify(paymentService).updatePaymentStatus(paymentId, PaymentStatus.COMPLETED, "pi_123");
+        inOrder.verify(paymentService).updatePaymentStatus(paymentId, PaymentStatus.REFUNDED, "pi_123");
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM payment_webhook_inbox"
+                + " WHERE status = 'DONE'", Integer.class));
+    }
+}
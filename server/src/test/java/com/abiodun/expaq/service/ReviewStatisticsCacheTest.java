@@ -0,0 +1,61 @@
+package com.abiodun.expaq.service;
+
+import com.abiodun.expaq.dto.ReviewStatistics;
+import com.abiodun.expaq.event.ReviewChangedEvent;
+import com.abiodun.expaq.repository.ReviewRepository;
+import com.abiodun.expaq.service.impl.ReviewStatisticsCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ReviewStatisticsCacheTest {
+
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final ReviewStatisticsCache cache = new ReviewStatisticsCache(reviewRepository);
+
+    @Test
+    void buildsStatisticsForAPageOfActivitiesInOneQuery() {
+        UUID reviewed = UUID.randomUUID();
+        UUID unreviewed = UUID.randomUUID();
+        when(reviewRepository.countByRatingVerifiedAndEdited(anyCollection())).thenReturn(List.of(
+                new Object[]{reviewed, 5, true, false, 3L},
+                new Object[]{reviewed, 5, false, true, 1L},
+                new Object[]{reviewed, 4, true, true, 2L},
+                new Object[]{reviewed, 1, false, false, 2L}));
+
+        Map<UUID, ReviewStatistics> statistics = cache.getAll(List.of(reviewed, unreviewed));
+
+        ReviewStatistics stats = statistics.get(reviewed);
+        assertEquals(8, stats.getTotalReviews());
+        assertEquals(4, stats.getFiveStarReviews());
+        assertEquals(2, stats.getFourStarReviews());
+        assertEquals(2, stats.getOneStarReviews());
+        assertEquals(5, stats.getVerifiedReviews());
+        assertEquals(3, stats.getEditedReviews());
+        assertEquals(30.0 / 8, stats.getAverageRating(), 1e-9);
+        assertEquals(75.0, stats.getRatingPercentage(), 1e-9);
+        assertEquals(0, statistics.get(unreviewed).getTotalReviews());
+        assertEquals(0, statistics.get(unreviewed).getAverageRating());
+        verify(reviewRepository, times(1)).countByRatingVerifiedAndEdited(anyCollection());
+    }
+
+    @Test
+    void reviewChangesInvalidateOnlyTheirActivity() {
+        UUID changed = UUID.randomUUID();
+        UUID untouched = UUID.randomUUID();
+        when(reviewRepository.countByRatingVerifiedAndEdited(anyCollection())).thenReturn(List.of());
+        cache.getAll(List.of(changed, untouched));
+
+        cache.onReviewChanged(new ReviewChangedEvent(changed));
+        cache.get(untouched);
+        cache.get(changed);
+
+        verify(reviewRepository, times(2)).countByRatingVerifiedAndEdited(anyCollection());
+    }
+}
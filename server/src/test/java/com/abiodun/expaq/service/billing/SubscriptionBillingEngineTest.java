@@ -0,0 +1,251 @@
+package com.abiodun.expaq.service.billing;
+
+import com.abiodun.expaq.model.Subscription;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import com.abiodun.expaq.service.EmailService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the engine against a mocked {@link JdbcTemplate}: each statement is told apart by how its SQL
+ * starts and answers with the row count the database would return, so these tests cover which
+ * statements the engine issues and how it reacts to their outcome, not the SQL itself.
+ */
+class SubscriptionBillingEngineTest {
+
+    private static final String RESUME_RUN = "UPDATE subscription_billing_runs SET lease_owner";
+    private static final String START_RUN = "INSERT INTO subscription_billing_runs";
+    private static final String CHECKPOINT = "UPDATE subscription_billing_runs SET cursor_billing_date";
+    private static final String RELEASE_LEASE = "UPDATE subscription_billing_runs SET lease_expires_at";
+    private static final String ANY_DUE = "SELECT EXISTS";
+    private static final String COMPLETE_RUN = "UPDATE subscription_billing_runs SET status = 'COMPLETED'";
+    private static final String DUE = "SELECT id, next_billing_date";
+    private static final String CLAIM_KEY = "INSERT INTO subscription_billing_attempts";
+    private static final String TAKE_OVER_KEY = "UPDATE subscription_billing_attempts SET run_id";
+    private static final String RECORD_OUTCOME = "UPDATE subscription_billing_attempts SET outcome";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+    private final EmailService emailService = mock(EmailService.class);
+    private SubscriptionBillingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = engine(60_000);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any(Object[].class))).thenReturn(0L);
+        when(jdbcTemplate.queryForObject(startsWith(ANY_DUE), eq(Boolean.class), any(Object[].class))).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void resumesAbandonedRunFromItsCheckpoint() throws Exception {
+        UUID runId = UUID.randomUUID();
+        LocalDateTime cutoff = LocalDateTime.of(2026, 3, 1, 0, 0);
+        LocalDateTime cursorDate = LocalDateTime.of(2026, 2, 27, 9, 30);
+        UUID cursorId = UUID.randomUUID();
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject("id", UUID.class)).thenReturn(runId);
+        when(row.getTimestamp("cutoff")).thenReturn(Timestamp.valueOf(cutoff));
+        when(row.getTimestamp("cursor_billing_date")).thenReturn(Timestamp.valueOf(cursorDate));
+        when(row.getObject("cursor_subscription_id", UUID.class)).thenReturn(cursorId);
+        when(jdbcTemplate.query(startsWith(RESUME_RUN), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0)));
+        when(jdbcTemplate.query(startsWith(DUE), any(RowMapper.class), any(Object[].class))).thenReturn(Collections.emptyList());
+        when(jdbcTemplate.update(startsWith(COMPLETE_RUN), any(Object[].class))).thenReturn(1);
+
+        Map<String, Object> result = engine.runDueBilling();
+
+        assertEquals(runId, result.get("runId"));
+        assertEquals(true, result.get("resumed"));
+        assertEquals(true, result.get("completed"));
+        verify(jdbcTemplate, never()).update(startsWith(START_RUN), any(Object[].class));
+        verify(jdbcTemplate).query(startsWith(DUE), any(RowMapper.class),
+                eq(Timestamp.valueOf(cutoff)), eq(Timestamp.valueOf(cursorDate)), eq(cursorId), eq(10));
+    }
+
+    @Test
+    void refusesToStartWhileAnotherRunHoldsTheLease() {
+        when(jdbcTemplate.query(startsWith(RESUME_RUN), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.emptyList());
+        // Both the NOT EXISTS check and the unique index report zero rows inserted
+        when(jdbcTemplate.update(startsWith(START_RUN), any(Object[].class))).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, engine::runDueBilling);
+        verify(jdbcTemplate, never()).query(startsWith(DUE), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void startsNoRunWhenNothingIsDue() {
+        when(jdbcTemplate.query(startsWith(RESUME_RUN), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.emptyList());
+        when(jdbcTemplate.queryForObject(startsWith(ANY_DUE), eq(Boolean.class), any(Object[].class))).thenReturn(false);
+
+        Map<String, Object> result = engine.runDueBilling();
+
+        assertEquals(0L, result.get("totalDue"));
+        assertNull(result.get("runId"));
+        verify(jdbcTemplate, never()).update(startsWith(START_RUN), any(Object[].class));
+    }
+
+    @Test
+    void pausesAfterItsTimeBudgetAndReleasesTheLeaseForTheNextCall() {
+        engine.shutdown();
+        engine = engine(0);
+        Subscription subscription = dueSubscription();
+        when(jdbcTemplate.query(startsWith(RESUME_RUN), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.emptyList());
+        when(jdbcTemplate.update(startsWith(START_RUN), any(Object[].class))).thenReturn(1);
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(RECORD_OUTCOME), any(Object[].class))).thenReturn(1);
+        when(subscriptionRepository.findById(subscription.getId())).thenReturn(Optional.of(subscription));
+        when(jdbcTemplate.update(startsWith(CHECKPOINT), any(Object[].class))).thenReturn(1);
+
+        Map<String, Object> result = engine.runDueBilling();
+
+        assertEquals(false, result.get("completed"));
+        assertNotNull(result.get("runId"));
+        verify(jdbcTemplate).update(startsWith(RELEASE_LEASE), any(Object[].class));
+        verify(jdbcTemplate, never()).update(startsWith(COMPLETE_RUN), any(Object[].class));
+        verify(jdbcTemplate, times(1)).query(startsWith(DUE), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void stopsWhenItsRunWasTakenOver() {
+        Subscription subscription = dueSubscription();
+        when(jdbcTemplate.query(startsWith(RESUME_RUN), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.emptyList());
+        when(jdbcTemplate.update(startsWith(START_RUN), any(Object[].class))).thenReturn(1);
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(RECORD_OUTCOME), any(Object[].class))).thenReturn(1);
+        when(subscriptionRepository.findById(subscription.getId())).thenReturn(Optional.of(subscription));
+        // The lease lapsed and another instance resumed the run before our checkpoint
+        when(jdbcTemplate.update(startsWith(CHECKPOINT), any(Object[].class))).thenReturn(0);
+
+        Map<String, Object> result = engine.runDueBilling();
+
+        assertEquals(false, result.get("completed"));
+        verify(jdbcTemplate, never()).update(startsWith(COMPLETE_RUN), any(Object[].class));
+        verify(jdbcTemplate, times(1)).query(startsWith(DUE), any(RowMapper.class), any(Object[].class));
+    }
+
+    @Test
+    void chargesCycleWhenKeyIsFreshlyClaimed() {
+        Subscription subscription = dueSubscription();
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(RECORD_OUTCOME), any(Object[].class))).thenReturn(1);
+        when(subscriptionRepository.findById(subscription.getId())).thenReturn(Optional.of(subscription));
+
+        engine.billSubscription(subscription.getId());
+
+        verify(jdbcTemplate, never()).update(startsWith(TAKE_OVER_KEY), any(Object[].class));
+        verify(subscriptionRepository).save(subscription);
+    }
+
+    @Test
+    void skipsPendingKeyHeldByLiveClaim() {
+        Subscription subscription = dueSubscription();
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(0);
+        when(jdbcTemplate.update(startsWith(TAKE_OVER_KEY), any(Object[].class))).thenReturn(0);
+
+        engine.billSubscription(subscription.getId());
+
+        verify(jdbcTemplate, never()).update(startsWith(RECORD_OUTCOME), any(Object[].class));
+        verifyNoInteractions(subscriptionRepository, emailService);
+    }
+
+    @Test
+    void retriesPendingKeyOnceItsClaimLapses() {
+        Subscription subscription = dueSubscription();
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(0);
+        when(jdbcTemplate.update(startsWith(TAKE_OVER_KEY), any(Object[].class))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith(RECORD_OUTCOME), any(Object[].class))).thenReturn(1);
+        when(subscriptionRepository.findById(subscription.getId())).thenReturn(Optional.of(subscription));
+
+        engine.billSubscription(subscription.getId());
+
+        verify(jdbcTemplate).update(startsWith(RECORD_OUTCOME), any(Object[].class));
+        verify(subscriptionRepository).save(subscription);
+    }
+
+    @Test
+    void leavesSubscriptionAloneWhenClaimIsLostMidCharge() {
+        Subscription subscription = dueSubscription();
+        stubDue(subscription);
+        when(jdbcTemplate.update(startsWith(CLAIM_KEY), any(Object[].class))).thenReturn(1);
+        // Another caller took the key over, so ours no longer matches claimed_by
+        when(jdbcTemplate.update(startsWith(RECORD_OUTCOME), any(Object[].class))).thenReturn(0);
+
+        engine.billSubscription(subscription.getId());
+
+        verifyNoInteractions(subscriptionRepository, emailService);
+    }
+
+    private SubscriptionBillingEngine engine(long maxRunMillis) {
+        return new SubscriptionBillingEngine(jdbcTemplate, transactionTemplate, subscriptionRepository, emailService,
+                mock(ApplicationEventPublisher.class), new SimpleMeterRegistry(), 2, 10, 1_000, 1_000, maxRunMillis);
+    }
+
+    private Subscription dueSubscription() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("host@example.com");
+        Subscription subscription = new Subscription();
+        subscription.setId(UUID.randomUUID());
+        subscription.setUser(user);
+        subscription.setStatus(Subscription.SubscriptionStatus.ACTIVE);
+        subscription.setBillingCycle(Subscription.BillingCycle.MONTHLY);
+        subscription.setNextBillingDate(LocalDateTime.of(2026, 2, 28, 12, 0));
+        subscription.setStripeSubscriptionId("sub_123");
+        return subscription;
+    }
+
+    private void stubDue(Subscription subscription) {
+        try {
+            ResultSet row = mock(ResultSet.class);
+            when(row.getObject("id", UUID.class)).thenReturn(subscription.getId());
+            when(row.getTimestamp("next_billing_date")).thenReturn(Timestamp.valueOf(subscription.getNextBillingDate()));
+            when(row.getString("stripe_subscription_id")).thenReturn(subscription.getStripeSubscriptionId());
+            when(jdbcTemplate.query(startsWith(DUE), any(RowMapper.class), any(Object[].class)))
+                    .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0)))
+                    .thenReturn(Collections.emptyList());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.abiodun.expaq.service.fraud;
+
+import com.abiodun.expaq.model.Payment.Currency;
+import com.abiodun.expaq.model.Payment.PaymentMethod;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.service.impl.UserRiskFeatureStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-payment cost of the full rule set (four velocity rules plus the static risk rule against
+ * warm features) across 10k users and 2k IPs, with several threads contending. The budget is
+ * 50µs per payment at p99. Run {@link #main} from the IDE, or after {@code mvn test-compile}:
+ * {@code java -cp target/test-classes:target/classes:<test classpath> com.abiodun.expaq.service.fraud.FraudRuleEngineBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class FraudRuleEngineBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int IPS = 2_000;
+
+    private FraudRuleEngine engine;
+    private UUID[] users;
+    private String[] ips;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        PaymentRepository paymentRepository = mock(PaymentRepository.class);
+        List<Object[]> counts = new ArrayList<>();
+        counts.add(new Object[]{12L, 1L});
+        when(paymentRepository.countTotalAndFailedByUserId(any())).thenReturn(counts);
+        UserRiskFeatureStore featureStore = new UserRiskFeatureStore(paymentRepository);
+
+        // Limits high enough that the benchmark measures the allow path, which is the common one
+        List<FraudRule> rules = List.of(
+                new VelocityRule("user-per-minute", FraudCheck::getUserId, Duration.ofMinutes(1), Integer.MAX_VALUE),
+                new VelocityRule("user-per-hour", FraudCheck::getUserId, Duration.ofHours(1), Integer.MAX_VALUE),
+                new VelocityRule("ip-per-minute", FraudCheck::getIpAddress, Duration.ofMinutes(1), Integer.MAX_VALUE),
+                new VelocityRule("ip-per-hour", FraudCheck::getIpAddress, Duration.ofHours(1), Integer.MAX_VALUE),
+                new StaticRiskRule(featureStore));
+        engine = new FraudRuleEngine(rules, new SimpleMeterRegistry());
+
+        users = new UUID[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = UUID.randomUUID();
+            featureStore.get(users[i]);
+        }
+        ips = new String[IPS];
+        for (int i = 0; i < IPS; i++) {
+            ips[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @Benchmark
+    public FraudAssessment evaluatePayment() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long now = System.currentTimeMillis();
+        return engine.evaluate(new FraudCheck(users[random.nextInt(USERS)], 150.0, PaymentMethod.CREDIT_CARD,
+                Currency.USD, ips[random.nextInt(IPS)], LocalDateTime.now(), now));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(FraudRuleEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,64 @@
+package com.abiodun.expaq.service.fraud;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowCounterTest {
+
+    @Test
+    void countsOnlyEventsInsideTheWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 12);
+
+        assertEquals(1, counter.incrementAndSum(0));
+        assertEquals(2, counter.incrementAndSum(4_999));
+        assertEquals(3, counter.incrementAndSum(30_000));
+        // The first bucket [0, 5000) has slid out; its slot is reused
+        assertEquals(2, counter.incrementAndSum(60_000));
+        assertEquals(1, counter.sum(90_000));
+        assertEquals(0, counter.sum(200_000));
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws InterruptedException {
+        SlidingWindowCounter counter = new SlidingWindowCounter(60_000, 12);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    counter.increment(1_000 + i % 50_000);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(80_000, counter.sum(59_999));
+    }
+
+    @Test
+    void velocityRuleBlocksOnceTheLimitIsExceeded() {
+        VelocityRule rule = new VelocityRule("user-per-minute", FraudCheck::getUserId, Duration.ofMinutes(1), 3);
+        UUID userId = UUID.randomUUID();
+
+        double risk = 0;
+        for (int i = 0; i < 3; i++) {
+            risk = rule.evaluate(check(userId, 1_000 + i));
+            assertTrue(risk < FraudRule.BLOCK);
+        }
+        assertEquals(FraudRule.BLOCK, rule.evaluate(check(userId, 2_000)));
+        assertTrue(rule.evaluate(check(UUID.randomUUID(), 2_000)) < FraudRule.BLOCK);
+        assertTrue(rule.evaluate(check(userId, 120_000)) < FraudRule.BLOCK);
+    }
+
+    private static FraudCheck check(UUID userId, long atMillis) {
+        return new FraudCheck(userId, 50.0, null, null, null, LocalDateTime.now(), atMillis);
+    }
+}
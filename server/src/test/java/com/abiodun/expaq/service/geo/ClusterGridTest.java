@@ -0,0 +1,71 @@
+package com.abiodun.expaq.service.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterGridTest {
+
+    @Test
+    void encodesStandardGeohashes() {
+        assertEquals("u4pruydq", Geohash.toString(Geohash.encode(57.64911, 10.40744, 8), 8));
+        assertEquals("gcpvj0du", Geohash.toString(Geohash.encode(51.5074, -0.1278, 8), 8));
+        long code = Geohash.encode(57.64911, 10.40744, 5);
+        assertEquals(code, Geohash.interleave(Geohash.lngIndex(code, 25), Geohash.latIndex(code, 25), 25));
+    }
+
+    @Test
+    void aggregatesAndRecomputesMinimumPriceOnRemoval() {
+        ClusterGrid grid = new ClusterGrid();
+        UUID cheap = UUID.randomUUID();
+        UUID dear = UUID.randomUUID();
+        UUID paris = UUID.randomUUID();
+        grid.put(cheap, 51.50, -0.12, new BigDecimal("10"));
+        grid.put(dear, 51.52, -0.10, new BigDecimal("80"));
+        grid.put(paris, 48.86, 2.34, new BigDecimal("5"));
+
+        Cluster london = single(grid.cells(3, 0, 255, 0, 127, 100), "gcp");
+        assertEquals(2, london.getCount());
+        assertEquals(51.51, london.getLatitude(), 1e-9);
+        assertEquals(0, new BigDecimal("10").compareTo(london.getMinPrice()));
+
+        grid.remove(cheap);
+        london = single(grid.cells(3, 0, 255, 0, 127, 100), "gcp");
+        assertEquals(1, london.getCount());
+        assertEquals(0, new BigDecimal("80").compareTo(london.getMinPrice()));
+
+        // Moving the last London activity empties its cells
+        grid.put(dear, 48.85, 2.35, null);
+        assertTrue(grid.cells(3, 0, 255, 0, 127, 100).stream()
+                .noneMatch(cluster -> cluster.getGeohash().equals("gcp")));
+        Cluster world = grid.cells(1, 0, 31, 0, 31, 100).get(0);
+        assertEquals(2, world.getCount());
+        assertEquals(0, new BigDecimal("5").compareTo(world.getMinPrice()));
+        grid.remove(paris);
+        assertNull(grid.cells(1, 0, 31, 0, 31, 100).get(0).getMinPrice());
+    }
+
+    @Test
+    void windowQueriesOnlyReturnCellsInView() {
+        ClusterGrid grid = new ClusterGrid();
+        grid.put(UUID.randomUUID(), 51.50, -0.12, BigDecimal.ONE);
+        grid.put(UUID.randomUUID(), 40.71, -74.00, BigDecimal.ONE);
+        int bits = 15;
+        long column = Geohash.cellIndex(-0.12, -180, 360, (bits + 1) / 2);
+        long row = Geohash.cellIndex(51.50, -90, 180, bits / 2);
+
+        List<Cluster> clusters = grid.cells(3, column, column, row, row, 100);
+        assertEquals(1, clusters.size());
+        assertEquals("gcp", clusters.get(0).getGeohash());
+    }
+
+    private static Cluster single(List<Cluster> clusters, String geohash) {
+        return clusters.stream().filter(cluster -> cluster.getGeohash().equals(geohash)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,79 @@
+package com.abiodun.expaq.service.geo;
+
+import com.abiodun.expaq.event.ActivityChangedEvent;
+import com.abiodun.expaq.repository.ActivityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NearbyActivityIndexTest {
+
+    private static final GeometryFactory GEOMETRY = new GeometryFactory();
+
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final NearbyActivityIndex index = new NearbyActivityIndex(activityRepository);
+
+    // London landmarks plus one activity in Paris
+    private final UUID towerBridge = UUID.randomUUID();
+    private final UUID britishMuseum = UUID.randomUUID();
+    private final UUID kewGardens = UUID.randomUUID();
+    private final UUID louvre = UUID.randomUUID();
+    private final UUID museums = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(towerBridge, 51.5055, -0.0754, null));
+        rows.add(row(britishMuseum, 51.5194, -0.1270, museums));
+        rows.add(row(kewGardens, 51.4787, -0.2956, null));
+        rows.add(row(louvre, 48.8606, 2.3376, museums));
+        when(activityRepository.findActiveLocations()).thenReturn(rows);
+        index.rebuild();
+    }
+
+    @Test
+    void radiusQueriesAreSortedAndPaged() {
+        // From Trafalgar Square
+        NearbyActivityIndex.NearbyPage all = index.withinKm(51.5080, -0.1281, 20, null, 0, 10);
+        assertEquals(List.of(britishMuseum, towerBridge, kewGardens), all.getIds());
+        assertEquals(3, all.getTotal());
+
+        NearbyActivityIndex.NearbyPage second = index.withinKm(51.5080, -0.1281, 20, null, 1, 1);
+        assertEquals(List.of(towerBridge), second.getIds());
+        assertEquals(3, second.getTotal());
+        assertTrue(second.getDistancesKm().get(0) > 3 && second.getDistancesKm().get(0) < 4);
+    }
+
+    @Test
+    void nearestExpandsUntilThePageIsFull() {
+        NearbyActivityIndex.NearbyPage page = index.nearest(51.5080, -0.1281, museums, 0, 2);
+        assertEquals(List.of(britishMuseum, louvre), page.getIds());
+        assertEquals(2, page.getTotal());
+    }
+
+    @Test
+    void committedChangesOverrideTheSnapshot() {
+        index.onActivityChanged(new ActivityChangedEvent(ActivityChangedEvent.Type.DELETED, britishMuseum,
+                "British Museum", true, 51.5194, -0.1270, BigDecimal.TEN, museums));
+        UUID eye = UUID.randomUUID();
+        index.onActivityChanged(new ActivityChangedEvent(ActivityChangedEvent.Type.SAVED, eye,
+                "London Eye", true, 51.5033, -0.1196, BigDecimal.TEN, null));
+
+        assertEquals(List.of(eye, towerBridge, kewGardens), index.withinKm(51.5080, -0.1281, 20, null, 0, 10).getIds());
+    }
+
+    private static Object[] row(UUID id, double lat, double lng, UUID typeId) {
+        return new Object[]{id, GEOMETRY.createPoint(new Coordinate(lng, lat)), typeId};
+    }
+}
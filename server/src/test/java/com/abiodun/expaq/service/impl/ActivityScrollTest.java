@@ -0,0 +1,102 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.ActivityScrollResponse;
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.ActivityTypeRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.CloudinaryService;
+import com.abiodun.expaq.service.geo.ActivityClusterIndex;
+import com.abiodun.expaq.service.geo.NearbyActivityIndex;
+import com.abiodun.expaq.service.search.ActivitySearchIndex;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ActivityScrollTest {
+
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final ActivityServiceImpl activityService = new ActivityServiceImpl(activityRepository,
+            mock(UserRepository.class), new ModelMapper(), mock(CloudinaryService.class),
+            mock(ApplicationEventPublisher.class), mock(ActivityTypeRepository.class),
+            mock(NearbyActivityIndex.class), mock(ActivityClusterIndex.class),
+            mock(ActivitySearchIndex.class));
+
+    @Test
+    void nullKeysRoundTripDistinctFromTheirText() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("title", null);
+        keys.put("id", UUID.randomUUID());
+
+        KeysetScrollPosition decoded = ActivityCursorCodec.decode(ActivityCursorCodec.encode(keys));
+        assertEquals(keys, decoded.getKeys());
+
+        KeysetScrollPosition literal = ActivityCursorCodec.decode(
+                ActivityCursorCodec.encode(ScrollPosition.forward(Map.of("title", "null"))));
+        assertEquals("null", literal.getKeys().get("title"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void continuesIntoUnpricedActivitiesAfterAFullLastPricedPage() {
+        Activity cheap = activity(new BigDecimal("10"));
+        Activity dear = activity(new BigDecimal("20"));
+        Activity unpriced = activity(null);
+        List<Window<Activity>> windows = new ArrayList<>(List.of(
+                // Page 1: the priced pass fills the page exactly and has nothing after it
+                window(List.of(cheap, dear), false),
+                // ... so the unpriced tail is only probed
+                window(List.of(unpriced), false),
+                // Page 2: the cursor points at the start of the tail
+                window(List.of(unpriced), false)));
+        when(activityRepository.findBy(any(Specification.class), any(Function.class)))
+                .thenAnswer(invocation -> windows.remove(0));
+
+        ActivityScrollResponse first = activityService.scrollActivities(null, "lowPrice", null, 2);
+        assertEquals(2, first.getActivities().size());
+        assertTrue(first.isHasNext());
+        assertNotNull(first.getNextCursor());
+        assertEquals(Map.of(), withoutNulls(ActivityCursorCodec.decode(first.getNextCursor()).getKeys()));
+
+        ActivityScrollResponse second = activityService.scrollActivities(null, "lowPrice", first.getNextCursor(), 2);
+        assertEquals(List.of(unpriced.getId()), second.getActivities().stream().map(dto -> dto.getId()).toList());
+        assertFalse(second.isHasNext());
+        assertNull(second.getNextCursor());
+        // Only the tail was queried for the second page
+        verify(activityRepository, times(3)).findBy(any(Specification.class), any(Function.class));
+    }
+
+    private static Map<String, Object> withoutNulls(Map<String, Object> keys) {
+        Map<String, Object> present = new LinkedHashMap<>(keys);
+        present.values().removeIf(value -> value == null);
+        return present;
+    }
+
+    private static Activity activity(BigDecimal price) {
+        Activity activity = new Activity();
+        activity.setId(UUID.randomUUID());
+        activity.setTitle("Activity " + price);
+        activity.setPrice(price);
+        return activity;
+    }
+
+    private static Window<Activity> window(List<Activity> content, boolean hasNext) {
+        return Window.from(content, index -> ScrollPosition.forward(Map.of("id", content.get(index).getId())), hasNext);
+    }
+}
@@ -0,0 +1,106 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.AuthResponse;
+import com.abiodun.expaq.dto.UpdateProfileRequest;
+import com.abiodun.expaq.event.UserAccessChangedEvent;
+import com.abiodun.expaq.event.UserProfileChangedEvent;
+import com.abiodun.expaq.model.Role;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.repository.ReviewRepository;
+import com.abiodun.expaq.repository.RoleRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.EmailService;
+import com.abiodun.expaq.service.JwtService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class AuthServiceImplTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final JwtService jwtService = mock(JwtService.class);
+    private final RoleRepository roleRepository = mock(RoleRepository.class);
+    private final AuthServiceImpl authService = new AuthServiceImpl(userRepository, mock(PasswordEncoder.class),
+            mock(AuthenticationManager.class), jwtService, mock(EmailService.class),
+            roleRepository, mock(ActivityRepository.class), mock(BookingRepository.class),
+            mock(ReviewRepository.class), eventPublisher);
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("guest@example.com");
+        user.setRoles(new HashSet<>(Set.of(new Role("ROLE_TOURIST"))));
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void profileEditKeepsIssuedTokensValid() {
+        UpdateProfileRequest request = new UpdateProfileRequest();
+        request.setBio("Paddles on weekends");
+        request.setEmail("guest@example.com");
+        // Same roles as new instances, as they arrive from a request body
+        request.setRoles(Set.of(new Role("ROLE_TOURIST")));
+
+        authService.updateUserProfile(user.getId(), request);
+
+        verify(eventPublisher).publishEvent(any(UserProfileChangedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(UserAccessChangedEvent.class));
+    }
+
+    @Test
+    void roleChangeRevokesIssuedTokens() {
+        UpdateProfileRequest request = new UpdateProfileRequest();
+        request.setRoles(Set.of(new Role("ROLE_HOST")));
+
+        authService.updateUserProfile(user.getId(), request);
+
+        verify(eventPublisher).publishEvent(any(UserAccessChangedEvent.class));
+        verify(eventPublisher, never()).publishEvent(any(UserProfileChangedEvent.class));
+    }
+
+    @Test
+    void emailChangeRevokesIssuedTokens() {
+        UpdateProfileRequest request = new UpdateProfileRequest();
+        request.setEmail("new@example.com");
+
+        authService.updateUserProfile(user.getId(), request);
+
+        verify(eventPublisher).publishEvent(any(UserAccessChangedEvent.class));
+    }
+
+    @Test
+    void becomingAHostReturnsATokenIssuedAfterTheRevocation() {
+        when(roleRepository.findByName("HOST")).thenReturn(new Role("HOST"));
+        // The version the event listener bumped to
+        when(userRepository.findTokenVersionById(user.getId())).thenReturn(Optional.of(1));
+        when(jwtService.generateToken(argThat((User issuedFor) -> issuedFor.getTokenVersion() == 1))).thenReturn("fresh-token");
+
+        AuthResponse response = authService.becomeHost(user.getId());
+
+        assertEquals("fresh-token", response.getToken());
+        assertEquals(user.getId(), response.getUser().getId());
+        InOrder order = inOrder(eventPublisher, jwtService);
+        order.verify(eventPublisher).publishEvent(any(UserAccessChangedEvent.class));
+        order.verify(jwtService).generateToken(user);
+    }
+}
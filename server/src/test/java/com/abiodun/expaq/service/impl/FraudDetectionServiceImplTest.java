@@ -0,0 +1,134 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentMethod;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FraudDetectionServiceImplTest {
+
+    private static final PaymentStatus[] STATUSES = PaymentStatus.values();
+    private static final PaymentMethod[] METHODS = PaymentMethod.values();
+    private static final Payment.Currency[] CURRENCIES = Payment.Currency.values();
+    private static final double[] AMOUNTS = {5, 100, 100.01, 250, 500, 750, 1000, 1000.5, 4000};
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final UserRiskFeatureStore riskFeatureStore = new UserRiskFeatureStore(paymentRepository);
+    private final FraudDetectionServiceImpl fraudDetectionService =
+            new FraudDetectionServiceImpl(paymentRepository, riskFeatureStore);
+
+    @Test
+    void incrementalFeaturesScoreLikeTheFullPaymentHistory() {
+        Random random = new Random(42);
+        for (int user = 0; user < 50; user++) {
+            User owner = new User();
+            owner.setId(UUID.randomUUID());
+            when(paymentRepository.countTotalAndFailedByUserId(owner.getId()))
+                    .thenReturn(Collections.singletonList(new Object[]{0L, 0L}));
+            riskFeatureStore.get(owner.getId());
+
+            // Create payments and move them through random statuses, publishing events as the service does
+            List<Payment> history = new ArrayList<>();
+            int payments = random.nextInt(12);
+            for (int i = 0; i < payments; i++) {
+                Payment payment = payment(owner, random);
+                history.add(payment);
+                riskFeatureStore.onPaymentEvent(PaymentEvent.of(payment, null));
+                for (int change = random.nextInt(3); change > 0; change--) {
+                    PaymentStatus previous = payment.getStatus();
+                    payment.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+                    riskFeatureStore.onPaymentEvent(PaymentEvent.of(payment, previous));
+                }
+            }
+
+            Payment candidate = payment(owner, random);
+            assertEquals(legacyRiskScore(candidate, history), fraudDetectionService.calculateRiskScore(candidate),
+                    "user " + user + " with " + history.size() + " payments");
+        }
+    }
+
+    @Test
+    void bucketsPaymentsWithoutAKnownMethodAsUnknown() {
+        LocalDateTime noon = LocalDateTime.of(2026, 5, 4, 12, 0);
+        when(paymentRepository.streamPaymentsWithUserRiskCounts()).thenAnswer(invocation -> Stream.of(
+                new Object[]{new BigDecimal("50"), Timestamp.valueOf(noon), "CREDIT_CARD", "USD", 2L, 0L},
+                new Object[]{new BigDecimal("50"), Timestamp.valueOf(noon), null, "USD", 2L, 0L},
+                new Object[]{new BigDecimal("50"), Timestamp.valueOf(noon), "CRYPTO", "USD", 1L, 0L}));
+
+        Map<String, BigDecimal> scores = fraudDetectionService.getRiskScoresByPaymentMethod();
+        Map<String, BigDecimal> rates = fraudDetectionService.getFraudRatesByPaymentMethod();
+
+        assertEquals(Map.of("CREDIT_CARD", new BigDecimal("0.20"), FraudDetectionServiceImpl.UNKNOWN_METHOD,
+                new BigDecimal("0.28")), scores);
+        assertEquals(2, rates.size());
+        assertTrue(rates.containsKey(FraudDetectionServiceImpl.UNKNOWN_METHOD));
+    }
+
+    private static Payment payment(User owner, Random random) {
+        Payment payment = new Payment();
+        payment.setId(UUID.randomUUID());
+        payment.setUser(owner);
+        payment.setAmount(BigDecimal.valueOf(AMOUNTS[random.nextInt(AMOUNTS.length)]));
+        payment.setCreatedAt(LocalDateTime.of(2026, 3, 1, random.nextInt(24), random.nextInt(60)));
+        payment.setPaymentMethod(METHODS[random.nextInt(METHODS.length)]);
+        payment.setCurrency(CURRENCIES[random.nextInt(CURRENCIES.length)]);
+        payment.setStatus(PaymentStatus.PENDING);
+        return payment;
+    }
+
+    // The scoring as it was before per-user features were cached: BigDecimal factors over the full history
+    private static BigDecimal legacyRiskScore(Payment payment, List<Payment> userPayments) {
+        BigDecimal amount = payment.getAmount();
+        BigDecimal amountRisk = amount.compareTo(new BigDecimal("1000")) > 0 ? new BigDecimal("0.8")
+                : amount.compareTo(new BigDecimal("500")) > 0 ? new BigDecimal("0.6")
+                : amount.compareTo(new BigDecimal("100")) > 0 ? new BigDecimal("0.4") : new BigDecimal("0.2");
+
+        int hour = payment.getCreatedAt().getHour();
+        BigDecimal timeRisk = hour >= 23 || hour <= 4 ? new BigDecimal("0.7")
+                : hour >= 21 || hour <= 6 ? new BigDecimal("0.5") : new BigDecimal("0.2");
+
+        BigDecimal historyRisk;
+        if (userPayments.isEmpty()) {
+            historyRisk = new BigDecimal("0.6");
+        } else {
+            long failed = userPayments.stream().filter(p -> p.getStatus() == PaymentStatus.FAILED).count();
+            historyRisk = new BigDecimal(failed).divide(new BigDecimal(userPayments.size()), 2, RoundingMode.HALF_UP)
+                    .multiply(new BigDecimal("0.8"));
+        }
+
+        BigDecimal methodRisk = switch (payment.getPaymentMethod()) {
+            case CREDIT_CARD -> new BigDecimal("0.3");
+            case DEBIT_CARD -> new BigDecimal("0.4");
+            case BANK_TRANSFER -> new BigDecimal("0.5");
+            case WALLET -> new BigDecimal("0.6");
+            default -> new BigDecimal("0.7");
+        };
+
+        BigDecimal currencyRisk = switch (String.valueOf(payment.getCurrency()).toUpperCase()) {
+            case "USD", "EUR", "GBP" -> new BigDecimal("0.3");
+            case "JPY", "CAD", "AUD" -> new BigDecimal("0.4");
+            default -> new BigDecimal("0.6");
+        };
+
+        return amountRisk.add(timeRisk).add(historyRisk).add(methodRisk).add(currencyRisk)
+                .divide(new BigDecimal(5), 2, RoundingMode.HALF_UP);
+    }
+}
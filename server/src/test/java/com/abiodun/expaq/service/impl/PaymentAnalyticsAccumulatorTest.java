@@ -0,0 +1,50 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.PaymentAnalyticsDTO;
+import com.abiodun.expaq.model.Payment.Currency;
+import com.abiodun.expaq.model.Payment.PaymentMethod;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentAnalyticsAccumulatorTest {
+
+    @Test
+    void foldsGroupedTotalsIntoTheAnalytics() {
+        PaymentAnalyticsAccumulator accumulator = new PaymentAnalyticsAccumulator();
+        accumulator.addTotals(new Object[]{PaymentStatus.COMPLETED, PaymentMethod.STRIPE, Currency.USD, 3L, new BigDecimal("90.00")});
+        accumulator.addTotals(new Object[]{PaymentStatus.COMPLETED, PaymentMethod.STRIPE, Currency.NGN, 1L, new BigDecimal("10.00")});
+        accumulator.addTotals(new Object[]{PaymentStatus.REFUNDED, PaymentMethod.STRIPE, Currency.USD, 1L, new BigDecimal("25.00")});
+        accumulator.addTotals(new Object[]{PaymentStatus.FAILED, null, Currency.USD, 2L, null});
+        accumulator.addDay(new Object[]{LocalDate.of(2026, 3, 4), 5L, 4L, new BigDecimal("100.00")});
+        accumulator.addDay(new Object[]{LocalDate.of(2026, 3, 5), 2L, 0L, null});
+
+        PaymentAnalyticsDTO analytics = accumulator.toAnalytics();
+
+        assertEquals(new BigDecimal("100.00"), analytics.getTotalRevenue());
+        assertEquals(new BigDecimal("25.00"), analytics.getTotalRefunds());
+        assertEquals(new BigDecimal("75.00"), analytics.getNetRevenue());
+        assertEquals(Map.of("STRIPE", new BigDecimal("100.00")), analytics.getRevenueByPaymentMethod());
+        assertEquals(Map.of("USD", new BigDecimal("90.00"), "NGN", new BigDecimal("10.00")), analytics.getRevenueByCurrency());
+        assertEquals(Map.of("COMPLETED", 4L, "REFUNDED", 1L, "FAILED", 2L), analytics.getPaymentCountByStatus());
+        assertEquals(new BigDecimal("25.00"), analytics.getAverageTransactionValue().get("STRIPE"));
+        // 1 refund out of 5 Stripe payments; payments without a method count under UNKNOWN
+        assertEquals(0, new BigDecimal("20").compareTo(analytics.getRefundRateByPaymentMethod().get("STRIPE")));
+        assertEquals(0, BigDecimal.ZERO.compareTo(analytics.getRefundRateByPaymentMethod().get("UNKNOWN")));
+        assertEquals(Map.of("2026-03-04T00:00", 5L, "2026-03-05T00:00", 2L), analytics.getPaymentCountByTimePeriod());
+        assertEquals(Map.of("2026-03-04T00:00", new BigDecimal("100.00")), analytics.getRevenueByTimePeriod());
+    }
+
+    @Test
+    void noPaymentsGiveEmptyAnalytics() {
+        PaymentAnalyticsDTO analytics = new PaymentAnalyticsAccumulator().toAnalytics();
+
+        assertNull(analytics.getTotalRevenue());
+        assertNull(analytics.getPaymentCountByStatus());
+    }
+}
@@ -0,0 +1,36 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.PaymentAnalyticsDTO;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
+import com.abiodun.expaq.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class PaymentAnalyticsServiceImplTest {
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final PaymentAnalyticsServiceImpl analyticsService = new PaymentAnalyticsServiceImpl(paymentRepository,
+            mock(PaymentDailyRollupRepository.class), mock(PaymentRollupService.class));
+
+    @Test
+    void unknownCurrencyHasEmptyAnalytics() {
+        PaymentAnalyticsDTO analytics = analyticsService.getAnalyticsByCurrency("xyz");
+
+        assertEquals(BigDecimal.ZERO, analytics.getTotalRevenue());
+        assertTrue(analytics.getPaymentCountByStatus().isEmpty());
+        verifyNoInteractions(paymentRepository);
+    }
+
+    @Test
+    void unknownPaymentMethodHasEmptyAnalytics() {
+        PaymentAnalyticsDTO analytics = analyticsService.getAnalyticsByPaymentMethod("cheque");
+
+        assertEquals(BigDecimal.ZERO, analytics.getTotalRevenue());
+        verifyNoInteractions(paymentRepository);
+    }
+}
@@ -0,0 +1,133 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentDailyRollupRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class PaymentRollupServiceTest {
+
+    private static final String LOCK_SHARED = "SELECT pg_advisory_xact_lock_shared";
+    private static final String LOCK_DAYS = "SELECT pg_advisory_xact_lock(";
+    private static final String PROGRESS = "SELECT rebuilt_until, completed_at";
+    private static final String ADVANCE = "UPDATE payment_rollup_backfill SET rebuilt_until";
+    private static final String COMPLETE = "UPDATE payment_rollup_backfill SET completed_at";
+
+    private final PaymentDailyRollupRepository rollupRepository = mock(PaymentDailyRollupRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PaymentRollupService service = new PaymentRollupService(rollupRepository, transactionTemplate, jdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void movesARefundedPaymentBetweenCellsUnderTheDaysSharedLock() {
+        Payment payment = payment(LocalDateTime.of(2026, 3, 4, 10, 0));
+        payment.setStatus(PaymentStatus.REFUNDED);
+
+        service.recordStatusChange(payment, PaymentStatus.COMPLETED);
+
+        LocalDate day = LocalDate.of(2026, 3, 4);
+        InOrder inOrder = inOrder(jdbcTemplate, rollupRepository);
+        inOrder.verify(jdbcTemplate).query(startsWith(LOCK_SHARED), any(RowCallbackHandler.class),
+                anyInt(), eq((int) day.toEpochDay()));
+        inOrder.verify(rollupRepository).applyDelta(day, "USD", "STRIPE", "COMPLETED", -1,
+                new BigDecimal("-40.00"), BigDecimal.ZERO);
+        inOrder.verify(rollupRepository).applyDelta(day, "USD", "STRIPE", "REFUNDED", 1,
+                new BigDecimal("40.00"), new BigDecimal("40.00"));
+    }
+
+    @Test
+    void ignoresStatusChangesToTheSameStatus() {
+        Payment payment = payment(LocalDateTime.now());
+
+        service.recordStatusChange(payment, PaymentStatus.COMPLETED);
+
+        verifyNoInteractions(rollupRepository, jdbcTemplate);
+    }
+
+    @Test
+    void locksEveryDayOfAChunkBeforeRebuildingIt() {
+        LocalDate from = LocalDate.of(2026, 1, 1);
+        when(rollupRepository.rebuildDays(any(), any())).thenReturn(3);
+
+        assertEquals(3, service.rebuild(from, from.plusDays(3)));
+
+        InOrder inOrder = inOrder(jdbcTemplate, rollupRepository);
+        inOrder.verify(jdbcTemplate).query(startsWith(LOCK_DAYS), any(RowCallbackHandler.class), anyInt(),
+                eq((int) from.toEpochDay()), eq((int) from.toEpochDay() + 2));
+        inOrder.verify(rollupRepository).deleteDays(from, from.plusDays(3));
+        inOrder.verify(rollupRepository).rebuildDays(from.atStartOfDay(), from.plusDays(3).atStartOfDay());
+        verify(jdbcTemplate, never()).update(startsWith(ADVANCE), any(Object[].class));
+    }
+
+    @Test
+    void resumesAnInterruptedBackfillFromItsWatermark() throws Exception {
+        LocalDate watermark = LocalDate.now().minusDays(10);
+        stubProgress(watermark, null);
+        when(rollupRepository.findFirstPaymentTime()).thenReturn(LocalDateTime.now().minusYears(2));
+        when(rollupRepository.rebuildDays(any(), any())).thenReturn(1);
+
+        service.backfillIfNeeded();
+
+        LocalDate to = LocalDate.now().plusDays(1);
+        verify(rollupRepository).deleteDays(watermark, to);
+        verify(rollupRepository).rebuildDays(watermark.atStartOfDay(), to.atStartOfDay());
+        verify(jdbcTemplate).update(startsWith(ADVANCE), eq(to), anyInt(), eq(to));
+        verify(jdbcTemplate).update(startsWith(COMPLETE), any(), anyInt());
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    void doesNotRebuildOnceTheBackfillIsComplete() throws Exception {
+        stubProgress(LocalDate.now(), LocalDateTime.now().minusDays(1));
+
+        service.backfillIfNeeded();
+        service.backfillIfNeeded();
+
+        assertTrue(service.isReady());
+        verify(rollupRepository, never()).rebuildDays(any(), any());
+        verify(jdbcTemplate, times(1)).queryForObject(startsWith(PROGRESS), any(RowMapper.class), any(Object[].class));
+    }
+
+    private void stubProgress(LocalDate rebuiltUntil, LocalDateTime completedAt) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject("rebuilt_until", LocalDate.class)).thenReturn(rebuiltUntil);
+        when(row.getObject("completed_at", LocalDateTime.class)).thenReturn(completedAt);
+        when(jdbcTemplate.queryForObject(startsWith(PROGRESS), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0));
+    }
+
+    private static Payment payment(LocalDateTime createdAt) {
+        Payment payment = new Payment();
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setPaymentMethod(Payment.PaymentMethod.STRIPE);
+        payment.setCurrency(Payment.Currency.USD);
+        payment.setAmount(new BigDecimal("40.00"));
+        payment.setCreatedAt(createdAt);
+        return payment;
+    }
+}
@@ -0,0 +1,203 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.exception.PaymentCreationFailedException;
+import com.abiodun.expaq.model.Booking;
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import com.abiodun.expaq.service.IPaymentService;
+import com.abiodun.expaq.service.fraud.FraudAssessment;
+import com.abiodun.expaq.service.fraud.FraudRuleEngine;
+import com.abiodun.expaq.service.payment.PaymentProvider;
+import com.abiodun.expaq.service.payment.PaymentRefundOutbox;
+import com.abiodun.expaq.service.payment.PaystackPaymentProvider;
+import com.abiodun.expaq.service.payment.StripePaymentProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PaymentServiceImplTest {
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final BookingRepository bookingRepository = mock(BookingRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final StripePaymentProvider stripePaymentProvider = mock(StripePaymentProvider.class);
+    private final FraudRuleEngine fraudRuleEngine = mock(FraudRuleEngine.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final UserRiskFeatureStore featureStore = new UserRiskFeatureStore(paymentRepository);
+    private final RecordingTransactionManager transactionManager = new RecordingTransactionManager();
+    private final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+    private final PaymentRollupService paymentRollupService = mock(PaymentRollupService.class);
+    private final CapacityReservationService capacityReservationService = mock(CapacityReservationService.class);
+
+    private IPaymentService paymentService;
+    private UUID bookingId;
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        PaymentServiceImpl target = new PaymentServiceImpl(paymentRepository, bookingRepository, userRepository,
+                stripePaymentProvider, mock(PaystackPaymentProvider.class), paymentRollupService,
+                fraudRuleEngine, eventPublisher, transactionTemplate,
+                capacityReservationService, mock(PaymentRefundOutbox.class));
+        // The same @Transactional handling the application context applies
+        ProxyFactory proxyFactory = new ProxyFactory(target);
+        proxyFactory.addAdvice(new TransactionInterceptor(transactionManager, new AnnotationTransactionAttributeSource()));
+        paymentService = (IPaymentService) proxyFactory.getProxy();
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setEmail("guest@example.com");
+        userId = user.getId();
+        Booking booking = new Booking();
+        booking.setId(UUID.randomUUID());
+        booking.setTotalPrice(new BigDecimal("50.00"));
+        bookingId = booking.getId();
+
+        when(bookingRepository.findById(bookingId)).thenReturn(Optional.of(booking));
+        when(userRepository.findByIdForPayment(userId)).thenReturn(Optional.of(user));
+        when(fraudRuleEngine.evaluate(any(Payment.class))).thenReturn(new FraudAssessment(0.0, null));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> {
+            Payment payment = invocation.getArgument(0);
+            payment.setId(UUID.randomUUID());
+            payment.setCreatedAt(LocalDateTime.now());
+            return payment;
+        });
+        when(paymentRepository.countTotalAndFailedByUserId(userId))
+                .thenReturn(Collections.singletonList(new Object[]{0L, 0L}));
+        // Deliver events after commit, as @TransactionalEventListener does
+        doAnswer(invocation -> {
+            PaymentEvent event = invocation.getArgument(0);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    featureStore.onPaymentEvent(event);
+                }
+            });
+            return null;
+        }).when(eventPublisher).publishEvent(any(PaymentEvent.class));
+    }
+
+    @Test
+    void providerFailureIsCommittedAndCountedInRiskFeatures() throws Exception {
+        UserRiskFeatureStore.UserRiskFeatures features = featureStore.get(userId);
+        when(stripePaymentProvider.createPaymentIntent(any(Payment.class)))
+                .thenThrow(new PaymentProvider.PaymentException("card declined"));
+
+        assertThrows(PaymentCreationFailedException.class,
+                () -> paymentService.createPayment(bookingId, userId, "STRIPE"));
+
+        assertEquals(1, transactionManager.commits);
+        assertEquals(0, transactionManager.rollbacks);
+        assertEquals(1, features.getTotalPayments());
+        assertEquals(1, features.getFailedPayments());
+    }
+
+    @Test
+    void unexpectedErrorsStillRollBack() throws Exception {
+        UserRiskFeatureStore.UserRiskFeatures features = featureStore.get(userId);
+        when(stripePaymentProvider.createPaymentIntent(any(Payment.class)))
+                .thenThrow(new IllegalStateException("bug"));
+
+        assertThrows(IllegalStateException.class, () -> paymentService.createPayment(bookingId, userId, "STRIPE"));
+
+        assertEquals(1, transactionManager.rollbacks);
+        assertEquals(0, features.getTotalPayments());
+    }
+
+    @Test
+    void statusChangeAppliedConcurrentlyIsCountedOnlyOnce() throws Exception {
+        Payment pending = payment(Payment.PaymentStatus.PENDING);
+        Payment completed = payment(Payment.PaymentStatus.COMPLETED);
+        completed.setId(pending.getId());
+        when(paymentRepository.findById(pending.getId())).thenReturn(Optional.of(pending));
+        // The inbox worker completed it while the provider was being asked
+        when(paymentRepository.findByIdForUpdate(pending.getId())).thenReturn(Optional.of(completed));
+
+        paymentService.updatePaymentStatus(pending.getId(), Payment.PaymentStatus.COMPLETED, "pi_123");
+
+        verify(stripePaymentProvider).confirmPayment("pi_123");
+        verifyNoInteractions(paymentRollupService, capacityReservationService);
+        verify(eventPublisher, never()).publishEvent(any(PaymentEvent.class));
+    }
+
+    @Test
+    void statusChangeIsAppliedUnderTheRowLock() throws Exception {
+        Payment pending = payment(Payment.PaymentStatus.PENDING);
+        when(paymentRepository.findById(pending.getId())).thenReturn(Optional.of(pending));
+        when(paymentRepository.findByIdForUpdate(pending.getId())).thenReturn(Optional.of(pending));
+        when(capacityReservationService.securePaidBooking(any(), eq(Booking.BookingStatus.CONFIRMED))).thenReturn(true);
+
+        paymentService.updatePaymentStatus(pending.getId(), Payment.PaymentStatus.COMPLETED, "pi_123");
+
+        verify(paymentRollupService).recordStatusChange(pending, Payment.PaymentStatus.PENDING);
+        verify(eventPublisher).publishEvent(any(PaymentEvent.class));
+        assertEquals(1, transactionManager.commits);
+    }
+
+    private Payment payment(Payment.PaymentStatus status) {
+        Booking booking = new Booking();
+        booking.setId(bookingId);
+        User user = new User();
+        user.setId(userId);
+        Payment payment = new Payment();
+        payment.setId(UUID.randomUUID());
+        payment.setUser(user);
+        payment.setBooking(booking);
+        payment.setStatus(status);
+        payment.setPaymentProvider("STRIPE");
+        payment.setPaymentProviderReference("pi_123");
+        payment.setAmount(new BigDecimal("50.00"));
+        return payment;
+    }
+
+    /**
+     * Runs transaction synchronizations like a real manager without touching a database.
+     */
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+        private int commits;
+        private int rollbacks;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits++;
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks++;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.dto.UpdateReviewRequest;
+import com.abiodun.expaq.event.ReviewChangedEvent;
+import com.abiodun.expaq.mapper.ReviewMapper;
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.Review;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.BookingRepository;
+import com.abiodun.expaq.repository.ReviewRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ReviewServiceImplTest {
+
+    private final ReviewRepository reviewRepository = mock(ReviewRepository.class);
+    private final ActivityRepository activityRepository = mock(ActivityRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final ReviewServiceImpl reviewService = new ReviewServiceImpl(reviewRepository, activityRepository,
+            mock(BookingRepository.class), mock(UserRepository.class), mock(ReviewMapper.class),
+            mock(ReviewStatisticsCache.class), eventPublisher);
+
+    private UUID userId;
+    private UUID activityId;
+    private Review review;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        userId = user.getId();
+        Activity activity = new Activity();
+        activity.setId(UUID.randomUUID());
+        activityId = activity.getId();
+        review = new Review();
+        review.setId(UUID.randomUUID());
+        review.setUser(user);
+        review.setActivity(activity);
+        review.setRating(4);
+        when(reviewRepository.findById(review.getId())).thenReturn(Optional.of(review));
+        when(reviewRepository.save(any(Review.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void ratingChangeShiftsTheSumOnly() {
+        reviewService.updateReview(review.getId(), request(2), userId);
+
+        verify(activityRepository).applyRatingDelta(activityId, 0, -2);
+        verify(eventPublisher).publishEvent(any(ReviewChangedEvent.class));
+    }
+
+    @Test
+    void editWithTheSameRatingLeavesTheAggregatesAlone() {
+        reviewService.updateReview(review.getId(), request(4), userId);
+
+        verify(activityRepository, never()).applyRatingDelta(any(), anyInt(), anyLong());
+    }
+
+    @Test
+    void deleteRemovesTheRatingFromTheAggregates() {
+        reviewService.deleteReview(review.getId(), userId);
+
+        verify(reviewRepository).delete(review);
+        verify(activityRepository).applyRatingDelta(activityId, -1, -4);
+    }
+
+    private static UpdateReviewRequest request(int rating) {
+        UpdateReviewRequest request = new UpdateReviewRequest();
+        request.setRating(rating);
+        request.setComment("Edited");
+        return request;
+    }
+}
@@ -0,0 +1,106 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.repository.SubscriptionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class SubscriptionReferenceIndexTest {
+
+    private final SubscriptionRepository subscriptionRepository = mock(SubscriptionRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SubscriptionReferenceIndex index = new SubscriptionReferenceIndex(subscriptionRepository, jdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_lock"), eq(Boolean.class), any(Object[].class)))
+                .thenReturn(true);
+    }
+
+    @Test
+    void servesRepeatedLookupsFromTheCache() {
+        UUID id = UUID.randomUUID();
+        when(subscriptionRepository.findIdsByStripeSubscriptionId("sub_123")).thenReturn(List.of(id));
+
+        assertEquals(Optional.of(id), index.findSubscriptionId("stripe", "sub_123"));
+        assertEquals(Optional.of(id), index.findSubscriptionId("STRIPE", " sub_123 "));
+
+        verify(subscriptionRepository, times(1)).findIdsByStripeSubscriptionId("sub_123");
+    }
+
+    @Test
+    void doesNotCacheUnknownReferences() {
+        UUID id = UUID.randomUUID();
+        when(subscriptionRepository.findIdsByPaystackSubscriptionCode("SUB_abc"))
+                .thenReturn(List.of())
+                .thenReturn(List.of(id));
+
+        assertEquals(Optional.empty(), index.findSubscriptionId("paystack", "SUB_abc"));
+        // Linked moments later; the next webhook finds it
+        assertEquals(Optional.of(id), index.findSubscriptionId("paystack", "SUB_abc"));
+    }
+
+    @Test
+    void blankReferencesAndUnknownProvidersNeverReachTheDatabase() {
+        assertEquals(Optional.empty(), index.findSubscriptionId("stripe", "  "));
+        assertEquals(Optional.empty(), index.findSubscriptionId("stripe", null));
+        assertEquals(Optional.empty(), index.findSubscriptionId(null, "sub_123"));
+        assertEquals(Optional.empty(), index.findSubscriptionId("paypal", "sub_123"));
+
+        verifyNoInteractions(subscriptionRepository);
+    }
+
+    @Test
+    void rebuildsAnIndexLeftInvalidByAnInterruptedBuild() {
+        String invalid = SubscriptionReferenceIndex.indexName("stripe_subscription_id");
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), any(Object[].class)))
+                .thenAnswer(invocation -> invalid.equals(invocation.getArgument(2)) ? List.of(false) : List.of(true));
+
+        assertTrue(index.ensureSchema(jdbcTemplate));
+
+        verify(jdbcTemplate).execute("DROP INDEX CONCURRENTLY IF EXISTS " + invalid);
+        verify(jdbcTemplate, times(1)).execute(startsWith("DROP INDEX"));
+        verify(jdbcTemplate, times(2)).execute(startsWith("CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS"));
+    }
+
+    @Test
+    void leavesColumnsWithSharedValuesUnindexed() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT stripe_subscription_id"), eq(String.class)))
+                .thenReturn(List.of("sub_dup"));
+        when(jdbcTemplate.queryForList(startsWith("SELECT i.indisvalid"), eq(Boolean.class), any(Object[].class)))
+                .thenReturn(List.of());
+
+        // Not done yet, so the next scheduled run tries the column again
+        assertFalse(index.ensureSchema(jdbcTemplate));
+
+        verify(jdbcTemplate, never()).execute(contains("(stripe_subscription_id)"));
+        verify(jdbcTemplate).execute(contains("(paystack_subscription_code)"));
+        verify(jdbcTemplate, never()).execute(startsWith("DROP INDEX"));
+    }
+
+    @Test
+    void leavesTheSchemaAloneWhileAnotherInstanceHoldsTheLock() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_lock"), eq(Boolean.class), any(Object[].class)))
+                .thenReturn(false);
+
+        assertFalse(index.ensureSchema(jdbcTemplate));
+
+        verify(jdbcTemplate, never()).update(anyString());
+        verify(jdbcTemplate, never()).execute(anyString());
+        verify(jdbcTemplate, never()).queryForObject(startsWith("SELECT pg_advisory_unlock"), eq(Boolean.class), any(Object[].class));
+    }
+}
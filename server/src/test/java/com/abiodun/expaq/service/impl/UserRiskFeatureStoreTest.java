@@ -0,0 +1,65 @@
+package com.abiodun.expaq.service.impl;
+
+import com.abiodun.expaq.event.PaymentEvent;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.*;
+
+class UserRiskFeatureStoreTest {
+
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final UserRiskFeatureStore store = new UserRiskFeatureStore(paymentRepository);
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void loadsCountsOnce() {
+        stubHistory(5, 2);
+
+        UserRiskFeatureStore.UserRiskFeatures features = store.get(userId);
+
+        assertEquals(5, features.getTotalPayments());
+        assertEquals(2, features.getFailedPayments());
+        assertSame(features, store.get(userId));
+        verify(paymentRepository, times(1)).countTotalAndFailedByUserId(userId);
+    }
+
+    @Test
+    void appliesCommittedPaymentEventsToCachedUsers() {
+        stubHistory(1, 0);
+        UserRiskFeatureStore.UserRiskFeatures features = store.get(userId);
+        UUID paymentId = UUID.randomUUID();
+
+        store.onPaymentEvent(event(paymentId, null, PaymentStatus.PENDING));
+        store.onPaymentEvent(event(paymentId, PaymentStatus.PENDING, PaymentStatus.FAILED));
+        assertEquals(2, features.getTotalPayments());
+        assertEquals(1, features.getFailedPayments());
+
+        // A retried payment that later succeeds is no longer a failure
+        store.onPaymentEvent(event(paymentId, PaymentStatus.FAILED, PaymentStatus.COMPLETED));
+        assertEquals(0, features.getFailedPayments());
+    }
+
+    @Test
+    void ignoresEventsForUsersNotInTheCache() {
+        store.onPaymentEvent(event(UUID.randomUUID(), null, PaymentStatus.PENDING));
+
+        verifyNoInteractions(paymentRepository);
+    }
+
+    private void stubHistory(long total, long failed) {
+        when(paymentRepository.countTotalAndFailedByUserId(userId))
+                .thenReturn(Collections.singletonList(new Object[]{total, failed}));
+    }
+
+    private PaymentEvent event(UUID paymentId, PaymentStatus previous, PaymentStatus status) {
+        return new PaymentEvent(paymentId, userId, previous, status, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,79 @@
+package com.abiodun.expaq.service.marketing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class CampaignDispatcherTest {
+
+    private static final String CLAIM = "UPDATE marketing_executions SET status = 'SENDING'";
+    private static final String DELIVERED = "UPDATE marketing_executions SET status = 'DELIVERED'";
+    private static final String FAIL_STALE = "UPDATE marketing_executions SET status = 'FAILED', retry_count = max_retries";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final CampaignDispatcher dispatcher = new CampaignDispatcher(jdbcTemplate, transactionTemplate, mailSender,
+            new SimpleMeterRegistry(), 1, 10, 10, 1_000, 5_000);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void retriesAFailedOutcomeWriteInsteadOfLeavingTheSendToTheStaleSweep() throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject("id", UUID.class)).thenReturn(UUID.randomUUID());
+        when(row.getTimestamp("scheduled_at")).thenReturn(Timestamp.valueOf(LocalDateTime.now().minusMinutes(1)));
+        when(row.getString("recipient_email")).thenReturn("guest@example.com");
+        when(row.getString("subject_line")).thenReturn("Lagoon weekend");
+        when(row.getString("message_content")).thenReturn("Kayaks half price");
+        when(jdbcTemplate.query(startsWith(CLAIM), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0)))
+                .thenReturn(List.of());
+        doThrow(new CannotCreateTransactionException("connection refused"))
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(transactionTemplate).executeWithoutResult(any());
+
+        assertEquals(1, dispatcher.dispatchDue());
+
+        verify(mailSender, times(1)).send(any(SimpleMailMessage[].class));
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith(DELIVERED), anyList());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+    }
+
+    @Test
+    void staleSendsAreFailedWithoutRetriesSoTheyAreNotResent() {
+        when(jdbcTemplate.update(startsWith(FAIL_STALE), any(Timestamp.class), any(Timestamp.class))).thenReturn(2);
+
+        assertEquals(0, dispatcher.dispatchDue());
+
+        verify(jdbcTemplate).update(startsWith(FAIL_STALE), any(Timestamp.class), any(Timestamp.class));
+        verify(mailSender, never()).send(any(SimpleMailMessage[].class));
+    }
+}
@@ -0,0 +1,28 @@
+package com.abiodun.expaq.service.marketing;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void allowsBurstThenPacesAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 20, 0);
+        assertEquals(0, bucket.reserve(20, 0));
+        // Bucket empty: the next 5 permits take half a second to earn
+        assertEquals(SECOND / 2, bucket.reserve(5, 0));
+        // Later callers queue behind the debt
+        assertEquals(SECOND, bucket.reserve(5, 0));
+        assertEquals(0, bucket.reserve(5, 2 * SECOND));
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 20, 0);
+        assertEquals(0, bucket.reserve(20, 60 * SECOND));
+        assertEquals(SECOND / 10, bucket.reserve(1, 60 * SECOND));
+    }
+}
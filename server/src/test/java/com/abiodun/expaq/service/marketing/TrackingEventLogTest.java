@@ -0,0 +1,94 @@
+package com.abiodun.expaq.service.marketing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TrackingEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void leftoverSegmentsSurviveReopenUntilDeleted() throws Exception {
+        TrackingEventLog log = new TrackingEventLog(directory);
+        log.append(new TrackingEvent(TrackingEvent.Type.OPENED, "TRK_A", 1_000L, null).encode());
+        List<Path> sealed = log.rotate();
+        assertEquals(1, sealed.size());
+        log.append(new TrackingEvent(TrackingEvent.Type.CONVERTED, "TRK_A", 2_000L, new BigDecimal("19.90")).encode());
+        // Crash: nothing deleted, active segment left behind
+        log.close();
+
+        TrackingEventLog reopened = new TrackingEventLog(directory);
+        List<Path> leftover = reopened.leftoverSegments();
+        assertEquals(2, leftover.size());
+        Map<String, TrackingEventIngestor.PendingUpdate> updates = new LinkedHashMap<>();
+        for (Path segment : leftover) {
+            for (String record : TrackingEventLog.read(segment)) {
+                TrackingEventIngestor.merge(updates, TrackingEvent.decode(record));
+            }
+        }
+        TrackingEventIngestor.PendingUpdate update = updates.get("TRK_A");
+        assertEquals(1_000L, update.openedAt);
+        assertEquals(2_000L, update.convertedAt);
+        assertEquals(new BigDecimal("19.90"), update.conversionValue);
+
+        // Nothing new was written, so rotating seals nothing more
+        assertEquals(leftover, reopened.rotate());
+        reopened.delete(leftover);
+        reopened.close();
+        try (var files = Files.list(directory)) {
+            assertEquals(1, files.filter(file -> file.getFileName().toString().startsWith("tracking-")).count());
+        }
+    }
+
+    @Test
+    void secondLogOnTheSameDirectoryIsRefusedUntilTheFirstCloses() throws Exception {
+        TrackingEventLog first = new TrackingEventLog(directory);
+        first.append(new TrackingEvent(TrackingEvent.Type.OPENED, "TRK_D", 1_000L, null).encode());
+
+        assertThrows(TrackingEventLog.DirectoryInUseException.class, () -> new TrackingEventLog(directory));
+
+        first.close();
+        // Only the first log's segment, untouched by the refused open
+        TrackingEventLog second = new TrackingEventLog(directory);
+        List<Path> leftover = second.leftoverSegments();
+        assertEquals(1, leftover.size());
+        assertEquals(1, TrackingEventLog.read(leftover.get(0)).size());
+        second.close();
+    }
+
+    @Test
+    void coalescesToFirstOpenAndClickAndLatestConversion() {
+        Map<String, TrackingEventIngestor.PendingUpdate> updates = new LinkedHashMap<>();
+        TrackingEventIngestor.merge(updates, new TrackingEvent(TrackingEvent.Type.OPENED, "TRK_B", 500L, null));
+        TrackingEventIngestor.merge(updates, new TrackingEvent(TrackingEvent.Type.OPENED, "TRK_B", 300L, null));
+        TrackingEventIngestor.merge(updates, new TrackingEvent(TrackingEvent.Type.CLICKED, "TRK_B", 700L, null));
+        TrackingEventIngestor.merge(updates, new TrackingEvent(TrackingEvent.Type.CONVERTED, "TRK_B", 900L, BigDecimal.TEN));
+        TrackingEventIngestor.merge(updates, new TrackingEvent(TrackingEvent.Type.CONVERTED, "TRK_B", 800L, BigDecimal.ONE));
+
+        TrackingEventIngestor.PendingUpdate update = updates.get("TRK_B");
+        assertEquals(300L, update.openedAt);
+        assertEquals(700L, update.clickedAt);
+        assertEquals(900L, update.convertedAt);
+        assertEquals(BigDecimal.TEN, update.conversionValue);
+    }
+
+    @Test
+    void rejectsTornRecords() {
+        assertNull(TrackingEvent.decode("CLICKED|TRK_C|12"));
+        assertNull(TrackingEvent.decode("CLICKED|TRK_C|12x|"));
+        assertNotNull(TrackingEvent.decode("CLICKED|TRK_C|12|"));
+    }
+}
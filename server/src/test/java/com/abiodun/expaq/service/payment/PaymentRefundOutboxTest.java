@@ -0,0 +1,130 @@
+package com.abiodun.expaq.service.payment;
+
+import com.abiodun.expaq.model.Payment;
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.PaymentRepository;
+import com.abiodun.expaq.service.impl.PaymentRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class PaymentRefundOutboxTest {
+
+    private static final String CLAIM_ONE = "UPDATE payment_refund_outbox SET status = 'PROCESSING',"
+            + " attempts = attempts + 1, locked_at = ? WHERE payment_id = ?";
+    private static final String DONE = "DELETE FROM payment_refund_outbox";
+    private static final String RETRY = "UPDATE payment_refund_outbox SET status = 'PENDING', last_error";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final PaymentRepository paymentRepository = mock(PaymentRepository.class);
+    private final StripePaymentProvider stripePaymentProvider = mock(StripePaymentProvider.class);
+    private final PaymentRollupService paymentRollupService = mock(PaymentRollupService.class);
+    private final PaymentRefundOutbox outbox = new PaymentRefundOutbox(jdbcTemplate, transactionTemplate,
+            paymentRepository, stripePaymentProvider, mock(PaystackPaymentProvider.class), paymentRollupService,
+            mock(ApplicationEventPublisher.class));
+
+    private Payment payment;
+    private String idempotencyKey;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        payment = new Payment();
+        payment.setId(UUID.randomUUID());
+        payment.setUser(user);
+        payment.setStatus(PaymentStatus.COMPLETED);
+        payment.setPaymentProvider("STRIPE");
+        payment.setPaymentProviderReference("pi_123");
+        payment.setAmount(new BigDecimal("40.00"));
+        idempotencyKey = PaymentRefundOutbox.idempotencyKey(payment.getId());
+        when(paymentRepository.findById(payment.getId())).thenReturn(Optional.of(payment));
+        when(paymentRepository.save(any(Payment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void keepsRefundQueuedWhenProviderFails() throws Exception {
+        stubClaim(1);
+        doThrow(new PaymentProvider.PaymentException("provider down"))
+                .when(stripePaymentProvider).refundPayment("pi_123", new BigDecimal("40.00"), idempotencyKey);
+
+        assertFalse(outbox.attempt(payment.getId()));
+
+        assertEquals(PaymentStatus.COMPLETED, payment.getStatus());
+        verify(jdbcTemplate).update(startsWith(RETRY), eq("provider down"), any(), eq(payment.getId()));
+        verify(jdbcTemplate, never()).update(startsWith(DONE), any(Object[].class));
+        verifyNoInteractions(transactionTemplate);
+    }
+
+    @Test
+    void marksPaymentRefundedOnlyAfterProviderAccepts() throws Exception {
+        stubClaim(2);
+
+        assertTrue(outbox.attempt(payment.getId()));
+
+        verify(stripePaymentProvider).refundPayment("pi_123", new BigDecimal("40.00"), idempotencyKey);
+        assertEquals(PaymentStatus.REFUNDED, payment.getStatus());
+        verify(paymentRollupService).recordStatusChange(payment, PaymentStatus.COMPLETED);
+        verify(jdbcTemplate).update(startsWith(DONE), eq(payment.getId()));
+    }
+
+    @Test
+    void retriesAfterALostDoneWriteWithTheSameIdempotencyKey() throws Exception {
+        stubClaim(1);
+        doThrow(new IllegalStateException("connection reset"))
+                .doAnswer(invocation -> {
+                    invocation.<Consumer<Object>>getArgument(0).accept(null);
+                    return null;
+                })
+                .when(transactionTemplate).executeWithoutResult(any());
+
+        assertFalse(outbox.attempt(payment.getId()));
+        assertTrue(outbox.attempt(payment.getId()));
+
+        verify(stripePaymentProvider, times(2)).refundPayment("pi_123", new BigDecimal("40.00"), idempotencyKey);
+        assertEquals(PaymentStatus.REFUNDED, payment.getStatus());
+    }
+
+    @Test
+    void skipsWhenNoRefundIsQueued() throws Exception {
+        when(jdbcTemplate.query(startsWith(CLAIM_ONE), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(Collections.emptyList());
+
+        assertFalse(outbox.attempt(payment.getId()));
+
+        verify(stripePaymentProvider, never()).refundPayment(anyString(), any(), anyString());
+    }
+
+    private void stubClaim(int attempts) throws Exception {
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject("payment_id", UUID.class)).thenReturn(payment.getId());
+        when(row.getString("reason")).thenReturn("Booking no longer available");
+        when(row.getInt("attempts")).thenReturn(attempts);
+        when(jdbcTemplate.query(startsWith(CLAIM_ONE), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0)));
+    }
+}
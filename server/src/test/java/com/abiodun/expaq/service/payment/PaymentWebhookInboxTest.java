@@ -0,0 +1,90 @@
+package com.abiodun.expaq.service.payment;
+
+import com.abiodun.expaq.model.Payment.PaymentStatus;
+import com.abiodun.expaq.service.IPaymentService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class PaymentWebhookInboxTest {
+
+    private static final String CLAIM = "UPDATE payment_webhook_inbox SET status = 'PROCESSING'";
+    private static final String RETRY = "UPDATE payment_webhook_inbox SET status = ?, last_error";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final IPaymentService paymentService = mock(IPaymentService.class);
+    private final PaymentWebhookInbox inbox = new PaymentWebhookInbox(jdbcTemplate, paymentService,
+            new SimpleMeterRegistry(), 1);
+
+    @AfterEach
+    void tearDown() {
+        inbox.shutdown();
+    }
+
+    @Test
+    void backoffDoublesPerAttemptUpToThirtyMinutes() {
+        assertEquals(Duration.ofSeconds(2), PaymentWebhookInbox.backoff(1));
+        assertEquals(Duration.ofSeconds(4), PaymentWebhookInbox.backoff(2));
+        assertEquals(Duration.ofSeconds(256), PaymentWebhookInbox.backoff(8));
+        assertEquals(Duration.ofMinutes(30), PaymentWebhookInbox.backoff(11));
+        // No overflow however often an event was retried by hand
+        assertEquals(Duration.ofMinutes(30), PaymentWebhookInbox.backoff(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void failedEventIsRescheduledAfterItsBackoff() throws Exception {
+        UUID eventId = claimOnce(3);
+        doThrow(new IllegalStateException("provider timeout"))
+                .when(paymentService).updatePaymentStatus(any(), any(), any());
+        LocalDateTime before = LocalDateTime.now();
+
+        assertEquals(0, inbox.drain());
+
+        verify(jdbcTemplate).update(startsWith(RETRY), eq("PENDING"), eq("provider timeout"),
+                argThat((Timestamp next) -> !next.toLocalDateTime().isBefore(before.plusSeconds(8))), eq(eventId));
+    }
+
+    @Test
+    void eventIsParkedAsFailedAfterTheLastAttempt() throws Exception {
+        UUID eventId = claimOnce(PaymentWebhookInbox.MAX_ATTEMPTS);
+        doThrow(new IllegalStateException("payment not found"))
+                .when(paymentService).updatePaymentStatus(any(), any(), any());
+
+        inbox.drain();
+
+        verify(jdbcTemplate).update(startsWith(RETRY), eq("FAILED"), anyString(), any(Timestamp.class), eq(eventId));
+    }
+
+    @SuppressWarnings("unchecked")
+    private UUID claimOnce(int attempts) throws Exception {
+        UUID eventId = UUID.randomUUID();
+        ResultSet row = mock(ResultSet.class);
+        when(row.getObject("id", UUID.class)).thenReturn(eventId);
+        when(row.getString("provider")).thenReturn("stripe");
+        when(row.getObject("payment_id", UUID.class)).thenReturn(UUID.randomUUID());
+        when(row.getString("target_status")).thenReturn(PaymentStatus.COMPLETED.name());
+        when(row.getString("transaction_id")).thenReturn("pi_123");
+        when(row.getInt("attempts")).thenReturn(attempts);
+        when(row.getTimestamp("received_at")).thenReturn(Timestamp.valueOf(LocalDateTime.now()));
+        when(jdbcTemplate.query(startsWith(CLAIM), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> List.of(invocation.<RowMapper<?>>getArgument(1).mapRow(row, 0)))
+                .thenReturn(List.of());
+        return eventId;
+    }
+}
@@ -0,0 +1,72 @@
+package com.abiodun.expaq.service.payment;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderCircuitBreakerTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void opensOnceFailureRateIsReached() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(10, 4, 50, 30 * SECOND, 2);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire(0));
+            breaker.onFailure(0);
+        }
+        // Below the minimum number of calls nothing trips
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire(0));
+        breaker.onSuccess();
+        assertTrue(breaker.tryAcquire(0));
+        breaker.onFailure(0);
+
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(29 * SECOND));
+    }
+
+    @Test
+    void halfOpenAdmitsLimitedProbesAndClosesWhenTheySucceed() {
+        ProviderCircuitBreaker breaker = tripped();
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertFalse(breaker.tryAcquire(30 * SECOND));
+        assertEquals(ProviderCircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertEquals(ProviderCircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedProbeReopens() {
+        ProviderCircuitBreaker breaker = tripped();
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        breaker.onFailure(30 * SECOND);
+
+        assertEquals(ProviderCircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire(59 * SECOND));
+        assertTrue(breaker.tryAcquire(60 * SECOND));
+    }
+
+    @Test
+    void releasedProbeFreesItsSlot() {
+        ProviderCircuitBreaker breaker = tripped();
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+        breaker.release();
+        assertTrue(breaker.tryAcquire(30 * SECOND));
+    }
+
+    private static ProviderCircuitBreaker tripped() {
+        ProviderCircuitBreaker breaker = new ProviderCircuitBreaker(4, 2, 50, 30 * SECOND, 2);
+        for (int i = 0; i < 2; i++) {
+            breaker.tryAcquire(0);
+            breaker.onFailure(0);
+        }
+        return breaker;
+    }
+}
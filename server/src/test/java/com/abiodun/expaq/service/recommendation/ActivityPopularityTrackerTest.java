@@ -0,0 +1,70 @@
+package com.abiodun.expaq.service.recommendation;
+
+import com.abiodun.expaq.event.BookingEvent;
+import com.abiodun.expaq.repository.ActivityPopularityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ActivityPopularityTrackerTest {
+
+    private final ActivityPopularityRepository popularityRepository = mock(ActivityPopularityRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final ActivityPopularityTracker tracker = new ActivityPopularityTracker(popularityRepository, transactionTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(tracker, "halfLifeHours", 168d);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        when(popularityRepository.findAll()).thenReturn(Collections.emptyList());
+    }
+
+    @Test
+    void firstSeedSkipsBookingsItAlreadyCounted() {
+        UUID activityId = UUID.randomUUID();
+        when(popularityRepository.count()).thenReturn(0L);
+        tracker.onBookingEvent(BookingEvent.created(UUID.randomUUID(), UUID.randomUUID(), activityId, 2));
+
+        tracker.flush();
+
+        verify(popularityRepository).backfillFromBookings(any(LocalDateTime.class), anyDouble());
+        verify(popularityRepository, never()).applyDelta(any(), anyLong(), anyDouble(), any(), anyDouble());
+
+        // A cancellation after the seed undoes a booking the seed counted
+        tracker.onBookingEvent(BookingEvent.cancelled(UUID.randomUUID(), UUID.randomUUID(), activityId, 2,
+                LocalDateTime.now().minusDays(1)));
+        tracker.flush();
+
+        verify(popularityRepository).applyDelta(eq(activityId), eq(-1L), anyDouble(), any(), anyDouble());
+    }
+
+    @Test
+    void eventsBeforeFirstFlushAreKeptWhenNothingIsSeeded() {
+        UUID activityId = UUID.randomUUID();
+        when(popularityRepository.count()).thenReturn(3L);
+        tracker.onBookingEvent(BookingEvent.created(UUID.randomUUID(), UUID.randomUUID(), activityId, 2));
+
+        tracker.flush();
+
+        verify(popularityRepository, never()).backfillFromBookings(any(), anyDouble());
+        verify(popularityRepository).applyDelta(eq(activityId), eq(1L), anyDouble(), any(), anyDouble());
+    }
+}
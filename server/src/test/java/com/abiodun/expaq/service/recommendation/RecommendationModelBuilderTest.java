@@ -0,0 +1,103 @@
+package com.abiodun.expaq.service.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecommendationModelBuilderTest {
+
+    private final UUID hiking = UUID.randomUUID();
+    private final UUID kayaking = UUID.randomUUID();
+    private final UUID cooking = UUID.randomUUID();
+    private final UUID museum = UUID.randomUUID();
+    private final UUID alice = UUID.randomUUID();
+    private final UUID bob = UUID.randomUUID();
+    private final UUID carol = UUID.randomUUID();
+
+    private RecommendationIndex buildIndex() {
+        List<Object[]> bookings = List.of(
+                new Object[]{alice, hiking},
+                new Object[]{alice, kayaking},
+                new Object[]{bob, hiking},
+                new Object[]{bob, kayaking},
+                new Object[]{bob, kayaking},
+                new Object[]{carol, hiking},
+                new Object[]{carol, cooking},
+                new Object[]{carol, UUID.randomUUID()}); // inactive activity, ignored
+        return RecommendationModelBuilder.build(List.of(hiking, kayaking, cooking, museum), bookings.iterator());
+    }
+
+    @Test
+    void build_RanksNeighboursByCoBookingSimilarity() {
+        RecommendationIndex index = buildIndex();
+
+        assertEquals(List.of(kayaking, cooking), index.similarTo(hiking, 5));
+        assertEquals(List.of(hiking), index.similarTo(kayaking, 5));
+        assertEquals(List.of(kayaking), index.similarTo(hiking, 1));
+        assertTrue(index.similarTo(museum, 5).isEmpty());
+        assertEquals(2, index.bookingCount(index.ordinalOf(kayaking)));
+    }
+
+    @Test
+    void build_PrecomputesUnbookedCandidatesPerUser() {
+        RecommendationIndex index = buildIndex();
+
+        int[] aliceCandidates = index.candidatesOf(alice);
+        assertEquals(1, aliceCandidates.length);
+        assertEquals(cooking, index.activityAt(aliceCandidates[0]));
+        assertNull(index.candidatesOf(UUID.randomUUID()));
+    }
+
+    @Test
+    void fillWithPopular_OrdersByBookingCountAndSkipsExcluded() {
+        RecommendationIndex index = buildIndex();
+        List<UUID> popular = new ArrayList<>();
+        boolean[] exclude = new boolean[index.size()];
+        exclude[index.ordinalOf(kayaking)] = true;
+
+        index.fillWithPopular(popular, 3, exclude);
+
+        assertEquals(List.of(hiking, cooking, museum), popular);
+    }
+
+    @Test
+    void build_KeepsMostRecentBookingsWhenHistoryIsFull() {
+        int max = RecommendationModelBuilder.MAX_HISTORY_PER_USER;
+        List<UUID> activities = new ArrayList<>();
+        List<Object[]> bookings = new ArrayList<>();
+        for (int i = 0; i < max + 5; i++) {
+            activities.add(UUID.randomUUID());
+            bookings.add(new Object[]{alice, activities.get(i)});
+        }
+        // Rebooking an activity still in the history does not move it
+        bookings.add(new Object[]{alice, activities.get(max)});
+
+        RecommendationIndex index = RecommendationModelBuilder.build(activities, bookings.iterator());
+
+        int[] history = index.historyOf(alice);
+        assertEquals(max, history.length);
+        for (int i = 0; i < max; i++) {
+            assertEquals(activities.get(i + 5), index.activityAt(history[i]));
+        }
+    }
+
+    @Test
+    void appendToHistory_IgnoresDuplicatesAndDropsOldestWhenFull() {
+        int[] history = RecommendationModelBuilder.appendToHistory(null, 3);
+        assertArrayEquals(new int[]{3}, history);
+        assertSame(history, RecommendationModelBuilder.appendToHistory(history, 3));
+
+        int[] full = new int[RecommendationModelBuilder.MAX_HISTORY_PER_USER];
+        for (int i = 0; i < full.length; i++) {
+            full[i] = i;
+        }
+        int[] updated = RecommendationModelBuilder.appendToHistory(full, 1_000);
+        assertEquals(RecommendationModelBuilder.MAX_HISTORY_PER_USER, updated.length);
+        assertEquals(1, updated[0]);
+        assertEquals(1_000, updated[updated.length - 1]);
+    }
+}
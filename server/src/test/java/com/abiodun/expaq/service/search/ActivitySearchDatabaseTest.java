@@ -0,0 +1,190 @@
+package com.abiodun.expaq.service.search;
+
+import com.abiodun.expaq.model.Activity;
+import com.abiodun.expaq.model.ActivityType;
+import com.abiodun.expaq.model.City;
+import com.abiodun.expaq.model.User;
+import com.abiodun.expaq.repository.ActivityRepository;
+import com.abiodun.expaq.repository.ActivityTypeRepository;
+import com.abiodun.expaq.repository.CityRepository;
+import com.abiodun.expaq.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link ActivitySearchIndex} and the ranked and faceted search queries against a real
+ * PostgreSQL. Point {@code EXPAQ_TEST_DATABASE_URL} at a throwaway database to run it, as for
+ * {@code CapacityReservationDatabaseTest}.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ActivitySearchIndex.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@EnabledIfEnvironmentVariable(named = "EXPAQ_TEST_DATABASE_URL", matches = ".+")
+@TestPropertySource(properties = {
+        "spring.datasource.url=${EXPAQ_TEST_DATABASE_URL}",
+        "spring.datasource.username=${EXPAQ_TEST_DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${EXPAQ_TEST_DATABASE_PASSWORD:postgres}",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+class ActivitySearchDatabaseTest {
+
+    private static final String KAYAK = "kayak:*";
+
+    @Autowired
+    private ActivitySearchIndex activitySearchIndex;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ActivityTypeRepository activityTypeRepository;
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User host;
+
+    @BeforeEach
+    void setUp() {
+        activitySearchIndex.ensureSchema();
+        jdbcTemplate.update("DELETE FROM activities");
+
+        host = new User();
+        host.setEmail("host-" + UUID.randomUUID() + "@example.com");
+        host.setPassword("secret");
+        host.setFirstName("Test");
+        host.setLastName("Host");
+        host = userRepository.save(host);
+    }
+
+    @Test
+    void ranksTitleMatchesAboveDescriptionMatchesAndSkipsInactive() {
+        ActivityType water = type("Water sports");
+        City lagos = city("Lagos");
+        City accra = city("Accra");
+        UUID inTitle = activity("Kayak tour", "Paddle the lagoon", "20.00", water, lagos, true);
+        UUID inDescription = activity("Lagoon boat party", "Kayak rental included", "60.00", water, accra, true);
+        activity("City walk", "Old town on foot", "15.00", water, lagos, true);
+        activity("Kayak safari", "Closed for the season", "30.00", water, lagos, false);
+
+        List<Object[]> page = activityRepository.searchRanked(KAYAK, true, null, null, null, 0, 10);
+
+        assertEquals(List.of(inTitle, inDescription), page.stream().map(row -> (UUID) row[0]).toList());
+        assertEquals(2L, ((Number) page.get(0)[1]).longValue());
+        assertEquals(2L, activityRepository.countMatches(KAYAK, true, null, null, null));
+        assertEquals(1L, activityRepository.countMatches(KAYAK, true, null, accra.getId(), null));
+        assertEquals(1L, activityRepository.countMatches(KAYAK, true, null, null, PriceBand.FROM_50_TO_100));
+    }
+
+    @Test
+    void countsTypeCityAndPriceFacetsInOnePass() {
+        ActivityType water = type("Water sports");
+        ActivityType food = type("Food");
+        City lagos = city("Lagos");
+        City accra = city("Accra");
+        activity("Kayak tour", "Paddle the lagoon", "20.00", water, lagos, true);
+        activity("Kayak and brunch", "Paddle, then eat", "60.00", food, lagos, true);
+        activity("Night kayak", "Under the stars", "70.00", water, accra, true);
+
+        Map<String, Long> facets = activityRepository.countFacets(KAYAK, true).stream()
+                .collect(Collectors.toMap(row -> row[0] + ":" + row[1], row -> ((Number) row[3]).longValue()));
+
+        assertEquals(2L, facets.get("type:" + water.getId()));
+        assertEquals(1L, facets.get("type:" + food.getId()));
+        assertEquals(2L, facets.get("city:" + lagos.getId()));
+        assertEquals(1L, facets.get("city:" + accra.getId()));
+        assertEquals(1L, facets.get("price:" + PriceBand.UNDER_25.ordinal()));
+        assertEquals(2L, facets.get("price:" + PriceBand.FROM_50_TO_100.ordinal()));
+    }
+
+    @Test
+    void newAndEditedActivitiesAreSearchableThroughTheTrigger() {
+        UUID id = activity("Sunset cruise", "On the lagoon", "40.00", null, null, true);
+        assertEquals(0L, activityRepository.countMatches(KAYAK, true, null, null, null));
+
+        jdbcTemplate.update("UPDATE activities SET title = 'Sunset kayak' WHERE id = ?", id);
+
+        assertEquals(1L, activityRepository.countMatches(KAYAK, true, null, null, null));
+    }
+
+    @Test
+    void matchesRowsWithoutAStoredVectorWhenNotIndexed() {
+        UUID id = activity("Kayak tour", "Paddle the lagoon", "20.00", null, null, true);
+        // As for rows the backfill has not reached yet
+        jdbcTemplate.update("UPDATE activities SET search_vector = NULL WHERE id = ?", id);
+
+        assertEquals(0L, activityRepository.countMatches(KAYAK, true, null, null, null));
+        assertEquals(1L, activityRepository.countMatches(KAYAK, false, null, null, null));
+        assertEquals(List.of(id), activityRepository.searchRanked(KAYAK, false, null, null, null, 0, 10).stream()
+                .map(row -> (UUID) row[0]).toList());
+        assertEquals(1, activityRepository.countFacets(KAYAK, false).stream()
+                .filter(row -> "price".equals(row[0])).count());
+    }
+
+    @Test
+    void rebuildsAnIndexLeftInvalidByAnInterruptedBuild() {
+        jdbcTemplate.update("UPDATE pg_index SET indisvalid = false WHERE indexrelid = ?::regclass",
+                ActivitySearchIndex.INDEX_NAME);
+
+        new ActivitySearchIndex(jdbcTemplate).ensureSchema();
+
+        assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject("SELECT indisvalid FROM pg_index"
+                + " WHERE indexrelid = ?::regclass", Boolean.class, ActivitySearchIndex.INDEX_NAME));
+    }
+
+    private ActivityType type(String name) {
+        ActivityType type = new ActivityType();
+        type.setName(name);
+        return activityTypeRepository.save(type);
+    }
+
+    private City city(String name) {
+        City city = new City();
+        city.setName(name);
+        return cityRepository.save(city);
+    }
+
+    private UUID activity(String title, String description, String price, ActivityType type, City city,
+                          boolean active) {
+        Activity activity = new Activity();
+        activity.setTitle(title);
+        activity.setDescription(description);
+        activity.setPrice(new BigDecimal(price));
+        activity.setAddress("1 Marina Road");
+        activity.setHost(host);
+        activity.setActivityType(type);
+        activity.setCity(city);
+        activity.setStartDate(LocalDateTime.now().plusDays(7));
+        activity.setEndDate(LocalDateTime.now().plusDays(7).plusHours(2));
+        activity.setMinParticipants(1);
+        activity.setMaxParticipants(10);
+        activity.setDurationMinutes(120);
+        activity.setActive(active);
+        return activityRepository.save(activity).getId();
+    }
+}
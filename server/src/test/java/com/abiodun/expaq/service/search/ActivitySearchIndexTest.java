@@ -0,0 +1,30 @@
+package com.abiodun.expaq.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ActivitySearchIndexTest {
+
+    @Test
+    void everyTermBecomesARequiredPrefix() {
+        assertEquals("kaya:* & tou:*", ActivitySearchIndex.toTsQuery("Kaya  TOU"));
+    }
+
+    @Test
+    void tsqueryOperatorsAreStripped() {
+        assertEquals("paris:* & night:*", ActivitySearchIndex.toTsQuery("paris' | !night:* & ("));
+    }
+
+    @Test
+    void keepsNonAsciiLettersAndDigits() {
+        assertEquals("café:* & 24h:*", ActivitySearchIndex.toTsQuery("Café 24h"));
+    }
+
+    @Test
+    void blankTextHasNoQuery() {
+        assertNull(ActivitySearchIndex.toTsQuery("  -- "));
+        assertNull(ActivitySearchIndex.toTsQuery(null));
+    }
+}
@@ -0,0 +1,64 @@
+package com.abiodun.expaq.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionTrieTest {
+
+    @Test
+    void completesFromAnyWordStartBestFirst() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(
+                activity("Kayak Tour", 5),
+                activity("Tokyo Food Tour", 40),
+                new Suggestion(Suggestion.Type.CITY, UUID.randomUUID(), "Tokyo", 90)));
+
+        assertEquals(List.of("Tokyo", "Tokyo Food Tour"), texts(trie.lookup("tok", 10)));
+        assertEquals(List.of("Tokyo Food Tour", "Kayak Tour"), texts(trie.lookup("tou", 10)));
+        assertEquals(List.of("Tokyo"), texts(trie.lookup("to", 1)));
+        assertTrue(trie.lookup("tours", 10).isEmpty());
+    }
+
+    @Test
+    void ignoresCaseAccentsAndPunctuation() {
+        SuggestionTrie trie = SuggestionTrie.build(List.of(activity("Côte d'Azur Sailing", 1)));
+
+        assertEquals(1, trie.lookup(SuggestionTrie.normalize("COTE D AZ"), 10).size());
+        assertEquals(1, trie.lookup(SuggestionTrie.normalize("azur"), 10).size());
+    }
+
+    @Test
+    void keepsOnlyTheBestPerNodeAndNoDuplicates() {
+        List<Suggestion> suggestions = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            suggestions.add(activity("Tour " + i, i));
+        }
+        suggestions.add(activity("Tour tours", 1000));
+        SuggestionTrie trie = SuggestionTrie.build(suggestions);
+
+        List<Suggestion> top = trie.lookup("tour", 100);
+        assertEquals(SuggestionTrie.TOP_PER_NODE, top.size());
+        assertEquals("Tour tours", top.get(0).getText());
+        assertEquals("Tour 39", top.get(1).getText());
+    }
+
+    @Test
+    void matchesAgreesWithLookup() {
+        assertTrue(SuggestionTrie.matches(SuggestionTrie.normalize("Kayak Tour"), "tou"));
+        assertFalse(SuggestionTrie.matches(SuggestionTrie.normalize("Kayak Tour"), "ayak"));
+    }
+
+    private static Suggestion activity(String title, long score) {
+        return new Suggestion(Suggestion.Type.ACTIVITY, UUID.randomUUID(), title, score);
+    }
+
+    private static List<String> texts(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::getText).toList();
+    }
+}